@@ -0,0 +1,164 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOError;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.gbleux.hostsmerge.address.HostEntry;
+import com.github.gbleux.hostsmerge.address.HostLineTokenizer;
+import com.github.gbleux.hostsmerge.corpus.CorpusGenerator;
+import com.github.gbleux.io.LineHandler;
+import com.github.gbleux.io.StreamLineScanner;
+
+/**
+ * Synthetic hosts data for benchmarks, produced by a {@link CorpusGenerator}
+ * with a fixed seed.
+ * <p>
+ * @author Gordon Bleux
+ */
+public final class Corpus
+{
+    private static final long SEED = 20141016L;
+
+    /**
+     * Distribution of the generated entries.
+     */
+    public enum Shape
+    {
+        /**
+         * distinct hostnames of a single address family, like a block list
+         */
+        UNIQUE,
+        /**
+         * three out of four hostnames repeated, like overlapping block lists
+         */
+        DUPLICATES,
+        /**
+         * IPv4 and IPv6 addresses, disabled entries, comments and comment
+         * lines
+         */
+        MIXED
+    }
+
+    private final List<HostEntry> entries;
+    private final byte[] content;
+
+    private Corpus(List<HostEntry> entries, byte[] content)
+    {
+        super();
+
+        this.entries = entries;
+        this.content = content;
+    }
+
+    /**
+     * @param lines number of lines
+     * @param shape distribution of the entries
+     * @return generator for the given shape
+     */
+    public static CorpusGenerator generator(long lines, Shape shape)
+    {
+        CorpusGenerator generator = new CorpusGenerator();
+
+        generator.setSeed(SEED);
+        generator.setLines(lines);
+
+        switch (shape)
+        {
+            case UNIQUE:
+                break;
+            case DUPLICATES:
+                generator.setDuplicateRatio(0.75);
+                break;
+            default:
+                generator.setDuplicateRatio(0.5);
+                generator.setCommentRatio(0.02);
+                generator.setTrailingCommentRatio(0.05);
+                generator.setDisabledRatio(0.1);
+                generator.setIpv6Ratio(0.3);
+                break;
+        }
+
+        return generator;
+    }
+
+    /**
+     * @param lines number of lines
+     * @param shape distribution of the entries
+     * @return new corpus, equal for equal arguments
+     */
+    public static Corpus generate(int lines, Shape shape)
+    {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final List<HostEntry> entries = new ArrayList<>(lines);
+        final HostLineTokenizer tokenizer = new HostLineTokenizer();
+
+        try
+        {
+            generator(lines, shape).write(output);
+            new StreamLineScanner(new ByteArrayInputStream(output.toByteArray())).scan(new LineHandler()
+            {
+                @Override
+                public void line(ByteBuffer buffer, int start, int end)
+                {
+                    if (tokenizer.tokenize(buffer, start, end))
+                    {
+                        entries.add(new HostEntry(
+                                false == tokenizer.isDisabled(),
+                                tokenizer.address(buffer),
+                                tokenizer.hostname(buffer, 0),
+                                tokenizer.comment(buffer)));
+                    }
+                }
+            });
+        }
+        catch (IOException e)
+        {
+            throw new IOError(e);
+        }
+
+        return new Corpus(entries, output.toByteArray());
+    }
+
+    /**
+     * @return generated entries in input order
+     */
+    public List<HostEntry> entries()
+    {
+        return this.entries;
+    }
+
+    /**
+     * @return entries as hosts file
+     */
+    public byte[] content()
+    {
+        return this.content;
+    }
+}
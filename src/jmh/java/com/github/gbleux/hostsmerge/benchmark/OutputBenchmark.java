@@ -0,0 +1,125 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.gbleux.hostsmerge.HostsWriter;
+import com.github.gbleux.hostsmerge.address.HostEntry;
+import com.github.gbleux.hostsmerge.sort.EntrySorter;
+
+/**
+ * Formatting and encoding of sorted entries into a discarding stream.
+ * <p>
+ * @author Gordon Bleux
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class OutputBenchmark
+{
+    @Param({"100000", "1000000"})
+    public int size;
+
+    @Param({"UNIQUE", "MIXED"})
+    public Corpus.Shape shape;
+
+    private HostEntry[] entries = null;
+
+    @Setup
+    public void setup()
+    {
+        List<HostEntry> generated = Corpus.generate(this.size, this.shape).entries();
+
+        this.entries = generated.toArray(new HostEntry[generated.size()]);
+        new EntrySorter().sort(this.entries);
+    }
+
+    /**
+     * {@link HostEntry#toHosts()} through a charset encoder
+     */
+    @Benchmark
+    public long toHosts() throws IOException
+    {
+        NullOutputStream output = new NullOutputStream();
+
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(output, "UTF-8")))
+        {
+            for (HostEntry entry : this.entries)
+            {
+                writer.write(entry.toHosts());
+                writer.write('\n');
+            }
+        }
+
+        return output.count();
+    }
+
+    @Benchmark
+    public long hostsWriter() throws IOException
+    {
+        return write(1);
+    }
+
+    @Benchmark
+    public long hostsWriterGrouped() throws IOException
+    {
+        return write(HostsWriter.DEFAULT_GROUP_SIZE);
+    }
+
+    private long write(int groupSize) throws IOException
+    {
+        NullOutputStream output = new NullOutputStream();
+
+        try (HostsWriter writer = new HostsWriter(Channels.newChannel(output), groupSize, 0))
+        {
+            for (HostEntry entry : this.entries)
+            {
+                writer.write(entry);
+            }
+        }
+
+        return output.count();
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.github.gbleux.hostsmerge.address.Address;
+import com.github.gbleux.hostsmerge.address.HostEntry;
+import com.github.gbleux.hostsmerge.address.rewrite.AddressRewrite;
+import com.github.gbleux.hostsmerge.address.rewrite.DefaultAddressRewrite;
+import com.github.gbleux.hostsmerge.address.rewrite.LoopbackAddressRewrite;
+import com.github.gbleux.hostsmerge.address.rewrite.NoAddressRewrite;
+
+/**
+ * Address rewrites of mixed IPv4 and IPv6 addresses.
+ * <p>
+ * @author Gordon Bleux
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RewriteBenchmark
+{
+    @Param({"none", "default", "loopback", "loopback6"})
+    public String rewrite;
+
+    private AddressRewrite instance = null;
+    private Address[] addresses = null;
+
+    @Setup
+    public void setup()
+    {
+        List<HostEntry> entries = Corpus.generate(100000, Corpus.Shape.MIXED).entries();
+
+        this.addresses = new Address[entries.size()];
+
+        for (int i = 0; i < this.addresses.length; i++)
+        {
+            this.addresses[i] = entries.get(i).addressValue();
+        }
+
+        switch (this.rewrite)
+        {
+            case "default":
+                this.instance = new DefaultAddressRewrite();
+                break;
+            case "loopback":
+                this.instance = new LoopbackAddressRewrite(false);
+                break;
+            case "loopback6":
+                this.instance = new LoopbackAddressRewrite(true);
+                break;
+            default:
+                this.instance = new NoAddressRewrite();
+                break;
+        }
+    }
+
+    @Benchmark
+    public void rewrite(Blackhole blackhole)
+    {
+        for (Address address : this.addresses)
+        {
+            blackhole.consume(this.instance.rewrite(address));
+        }
+    }
+}
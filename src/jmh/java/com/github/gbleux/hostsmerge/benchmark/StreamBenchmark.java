@@ -0,0 +1,126 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.gbleux.hostsmerge.corpus.CorpusGenerator;
+import com.github.gbleux.io.DirectoryFilesStream;
+import com.github.gbleux.io.MappedLineScanner;
+
+/**
+ * Concatenated reading of a directory of hosts files.
+ * <p>
+ * @author Gordon Bleux
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StreamBenchmark
+{
+    @Param({"100000", "1000000"})
+    public int size;
+
+    @Param({"1", "16"})
+    public int files;
+
+    private Path directory = null;
+
+    @Setup
+    public void setup() throws IOException
+    {
+        CorpusGenerator generator = Corpus.generator(this.size, Corpus.Shape.UNIQUE);
+
+        this.directory = Files.createTempDirectory("hostsmerge");
+        generator.setFiles(this.files);
+        generator.write(this.directory);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException
+    {
+        for (Path file : MappedLineScanner.listFiles(this.directory))
+        {
+            Files.delete(file);
+        }
+
+        Files.delete(this.directory);
+    }
+
+    /**
+     * byte by byte {@link DirectoryFilesStream#read()}
+     */
+    @Benchmark
+    public long readByte() throws IOException
+    {
+        long sum = 0L;
+        int b = 0;
+
+        try (DirectoryFilesStream stream = new DirectoryFilesStream(this.directory))
+        {
+            while (DirectoryFilesStream.EOF != (b = stream.read()))
+            {
+                sum += b;
+            }
+        }
+
+        return sum;
+    }
+
+    @Benchmark
+    public long readBlock() throws IOException
+    {
+        byte[] buffer = new byte[1 << 16];
+        long total = 0L;
+        int read = 0;
+
+        try (DirectoryFilesStream stream = new DirectoryFilesStream(this.directory))
+        {
+            while (DirectoryFilesStream.EOF != (read = stream.read(buffer, 0, buffer.length)))
+            {
+                total += read;
+            }
+        }
+
+        return total;
+    }
+}
@@ -0,0 +1,358 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.concurrent;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded, lock-free multi-producer/multi-consumer queue. Every slot carries
+ * a sequence number which tells producers and consumers whether the slot is
+ * free or occupied for the current lap, so no locks are required.
+ * <p>
+ * The blocking operations {@link #put(Object)} and {@link #take()} apply
+ * backpressure by spinning, yielding and finally parking the calling thread
+ * until the operation succeeds. The queue keeps counters about its usage
+ * which can be read at any time.
+ * <p>
+ * @author Gordon Bleux
+ * @param <T> element type
+ */
+public class RingBuffer<T>
+{
+    private static final int SPIN_LIMIT = 64;
+    private static final int YIELD_LIMIT = 128;
+    private static final long PARK_NANOS = 50000L;
+
+    private final AtomicReferenceArray<T> elements;
+    private final AtomicLongArray sequences;
+    private final int capacity;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong fullStalls = new AtomicLong();
+    private final AtomicLong emptyStalls = new AtomicLong();
+    private final AtomicLong producerWait = new AtomicLong();
+    private final AtomicLong consumerWait = new AtomicLong();
+    private final AtomicLong occupancy = new AtomicLong();
+    private final AtomicLong peak = new AtomicLong();
+
+    /**
+     * Constructor for a queue of at least the given capacity. the capacity is
+     * rounded up to the next power of two.
+     * <p>
+     * @param capacity minimum number of elements the queue is able to hold
+     */
+    public RingBuffer(int capacity)
+    {
+        super();
+
+        if (capacity <= 0 || capacity > 1 << 30)
+        {
+            throw new IllegalArgumentException("Capacity out of range: " + capacity);
+        }
+
+        this.capacity = roundUp(capacity);
+        this.mask = this.capacity - 1;
+        this.elements = new AtomicReferenceArray<>(this.capacity);
+        this.sequences = new AtomicLongArray(this.capacity);
+
+        for (int i = 0; i < this.capacity; i++)
+        {
+            this.sequences.set(i, i);
+        }
+    }
+
+    /**
+     * insert the element if the queue is not full.
+     * <p>
+     * @param element value to insert. must not be {@literal null}
+     * @return {@literal false} if the queue is full
+     */
+    public boolean offer(T element)
+    {
+        long position = this.tail.get();
+        long sequence = 0L;
+        int index = 0;
+
+        if (null == element)
+        {
+            throw new NullPointerException("Element must not be null");
+        }
+
+        while (true)
+        {
+            index = (int) (position & this.mask);
+            sequence = this.sequences.get(index);
+
+            if (sequence == position)
+            {
+                if (this.tail.compareAndSet(position, position + 1))
+                {
+                    this.elements.set(index, element);
+                    this.sequences.set(index, position + 1);
+                    sampleOccupancy(position + 1);
+
+                    return true;
+                }
+            }
+            else if (sequence < position)
+            {
+                // slot still occupied by the previous lap
+                return false;
+            }
+
+            position = this.tail.get();
+        }
+    }
+
+    /**
+     * remove the head of the queue if the queue is not empty.
+     * <p>
+     * @return head element or {@literal null} if the queue is empty
+     */
+    public T poll()
+    {
+        long position = this.head.get();
+        long sequence = 0L;
+        int index = 0;
+        T element = null;
+
+        while (true)
+        {
+            index = (int) (position & this.mask);
+            sequence = this.sequences.get(index);
+
+            if (sequence == position + 1)
+            {
+                if (this.head.compareAndSet(position, position + 1))
+                {
+                    element = this.elements.get(index);
+                    this.elements.set(index, null);
+                    this.sequences.set(index, position + this.capacity);
+
+                    return element;
+                }
+            }
+            else if (sequence < position + 1)
+            {
+                // slot not yet written for the current lap
+                return null;
+            }
+
+            position = this.head.get();
+        }
+    }
+
+    /**
+     * insert the element, waiting for space if the queue is full.
+     * <p>
+     * @param element value to insert. must not be {@literal null}
+     * @throws InterruptedException interrupted while waiting
+     */
+    public void put(T element) throws InterruptedException
+    {
+        long start = 0L;
+        int attempt = 0;
+
+        if (true == offer(element))
+        {
+            return;
+        }
+
+        this.fullStalls.incrementAndGet();
+        start = System.nanoTime();
+
+        while (false == offer(element))
+        {
+            backoff(attempt++);
+        }
+
+        this.producerWait.addAndGet(System.nanoTime() - start);
+    }
+
+    /**
+     * remove the head of the queue, waiting for an element if the queue is
+     * empty.
+     * <p>
+     * @return head element
+     * @throws InterruptedException interrupted while waiting
+     */
+    public T take() throws InterruptedException
+    {
+        T element = poll();
+        long start = 0L;
+        int attempt = 0;
+
+        if (null != element)
+        {
+            return element;
+        }
+
+        this.emptyStalls.incrementAndGet();
+        start = System.nanoTime();
+
+        while (null == (element = poll()))
+        {
+            backoff(attempt++);
+        }
+
+        this.consumerWait.addAndGet(System.nanoTime() - start);
+
+        return element;
+    }
+
+    /**
+     * @return number of slots
+     */
+    public int capacity()
+    {
+        return this.capacity;
+    }
+
+    /**
+     * @return current number of elements (approximation under concurrency)
+     */
+    public int size()
+    {
+        long size = this.tail.get() - this.head.get();
+
+        return (int) Math.max(0L, Math.min(size, this.capacity));
+    }
+
+    /**
+     * @return number of elements ever inserted
+     */
+    public long puts()
+    {
+        return this.tail.get();
+    }
+
+    /**
+     * @return number of elements ever removed
+     */
+    public long takes()
+    {
+        return this.head.get();
+    }
+
+    /**
+     * @return number of {@link #put(Object)} calls which found the queue full
+     */
+    public long fullStalls()
+    {
+        return this.fullStalls.get();
+    }
+
+    /**
+     * @return number of {@link #take()} calls which found the queue empty
+     */
+    public long emptyStalls()
+    {
+        return this.emptyStalls.get();
+    }
+
+    /**
+     * @return nanoseconds producers spent waiting for space
+     */
+    public long producerWaitNanos()
+    {
+        return this.producerWait.get();
+    }
+
+    /**
+     * @return nanoseconds consumers spent waiting for elements
+     */
+    public long consumerWaitNanos()
+    {
+        return this.consumerWait.get();
+    }
+
+    /**
+     * @return highest number of elements observed after an insert
+     */
+    public int peakSize()
+    {
+        return (int) this.peak.get();
+    }
+
+    /**
+     * @return average number of elements observed after an insert
+     */
+    public double averageSize()
+    {
+        long puts = puts();
+
+        return 0L == puts ? 0.0 : (double) this.occupancy.get() / puts;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("RingBuffer[capacity=%d, size=%d, puts=%d, takes=%d, peak=%d, average=%.2f, full=%d, empty=%d]",
+                capacity(), size(), puts(), takes(), peakSize(), averageSize(), fullStalls(), emptyStalls());
+    }
+
+    private void sampleOccupancy(long position)
+    {
+        long size = Math.min(position - this.head.get(), this.capacity);
+        long current = 0L;
+
+        this.occupancy.addAndGet(size);
+
+        while (size > (current = this.peak.get()) && false == this.peak.compareAndSet(current, size))
+        {
+            // retry until the peak has been raised or exceeded concurrently
+        }
+    }
+
+    private static int roundUp(int capacity)
+    {
+        int size = 1;
+
+        while (size < capacity)
+        {
+            size <<= 1;
+        }
+
+        return size;
+    }
+
+    private static void backoff(int attempt) throws InterruptedException
+    {
+        if (Thread.interrupted())
+        {
+            throw new InterruptedException();
+        }
+        else if (attempt >= YIELD_LIMIT)
+        {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+        else if (attempt >= SPIN_LIMIT)
+        {
+            Thread.yield();
+        }
+    }
+}
@@ -21,21 +21,35 @@
  */
 package com.github.gbleux.hostsmerge;
 
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Locale;
 import java.util.regex.Pattern;
 
+import javax.management.JMException;
+
 import com.github.gbleux.hostsmerge.address.rewrite.AddressRewrite;
 import com.github.gbleux.hostsmerge.address.rewrite.DefaultAddressRewrite;
 import com.github.gbleux.hostsmerge.address.rewrite.LoopbackAddressRewrite;
 import com.github.gbleux.hostsmerge.address.rewrite.NoAddressRewrite;
-import com.github.gbleux.io.DirectoryFilesStream;
+import com.github.gbleux.hostsmerge.fetch.Source;
+import com.github.gbleux.hostsmerge.fetch.SourceFetcher;
+import com.github.gbleux.hostsmerge.fetch.SourceList;
+import com.github.gbleux.hostsmerge.table.HostTableType;
+import com.github.gbleux.io.AtomicFileOutputStream;
+import com.github.gbleux.io.Compression;
+import com.github.gbleux.io.LineHandler;
+import com.github.gbleux.io.LineScanner;
+import com.github.gbleux.io.MappedLineScanner;
+import com.github.gbleux.io.StreamLineScanner;
 
 /**
  * Hostsmerge commandline entry point.
@@ -162,12 +176,20 @@ public class CLI
     public int parseArgs(String[] args) throws IOException
     {
         AddressRewrite rewrite = new NoAddressRewrite();
-        InputStream input = System.in;
+        LineScanner input = null;
         OutputStream output = System.out;
         MergeRunner runner = null;
         Argument argument = null;
+        String inputName = null;
+        String outputName = null;
+        String patchName = null;
+        String sourcesName = null;
+        int fetchThreads = SourceFetcher.DEFAULT_CONCURRENCY;
         boolean append = false;
-        boolean first = true;
+        boolean fetchOnly = false;
+        boolean stats = false;
+        long watch = -1L;
+        MergeOptions options = new MergeOptions();
 
         for (String arg : args)
         {
@@ -197,27 +219,151 @@ public class CLI
                 case "append":
                     append = true;
                     break;
+                case "t":
+                case "threads":
+                    options.setThreads(parseThreads(argument));
+                    break;
+                case "p":
+                case "pipeline":
+                    options.setPipelined(true);
+                    break;
+                case "table":
+                    options.setTable(HostTableType.parse(argument.value("")));
+                    break;
+                case "max-memory":
+                    options.setMaxMemory(parseSize(argument));
+                    break;
+                case "format":
+                    options.setFormat(OutputFormat.parse(argument.value("")));
+                    break;
+                case "g":
+                case "group":
+                    options.setGroupSize(argument.hasValues() ? Integer.parseInt(argument.value()) : HostsWriter.DEFAULT_GROUP_SIZE);
+                    break;
+                case "group-width":
+                    options.setGroupWidth(Integer.parseInt(argument.value("")));
+                    break;
+                case "presorted":
+                    options.setInputOrder(parseOrder(argument));
+                    break;
+                case "cache":
+                    options.setCacheDirectory(Paths.get(argument.value("")));
+                    break;
+                case "baseline":
+                    options.setBaseline(Paths.get(argument.value("")));
+                    break;
+                case "apply":
+                    patchName = argument.value("");
+                    break;
+                case "sources":
+                    sourcesName = argument.value("");
+                    break;
+                case "fetch-threads":
+                    fetchThreads = Integer.parseInt(argument.value(""));
+                    break;
+                case "fetch-only":
+                    fetchOnly = true;
+                    break;
+                case "stats":
+                    stats = true;
+                    break;
+                case "w":
+                case "watch":
+                    watch = parseDebounce(argument);
+                    break;
                 default:
                 {
-                    if (true == first)
+                    if (null == inputName)
                     {
-                        input = newInputStream(argument.name());
+                        inputName = argument.name();
                     }
                     else
                     {
-                        output = newOutputStream(argument.name(), append);
+                        outputName = argument.name();
                     }
 
-                    first = false;
                     break;
                 }
             }
         }
 
-        runner = new MergeRunner(input, output, rewrite);
+        if (null != patchName)
+        {
+            return apply(inputName, outputName, patchName);
+        }
+        else if (OutputFormat.PATCH == options.getFormat() && null == options.getBaseline())
+        {
+            throw new IllegalArgumentException("Patch output requires a baseline");
+        }
+
+        // the files are sorted by their original addresses, which a rewrite changes
+        if (InputOrder.SORTED == options.getInputOrder() && false == rewrite instanceof NoAddressRewrite)
+        {
+            throw new IllegalArgumentException("Presorted input can not be rewritten, use --presorted=auto instead");
+        }
+
+        if (null != sourcesName && (0L <= watch || null == inputName || Argument.STDIN.equals(inputName)))
+        {
+            throw new IllegalArgumentException("Fetching sources requires an INPUT directory and no watch mode");
+        }
+
+        if (true == fetchOnly && null == sourcesName)
+        {
+            throw new IllegalArgumentException("Fetching requires a sources file");
+        }
+        else if (true == fetchOnly)
+        {
+            return fetch(sourcesName, inputName, fetchThreads);
+        }
+
+        if (0L <= watch)
+        {
+            return watch(inputName, outputName, rewrite, options, watch, stats);
+        }
+
+        if (null != sourcesName)
+        {
+            input = newSourceFetcher(sourcesName, inputName, fetchThreads);
+        }
+        else if (null != inputName)
+        {
+            input = newLineScanner(inputName);
+        }
+        else
+        {
+            input = new StreamLineScanner(Compression.decompress(System.in));
+        }
+
+        if (null != outputName)
+        {
+            output = newOutputStream(outputName, append);
+        }
+
+        runner = new MergeRunner(input, output, rewrite, options);
+
+        if (true == stats)
+        {
+            register(runner.statistics());
+        }
+
         runner.run();
 
-        return runner.isSuccess() ? 0 : 1;
+        if (true == stats)
+        {
+            System.err.println(runner.statistics().toJson());
+        }
+
+        if (null != runner.getFailure())
+        {
+            System.err.println("hostsmerge: " + runner.getFailure());
+        }
+
+        if (false == runner.isSuccess())
+        {
+            return 1;
+        }
+
+        return runner.isChanged() ? 0 : 2;
     }
 
     /**
@@ -226,15 +372,66 @@ public class CLI
     public void help()
     {
         System.out.print(
-                "hostsmerge [-h] [-d|-l|-6] [INPUT] [OUTPUT]\n"
+                "hostsmerge [-h] [-d|-l|-6] [-t[=N]] [-p] [--table=TYPE] [--max-memory=SIZE]\n"
+                + "           [--cache=DIR] [--format=FORMAT] [--presorted[=auto]]\n"
+                + "           [-g[=N]] [--group-width=N] [--stats] [-w[=MS]]\n"
+                + "           [--baseline=FILE] [--sources=FILE [--fetch-threads=N] [--fetch-only]]\n"
+                + "           [INPUT] [OUTPUT]\n"
+                + "hostsmerge --apply=PATCH INPUT [OUTPUT]\n"
                 + "\t-h, --help         display this help message and exit\n"
                 + "\t-a, --append       do not overwrite output file content\n"
                 + "\t-d, --default      rewrite 127.0.0.1 and ::1 addresses to 0.0.0.0\n"
                 + "\t-l, --loopback     rewrite 0.0.0.0 addresses to 127.0.0.1\n"
                 + "\t-6, --loopback6    rewrite 0.0.0.0 and 127.0.0.1 addresses to ::1\n"
+                + "\t-t, --threads[=N]  parse INPUT with N threads (default: all cores)\n"
+                + "\t-p, --pipeline     read and parse INPUT in separate stages (N parsers)\n"
+                + "\t    --table=TYPE   deduplication storage: hash (default), compact,\n"
+                + "\t                   off-heap (direct memory) or mapped (temp files)\n"
+                + "\t    --max-memory=SIZE\n"
+                + "\t                   spill entries to temp files beyond SIZE bytes\n"
+                + "\t                   (suffix k, m or g, e.g. 256m). ignores -t\n"
+                + "\t-g, --group[=N]    write up to N hostnames (default: 9) sharing address,\n"
+                + "\t                   state and comment per line\n"
+                + "\t    --group-width=N\n"
+                + "\t                   limit grouped lines to N characters\n"
+                + "\t    --format=FORMAT\n"
+                + "\t                   hosts (default), snapshot (binary, memory-mappable\n"
+                + "\t                   and sorted by hostname) or patch (changes since\n"
+                + "\t                   the baseline, one hostname per line)\n"
+                + "\t    --baseline=FILE\n"
+                + "\t                   previous output (hosts without -g or snapshot)\n"
+                + "\t                   the patch format is created against\n"
+                + "\t    --apply=PATCH  write INPUT with the patch applied. INPUT must be\n"
+                + "\t                   the baseline of the patch in hosts format. PATCH\n"
+                + "\t                   may be - for stdin\n"
+                + "\t    --presorted[=auto]\n"
+                + "\t                   INPUT files are sorted (e.g. hostsmerge output):\n"
+                + "\t                   stream merge them, dropping duplicate address and\n"
+                + "\t                   hostname pairs. auto checks the files first,\n"
+                + "\t                   which is required with -d, -l or -6\n"
+                + "\t    --cache=DIR    keep parsed INPUT files in DIR and only parse\n"
+                + "\t                   files which changed since the last run\n"
+                + "\t    --sources=FILE download the name=url lines of FILE into the INPUT\n"
+                + "\t                   directory while merging them instead of the INPUT\n"
+                + "\t                   files. unchanged lists are not downloaded again\n"
+                + "\t    --fetch-threads=N\n"
+                + "\t                   download up to N sources at once (default: 4)\n"
+                + "\t    --fetch-only   only download the sources, without merging them\n"
+                + "\t    --stats        print counters and phase timings as JSON to stderr\n"
+                + "\t                   and publish them as MBean during the merge\n"
+                + "\t-w, --watch[=MS]   keep running and rewrite OUTPUT when files of the\n"
+                + "\t                   INPUT directory change, at most MS milliseconds\n"
+                + "\t                   (default: 500) after the first change. only the\n"
+                + "\t                   changed files are parsed, later file names win\n"
                 + "\n"
                 + "\tINPUT:   directory/file to parse. if omitted or -, stdin is assumed.\n"
-                + "\tOUTPUT:  file to write. if omitted or -, stdout is assumed.\n"
+                + "\t         gzip and zip compressed input is decompressed on the fly\n"
+                + "\tOUTPUT:  file to write. if omitted or -, stdout is assumed. files are\n"
+                + "\t         replaced atomically and left untouched if the content is\n"
+                + "\t         unchanged (unless appending)\n"
+                + "\n"
+                + "\texit status: 0 if OUTPUT has been written, 2 if OUTPUT is unchanged\n"
+                + "\t             and 1 on failure\n"
         );
     }
 
@@ -245,24 +442,250 @@ public class CLI
         System.exit(exit);
     }
 
-    private InputStream newInputStream(String name) throws IOException
+    /**
+     * run a watcher until it fails. each rewrite is reported like a single
+     * merge.
+     */
+    private int watch(String inputName, String outputName, AddressRewrite rewrite, MergeOptions options,
+            long debounce, final boolean stats) throws IOException
     {
-        Path path = Paths.get(name);
+        MergeWatcher watcher = null;
 
-        if (true == Argument.STDIN.equals(name))
+        if (null == inputName || null == outputName
+                || Argument.STDIN.equals(inputName) || Argument.STDIN.equals(outputName))
+        {
+            throw new IllegalArgumentException("Watch mode requires an INPUT directory and an OUTPUT file");
+        }
+
+        watcher = new MergeWatcher(Paths.get(inputName), Paths.get(outputName), rewrite, options, debounce)
+        {
+            @Override
+            protected void merged(MergeRunner runner)
+            {
+                if (true == stats)
+                {
+                    publish(runner.statistics());
+                }
+
+                if (null != runner.getFailure())
+                {
+                    System.err.println("hostsmerge: " + runner.getFailure());
+                }
+            }
+
+            @Override
+            protected void failed(Path file, IOException cause)
+            {
+                System.err.println("hostsmerge: " + file + ": " + cause);
+            }
+        };
+
+        watcher.run();
+
+        if (null != watcher.getFailure())
+        {
+            System.err.println("hostsmerge: " + watcher.getFailure());
+        }
+
+        return null == watcher.getFailure() ? 0 : 1;
+    }
+
+    /**
+     * download the sources into the INPUT directory without merging them.
+     */
+    private int fetch(String sourcesName, String directoryName, int concurrency) throws IOException
+    {
+        try (LineScanner fetcher = newSourceFetcher(sourcesName, directoryName, concurrency))
+        {
+            // reading the responses stores the local copies
+            fetcher.scan(new LineHandler()
+            {
+                @Override
+                public void line(ByteBuffer buffer, int start, int end)
+                {
+                    // the lines are not merged
+                }
+            });
+        }
+        catch (IOException e)
+        {
+            System.err.println("hostsmerge: " + e);
+
+            return 1;
+        }
+
+        return 0;
+    }
+
+    /**
+     * apply a patch to the INPUT hosts file.
+     */
+    private int apply(String inputName, String outputName, String patchName) throws IOException
+    {
+        boolean changed = true;
+
+        if (null == inputName || Argument.STDIN.equals(inputName))
+        {
+            throw new IllegalArgumentException("Applying a patch requires an INPUT hosts file");
+        }
+
+        try (OutputStream output = null == outputName ? System.out : newOutputStream(outputName, false);
+             InputStream patch = Argument.STDIN.equals(patchName) ? System.in : Files.newInputStream(Paths.get(patchName)))
+        {
+            new PatchApplier().apply(Paths.get(inputName), patch, output instanceof WritableByteChannel
+                    ? (WritableByteChannel) output
+                    : Channels.newChannel(output));
+
+            if (output instanceof AtomicFileOutputStream)
+            {
+                changed = ((AtomicFileOutputStream) output).commit();
+            }
+        }
+        catch (IOException e)
+        {
+            System.err.println("hostsmerge: " + e);
+
+            return 1;
+        }
+
+        return changed ? 0 : 2;
+    }
+
+    /**
+     * print the statistics of a finished rewrite and publish them until the
+     * next one.
+     */
+    private static void publish(MergeStatistics statistics)
+    {
+        System.err.println(statistics.toJson());
+
+        try
+        {
+            statistics.register();
+        }
+        catch (JMException e)
+        {
+            System.err.println("hostsmerge: " + e);
+        }
+    }
+
+    private void register(MergeStatistics statistics) throws IOException
+    {
+        try
+        {
+            statistics.register();
+        }
+        catch (JMException e)
+        {
+            throw new IOException("Failed to register statistics MBean", e);
+        }
+    }
+
+    private int parseThreads(Argument argument) throws IllegalArgumentException
+    {
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        if (true == argument.hasValues())
+        {
+            threads = Integer.parseInt(argument.value());
+        }
+
+        if (threads <= 0)
+        {
+            throw new IllegalArgumentException("Number of threads must be positive");
+        }
+
+        return threads;
+    }
+
+    private long parseDebounce(Argument argument) throws IllegalArgumentException
+    {
+        long debounce = MergeWatcher.DEFAULT_DEBOUNCE;
+
+        if (true == argument.hasValues())
+        {
+            debounce = Long.parseLong(argument.value());
+        }
+
+        if (debounce < 0L)
+        {
+            throw new IllegalArgumentException("Debounce window must not be negative");
+        }
+
+        return debounce;
+    }
+
+    private InputOrder parseOrder(Argument argument) throws IllegalArgumentException
+    {
+        if (false == argument.hasValues())
+        {
+            return InputOrder.SORTED;
+        }
+        else if (true == "auto".equals(argument.value()))
+        {
+            return InputOrder.DETECT;
+        }
+
+        throw new IllegalArgumentException("Unknown presorted mode: " + argument.value());
+    }
+
+    private long parseSize(Argument argument) throws IllegalArgumentException
+    {
+        String value = argument.value("").trim().toLowerCase(Locale.ROOT);
+        long unit = 1L;
+
+        if (true == value.isEmpty())
+        {
+            throw new IllegalArgumentException("Size is required");
+        }
+
+        switch (value.charAt(value.length() - 1))
         {
-            return System.in;
+            case 'k':
+                unit = 1L << 10;
+                break;
+            case 'm':
+                unit = 1L << 20;
+                break;
+            case 'g':
+                unit = 1L << 30;
+                break;
+            default:
+                return Long.parseLong(value);
         }
-        else if (Files.isDirectory(path))
+
+        return Long.parseLong(value.substring(0, value.length() - 1)) * unit;
+    }
+
+    private LineScanner newLineScanner(String name) throws IOException
+    {
+        if (true == Argument.STDIN.equals(name))
         {
-            return new DirectoryFilesStream(path);
+            return new StreamLineScanner(Compression.decompress(System.in));
         }
         else
         {
-            return new FileInputStream(path.toFile());
+            return MappedLineScanner.open(Paths.get(name));
         }
     }
 
+    /**
+     * @return scanner fetching the sources into the directory. failed sources
+     *         fall back to their previous download.
+     */
+    private LineScanner newSourceFetcher(String sourcesName, String directoryName, int concurrency) throws IOException
+    {
+        return new SourceFetcher(SourceList.read(Paths.get(sourcesName)), Paths.get(directoryName),
+                concurrency, SourceFetcher.DEFAULT_TIMEOUT)
+        {
+            @Override
+            protected void failed(Source source, IOException cause)
+            {
+                System.err.println("hostsmerge: " + source.name() + ": " + cause + ", using previous download");
+            }
+        };
+    }
+
     private OutputStream newOutputStream(String name, boolean append) throws IOException
     {
         Path path = Paths.get(name);
@@ -279,12 +702,17 @@ public class CLI
             Files.createDirectories(base);
         }
 
+        if (false == append)
+        {
+            return new AtomicFileOutputStream(path);
+        }
+
         // create file itself if not existent (non-atomic!!!)
         if (true == Files.notExists(path))
         {
             Files.createFile(path);
         }
 
-        return new FileOutputStream(path.toFile(), append);
+        return new FileOutputStream(path.toFile(), true);
     }
 }
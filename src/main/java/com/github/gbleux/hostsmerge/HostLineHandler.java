@@ -0,0 +1,220 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import com.github.gbleux.hostsmerge.address.Address;
+import com.github.gbleux.hostsmerge.address.HostLineTokenizer;
+import com.github.gbleux.hostsmerge.address.rewrite.AddressRewrite;
+import com.github.gbleux.io.LineHandler;
+
+/**
+ * Line callback which splits host declarations into entry components and
+ * hands them to the subclass. Hostnames are passed as byte ranges, so the
+ * subclass decides whether a string is required. Comments and malformed lines
+ * are skipped. Instances are not thread-safe.
+ * <p>
+ * @author Gordon Bleux
+ */
+abstract class HostLineHandler implements LineHandler
+{
+    private final HostLineTokenizer tokenizer = new HostLineTokenizer();
+    private final AddressRewrite rewrite;
+    private String text = null;
+    private Address address = null;
+    private long lines = 0L;
+    private long matched = 0L;
+    private long comments = 0L;
+    private long malformed = 0L;
+    private long entries = 0L;
+    private long rewritten = 0L;
+
+    public HostLineHandler(AddressRewrite rewrite)
+    {
+        super();
+
+        this.rewrite = rewrite;
+    }
+
+    @Override
+    public void line(ByteBuffer buffer, int start, int end) throws IOException
+    {
+        Address parsed = null;
+        Address address = null;
+        String comment = null;
+        boolean enabled = false;
+
+        this.lines++;
+
+        // either comment or malformed line
+        if (false == this.tokenizer.tokenize(buffer, start, end))
+        {
+            if (true == isComment(buffer, start, end))
+            {
+                this.comments++;
+            }
+            else
+            {
+                this.malformed++;
+            }
+
+            return;
+        }
+
+        parsed = address(buffer);
+        address = this.rewrite.rewrite(parsed);
+
+        if (null == address)
+        {
+            this.malformed++;
+
+            return;
+        }
+
+        comment = this.tokenizer.comment(buffer);
+        enabled = false == this.tokenizer.isDisabled();
+
+        this.matched++;
+        this.entries += this.tokenizer.hostnameCount();
+
+        if (address != parsed && false == address.equals(parsed))
+        {
+            this.rewritten += this.tokenizer.hostnameCount();
+        }
+
+        for (int i = 0; i < this.tokenizer.hostnameCount(); i++)
+        {
+            host(enabled, address, buffer, this.tokenizer.hostnameStart(i), this.tokenizer.hostnameEnd(i), comment);
+        }
+    }
+
+    /**
+     * @return number of lines passed to the handler
+     */
+    long lineCount()
+    {
+        return this.lines;
+    }
+
+    /**
+     * @return number of lines declaring hosts
+     */
+    long matchedCount()
+    {
+        return this.matched;
+    }
+
+    /**
+     * @return number of blank or comment-only lines
+     */
+    long commentCount()
+    {
+        return this.comments;
+    }
+
+    /**
+     * @return number of lines which are neither host declarations nor
+     *         comments
+     */
+    long malformedCount()
+    {
+        return this.malformed;
+    }
+
+    /**
+     * @return number of hostnames passed to the subclass
+     */
+    long entryCount()
+    {
+        return this.entries;
+    }
+
+    /**
+     * @return number of hostnames whose address has been rewritten
+     */
+    long rewrittenCount()
+    {
+        return this.rewritten;
+    }
+
+    /**
+     * @return whether a line which declares no host is blank or starts with
+     *         a comment
+     */
+    private static boolean isComment(ByteBuffer buffer, int start, int end)
+    {
+        int index = start;
+
+        while (index < end && (' ' == buffer.get(index) || '\t' == buffer.get(index)))
+        {
+            index++;
+        }
+
+        return index == end || '#' == buffer.get(index);
+    }
+
+    /**
+     * parse the address of the current line. the tokenizer returns the same
+     * string for consecutive lines using the same address, which is parsed
+     * only once.
+     */
+    private Address address(ByteBuffer buffer)
+    {
+        String value = this.tokenizer.address(buffer);
+
+        if (value != this.text)
+        {
+            this.text = value;
+            this.address = Address.parse(value);
+        }
+
+        return this.address;
+    }
+
+    /**
+     * decode a hostname passed to {@link #host(boolean, Address, ByteBuffer, int, int, String)}.
+     * <p>
+     * @param buffer hostname data
+     * @param start  absolute index of the first hostname byte
+     * @param end    absolute index after the last hostname byte
+     * @return hostname
+     */
+    protected String hostname(ByteBuffer buffer, int start, int end)
+    {
+        return this.tokenizer.decode(buffer, start, end);
+    }
+
+    /**
+     * process a single entry. entries are passed in input order.
+     * <p>
+     * @param enabled whether the entry is active
+     * @param address (rewritten) address
+     * @param buffer  line data
+     * @param start   absolute index of the first hostname byte
+     * @param end     absolute index after the last hostname byte
+     * @param comment trimmed comment or an empty string
+     */
+    protected abstract void host(boolean enabled, Address address, ByteBuffer buffer, int start, int end, String comment);
+}
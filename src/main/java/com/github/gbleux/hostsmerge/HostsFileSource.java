@@ -0,0 +1,92 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+import com.github.gbleux.hostsmerge.address.Address;
+import com.github.gbleux.hostsmerge.address.HostEntry;
+import com.github.gbleux.hostsmerge.address.rewrite.AddressRewrite;
+import com.github.gbleux.hostsmerge.codec.EntrySource;
+import com.github.gbleux.io.StreamLineScanner;
+
+/**
+ * Entry source which parses a hosts file incrementally. Only the entries of
+ * a single input block are buffered, so many sources can be read side by
+ * side with constant memory each.
+ * <p>
+ * @author Gordon Bleux
+ */
+class HostsFileSource extends HostLineHandler implements EntrySource
+{
+    private final Queue<HostEntry> entries = new ArrayDeque<>();
+    private final StreamLineScanner scanner;
+    private boolean more = true;
+
+    /**
+     * @param input   hosts file data, closed along with the source
+     * @param rewrite address rewrite applied to every entry
+     */
+    public HostsFileSource(InputStream input, AddressRewrite rewrite)
+    {
+        super(rewrite);
+
+        this.scanner = new StreamLineScanner(input);
+    }
+
+    @Override
+    public HostEntry read() throws IOException
+    {
+        while (true == this.entries.isEmpty() && true == this.more)
+        {
+            this.more = this.scanner.scanNext(this);
+        }
+
+        return this.entries.poll();
+    }
+
+    /**
+     * @return number of bytes parsed so far
+     */
+    public long scanned()
+    {
+        return this.scanner.scanned();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        this.entries.clear();
+        this.scanner.close();
+    }
+
+    @Override
+    protected void host(boolean enabled, Address address, ByteBuffer buffer, int start, int end, String comment)
+    {
+        this.entries.add(new HostEntry(enabled, address, hostname(buffer, start, end), comment));
+    }
+}
@@ -0,0 +1,336 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+import com.github.gbleux.hostsmerge.address.Address;
+import com.github.gbleux.hostsmerge.address.HostEntry;
+
+/**
+ * Writes entries as <em>/etc/hosts</em> lines. Consecutive entries sharing
+ * address, enabled state and comment can be grouped onto a single line,
+ * limited by the number of hostnames and the line length. Without grouping
+ * every line equals {@link HostEntry#toHosts()}.
+ * <p>
+ * Lines are UTF-8 encoded straight into a reusable direct buffer, which is
+ * written to the channel whenever it is full. No objects are allocated per
+ * entry. Unpaired surrogates are replaced by a question mark, like the
+ * default charset encoder does.
+ * <p>
+ * @author Gordon Bleux
+ */
+public class HostsWriter implements Closeable, Flushable
+{
+    /**
+     * default number of hostnames per grouped line. some resolvers (e.g.
+     * Windows) ignore hostnames beyond the ninth.
+     */
+    public static final int DEFAULT_GROUP_SIZE = 9;
+    /**
+     * default size of the encoding buffer
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+    private static final int MAX_CHAR_SIZE = 4;
+    private static final int SCRATCH_SIZE = 1 << 10;
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+    private final byte[] scratch;
+    private final int groupSize;
+    private final int groupWidth;
+    private Address address = null;
+    private String comment = null;
+    private boolean enabled = false;
+    private int count = 0;
+    private int width = 0;
+    private long written = 0L;
+
+    /**
+     * Constructor for a writer of one hostname per line.
+     * <p>
+     * @param channel target, closed along with this instance
+     */
+    public HostsWriter(WritableByteChannel channel)
+    {
+        this(channel, 1, 0);
+    }
+
+    /**
+     * @param channel    target, closed along with this instance
+     * @param groupSize  maximum number of hostnames per line
+     * @param groupWidth maximum line length in characters (excluding the
+     *                   line terminator), 0 for unlimited. a line always
+     *                   holds at least one hostname.
+     */
+    public HostsWriter(WritableByteChannel channel, int groupSize, int groupWidth)
+    {
+        this(channel, groupSize, groupWidth, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param channel    target, closed along with this instance
+     * @param groupSize  maximum number of hostnames per line
+     * @param groupWidth maximum line length in characters (excluding the
+     *                   line terminator), 0 for unlimited. a line always
+     *                   holds at least one hostname.
+     * @param bufferSize size of the encoding buffer
+     */
+    public HostsWriter(WritableByteChannel channel, int groupSize, int groupWidth, int bufferSize)
+    {
+        super();
+
+        if (groupSize <= 0)
+        {
+            throw new IllegalArgumentException("Group size must be positive");
+        }
+        else if (groupWidth < 0)
+        {
+            throw new IllegalArgumentException("Group width must not be negative");
+        }
+        else if (bufferSize < MAX_CHAR_SIZE)
+        {
+            throw new IllegalArgumentException("Buffer size must be at least " + MAX_CHAR_SIZE);
+        }
+
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        this.scratch = new byte[Math.min(bufferSize, SCRATCH_SIZE)];
+        this.groupSize = groupSize;
+        this.groupWidth = groupWidth;
+    }
+
+    /**
+     * append an entry to the current line or start a new one.
+     * <p>
+     * @param entry entry to write
+     * @throws IOException failed to write
+     */
+    public void write(HostEntry entry) throws IOException
+    {
+        String note = null == entry.comment() ? "" : entry.comment();
+        String hostname = entry.hostname();
+        String text = null;
+
+        if (0 < this.count && this.count < this.groupSize
+                && this.enabled == entry.isEnabled()
+                && this.address.equals(entry.addressValue())
+                && this.comment.equals(note)
+                && fits(this.width + 1 + hostname.length(), note))
+        {
+            put(' ');
+            put(hostname);
+            this.width += 1 + hostname.length();
+            this.count++;
+
+            return;
+        }
+
+        endLine();
+
+        this.address = entry.addressValue();
+        this.comment = note;
+        this.enabled = entry.isEnabled();
+        this.count = 1;
+        text = this.address.toString();
+
+        if (false == this.enabled)
+        {
+            put('#');
+        }
+
+        put(text);
+        put(' ');
+        put(hostname);
+        this.width = (this.enabled ? 0 : 1) + text.length() + 1 + hostname.length();
+    }
+
+    /**
+     * terminate the current line and write all buffered data to the channel.
+     * <p>
+     * @throws IOException failed to write
+     */
+    @Override
+    public void flush() throws IOException
+    {
+        endLine();
+        drain();
+    }
+
+    /**
+     * @return number of bytes passed to the channel so far
+     */
+    public long written()
+    {
+        return this.written;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        try
+        {
+            flush();
+        }
+        finally
+        {
+            this.channel.close();
+        }
+    }
+
+    private boolean fits(int width, String note)
+    {
+        return 0 == this.groupWidth || width + (note.isEmpty() ? 0 : 3 + note.length()) <= this.groupWidth;
+    }
+
+    private void endLine() throws IOException
+    {
+        if (0 == this.count)
+        {
+            return;
+        }
+
+        if (false == this.comment.isEmpty())
+        {
+            put(" # ");
+            put(this.comment);
+        }
+
+        put('\n');
+        this.count = 0;
+    }
+
+    /**
+     * encode a string. ASCII characters are collected in a scratch array and
+     * copied into the buffer at once, other characters are encoded one by
+     * one.
+     */
+    private void put(String value) throws IOException
+    {
+        int length = value.length();
+        int ascii = 0;
+        char c = 0;
+
+        for (int i = 0; i < length; i++)
+        {
+            c = value.charAt(i);
+
+            if (c < 0x80)
+            {
+                this.scratch[ascii++] = (byte) c;
+
+                if (ascii < this.scratch.length)
+                {
+                    continue;
+                }
+            }
+
+            putAscii(ascii);
+            ascii = 0;
+
+            if (c >= 0x80)
+            {
+                if (true == Character.isHighSurrogate(c) && i + 1 < length && true == Character.isLowSurrogate(value.charAt(i + 1)))
+                {
+                    putCodePoint(Character.toCodePoint(c, value.charAt(++i)));
+                }
+                else
+                {
+                    put(c);
+                }
+            }
+        }
+
+        putAscii(ascii);
+    }
+
+    private void putAscii(int length) throws IOException
+    {
+        if (this.buffer.remaining() < length)
+        {
+            drain();
+        }
+
+        this.buffer.put(this.scratch, 0, length);
+    }
+
+    private void put(char c) throws IOException
+    {
+        if (this.buffer.remaining() < MAX_CHAR_SIZE)
+        {
+            drain();
+        }
+
+        if (c < 0x80)
+        {
+            this.buffer.put((byte) c);
+        }
+        else if (c < 0x800)
+        {
+            this.buffer.put((byte) (0xC0 | c >> 6));
+            this.buffer.put((byte) (0x80 | c & 0x3F));
+        }
+        else if (true == Character.isSurrogate(c))
+        {
+            // unpaired surrogate
+            this.buffer.put((byte) '?');
+        }
+        else
+        {
+            this.buffer.put((byte) (0xE0 | c >> 12));
+            this.buffer.put((byte) (0x80 | c >> 6 & 0x3F));
+            this.buffer.put((byte) (0x80 | c & 0x3F));
+        }
+    }
+
+    private void putCodePoint(int codePoint) throws IOException
+    {
+        if (this.buffer.remaining() < MAX_CHAR_SIZE)
+        {
+            drain();
+        }
+
+        this.buffer.put((byte) (0xF0 | codePoint >> 18));
+        this.buffer.put((byte) (0x80 | codePoint >> 12 & 0x3F));
+        this.buffer.put((byte) (0x80 | codePoint >> 6 & 0x3F));
+        this.buffer.put((byte) (0x80 | codePoint & 0x3F));
+    }
+
+    private void drain() throws IOException
+    {
+        ((Buffer) this.buffer).flip();
+
+        while (true == this.buffer.hasRemaining())
+        {
+            this.written += this.channel.write(this.buffer);
+        }
+
+        ((Buffer) this.buffer).clear();
+    }
+}
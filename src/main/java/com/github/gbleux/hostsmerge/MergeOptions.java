@@ -0,0 +1,259 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import com.github.gbleux.hostsmerge.table.HostTableType;
+
+/**
+ * Tuning parameters of a {@link MergeRunner}. The defaults resemble a plain
+ * sequential merge.
+ * <p>
+ * @author Gordon Bleux
+ */
+public class MergeOptions
+{
+    private int threads = 1;
+    private boolean pipelined = false;
+    private HostTableType table = HostTableType.HASH;
+    private long maxMemory = 0L;
+    private Path tempDirectory = Paths.get(System.getProperty("java.io.tmpdir"));
+    private Path cacheDirectory = null;
+    private Path baseline = null;
+    private OutputFormat format = OutputFormat.HOSTS;
+    private InputOrder inputOrder = InputOrder.ANY;
+    private int groupSize = 1;
+    private int groupWidth = 0;
+
+    public MergeOptions()
+    {
+        super();
+    }
+
+    /**
+     * @return number of parser threads
+     */
+    public int getThreads()
+    {
+        return this.threads;
+    }
+
+    /**
+     * @param threads number of parser threads
+     */
+    public void setThreads(int threads)
+    {
+        if (threads <= 0)
+        {
+            throw new IllegalArgumentException("Number of threads must be positive");
+        }
+
+        this.threads = threads;
+    }
+
+    /**
+     * @return whether the input is processed by a {@link MergePipeline}
+     */
+    public boolean isPipelined()
+    {
+        return this.pipelined;
+    }
+
+    /**
+     * @param pipelined whether the input is processed by a
+     *                  {@link MergePipeline}
+     */
+    public void setPipelined(boolean pipelined)
+    {
+        this.pipelined = pipelined;
+    }
+
+    /**
+     * @return storage used for deduplication
+     */
+    public HostTableType getTable()
+    {
+        return this.table;
+    }
+
+    /**
+     * @param table storage used for deduplication
+     */
+    public void setTable(HostTableType table)
+    {
+        this.table = table;
+    }
+
+    /**
+     * @return memory budget in bytes, 0 if unbounded
+     */
+    public long getMaxMemory()
+    {
+        return this.maxMemory;
+    }
+
+    /**
+     * @param maxMemory memory budget in bytes for deduplication and sorting.
+     *                  entries exceeding the budget are spilled to disk. 0
+     *                  disables the limit.
+     */
+    public void setMaxMemory(long maxMemory)
+    {
+        if (maxMemory < 0L)
+        {
+            throw new IllegalArgumentException("Memory budget must not be negative");
+        }
+
+        this.maxMemory = maxMemory;
+    }
+
+    /**
+     * @return location of temporary files
+     */
+    public Path getTempDirectory()
+    {
+        return this.tempDirectory;
+    }
+
+    /**
+     * @param tempDirectory location of temporary files
+     */
+    public void setTempDirectory(Path tempDirectory)
+    {
+        this.tempDirectory = tempDirectory;
+    }
+
+    /**
+     * @return output format
+     */
+    public OutputFormat getFormat()
+    {
+        return this.format;
+    }
+
+    /**
+     * @param format output format
+     */
+    public void setFormat(OutputFormat format)
+    {
+        this.format = format;
+    }
+
+    /**
+     * @return order of the input files
+     */
+    public InputOrder getInputOrder()
+    {
+        return this.inputOrder;
+    }
+
+    /**
+     * @param inputOrder order of the input files
+     */
+    public void setInputOrder(InputOrder inputOrder)
+    {
+        this.inputOrder = inputOrder;
+    }
+
+    /**
+     * @return maximum number of hostnames per output line
+     */
+    public int getGroupSize()
+    {
+        return this.groupSize;
+    }
+
+    /**
+     * @param groupSize maximum number of hostnames per output line. entries
+     *                  are grouped if they share address, enabled state and
+     *                  comment.
+     */
+    public void setGroupSize(int groupSize)
+    {
+        if (groupSize <= 0)
+        {
+            throw new IllegalArgumentException("Group size must be positive");
+        }
+
+        this.groupSize = groupSize;
+    }
+
+    /**
+     * @return maximum length of grouped output lines, 0 if unlimited
+     */
+    public int getGroupWidth()
+    {
+        return this.groupWidth;
+    }
+
+    /**
+     * @param groupWidth maximum length of grouped output lines in
+     *                   characters, 0 for unlimited
+     */
+    public void setGroupWidth(int groupWidth)
+    {
+        if (groupWidth < 0)
+        {
+            throw new IllegalArgumentException("Group width must not be negative");
+        }
+
+        this.groupWidth = groupWidth;
+    }
+
+    /**
+     * @return previous output which {@link OutputFormat#PATCH patches} are
+     *         created against, {@literal null} if not set
+     */
+    public Path getBaseline()
+    {
+        return this.baseline;
+    }
+
+    /**
+     * @param baseline previous output, either a hosts file with one entry
+     *                 per line or a snapshot
+     */
+    public void setBaseline(Path baseline)
+    {
+        this.baseline = baseline;
+    }
+
+    /**
+     * @return location of cached input files, {@literal null} if disabled
+     */
+    public Path getCacheDirectory()
+    {
+        return this.cacheDirectory;
+    }
+
+    /**
+     * @param cacheDirectory location of cached input files. {@literal null}
+     *                       disables the cache.
+     */
+    public void setCacheDirectory(Path cacheDirectory)
+    {
+        this.cacheDirectory = cacheDirectory;
+    }
+}
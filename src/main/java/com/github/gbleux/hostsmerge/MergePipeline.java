@@ -0,0 +1,694 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.github.gbleux.concurrent.RingBuffer;
+import com.github.gbleux.hostsmerge.address.Address;
+import com.github.gbleux.hostsmerge.address.rewrite.AddressRewrite;
+import com.github.gbleux.hostsmerge.table.HostTable;
+import com.github.gbleux.io.LineHandler;
+import com.github.gbleux.io.LineScanner;
+import com.github.gbleux.jfr.Flight;
+
+/**
+ * Staged ingestion of host declarations. A reader thread collects raw lines
+ * into batches, one or more parser threads turn the batches into entries and
+ * the calling thread applies the entries to the hostname map. The stages are
+ * connected by bounded {@link RingBuffer}s, so a slow stage throttles the
+ * preceding one while disk access and parsing overlap.
+ * <p>
+ * Batches are numbered by the reader and applied in that order, so the result
+ * equals a sequential merge regardless of the number of parsers.
+ * <p>
+ * @author Gordon Bleux
+ */
+public class MergePipeline
+{
+    /**
+     * default number of batches each ring buffer is able to hold
+     */
+    public static final int DEFAULT_CAPACITY = 16;
+    /**
+     * maximum number of lines per batch
+     */
+    public static final int BATCH_LINES = 4096;
+
+    private static final int BATCH_BYTES = 1 << 18;
+
+    private final LineScanner input;
+    private final AddressRewrite rewrite;
+    private final int parsers;
+    private final HostTable table;
+    private final RingBuffer<Batch> lines;
+    private final RingBuffer<Batch> entries;
+    private final RingBuffer<Batch> free;
+    private final Stage reader = new Stage("reader");
+    private final Stage parser = new Stage("parser");
+    private final Stage dedup = new Stage("dedup");
+    private final List<Parser> workers = new ArrayList<>();
+    private final List<Thread> threads = new ArrayList<>();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private volatile Thread owner = null;
+
+    public MergePipeline(LineScanner input, AddressRewrite rewrite, int parsers, HostTable table)
+    {
+        this(input, rewrite, parsers, table, DEFAULT_CAPACITY);
+    }
+
+    public MergePipeline(LineScanner input, AddressRewrite rewrite, int parsers, HostTable table, int capacity)
+    {
+        super();
+
+        if (parsers <= 0)
+        {
+            throw new IllegalArgumentException("Number of parsers must be positive");
+        }
+
+        this.input = input;
+        this.rewrite = rewrite;
+        this.parsers = parsers;
+        this.table = table;
+        this.lines = new RingBuffer<>(capacity);
+        this.entries = new RingBuffer<>(capacity);
+        this.free = new RingBuffer<>(capacity * 2);
+    }
+
+    /**
+     * run all stages and wait for their completion.
+     * <p>
+     * @return target table containing the last entry for each hostname. the
+     *         table is closed if the pipeline fails.
+     * @throws IOException failed to read the input
+     */
+    public HostTable run() throws IOException
+    {
+        List<Thread> threads = this.threads;
+        HostTable result = this.table;
+        boolean complete = false;
+        Parser worker = null;
+
+        this.owner = Thread.currentThread();
+        threads.add(newThread(new Reader(), "hostsmerge-reader"));
+
+        for (int i = 0; i < this.parsers; i++)
+        {
+            worker = new Parser();
+            this.workers.add(worker);
+            threads.add(newThread(worker, "hostsmerge-parser-" + i));
+        }
+
+        try
+        {
+            for (Thread thread : threads)
+            {
+                thread.start();
+            }
+
+            try
+            {
+                deduplicate(result);
+            }
+            catch (InterruptedException e)
+            {
+                if (null == this.failure.get())
+                {
+                    throw e;
+                }
+            }
+
+            join(threads);
+
+            if (null != this.failure.get())
+            {
+                // clear the interrupt of the failing stage
+                Thread.interrupted();
+            }
+
+            rethrow(this.failure.get());
+            complete = true;
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+
+            throw new IOException("Interrupted while merging", e);
+        }
+        finally
+        {
+            for (Thread thread : threads)
+            {
+                thread.interrupt();
+            }
+
+            if (false == complete)
+            {
+                result.close();
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @return counters of the reader stage. items are lines.
+     */
+    public Stage reader()
+    {
+        return this.reader;
+    }
+
+    /**
+     * @return counters of all parser threads combined. items are entries.
+     */
+    public Stage parser()
+    {
+        return this.parser;
+    }
+
+    /**
+     * @return counters of the deduplication stage. items are entries.
+     */
+    public Stage dedup()
+    {
+        return this.dedup;
+    }
+
+    /**
+     * add the counters of a finished run. the busy times of the stages are
+     * reported as their phases.
+     * <p>
+     * @param statistics target statistics
+     */
+    void report(MergeStatistics statistics)
+    {
+        for (Parser worker : this.workers)
+        {
+            statistics.add(worker);
+        }
+
+        statistics.addBytesIn(this.input.scanned());
+        statistics.time(MergeStatistics.Phase.READ, this.reader.busyNanos());
+        statistics.time(MergeStatistics.Phase.PARSE, this.parser.busyNanos());
+        statistics.time(MergeStatistics.Phase.DEDUP, this.dedup.busyNanos());
+    }
+
+    /**
+     * @return queue between reader and parsers
+     */
+    public RingBuffer<?> lineQueue()
+    {
+        return this.lines;
+    }
+
+    /**
+     * @return queue between parsers and the deduplication stage
+     */
+    public RingBuffer<?> entryQueue()
+    {
+        return this.entries;
+    }
+
+    /**
+     * apply parsed batches in reader order until every parser has finished.
+     */
+    private void deduplicate(HostTable result) throws InterruptedException
+    {
+        Map<Long, Batch> pending = new HashMap<>();
+        long next = 0L;
+        long start = 0L;
+        int finished = 0;
+        Batch batch = null;
+        ByteBuffer buffer = null;
+
+        while (finished < this.parsers && null == this.failure.get())
+        {
+            batch = this.entries.take();
+            start = System.nanoTime();
+
+            if (Batch.END == batch)
+            {
+                finished++;
+            }
+            else
+            {
+                pending.put(batch.sequence, batch);
+
+                while (null != (batch = pending.remove(next)))
+                {
+                    buffer = ByteBuffer.wrap(batch.data);
+
+                    for (int i = 0; i < batch.entries; i++)
+                    {
+                        // ensure unique entry for each hostname
+                        result.put(batch.enabled[i], batch.addresses[i], buffer, batch.starts[i], batch.ends[i], batch.comments[i]);
+                    }
+
+                    this.dedup.add(batch.entries);
+                    this.free.offer(batch.recycle());
+                    next++;
+                }
+            }
+
+            this.dedup.busy(System.nanoTime() - start);
+        }
+    }
+
+    private Thread newThread(Runnable stage, String name)
+    {
+        Thread thread = new Thread(stage, name);
+
+        thread.setDaemon(true);
+
+        return thread;
+    }
+
+    /**
+     * wait for the stages. interrupts caused by a failure are ignored.
+     */
+    private void join(List<Thread> threads) throws InterruptedException
+    {
+        for (Thread thread : threads)
+        {
+            while (true == thread.isAlive())
+            {
+                try
+                {
+                    thread.join();
+                }
+                catch (InterruptedException e)
+                {
+                    if (null == this.failure.get())
+                    {
+                        throw e;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * record the first failure and stop all other stages, which might wait
+     * on queues which are no longer drained.
+     */
+    private void fail(Throwable cause)
+    {
+        if (false == this.failure.compareAndSet(null, cause))
+        {
+            return;
+        }
+
+        for (Thread thread : this.threads)
+        {
+            if (thread != Thread.currentThread())
+            {
+                thread.interrupt();
+            }
+        }
+
+        this.owner.interrupt();
+    }
+
+    private static void rethrow(Throwable cause) throws IOException
+    {
+        if (null == cause)
+        {
+            return;
+        }
+        else if (cause instanceof IOException)
+        {
+            throw (IOException) cause;
+        }
+        else if (cause instanceof RuntimeException)
+        {
+            throw (RuntimeException) cause;
+        }
+        else if (cause instanceof Error)
+        {
+            throw (Error) cause;
+        }
+        else
+        {
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Throughput counters of a pipeline stage. Busy time excludes the time a
+     * stage spent waiting on its queues.
+     */
+    public static final class Stage
+    {
+        private final String name;
+        private final AtomicLong items = new AtomicLong();
+        private final AtomicLong batches = new AtomicLong();
+        private final AtomicLong busy = new AtomicLong();
+
+        private Stage(String name)
+        {
+            super();
+
+            this.name = name;
+        }
+
+        public String name()
+        {
+            return this.name;
+        }
+
+        public long items()
+        {
+            return this.items.get();
+        }
+
+        public long batches()
+        {
+            return this.batches.get();
+        }
+
+        public long busyNanos()
+        {
+            return this.busy.get();
+        }
+
+        /**
+         * @return items per second of busy time
+         */
+        public double throughput()
+        {
+            long nanos = busyNanos();
+
+            return 0L == nanos ? 0.0 : items() * 1e9 / nanos;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s[items=%d, batches=%d, busy=%.3fs, throughput=%.0f/s]",
+                    this.name, items(), batches(), busyNanos() / 1e9, throughput());
+        }
+
+        private void add(int count)
+        {
+            this.items.addAndGet(count);
+            this.batches.incrementAndGet();
+        }
+
+        private void busy(long nanos)
+        {
+            this.busy.addAndGet(nanos);
+        }
+    }
+
+    /**
+     * Unit of work passed between the stages. Lines are copied into a
+     * private array, so the batch is independent of the scanner buffers.
+     * Parsed entries refer to their hostname within that array and are
+     * stored column-wise, so no entry objects are created per hostname.
+     */
+    private static final class Batch
+    {
+        public static final Batch END = new Batch();
+
+        private long sequence = 0L;
+        private byte[] data = new byte[BATCH_BYTES];
+        private int[] bounds = new int[BATCH_LINES + 1];
+        private int lines = 0;
+        private int size = 0;
+        private boolean[] enabled = new boolean[BATCH_LINES];
+        private Address[] addresses = new Address[BATCH_LINES];
+        private int[] starts = new int[BATCH_LINES];
+        private int[] ends = new int[BATCH_LINES];
+        private String[] comments = new String[BATCH_LINES];
+        private int entries = 0;
+
+        public boolean isFull()
+        {
+            return this.lines >= BATCH_LINES || this.size >= BATCH_BYTES;
+        }
+
+        public void add(ByteBuffer view, int start, int end)
+        {
+            int length = end - start;
+
+            if (this.data.length - this.size < length)
+            {
+                this.data = Arrays.copyOf(this.data, Math.max(this.data.length * 2, this.size + length));
+            }
+
+            // cast retains compatibility with the pre-9 Buffer API
+            ((Buffer) view).limit(end);
+            ((Buffer) view).position(start);
+            view.get(this.data, this.size, length);
+
+            this.size += length;
+            this.lines++;
+            this.bounds[this.lines] = this.size;
+        }
+
+        public void entry(boolean enabled, Address address, int start, int end, String comment)
+        {
+            int capacity = this.starts.length;
+
+            if (this.entries == capacity)
+            {
+                capacity *= 2;
+                this.enabled = Arrays.copyOf(this.enabled, capacity);
+                this.addresses = Arrays.copyOf(this.addresses, capacity);
+                this.starts = Arrays.copyOf(this.starts, capacity);
+                this.ends = Arrays.copyOf(this.ends, capacity);
+                this.comments = Arrays.copyOf(this.comments, capacity);
+            }
+
+            this.enabled[this.entries] = enabled;
+            this.addresses[this.entries] = address;
+            this.starts[this.entries] = start;
+            this.ends[this.entries] = end;
+            this.comments[this.entries] = comment;
+            this.entries++;
+        }
+
+        public Batch recycle()
+        {
+            // release the references to addresses and comments
+            Arrays.fill(this.addresses, 0, this.entries, null);
+            Arrays.fill(this.comments, 0, this.entries, null);
+            this.entries = 0;
+            this.lines = 0;
+            this.size = 0;
+
+            return this;
+        }
+    }
+
+    /**
+     * First stage: scan the input and publish batches of raw lines.
+     */
+    private final class Reader implements Runnable, LineHandler
+    {
+        private ByteBuffer source = null;
+        private ByteBuffer view = null;
+        private Batch batch = null;
+        private long sequence = 0L;
+        private long start = 0L;
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                this.start = System.nanoTime();
+                MergePipeline.this.input.scan(this);
+                publish();
+            }
+            catch (IOException | RuntimeException | Error e)
+            {
+                fail(e);
+            }
+            finally
+            {
+                terminate();
+            }
+        }
+
+        @Override
+        public void line(ByteBuffer buffer, int start, int end) throws IOException
+        {
+            if (buffer != this.source)
+            {
+                this.source = buffer;
+                this.view = buffer.duplicate();
+            }
+
+            if (null == this.batch)
+            {
+                this.batch = MergePipeline.this.free.poll();
+
+                if (null == this.batch)
+                {
+                    this.batch = new Batch();
+                }
+
+                this.batch.sequence = this.sequence++;
+            }
+
+            this.batch.add(this.view, start, end);
+
+            if (true == this.batch.isFull())
+            {
+                publish();
+            }
+        }
+
+        private void publish() throws IOException
+        {
+            Batch full = this.batch;
+
+            if (null == full)
+            {
+                return;
+            }
+            else if (null != MergePipeline.this.failure.get())
+            {
+                throw new IOException("Merge pipeline failed");
+            }
+
+            this.batch = null;
+
+            MergePipeline.this.reader.add(full.lines);
+            MergePipeline.this.reader.busy(System.nanoTime() - this.start);
+
+            try
+            {
+                MergePipeline.this.lines.put(full);
+            }
+            catch (InterruptedException e)
+            {
+                throw new IOException("Interrupted while reading", e);
+            }
+
+            this.start = System.nanoTime();
+        }
+
+        private void terminate()
+        {
+            if (null != MergePipeline.this.failure.get())
+            {
+                // nobody waits for the end
+                return;
+            }
+
+            try
+            {
+                for (int i = 0; i < MergePipeline.this.parsers; i++)
+                {
+                    MergePipeline.this.lines.put(Batch.END);
+                }
+            }
+            catch (InterruptedException e)
+            {
+                // the pipeline has been aborted
+            }
+        }
+    }
+
+    /**
+     * Second stage: turn batches of lines into entries.
+     */
+    private final class Parser extends HostLineHandler implements Runnable
+    {
+        private Batch target = null;
+
+        public Parser()
+        {
+            super(MergePipeline.this.rewrite);
+        }
+
+        @Override
+        public void run()
+        {
+            Batch batch = null;
+            ByteBuffer buffer = null;
+            Object event = null;
+            long start = 0L;
+
+            try
+            {
+                while (Batch.END != (batch = MergePipeline.this.lines.take()))
+                {
+                    event = Flight.beginBatch("parse", batch.sequence);
+                    start = System.nanoTime();
+                    buffer = ByteBuffer.wrap(batch.data);
+                    this.target = batch;
+
+                    for (int i = 0; i < batch.lines; i++)
+                    {
+                        line(buffer, batch.bounds[i], batch.bounds[i + 1]);
+                    }
+
+                    MergePipeline.this.parser.add(batch.entries);
+                    MergePipeline.this.parser.busy(System.nanoTime() - start);
+                    Flight.endBatch(event, batch.lines, batch.entries);
+                    MergePipeline.this.entries.put(batch);
+                }
+            }
+            catch (InterruptedException e)
+            {
+                // the pipeline has been aborted
+                return;
+            }
+            catch (IOException | RuntimeException | Error e)
+            {
+                // the other stages are stopped instead of waiting for the end
+                fail(e);
+
+                return;
+            }
+
+            try
+            {
+                MergePipeline.this.entries.put(Batch.END);
+            }
+            catch (InterruptedException e)
+            {
+                // the pipeline has been aborted
+            }
+        }
+
+        @Override
+        protected void host(boolean enabled, Address address, ByteBuffer buffer, int start, int end, String comment)
+        {
+            this.target.entry(enabled, address, start, end, comment);
+        }
+    }
+}
@@ -22,62 +22,121 @@
  */
 package com.github.gbleux.hostsmerge;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOError;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.nio.charset.Charset;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
+import com.github.gbleux.hostsmerge.MergeStatistics.Phase;
+import com.github.gbleux.hostsmerge.address.Address;
 import com.github.gbleux.hostsmerge.address.HostEntry;
 import com.github.gbleux.hostsmerge.address.rewrite.AddressRewrite;
 import com.github.gbleux.hostsmerge.address.rewrite.NoAddressRewrite;
+import com.github.gbleux.hostsmerge.cache.MergeCache;
+import com.github.gbleux.hostsmerge.codec.EntrySource;
+import com.github.gbleux.hostsmerge.snapshot.HostsSnapshot;
+import com.github.gbleux.hostsmerge.snapshot.SnapshotWriter;
+import com.github.gbleux.hostsmerge.sort.EntrySorter;
+import com.github.gbleux.hostsmerge.sort.ExternalSorter;
+import com.github.gbleux.hostsmerge.sort.RunMerger;
+import com.github.gbleux.hostsmerge.table.HostEntries;
+import com.github.gbleux.hostsmerge.table.HostTable;
+import com.github.gbleux.hostsmerge.table.HostTableType;
+import com.github.gbleux.hostsmerge.table.SpillingHostTable;
+import com.github.gbleux.io.AtomicFileOutputStream;
+import com.github.gbleux.io.Compression;
+import com.github.gbleux.io.CountingOutputStream;
+import com.github.gbleux.io.LineScanner;
+import com.github.gbleux.io.MappedLineScanner;
+import com.github.gbleux.io.StreamLineScanner;
+import com.github.gbleux.io.TeeOutputStream;
 
 /**
  * Runnable implementation which reads from a stream, performs an (optional)
  * address rewrite and writes the result to an output stream.
  * <p>
+ * Input lines are tokenized on the byte level and only the components of
+ * host declarations are decoded (as UTF-8). Comments and other boilerplate
+ * are skipped without creating any strings.
+ * <p>
+ * If more than one thread is configured, the input is {@link LineScanner#split()
+ * split} into files or line aligned regions of large files, and the parts are
+ * parsed concurrently into partial maps. The partial maps are merged in input
+ * order, so the result equals a sequential merge.
+ * <p>
+ * Alternatively the input is processed by a {@link MergePipeline}, which
+ * overlaps reading and parsing without splitting the input.
+ * <p>
+ * Unique entries are kept in a {@link HostTable} of the configured type.
+ * <p>
+ * With a memory budget, deduplication and sorting spill sorted runs to
+ * temporary files and merge them, so memory usage does not depend on the
+ * input size. Such merges do not split the input.
+ * <p>
+ * With a cache directory, the entries of each input file are cached in
+ * binary form along with a fingerprint of the file. Unchanged files are
+ * loaded from the cache, only changed files are parsed. Cached entries are
+ * stored before the address rewrite, so the cache does not depend on it. If
+ * neither the files nor the options changed, the output of the previous run
+ * is copied from the cache.
+ * <p>
+ * Files which are already sorted by address and hostname, such as the output
+ * of previous merges, can be combined by a streaming k-way merge instead.
+ * Only one entry per file is kept in memory and duplicate address/hostname
+ * pairs are dropped. Entries of the same hostname with different addresses
+ * are not adjacent in such files and are all kept.
+ * <p>
+ * The output is either a hosts file, optionally with several hostnames per
+ * line, a binary {@link HostsSnapshot snapshot} or a patch against the
+ * previous output, which a {@link PatchApplier} turns into the hosts file. An
+ * {@link AtomicFileOutputStream} is committed once the merge succeeded, so a
+ * failed merge leaves the target file untouched.
+ * <p>
+ * Counters and phase timings of the run are collected in its
+ * {@link #statistics() statistics}.
+ * <p>
  * @author Gordon Bleux
  */
 public class MergeRunner implements Runnable
 {
-    /**
-     * sloppy host line pattern. ipv4 and ipv6 compliant
-     */
-    private static final Pattern HOST = Pattern.compile("^#?([0-9:\\.]+)\\s+([a-z0-9\\-\\.\\_\\t ]+)(#.*)?$", Pattern.UNICODE_CASE | Pattern.CASE_INSENSITIVE);
-    private static final Pattern NAMES = Pattern.compile("\\s+");
-    private static final Charset CHARSET = Charset.forName("UTF-8");
-    private static final Collection<HostEntry> NO_HOSTS = new ArrayList<>();
-
     private static final int READY = -10;
     private static final int STARTED = -5;
     private static final int SUCCESS = 0;
     private static final int FAILURE = 1;
 
-    private final Comparator<HostEntry> comp = newHostEntryComparator();
+    private static final Comparator<HostEntry> ORDER = EntrySorter.comparator();
+
+    private final EntrySorter sorter = new EntrySorter();
+    private final MergeStatistics statistics;
     private final AddressRewrite rewrite;
-    private final InputStream input;
+    private final LineScanner input;
     private final OutputStream output;
+    private final MergeOptions options;
     private int result = READY;
+    private Throwable failure = null;
+    private boolean changed = true;
 
     public MergeRunner()
     {
         super();
 
         this.rewrite = new NoAddressRewrite();
-        this.input = System.in;
+        this.input = new StreamLineScanner(System.in);
         this.output = System.out;
+        this.options = new MergeOptions();
+        this.statistics = new MergeStatistics();
     }
 
     public MergeRunner(InputStream in, OutputStream out)
@@ -85,17 +144,62 @@ public class MergeRunner implements Runnable
         super();
 
         this.rewrite = new NoAddressRewrite();
-        this.input = in;
+        this.input = new StreamLineScanner(in);
         this.output = out;
+        this.options = new MergeOptions();
+        this.statistics = new MergeStatistics();
     }
 
     public MergeRunner(InputStream in, OutputStream out, AddressRewrite rewrite)
     {
         super();
 
+        this.rewrite = rewrite;
+        this.input = new StreamLineScanner(in);
+        this.output = out;
+        this.options = new MergeOptions();
+        this.statistics = new MergeStatistics();
+    }
+
+    public MergeRunner(LineScanner in, OutputStream out, AddressRewrite rewrite)
+    {
+        super();
+
         this.rewrite = rewrite;
         this.input = in;
         this.output = out;
+        this.options = new MergeOptions();
+        this.statistics = new MergeStatistics();
+    }
+
+    public MergeRunner(LineScanner in, OutputStream out, AddressRewrite rewrite, MergeOptions options)
+    {
+        super();
+
+        this.rewrite = rewrite;
+        this.input = in;
+        this.output = out;
+        this.options = options;
+        this.statistics = new MergeStatistics();
+    }
+
+    /**
+     * Constructor for a runner which {@link #write(HostEntries) writes} entries
+     * merged elsewhere. the entries are expected to be rewritten already.
+     * <p>
+     * @param out        output stream, closed after writing
+     * @param options    output options
+     * @param statistics started statistics of the merge
+     */
+    MergeRunner(OutputStream out, MergeOptions options, MergeStatistics statistics)
+    {
+        super();
+
+        this.rewrite = new NoAddressRewrite();
+        this.input = null;
+        this.output = out;
+        this.options = options;
+        this.statistics = statistics;
     }
 
     public boolean hasStarted()
@@ -118,132 +222,996 @@ public class MergeRunner implements Runnable
         return hasFinished() && FAILURE == this.result;
     }
 
+    /**
+     * @return cause of a failed run or {@literal null}
+     */
+    public Throwable getFailure()
+    {
+        return this.failure;
+    }
+
+    /**
+     * @return whether the output has been written. {@literal false} if an
+     *         {@link AtomicFileOutputStream atomically replaced} file already
+     *         had the merged content.
+     */
+    public boolean isChanged()
+    {
+        return this.changed;
+    }
+
+    /**
+     * @return counters and timings, updated while the merge runs
+     */
+    public MergeStatistics statistics()
+    {
+        return this.statistics;
+    }
+
     @Override
     public void run()
     {
+        List<Path> files = null;
+
         this.result = STARTED;
+        this.statistics.start();
 
-        try (BufferedReader br = new BufferedReader(new InputStreamReader(this.input));
-             BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(this.output, CHARSET));)
+        try (LineScanner scanner = this.input;
+             OutputStream output = this.output)
         {
-            writeOutput(parseInput(br), bw);
+            files = scanner instanceof MappedLineScanner ? ((MappedLineScanner) scanner).files() : null;
 
-            // write output
+            if (null != files && true == isPresorted(files))
+            {
+                mergeSorted(files, output);
+            }
+            else if (null != files && null != this.options.getCacheDirectory())
+            {
+                mergeCached(files, output);
+            }
+            else
+            {
+                merge(scanner, output);
+            }
+
+            commit(output);
             this.result = SUCCESS;
         }
-        catch (IOException e)
+        catch (IOException | IOError e)
+        {
+            this.failure = e;
+            this.result = FAILURE;
+        }
+
+        this.statistics.finish(this.failure);
+    }
+
+    /**
+     * write entries which have been merged elsewhere instead of reading the
+     * input. the statistics are finished, but not started.
+     * <p>
+     * @param entries merged entries
+     */
+    void write(HostEntries entries)
+    {
+        this.result = STARTED;
+
+        try (OutputStream output = this.output)
+        {
+            writeOutput(entries, output);
+            commit(output);
+
+            this.result = SUCCESS;
+        }
+        catch (IOException | IOError e)
         {
+            this.failure = e;
             this.result = FAILURE;
         }
+
+        this.statistics.finish(this.failure);
     }
 
-    private Collection<HostEntry> parseInput(BufferedReader reader) throws IOException
+    /**
+     * replace an atomically written output file, unless it is unchanged.
+     */
+    private void commit(OutputStream output) throws IOException
     {
-        Map<String, HostEntry> entries = new HashMap<>();
-        String line = null;
+        if (output instanceof AtomicFileOutputStream)
+        {
+            this.changed = ((AtomicFileOutputStream) output).commit();
+        }
+    }
 
-        while (null != (line = reader.readLine()))
+    private void merge(LineScanner scanner, OutputStream output) throws IOException
+    {
+        try (HostTable entries = parseInput(scanner))
         {
-            for (HostEntry host : parseHosts(line, this.rewrite))
+            writeMerged(entries, output);
+        }
+    }
+
+    /**
+     * @return whether the files can be combined by a streaming merge
+     */
+    private boolean isPresorted(List<Path> files) throws IOException
+    {
+        MergeStatistics.Span span = null;
+
+        switch (this.options.getInputOrder())
+        {
+            case SORTED:
+                return true;
+            case DETECT:
+                break;
+            default:
+                return false;
+        }
+
+        span = this.statistics.begin(Phase.READ);
+
+        try
+        {
+            return isSorted(files);
+        }
+        finally
+        {
+            span.end();
+        }
+    }
+
+    private boolean isSorted(List<Path> files) throws IOException
+    {
+        HostEntry previous = null;
+        HostEntry entry = null;
+
+        for (Path file : files)
+        {
+            previous = null;
+
+            try (EntrySource source = new HostsFileSource(Compression.decompress(Files.newInputStream(file)), this.rewrite))
             {
-                // ensure unique entry for each hostname
-                entries.put(host.hostname(), host);
+                while (null != (entry = source.read()))
+                {
+                    if (null != previous && 0 < ORDER.compare(previous, entry))
+                    {
+                        return false;
+                    }
+
+                    previous = entry;
+                }
             }
         }
 
-        return entries.values();
+        return true;
     }
 
-    private void writeOutput(Collection<HostEntry> entries, BufferedWriter writer) throws IOException
+    /**
+     * combine sorted files by a k-way merge, keeping one entry per source in
+     * memory. of equal address/hostname pairs the entry of the last file is
+     * kept.
+     */
+    private void mergeSorted(List<Path> files, OutputStream output) throws IOException
     {
-        List<HostEntry> hosts = new ArrayList<>(entries);
+        List<HostsFileSource> sources = new ArrayList<>(files.size());
+        RunMerger merged = null;
 
-        // sort entries by address/hostname
-        Collections.sort(hosts, this.comp);
+        try
+        {
+            for (Path file : files)
+            {
+                sources.add(new HostsFileSource(Compression.decompress(Files.newInputStream(file)), this.rewrite));
+            }
 
-        for (HostEntry entry : hosts)
+            merged = new RunMerger(sources, ORDER, true);
+        }
+        catch (IOException e)
+        {
+            for (HostsFileSource source : sources)
+            {
+                source.close();
+            }
+
+            throw e;
+        }
+
+        try (EntrySource entries = merged)
+        {
+            writeOutput(entries, output);
+        }
+
+        this.statistics.addOverridden(merged.superseded());
+
+        for (HostsFileSource source : sources)
+        {
+            this.statistics.add(source);
+            this.statistics.addBytesIn(source.scanned());
+        }
+    }
+
+    /**
+     * reuse the cached output if neither the input files nor the options
+     * changed. otherwise merge the files with the help of the cache and store
+     * the output.
+     */
+    private void mergeCached(List<Path> files, OutputStream output) throws IOException
+    {
+        MergeCache cache = new MergeCache(this.options.getCacheDirectory());
+        byte[] digest = cache.digest(files, outputKey());
+        MergeStatistics.Span span = null;
+        byte[] buffer = null;
+        int read = 0;
+
+        // patches depend on the baseline, which is not part of the digest
+        if (OutputFormat.PATCH == this.options.getFormat())
+        {
+            try (HostTable entries = parseCached(cache, files))
+            {
+                writeMerged(entries, output);
+            }
+
+            return;
+        }
+
+        try (InputStream cached = cache.openOutput(digest))
+        {
+            if (null != cached)
+            {
+                span = this.statistics.begin(Phase.READ);
+                buffer = new byte[1 << 16];
+
+                while (0 <= (read = cached.read(buffer)))
+                {
+                    output.write(buffer, 0, read);
+                    this.statistics.addBytesOut(read);
+                }
+
+                this.statistics.setCached(true);
+                span.end();
+
+                return;
+            }
+        }
+
+        try (MergeCache.Output copy = cache.storeOutput(digest))
+        {
+            try (HostTable entries = parseCached(cache, files))
+            {
+                writeMerged(entries, new TeeOutputStream(output, copy));
+            }
+
+            copy.commit();
+        }
+    }
+
+    /**
+     * @return description of the options which affect the output. the
+     *         rewrites only replace the well-known addresses, so their
+     *         results identify the rewrite.
+     */
+    private String outputKey()
+    {
+        StringBuilder key = new StringBuilder(this.options.getFormat().name());
+
+        key.append(' ').append(this.options.getGroupSize());
+        key.append(' ').append(this.options.getGroupWidth());
+
+        key.append(' ').append(this.rewrite.getClass().getName());
+
+        for (Address address : new Address[] {AddressRewrite.DEFAULT_ADDRESS, AddressRewrite.LOOPBACK4_ADDRESS, AddressRewrite.LOOPBACK6_ADDRESS})
+        {
+            key.append(' ').append(this.rewrite.rewrite(address));
+        }
+
+        return key.toString();
+    }
+
+    private HostTable parseInput(LineScanner scanner) throws IOException
+    {
+        int threads = this.options.getThreads();
+        List<LineScanner> parts = null;
+
+        MergePipeline pipeline = null;
+        HostTable table = null;
+
+        if (true == this.options.isPipelined())
+        {
+            pipeline = new MergePipeline(scanner, this.rewrite, threads, newTable());
+            table = pipeline.run();
+            pipeline.report(this.statistics);
+
+            return table;
+        }
+        else if (1 == threads || true == isBounded() || 1 >= (parts = scanner.split()).size())
+        {
+            // partial tables of bounded merges cannot be combined
+            return parseInput(scanner, this.rewrite, newTable(), this.statistics);
+        }
+
+        return parseParts(parts, this.rewrite);
+    }
+
+    /**
+     * parse the parts concurrently into a single table.
+     */
+    private HostTable parseParts(List<LineScanner> parts, AddressRewrite rewrite) throws IOException
+    {
+        ForkJoinPool pool = new ForkJoinPool(this.options.getThreads());
+
+        try
+        {
+            return pool.invoke(new ParseTask(parts, rewrite, this.options.getTable(), this.statistics));
+        }
+        catch (ParseFailure e)
+        {
+            throw e.getCause();
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * load unchanged files from the cache and parse the others, updating
+     * their cache entries. files are merged in input order.
+     */
+    private HostTable parseCached(MergeCache cache, List<Path> files) throws IOException
+    {
+        HostTable table = newTable();
+
+        try
+        {
+            for (Path file : files)
+            {
+                try (EntrySource cached = cache.open(file))
+                {
+                    if (null != cached)
+                    {
+                        putRewritten(cached, table);
+                        continue;
+                    }
+                }
+
+                try (HostTable parsed = parseFile(file))
+                {
+                    cache.store(file, parsed);
+                    putRewritten(parsed, table);
+                }
+            }
+
+            cache.prune();
+        }
+        catch (IOException | IOError | RuntimeException e)
+        {
+            table.close();
+
+            throw e;
+        }
+
+        return table;
+    }
+
+    /**
+     * parse a single file without address rewrite. bounded merges spill the
+     * file table like the merged table, which is not sorted before all files
+     * have been applied.
+     */
+    private HostTable parseFile(Path file) throws IOException
+    {
+        List<LineScanner> parts = null;
+
+        try (MappedLineScanner scanner = new MappedLineScanner(Collections.singletonList(file)))
+        {
+            if (1 == this.options.getThreads() || true == isBounded() || 1 >= (parts = scanner.split()).size())
+            {
+                // partial tables of bounded merges cannot be combined
+                return parseInput(scanner, new NoAddressRewrite(), newTable(), this.statistics);
+            }
+
+            return parseParts(parts, new NoAddressRewrite());
+        }
+    }
+
+    /**
+     * apply parsed entries, which have already been counted.
+     */
+    private void putRewritten(Iterable<HostEntry> entries, HostTable table)
+    {
+        MergeStatistics.Span span = this.statistics.begin(Phase.DEDUP);
+        long rewritten = 0L;
+        HostEntry put = null;
+
+        for (HostEntry entry : entries)
+        {
+            put = rewrite(entry);
+            rewritten += put.addressValue().equals(entry.addressValue()) ? 0L : 1L;
+            table.put(put);
+        }
+
+        this.statistics.addRewritten(rewritten);
+        span.end();
+    }
+
+    /**
+     * apply cached entries.
+     */
+    private void putRewritten(EntrySource entries, HostTable table) throws IOException
+    {
+        MergeStatistics.Span span = this.statistics.begin(Phase.DEDUP);
+        long count = 0L;
+        long rewritten = 0L;
+        HostEntry entry = null;
+        HostEntry put = null;
+
+        while (null != (entry = entries.read()))
+        {
+            put = rewrite(entry);
+            rewritten += put.addressValue().equals(entry.addressValue()) ? 0L : 1L;
+            count++;
+            table.put(put);
+        }
+
+        this.statistics.addEntries(count);
+        this.statistics.addRewritten(rewritten);
+        span.end();
+    }
+
+    private HostEntry rewrite(HostEntry entry)
+    {
+        Address address = this.rewrite.rewrite(entry.addressValue());
+
+        if (address == entry.addressValue())
+        {
+            return entry;
+        }
+
+        return new HostEntry(entry.isEnabled(), address, entry.hostname(), entry.comment());
+    }
+
+    private boolean isBounded()
+    {
+        return 0L < this.options.getMaxMemory();
+    }
+
+    /**
+     * @return table for all entries. bounded merges use half of the memory
+     *         for deduplication and half for sorting.
+     */
+    private HostTable newTable() throws IOException
+    {
+        if (true == isBounded())
         {
-            writer.write(entry.toHosts());
-            writer.write("\n");
+            return new SpillingHostTable(this.options.getTable(), this.options.getMaxMemory() / 2, this.options.getTempDirectory());
         }
+
+        return this.options.getTable().newTable();
     }
 
-    private Collection<HostEntry> parseHosts(String line, AddressRewrite rewrite)
+    private static HostTable parseInput(LineScanner scanner, AddressRewrite rewrite, HostTable table,
+            MergeStatistics statistics) throws IOException
     {
-        Matcher matcher = HOST.matcher(line);
-        String address = null;
-        String hostnames = null;
-        String comment = null;
+        EntryCollector collector = new EntryCollector(rewrite, table);
+        MergeStatistics.Span span = statistics.begin(Phase.PARSE);
 
-        if (matcher.find())
+        try
+        {
+            scanner.scan(collector);
+        }
+        catch (IOException | RuntimeException e)
         {
-            address = rewrite.rewrite(matcher.group(1));
-            hostnames = matcher.group(2);
-            comment = sanitizeComment(matcher.group(3));
+            table.close();
 
-            if (null != address && null != hostnames)
+            throw e;
+        }
+
+        span.end();
+        statistics.add(collector);
+        statistics.addBytesIn(scanner.scanned());
+
+        return collector.entries();
+    }
+
+    /**
+     * merge two partial tables. entries of the later table replace entries of
+     * the earlier one, the smaller table is merged into the larger one.
+     * <p>
+     * @param earlier entries of the preceding input
+     * @param later   entries of the succeeding input
+     * @return merged table (one of the arguments). the other one is closed.
+     * @throws IOException failed to release the merged table
+     */
+    private static HostTable mergeEntries(HostTable earlier, HostTable later) throws IOException
+    {
+        if (earlier.size() >= later.size())
+        {
+            try (HostTable merged = later)
             {
-                return newHostEntries(line.startsWith("#"), address, hostnames, comment);
+                earlier.putAll(merged, true);
             }
+
+            return earlier;
+        }
+
+        try (HostTable merged = earlier)
+        {
+            later.putAll(merged, false);
         }
 
-        // either comment or malformed line
-        return NO_HOSTS;
+        return later;
     }
 
-    private Collection<HostEntry> newHostEntries(boolean disabled, String address, String names, String comment)
+    /**
+     * write the table of a merge of the input. parsed entries which are
+     * missing from the table have been replaced by a later entry.
+     */
+    private void writeMerged(HostTable entries, OutputStream output) throws IOException
     {
-        String[] hostnames = NAMES.split(names);
-        Collection<HostEntry> entries = new ArrayList<>();
+        long parsed = this.statistics.getEntriesParsed();
+        long unique = writeOutput(entries, output);
+
+        this.statistics.addOverridden(Math.max(0L, parsed - unique));
+    }
+
+    /**
+     * @return number of entries in the table
+     */
+    private long writeOutput(HostEntries entries, OutputStream output) throws IOException
+    {
+        HostsWriter writer = null;
+        long count = 0L;
+
+        if (OutputFormat.SNAPSHOT == this.options.getFormat())
+        {
+            return writeSnapshot(entries, output);
+        }
+        else if (OutputFormat.PATCH == this.options.getFormat())
+        {
+            return writePatch(entries, output);
+        }
 
-        for (String hostname : hostnames)
+        writer = newHostsWriter(output);
+
+        if (true == isBounded())
+        {
+            count = writeSorted(entries, writer);
+        }
+        else
         {
-            entries.add(new HostEntry(false == disabled, address, hostname, comment));
+            count = writeHosts(entries, writer);
         }
 
-        return entries;
+        this.statistics.addBytesOut(writer.written());
+
+        return count;
     }
 
-    private String sanitizeComment(String comment)
+    /**
+     * write a snapshot of the entries. snapshots are always built in memory
+     * and sorted while they are written.
+     */
+    private long writeSnapshot(HostEntries entries, OutputStream output) throws IOException
     {
-        if (null == comment)
+        SnapshotWriter writer = new SnapshotWriter();
+        CountingOutputStream counter = new CountingOutputStream(output);
+        MergeStatistics.Span span = this.statistics.begin(Phase.WRITE);
+        long count = 0L;
+
+        writer.addAll(entries);
+        count = writer.size();
+        this.statistics.addEmitted(writer.writeTo(counter));
+        this.statistics.addBytesOut(counter.count());
+        span.end();
+
+        return count;
+    }
+
+    /**
+     * sort the entries and write the patch against the baseline.
+     */
+    private long writePatch(HostEntries entries, OutputStream output) throws IOException
+    {
+        MergeStatistics.Span span = this.statistics.begin(Phase.SORT);
+        HostEntry[] hosts = null;
+        long count = 0L;
+        int index = 0;
+
+        if (true == isBounded())
         {
-            return "";
+            try (ExternalSorter sorter = new ExternalSorter(this.options.getMaxMemory() / 2, this.options.getTempDirectory()))
+            {
+                for (HostEntry host : entries)
+                {
+                    sorter.add(host);
+                    count++;
+                }
+
+                try (EntrySource sorted = sorter.sorted())
+                {
+                    span.end();
+                    writeOutput(sorted, output);
+                }
+            }
+
+            return count;
+        }
+
+        hosts = new HostEntry[entries.size()];
+
+        for (HostEntry entry : entries)
+        {
+            hosts[index++] = entry;
+        }
+
+        this.sorter.sort(hosts);
+        span.end();
+        writeOutput(new EntryArray(hosts), output);
+
+        return hosts.length;
+    }
+
+    /**
+     * @return entries of the baseline in output order. snapshots are sorted
+     *         in memory, hosts files are expected in output order.
+     */
+    private EntrySource openBaseline() throws IOException
+    {
+        Path file = this.options.getBaseline();
+        HostsSnapshot snapshot = null;
+        HostEntry[] hosts = null;
+
+        if (null == file)
+        {
+            throw new IOException("Patch output requires a baseline");
         }
-        else if (comment.startsWith("#"))
+        else if (false == HostsSnapshot.isSnapshot(file))
         {
-            return comment.substring(1).trim();
+            return new HostsFileSource(Files.newInputStream(file), new NoAddressRewrite());
+        }
+
+        snapshot = HostsSnapshot.open(file);
+        hosts = new HostEntry[snapshot.size()];
+
+        for (int i = 0; i < hosts.length; i++)
+        {
+            hosts[i] = snapshot.get(i);
+        }
+
+        this.sorter.sort(hosts);
+
+        return new EntryArray(hosts);
+    }
+
+    /**
+     * @return writer for the output. files and channels are written without
+     *         intermediate copies.
+     */
+    private HostsWriter newHostsWriter(OutputStream output)
+    {
+        WritableByteChannel channel = null;
+
+        if (output instanceof WritableByteChannel)
+        {
+            channel = (WritableByteChannel) output;
+        }
+        else if (output instanceof FileOutputStream)
+        {
+            channel = ((FileOutputStream) output).getChannel();
         }
         else
         {
-            return comment;
+            channel = Channels.newChannel(output);
+        }
+
+        return new HostsWriter(channel, this.options.getGroupSize(), this.options.getGroupWidth());
+    }
+
+    private long writeHosts(HostEntries entries, HostsWriter writer) throws IOException
+    {
+        MergeStatistics.Span span = this.statistics.begin(Phase.SORT);
+        HostEntry[] hosts = null;
+        int index = 0;
+
+        hosts = new HostEntry[entries.size()];
+
+        for (HostEntry entry : entries)
+        {
+            hosts[index++] = entry;
+        }
+
+        // sort entries by address/hostname
+        this.sorter.sort(hosts);
+        span.end();
+        span = this.statistics.begin(Phase.WRITE);
+
+        for (HostEntry entry : hosts)
+        {
+            writer.write(entry);
+        }
+
+        writer.flush();
+        this.statistics.addEmitted(hosts.length);
+        span.end();
+
+        return hosts.length;
+    }
+
+    /**
+     * sort the entries within the memory budget, spilling sorted runs to
+     * disk.
+     */
+    private long writeSorted(HostEntries entries, HostsWriter writer) throws IOException
+    {
+        MergeStatistics.Span span = this.statistics.begin(Phase.SORT);
+        long count = 0L;
+
+        try (ExternalSorter sorter = new ExternalSorter(this.options.getMaxMemory() / 2, this.options.getTempDirectory()))
+        {
+            for (HostEntry host : entries)
+            {
+                sorter.add(host);
+                count++;
+            }
+
+            try (EntrySource sorted = sorter.sorted())
+            {
+                span.end();
+                span = this.statistics.begin(Phase.WRITE);
+                writeEntries(sorted, writer);
+                writer.flush();
+                span.end();
+            }
         }
+
+        return count;
     }
 
-    private Comparator<HostEntry> newHostEntryComparator()
+    /**
+     * write sorted entries.
+     */
+    private void writeOutput(EntrySource entries, OutputStream output) throws IOException
     {
-        return new Comparator<HostEntry>()
+        SnapshotWriter snapshot = null;
+        CountingOutputStream counter = null;
+        HostsWriter writer = null;
+        HostEntry entry = null;
+        MergeStatistics.Span span = this.statistics.begin(Phase.WRITE);
+
+        if (OutputFormat.SNAPSHOT == this.options.getFormat())
         {
-            @Override
-            public int compare(HostEntry lhs, HostEntry rhs)
+            snapshot = new SnapshotWriter();
+            counter = new CountingOutputStream(output);
+
+            while (null != (entry = entries.read()))
             {
-                int address = compareString(lhs.address(), rhs.address());
-                int hostname = compareString(lhs.hostname(), rhs.hostname());
+                snapshot.add(entry);
+            }
+
+            this.statistics.addEmitted(snapshot.writeTo(counter));
+            this.statistics.addBytesOut(counter.count());
+        }
+        else if (OutputFormat.PATCH == this.options.getFormat())
+        {
+            counter = new CountingOutputStream(output);
 
-                return 0 == address ? hostname : address;
+            try (EntrySource baseline = openBaseline())
+            {
+                this.statistics.addEmitted(new PatchBuilder(baseline).write(entries, counter));
             }
 
-            private int compareString(String lhs, String rhs)
+            this.statistics.addBytesOut(counter.count());
+        }
+        else
+        {
+            writer = newHostsWriter(output);
+            writeEntries(entries, writer);
+            writer.flush();
+            this.statistics.addBytesOut(writer.written());
+        }
+
+        span.end();
+    }
+
+    private void writeEntries(EntrySource entries, HostsWriter writer) throws IOException
+    {
+        HostEntry entry = null;
+        long count = 0L;
+
+        while (null != (entry = entries.read()))
+        {
+            writer.write(entry);
+            count++;
+        }
+
+        this.statistics.addEmitted(count);
+    }
+
+    /**
+     * Line callback which keeps the last entry for each hostname.
+     */
+    private static final class EntryCollector extends HostLineHandler
+    {
+        private final HostTable entries;
+
+        public EntryCollector(AddressRewrite rewrite, HostTable entries)
+        {
+            super(rewrite);
+
+            this.entries = entries;
+        }
+
+        public HostTable entries()
+        {
+            return this.entries;
+        }
+
+        @Override
+        protected void host(boolean enabled, Address address, ByteBuffer buffer, int start, int end, String comment)
+        {
+            // ensure unique entry for each hostname
+            this.entries.put(enabled, address, buffer, start, end, comment);
+        }
+    }
+
+    /**
+     * Parse a range of input parts, splitting the range until a single part
+     * remains. Partial results are merged in input order.
+     */
+    private static final class ParseTask extends RecursiveTask<HostTable>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final List<LineScanner> parts;
+        private final AddressRewrite rewrite;
+        private final HostTableType table;
+        private final MergeStatistics statistics;
+
+        public ParseTask(List<LineScanner> parts, AddressRewrite rewrite, HostTableType table, MergeStatistics statistics)
+        {
+            super();
+
+            this.parts = parts;
+            this.rewrite = rewrite;
+            this.table = table;
+            this.statistics = statistics;
+        }
+
+        @Override
+        protected HostTable compute()
+        {
+            int middle = this.parts.size() / 2;
+            ParseTask earlier = null;
+            ParseTask later = null;
+            HostTable merged = null;
+            HostTable other = null;
+            MergeStatistics.Span span = null;
+
+            if (1 == this.parts.size())
             {
-                if (null == lhs)
+                try
                 {
-                    return null == rhs ? 0 : 1;
+                    return parseInput(this.parts.get(0), this.rewrite, this.table.newTable(), this.statistics);
                 }
-                else
+                catch (IOException e)
                 {
-                    return lhs.compareTo(rhs);
+                    throw new ParseFailure(e);
                 }
             }
-        };
+
+            earlier = new ParseTask(this.parts.subList(0, middle), this.rewrite, this.table, this.statistics);
+            later = new ParseTask(this.parts.subList(middle, this.parts.size()), this.rewrite, this.table, this.statistics);
+            later.fork();
+
+            try
+            {
+                merged = earlier.compute();
+            }
+            catch (RuntimeException | Error e)
+            {
+                // the forked part completes anyway and its table must be released
+                discard(later, e);
+                throw e;
+            }
+
+            try
+            {
+                other = later.join();
+            }
+            catch (RuntimeException | Error e)
+            {
+                discard(merged, e);
+                throw e;
+            }
+
+            try
+            {
+                span = this.statistics.begin(Phase.DEDUP);
+                merged = mergeEntries(merged, other);
+                span.end();
+
+                return merged;
+            }
+            catch (IOException e)
+            {
+                throw new ParseFailure(e);
+            }
+        }
+
+        private static void discard(ParseTask task, Throwable failure)
+        {
+            HostTable table = null;
+
+            try
+            {
+                table = task.join();
+            }
+            catch (RuntimeException | Error e)
+            {
+                failure.addSuppressed(e);
+
+                return;
+            }
+
+            discard(table, failure);
+        }
+
+        private static void discard(HostTable table, Throwable failure)
+        {
+            try
+            {
+                table.close();
+            }
+            catch (IOException | RuntimeException e)
+            {
+                failure.addSuppressed(e);
+            }
+        }
+    }
+
+    /**
+     * Source of sorted entries held in memory.
+     */
+    private static final class EntryArray implements EntrySource
+    {
+        private final HostEntry[] entries;
+        private int index = 0;
+
+        public EntryArray(HostEntry[] entries)
+        {
+            super();
+
+            this.entries = entries;
+        }
+
+        @Override
+        public HostEntry read()
+        {
+            return this.index < this.entries.length ? this.entries[this.index++] : null;
+        }
+
+        @Override
+        public void close()
+        {
+            // heap storage only
+        }
+    }
+
+    /**
+     * Transport for I/O failures of concurrent parse tasks.
+     */
+    private static final class ParseFailure extends RuntimeException
+    {
+        private static final long serialVersionUID = 1L;
+
+        public ParseFailure(IOException cause)
+        {
+            super(cause);
+        }
+
+        @Override
+        public synchronized IOException getCause()
+        {
+            return (IOException) super.getCause();
+        }
     }
 }
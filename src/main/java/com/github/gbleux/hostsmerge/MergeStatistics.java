@@ -0,0 +1,531 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.github.gbleux.jfr.Flight;
+
+/**
+ * Counters and phase timings of a single {@link MergeRunner} run. Values are
+ * updated while the merge runs and can be read concurrently, for example
+ * through JMX after {@link #register() registration}.
+ * <p>
+ * Phase times are summed over all threads working on a phase, so they can
+ * exceed the elapsed time of concurrent merges. Reading, parsing and
+ * deduplication happen within the same pass over the input unless the
+ * merge is pipelined; such a pass is reported as {@link Phase#PARSE}.
+ * <p>
+ * The peak heap is the sum of the peak usage of the heap memory pools since
+ * the merge started. The pools peak at different times, so the sum is an
+ * upper bound. Merges running concurrently in the same JVM reset each
+ * other's peaks.
+ * <p>
+ * @author Gordon Bleux
+ */
+public class MergeStatistics implements MergeStatisticsMBean
+{
+    /**
+     * name under which {@link #register()} publishes instances
+     */
+    public static final String OBJECT_NAME = "com.github.gbleux.hostsmerge:type=MergeStatistics";
+
+    /**
+     * Steps of a merge.
+     */
+    public enum Phase
+    {
+        /**
+         * reading input which is not parsed: checking the order of
+         * presorted files, copying cached output and the reader stage of a
+         * pipelined merge
+         */
+        READ,
+        /**
+         * turning input lines into entries
+         */
+        PARSE,
+        /**
+         * combining entries by hostname: merging partial tables, applying
+         * cached entries and the deduplication stage of a pipelined merge
+         */
+        DEDUP,
+        /**
+         * ordering the unique entries, including spilling sorted runs
+         */
+        SORT,
+        /**
+         * encoding and writing the output. streaming merges of presorted
+         * files and spilled runs are interleaved with writing and reported
+         * as write.
+         */
+        WRITE
+    }
+
+    private final AtomicLongArray phases = new AtomicLongArray(Phase.values().length);
+    private final AtomicLong lines = new AtomicLong();
+    private final AtomicLong matched = new AtomicLong();
+    private final AtomicLong comments = new AtomicLong();
+    private final AtomicLong malformed = new AtomicLong();
+    private final AtomicLong entries = new AtomicLong();
+    private final AtomicLong emitted = new AtomicLong();
+    private final AtomicLong overridden = new AtomicLong();
+    private final AtomicLong rewritten = new AtomicLong();
+    private final AtomicLong bytesIn = new AtomicLong();
+    private final AtomicLong bytesOut = new AtomicLong();
+    private volatile long peakHeap = 0L;
+    private volatile long started = 0L;
+    private volatile long elapsed = -1L;
+    private volatile boolean cached = false;
+    private volatile Throwable failure = null;
+
+    public MergeStatistics()
+    {
+        super();
+    }
+
+    /**
+     * @param phase step of the merge
+     * @return nanoseconds spent in the phase
+     */
+    public long nanos(Phase phase)
+    {
+        return this.phases.get(phase.ordinal());
+    }
+
+    /**
+     * @return cause of a failed merge or {@literal null}
+     */
+    public Throwable failure()
+    {
+        return this.failure;
+    }
+
+    @Override
+    public boolean isFinished()
+    {
+        return 0L <= this.elapsed;
+    }
+
+    @Override
+    public boolean isSuccess()
+    {
+        return isFinished() && null == this.failure;
+    }
+
+    /**
+     * @return whether the output has been copied from the cache without
+     *         merging
+     */
+    @Override
+    public boolean isCached()
+    {
+        return this.cached;
+    }
+
+    @Override
+    public String getFailure()
+    {
+        return null == this.failure ? null : this.failure.toString();
+    }
+
+    /**
+     * @return duration of the finished merge or the time since it started
+     */
+    @Override
+    public double getElapsedMillis()
+    {
+        long nanos = this.elapsed;
+
+        if (0L > nanos)
+        {
+            nanos = 0L == this.started ? 0L : System.nanoTime() - this.started;
+        }
+
+        return millis(nanos);
+    }
+
+    @Override
+    public double getReadMillis()
+    {
+        return millis(nanos(Phase.READ));
+    }
+
+    @Override
+    public double getParseMillis()
+    {
+        return millis(nanos(Phase.PARSE));
+    }
+
+    @Override
+    public double getDedupMillis()
+    {
+        return millis(nanos(Phase.DEDUP));
+    }
+
+    @Override
+    public double getSortMillis()
+    {
+        return millis(nanos(Phase.SORT));
+    }
+
+    @Override
+    public double getWriteMillis()
+    {
+        return millis(nanos(Phase.WRITE));
+    }
+
+    @Override
+    public long getLinesRead()
+    {
+        return this.lines.get();
+    }
+
+    /**
+     * @return number of lines declaring hosts
+     */
+    @Override
+    public long getLinesMatched()
+    {
+        return this.matched.get();
+    }
+
+    /**
+     * @return number of blank or comment-only lines
+     */
+    @Override
+    public long getCommentLines()
+    {
+        return this.comments.get();
+    }
+
+    /**
+     * @return number of lines which are neither host declarations nor
+     *         comments
+     */
+    @Override
+    public long getMalformedLines()
+    {
+        return this.malformed.get();
+    }
+
+    /**
+     * @return number of entries parsed from the input or loaded from the
+     *         cache
+     */
+    @Override
+    public long getEntriesParsed()
+    {
+        return this.entries.get();
+    }
+
+    @Override
+    public long getEntriesEmitted()
+    {
+        return this.emitted.get();
+    }
+
+    /**
+     * @return number of parsed entries replaced by a later entry of the same
+     *         hostname. merges of presorted files count the entries dropped
+     *         for a later equal entry.
+     */
+    @Override
+    public long getDuplicatesOverridden()
+    {
+        return this.overridden.get();
+    }
+
+    @Override
+    public long getAddressesRewritten()
+    {
+        return this.rewritten.get();
+    }
+
+    /**
+     * @return number of input bytes scanned. input loaded from the cache is
+     *         not scanned.
+     */
+    @Override
+    public long getBytesIn()
+    {
+        return this.bytesIn.get();
+    }
+
+    @Override
+    public long getBytesOut()
+    {
+        return this.bytesOut.get();
+    }
+
+    @Override
+    public long getPeakHeap()
+    {
+        return true == isFinished() ? this.peakHeap : heapPeak();
+    }
+
+    @Override
+    public String toJson()
+    {
+        StringBuilder json = new StringBuilder(512);
+
+        json.append("{\"success\":").append(isSuccess());
+        json.append(",\"cached\":").append(isCached());
+        json.append(",\"failure\":");
+        quote(json, getFailure());
+        json.append(",\"elapsedMillis\":").append(format(getElapsedMillis()));
+        json.append(",\"phases\":{");
+
+        for (Phase phase : Phase.values())
+        {
+            json.append(0 == phase.ordinal() ? "\"" : ",\"").append(phase.name().toLowerCase(Locale.ROOT));
+            json.append("Millis\":").append(format(millis(nanos(phase))));
+        }
+
+        json.append("},\"lines\":{\"read\":").append(getLinesRead());
+        json.append(",\"matched\":").append(getLinesMatched());
+        json.append(",\"comment\":").append(getCommentLines());
+        json.append(",\"malformed\":").append(getMalformedLines());
+        json.append("},\"entries\":{\"parsed\":").append(getEntriesParsed());
+        json.append(",\"emitted\":").append(getEntriesEmitted());
+        json.append(",\"duplicates\":").append(getDuplicatesOverridden());
+        json.append(",\"rewritten\":").append(getAddressesRewritten());
+        json.append("},\"bytes\":{\"in\":").append(getBytesIn());
+        json.append(",\"out\":").append(getBytesOut());
+        json.append("},\"peakHeap\":").append(getPeakHeap());
+        json.append('}');
+
+        return json.toString();
+    }
+
+    @Override
+    public String toString()
+    {
+        return toJson();
+    }
+
+    /**
+     * publish this instance in the platform MBean server under
+     * {@link #OBJECT_NAME}, replacing a previously registered instance.
+     * <p>
+     * @return name of the registered MBean
+     * @throws JMException failed to register the MBean
+     */
+    public ObjectName register() throws JMException
+    {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(OBJECT_NAME);
+
+        if (true == server.isRegistered(name))
+        {
+            server.unregisterMBean(name);
+        }
+
+        server.registerMBean(this, name);
+
+        return name;
+    }
+
+    void start()
+    {
+        this.started = System.nanoTime();
+
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+        {
+            if (MemoryType.HEAP == pool.getType() && true == pool.isValid())
+            {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    void finish(Throwable failure)
+    {
+        this.failure = failure;
+        this.peakHeap = heapPeak();
+        this.elapsed = System.nanoTime() - this.started;
+    }
+
+    void time(Phase phase, long nanos)
+    {
+        this.phases.addAndGet(phase.ordinal(), nanos);
+    }
+
+    /**
+     * start timing a phase. the span is also reported to the flight
+     * recorder when a recording is active.
+     */
+    Span begin(Phase phase)
+    {
+        return new Span(phase);
+    }
+
+    /**
+     * add the line counters of a handler which finished scanning.
+     */
+    void add(HostLineHandler handler)
+    {
+        this.lines.addAndGet(handler.lineCount());
+        this.matched.addAndGet(handler.matchedCount());
+        this.comments.addAndGet(handler.commentCount());
+        this.malformed.addAndGet(handler.malformedCount());
+        this.entries.addAndGet(handler.entryCount());
+        this.rewritten.addAndGet(handler.rewrittenCount());
+    }
+
+    void addEntries(long count)
+    {
+        this.entries.addAndGet(count);
+    }
+
+    void addEmitted(long count)
+    {
+        this.emitted.addAndGet(count);
+    }
+
+    void addOverridden(long count)
+    {
+        this.overridden.addAndGet(count);
+    }
+
+    void addRewritten(long count)
+    {
+        this.rewritten.addAndGet(count);
+    }
+
+    void addBytesIn(long count)
+    {
+        this.bytesIn.addAndGet(count);
+    }
+
+    void addBytesOut(long count)
+    {
+        this.bytesOut.addAndGet(count);
+    }
+
+    void setCached(boolean cached)
+    {
+        this.cached = cached;
+    }
+
+    /**
+     * @return sum of the peak usage of the heap pools since their last reset
+     */
+    private static long heapPeak()
+    {
+        MemoryUsage usage = null;
+        long peak = 0L;
+
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+        {
+            if (MemoryType.HEAP == pool.getType() && null != (usage = pool.getPeakUsage()))
+            {
+                peak += usage.getUsed();
+            }
+        }
+
+        return peak;
+    }
+
+    private static double millis(long nanos)
+    {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1L);
+    }
+
+    private static String format(double value)
+    {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    private static void quote(StringBuilder json, String value)
+    {
+        char c = 0;
+
+        if (null == value)
+        {
+            json.append("null");
+
+            return;
+        }
+
+        json.append('"');
+
+        for (int i = 0; i < value.length(); i++)
+        {
+            c = value.charAt(i);
+
+            if ('"' == c || '\\' == c)
+            {
+                json.append('\\').append(c);
+            }
+            else if (c < 0x20)
+            {
+                json.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+            }
+            else
+            {
+                json.append(c);
+            }
+        }
+
+        json.append('"');
+    }
+
+    /**
+     * a single timed pass of a phase.
+     */
+    final class Span
+    {
+        private final Phase phase;
+
+        private final long start;
+
+        private final Object event;
+
+        private Span(Phase phase)
+        {
+            super();
+
+            this.phase = phase;
+            this.event = Flight.beginPhase(phase.name().toLowerCase(Locale.ROOT));
+            this.start = System.nanoTime();
+        }
+
+        void end()
+        {
+            time(this.phase, System.nanoTime() - this.start);
+            Flight.endPhase(this.event);
+        }
+    }
+}
@@ -0,0 +1,323 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import com.github.gbleux.hostsmerge.address.rewrite.AddressRewrite;
+import com.github.gbleux.io.AtomicFileOutputStream;
+import com.github.gbleux.io.MappedLineScanner;
+
+/**
+ * Daemon which keeps the merged entries of an input directory in memory and
+ * rewrites the output whenever files of the directory are created, modified
+ * or deleted.
+ * <p>
+ * Changes are collected for a debounce window starting with the first event,
+ * so a burst of changes results in a single rewrite no later than the window
+ * after it started. Only the changed files are parsed, the entries of the
+ * other files are kept in a {@link SourceIndex}. Files take precedence in the
+ * order of their paths, the last file declaring a hostname wins.
+ * <p>
+ * The output is {@link AtomicFileOutputStream replaced atomically} and left
+ * untouched if a change does not affect the merged entries.
+ * <p>
+ * Each rewrite is performed by a {@link MergeRunner} with statistics covering
+ * the parsing of the changed files and the output. Subclasses are notified
+ * through {@link #merged(MergeRunner)} and {@link #failed(Path, IOException)}.
+ * <p>
+ * The watcher runs until it is {@link #close() closed} or the input
+ * directory becomes inaccessible.
+ * <p>
+ * @author Gordon Bleux
+ */
+public class MergeWatcher implements Runnable, Closeable
+{
+    /**
+     * default debounce window in milliseconds
+     */
+    public static final long DEFAULT_DEBOUNCE = 500L;
+
+    private final Path input;
+    private final Path output;
+    private final MergeOptions options;
+    private final long debounce;
+    private final SourceIndex index;
+    private final WatchService service;
+    private IOException failure = null;
+
+    /**
+     * Constructor for a watcher of the given directory. the directory is
+     * watched from now on, the output is written once {@link #run() run}.
+     * <p>
+     * @param input    directory of input files
+     * @param output   file to write
+     * @param rewrite  address rewrite of the entries
+     * @param options  output options
+     * @param debounce debounce window in milliseconds
+     * @throws IOException failed to watch the directory
+     */
+    public MergeWatcher(Path input, Path output, AddressRewrite rewrite, MergeOptions options, long debounce) throws IOException
+    {
+        super();
+
+        Path parent = output.toAbsolutePath().normalize().getParent();
+
+        if (false == Files.isDirectory(input))
+        {
+            throw new IllegalArgumentException("Watched input must be a directory: " + input);
+        }
+        else if (null != parent && Files.exists(parent) && Files.isSameFile(input, parent))
+        {
+            throw new IllegalArgumentException("Output must not be written into the watched directory");
+        }
+        else if (debounce < 0L)
+        {
+            throw new IllegalArgumentException("Debounce window must not be negative");
+        }
+
+        this.input = input;
+        this.output = output;
+        this.options = options;
+        this.debounce = debounce;
+        this.index = new SourceIndex(rewrite);
+        this.service = input.getFileSystem().newWatchService();
+
+        try
+        {
+            input.register(this.service,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+        }
+        catch (IOException e)
+        {
+            this.service.close();
+
+            throw e;
+        }
+    }
+
+    /**
+     * @return cause of the watcher stopping on its own or {@literal null}
+     */
+    public IOException getFailure()
+    {
+        return this.failure;
+    }
+
+    /**
+     * merge all files of the directory, then apply changes until the watcher
+     * is closed.
+     */
+    @Override
+    public void run()
+    {
+        Set<Path> changes = null;
+
+        try
+        {
+            merge(MappedLineScanner.listFiles(this.input));
+
+            while (true)
+            {
+                changes = awaitChanges();
+                merge(changes);
+            }
+        }
+        catch (ClosedWatchServiceException e)
+        {
+            // stopped by close()
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch (IOException e)
+        {
+            this.failure = e;
+        }
+        finally
+        {
+            try
+            {
+                this.service.close();
+            }
+            catch (IOException e)
+            {
+                // nothing left to watch
+            }
+        }
+    }
+
+    /**
+     * stop watching. a running {@link #run()} returns after the current
+     * rewrite.
+     * <p>
+     * @throws IOException failed to release the watch service
+     */
+    @Override
+    public void close() throws IOException
+    {
+        this.service.close();
+    }
+
+    /**
+     * called after the output has been rewritten. the default implementation
+     * does nothing.
+     * <p>
+     * @param runner runner which wrote the output, providing the outcome and
+     *               statistics
+     */
+    protected void merged(MergeRunner runner)
+    {
+        // no-op
+    }
+
+    /**
+     * called if a changed file could not be read. its previous entries are
+     * kept. the default implementation does nothing.
+     * <p>
+     * @param file  changed file
+     * @param cause read failure
+     */
+    protected void failed(Path file, IOException cause)
+    {
+        // no-op
+    }
+
+    /**
+     * wait for changes and collect further changes until the debounce window
+     * closes.
+     * <p>
+     * @return changed paths
+     */
+    private Set<Path> awaitChanges() throws IOException, InterruptedException
+    {
+        Set<Path> changes = new TreeSet<>();
+        WatchKey key = this.service.take();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.debounce);
+        long remaining = 0L;
+
+        do
+        {
+            collect(key, changes);
+            remaining = deadline - System.nanoTime();
+        }
+        while (0L < remaining && null != (key = this.service.poll(remaining, TimeUnit.NANOSECONDS)));
+
+        return changes;
+    }
+
+    private void collect(WatchKey key, Set<Path> changes) throws IOException
+    {
+        for (WatchEvent<?> event : key.pollEvents())
+        {
+            if (StandardWatchEventKinds.OVERFLOW == event.kind())
+            {
+                // events were lost, compare everything
+                changes.addAll(MappedLineScanner.listFiles(this.input));
+                changes.addAll(this.index.files());
+            }
+            else
+            {
+                changes.add(this.input.resolve((Path) event.context()));
+            }
+        }
+
+        if (false == key.reset())
+        {
+            throw new IOException("Watched directory is no longer accessible: " + this.input);
+        }
+    }
+
+    /**
+     * apply changed files to the index and rewrite the output.
+     */
+    private void merge(Iterable<Path> files)
+    {
+        MergeStatistics statistics = new MergeStatistics();
+        AtomicFileOutputStream stream = null;
+        MergeRunner runner = null;
+        Path parent = this.output.getParent();
+
+        statistics.start();
+
+        for (Path file : files)
+        {
+            try
+            {
+                if (true == Files.isRegularFile(file))
+                {
+                    this.index.update(file, statistics);
+                }
+                else
+                {
+                    this.index.remove(file);
+                }
+            }
+            catch (NoSuchFileException e)
+            {
+                // deleted while being read
+                this.index.remove(file);
+            }
+            catch (IOException e)
+            {
+                failed(file, e);
+            }
+        }
+
+        try
+        {
+            if (null != parent)
+            {
+                Files.createDirectories(parent);
+            }
+
+            stream = new AtomicFileOutputStream(this.output);
+        }
+        catch (IOException e)
+        {
+            statistics.finish(e);
+            failed(this.output, e);
+
+            return;
+        }
+
+        runner = new MergeRunner(stream, this.options, statistics);
+        runner.write(this.index.entries());
+        merged(runner);
+    }
+}
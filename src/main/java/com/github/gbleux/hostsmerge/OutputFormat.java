@@ -0,0 +1,60 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge;
+
+import java.util.Locale;
+
+/**
+ * Available output formats of a {@link MergeRunner}.
+ * <p>
+ * @author Gordon Bleux
+ */
+public enum OutputFormat
+{
+    /**
+     * <em>/etc/hosts</em> compatible text, sorted by address and hostname
+     */
+    HOSTS,
+    /**
+     * binary {@link com.github.gbleux.hostsmerge.snapshot.HostsSnapshot
+     * snapshot}, sorted by hostname
+     */
+    SNAPSHOT,
+    /**
+     * binary patch which turns the {@link MergeOptions#getBaseline()
+     * baseline} into the hosts output, see {@link PatchApplier}
+     */
+    PATCH;
+
+    /**
+     * lookup a format by its case-insensitive name.
+     * <p>
+     * @param name format name
+     * @return output format
+     * @throws IllegalArgumentException unknown name
+     */
+    public static OutputFormat parse(String name) throws IllegalArgumentException
+    {
+        return valueOf(name.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+    }
+}
@@ -0,0 +1,310 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import com.github.gbleux.hostsmerge.address.Address;
+import com.github.gbleux.hostsmerge.address.HostEntry;
+import com.github.gbleux.hostsmerge.address.HostLineTokenizer;
+import com.github.gbleux.hostsmerge.codec.PatchOperation;
+import com.github.gbleux.hostsmerge.codec.PatchReader;
+import com.github.gbleux.io.DigestChannel;
+
+/**
+ * Applies a patch, written by a {@link MergeRunner} with the
+ * {@link OutputFormat#PATCH patch} format, to the hosts file it was created
+ * for. The file must hold one entry per line in output order, like the
+ * output of a merge without grouping.
+ * <p>
+ * The file is memory-mapped. The line of each operation is located by an
+ * exponential and binary search starting at the previous operation, which
+ * only parses a few lines. The lines in between are copied as they are, so
+ * apart from copying, the work depends on the size of the patch rather than
+ * of the file.
+ * <p>
+ * The copied and replaced bytes are checked against the digest of the file
+ * the patch was created for, the written bytes against the digest of the
+ * merged output. A mismatch fails the patch after the output has been
+ * written, so the output should be discarded, e.g. by not committing an
+ * {@link com.github.gbleux.io.AtomicFileOutputStream}. Instances are not
+ * thread-safe.
+ * <p>
+ * @author Gordon Bleux
+ */
+public class PatchApplier
+{
+    private static final int PROBE_SIZE = 1 << 8;
+
+    private final HostLineTokenizer tokenizer = new HostLineTokenizer();
+    private ByteBuffer data = null;
+    private int limit = 0;
+
+    public PatchApplier()
+    {
+        super();
+    }
+
+    /**
+     * write the patched file.
+     * <p>
+     * @param baseline hosts file the patch was created for
+     * @param patch    patch data, not closed
+     * @param output   target of the patched file, not closed
+     * @return number of applied operations
+     * @throws IOException failed to read or write, or the patch does not
+     *                     apply to the file
+     */
+    public long apply(Path baseline, InputStream patch, WritableByteChannel output) throws IOException
+    {
+        MessageDigest consumed = PatchBuilder.newDigest();
+        DigestChannel target = new DigestChannel(output, PatchBuilder.newDigest());
+        HostsWriter writer = new HostsWriter(target);
+        PatchReader reader = new PatchReader(patch);
+        HostEntry entry = null;
+        boolean found = false;
+        int position = 0;
+        int at = 0;
+        long count = 0L;
+
+        try (FileChannel channel = FileChannel.open(baseline, StandardOpenOption.READ))
+        {
+            if (channel.size() > Integer.MAX_VALUE)
+            {
+                throw new IOException("Hosts file exceeds 2 GiB");
+            }
+
+            this.data = channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size());
+            this.limit = this.data.limit();
+        }
+
+        try
+        {
+            while (true == reader.next())
+            {
+                entry = reader.entry();
+                at = search(position, entry);
+                found = at < this.limit && 0 == compare(at, entry);
+
+                writer.flush();
+                copy(position, at, target, consumed);
+                position = at;
+
+                switch (reader.operation())
+                {
+                    case ADD:
+                        if (true == found)
+                        {
+                            throw new IOException("Patch adds an existing entry: " + entry.toHosts());
+                        }
+
+                        writer.write(entry);
+                        break;
+                    default:
+                        if (false == found)
+                        {
+                            throw new IOException("Patch modifies a missing entry: " + entry.addressValue() + " " + entry.hostname());
+                        }
+
+                        position = nextLine(at);
+                        consumed.update(range(at, position));
+
+                        if (PatchOperation.CHANGE == reader.operation())
+                        {
+                            writer.write(entry);
+                        }
+
+                        break;
+                }
+
+                count++;
+            }
+
+            writer.flush();
+            copy(position, this.limit, target, consumed);
+        }
+        finally
+        {
+            this.data = null;
+        }
+
+        if (false == Arrays.equals(reader.baselineDigest(), consumed.digest()))
+        {
+            throw new IOException("Patch does not apply to " + baseline);
+        }
+        else if (false == Arrays.equals(reader.targetDigest(), target.digest().digest()))
+        {
+            throw new IOException("Patched file differs from the merged output");
+        }
+
+        return count;
+    }
+
+    /**
+     * locate the first line at or after the position whose entry does not
+     * precede the given one. the distance is narrowed down exponentially,
+     * then the remaining range is binary searched.
+     * <p>
+     * @return line start or the end of the file
+     */
+    private int search(int position, HostEntry entry) throws IOException
+    {
+        int low = position;
+        int high = this.limit;
+        int step = PROBE_SIZE;
+        int middle = 0;
+        int start = 0;
+
+        // all lines starting before low precede the entry, none after high
+        while (low < this.limit)
+        {
+            start = lineStart(position, (int) Math.min((long) low + step, this.limit));
+
+            if (start >= this.limit || 0 <= compare(start, entry))
+            {
+                high = start;
+                break;
+            }
+
+            low = nextLine(start);
+            step <<= 1;
+        }
+
+        while (low < high)
+        {
+            middle = low + (high - low) / 2;
+            start = lineStart(position, middle);
+
+            if (start >= high)
+            {
+                high = middle;
+            }
+            else if (0 > compare(start, entry))
+            {
+                low = nextLine(start);
+            }
+            else
+            {
+                high = start;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * compare the entry of the line starting at the given index with an
+     * entry in output order.
+     */
+    private int compare(int start, HostEntry entry) throws IOException
+    {
+        int end = nextLine(start);
+        int order = 0;
+
+        // strip the line terminator
+        while (end > start && ('\n' == this.data.get(end - 1) || '\r' == this.data.get(end - 1)))
+        {
+            end--;
+        }
+
+        if (false == this.tokenizer.tokenize(this.data, start, end))
+        {
+            throw new IOException("Not a host entry at byte " + start);
+        }
+        else if (1 != this.tokenizer.hostnameCount())
+        {
+            throw new IOException("Patched files must hold one hostname per line");
+        }
+
+        order = Address.parse(this.tokenizer.address(this.data)).compareTo(entry.addressValue());
+
+        return 0 == order ? this.tokenizer.hostname(this.data, 0).compareTo(entry.hostname()) : order;
+    }
+
+    /**
+     * @return first line start at or after the index
+     */
+    private int lineStart(int position, int index)
+    {
+        int current = index - 1;
+
+        if (index <= position)
+        {
+            return position;
+        }
+
+        while (current < this.limit && '\n' != this.data.get(current))
+        {
+            current++;
+        }
+
+        return Math.min(current + 1, this.limit);
+    }
+
+    /**
+     * @return start of the line following the one at the index
+     */
+    private int nextLine(int start)
+    {
+        int current = start;
+
+        while (current < this.limit && '\n' != this.data.get(current))
+        {
+            current++;
+        }
+
+        return Math.min(current + 1, this.limit);
+    }
+
+    private ByteBuffer range(int start, int end)
+    {
+        ByteBuffer range = this.data.duplicate();
+
+        // casts retain compatibility with the pre-9 Buffer API
+        ((Buffer) range).limit(end);
+        ((Buffer) range).position(start);
+
+        return range;
+    }
+
+    private void copy(int start, int end, WritableByteChannel target, MessageDigest consumed) throws IOException
+    {
+        ByteBuffer range = range(start, end);
+
+        consumed.update(range(start, end));
+
+        while (true == range.hasRemaining())
+        {
+            target.write(range);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+
+import com.github.gbleux.hostsmerge.address.HostEntry;
+import com.github.gbleux.hostsmerge.codec.EntrySource;
+import com.github.gbleux.hostsmerge.codec.PatchWriter;
+import com.github.gbleux.hostsmerge.sort.EntrySorter;
+import com.github.gbleux.io.DigestChannel;
+
+/**
+ * Compares a baseline with the merged entries in a single pass and writes
+ * the differences as patch. Both sides are read in
+ * {@link EntrySorter#comparator() output order}, entries are identified by
+ * address and hostname.
+ * <p>
+ * Patches describe hosts files with one entry per line. Both sides are
+ * rendered as such files on the way, their digests allow a
+ * {@link PatchApplier} to verify the file it patches and its result.
+ * <p>
+ * @author Gordon Bleux
+ */
+final class PatchBuilder
+{
+    static final String DIGEST = "SHA-256";
+
+    private static final Comparator<HostEntry> ORDER = EntrySorter.comparator();
+
+    private final EntrySource baseline;
+
+    /**
+     * @param baseline entries of the previous output in output order
+     */
+    public PatchBuilder(EntrySource baseline)
+    {
+        super();
+
+        this.baseline = baseline;
+    }
+
+    /**
+     * write the patch turning the baseline into the merged entries.
+     * <p>
+     * @param entries merged entries in output order
+     * @param output  patch stream, not closed
+     * @return number of merged entries
+     * @throws IOException failed to read the entries or to write the patch,
+     *                     or the baseline is not in output order
+     */
+    public long write(EntrySource entries, OutputStream output) throws IOException
+    {
+        PatchWriter patch = new PatchWriter(output);
+        DigestChannel baselineText = new DigestChannel(newDigest());
+        DigestChannel mergedText = new DigestChannel(newDigest());
+        HostsWriter before = new HostsWriter(baselineText);
+        HostsWriter after = new HostsWriter(mergedText);
+        HostEntry previous = null;
+        HostEntry old = this.baseline.read();
+        HostEntry current = entries.read();
+        long count = 0L;
+        int order = 0;
+
+        while (null != old || null != current)
+        {
+            if (null == old)
+            {
+                order = 1;
+            }
+            else if (null == current)
+            {
+                order = -1;
+            }
+            else
+            {
+                order = ORDER.compare(old, current);
+            }
+
+            if (order <= 0)
+            {
+                before.write(old);
+            }
+
+            if (order >= 0)
+            {
+                after.write(current);
+                count++;
+            }
+
+            if (order < 0)
+            {
+                patch.remove(old);
+            }
+            else if (order > 0)
+            {
+                patch.add(current);
+            }
+            else if (old.isEnabled() != current.isEnabled() || false == comment(old).equals(comment(current)))
+            {
+                patch.change(current);
+            }
+
+            if (order <= 0)
+            {
+                previous = old;
+                old = this.baseline.read();
+
+                if (null != old && 0 <= ORDER.compare(previous, old))
+                {
+                    throw new IOException("Baseline is not in output order: " + old.toHosts());
+                }
+            }
+
+            if (order >= 0)
+            {
+                current = entries.read();
+            }
+        }
+
+        before.flush();
+        after.flush();
+        patch.finish(baselineText.digest().digest(), mergedText.digest().digest());
+
+        return count;
+    }
+
+    static MessageDigest newDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance(DIGEST);
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            // every platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String comment(HostEntry entry)
+    {
+        return null == entry.comment() ? "" : entry.comment();
+    }
+}
@@ -0,0 +1,298 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+import com.github.gbleux.hostsmerge.MergeStatistics.Phase;
+import com.github.gbleux.hostsmerge.address.Address;
+import com.github.gbleux.hostsmerge.address.HostEntry;
+import com.github.gbleux.hostsmerge.address.rewrite.AddressRewrite;
+import com.github.gbleux.hostsmerge.table.HostEntries;
+import com.github.gbleux.io.MappedLineScanner;
+
+/**
+ * Merged entries of a set of source files which can be updated one file at a
+ * time. The entries of each file are kept separately and every hostname
+ * records the source it is taken from, so updating or removing a file only
+ * touches the hostnames of that file.
+ * <p>
+ * Sources are ordered by path. Like in a merge of the files in that order,
+ * the entry of the last source declaring a hostname wins.
+ * <p>
+ * Instances are not thread-safe.
+ * <p>
+ * @author Gordon Bleux
+ */
+class SourceIndex
+{
+    private final NavigableMap<Path, Source> sources = new TreeMap<>();
+    private final Map<String, Source> owners = new HashMap<>();
+    private final AddressRewrite rewrite;
+
+    public SourceIndex(AddressRewrite rewrite)
+    {
+        super();
+
+        this.rewrite = rewrite;
+    }
+
+    /**
+     * @return paths of the indexed sources in order
+     */
+    public Set<Path> files()
+    {
+        return Collections.unmodifiableSet(this.sources.keySet());
+    }
+
+    /**
+     * @return number of unique hostnames
+     */
+    public int size()
+    {
+        return this.owners.size();
+    }
+
+    /**
+     * parse a file and replace the entries of a previous version. if the file
+     * cannot be parsed, the previous entries are kept.
+     * <p>
+     * @param file       source file
+     * @param statistics receiver of the counters and timings
+     * @throws IOException failed to read the file
+     */
+    public void update(Path file, MergeStatistics statistics) throws IOException
+    {
+        Source source = parse(file, statistics);
+        MergeStatistics.Span span = statistics.begin(Phase.DEDUP);
+        Source previous = this.sources.get(file);
+        long overridden = 0L;
+
+        for (String hostname : source.entries.keySet())
+        {
+            Source owner = this.owners.get(hostname);
+
+            // only duplicates the previous version did not have are counted
+            if (null != owner && owner != previous && (null == previous || false == previous.entries.containsKey(hostname)))
+            {
+                overridden++;
+            }
+        }
+
+        this.sources.put(file, source);
+
+        if (null != previous)
+        {
+            retract(previous);
+        }
+
+        for (String hostname : source.entries.keySet())
+        {
+            Source owner = this.owners.get(hostname);
+
+            if (null == owner || 0 <= file.compareTo(owner.file))
+            {
+                this.owners.put(hostname, source);
+            }
+        }
+
+        statistics.addOverridden(overridden);
+        span.end();
+    }
+
+    /**
+     * drop the entries of a file.
+     * <p>
+     * @param file source file
+     * @return whether the file was indexed
+     */
+    public boolean remove(Path file)
+    {
+        Source source = this.sources.remove(file);
+
+        if (null == source)
+        {
+            return false;
+        }
+
+        retract(source);
+
+        return true;
+    }
+
+    /**
+     * @return read-only view of the merged entries. the view reflects later
+     *         updates and must not be iterated concurrently with them.
+     */
+    public HostEntries entries()
+    {
+        return new MergedEntries();
+    }
+
+    private Source parse(Path file, MergeStatistics statistics) throws IOException
+    {
+        SourceCollector collector = new SourceCollector(this.rewrite);
+        MergeStatistics.Span span = statistics.begin(Phase.PARSE);
+
+        try (MappedLineScanner scanner = new MappedLineScanner(Collections.singletonList(file)))
+        {
+            scanner.scan(collector);
+            statistics.addBytesIn(scanner.scanned());
+        }
+
+        span.end();
+        statistics.add(collector);
+        statistics.addOverridden(collector.entryCount() - collector.entries.size());
+
+        return new Source(file, collector.entries);
+    }
+
+    /**
+     * hand the hostnames owned by a source which is no longer indexed to the
+     * last remaining source declaring them.
+     */
+    private void retract(Source source)
+    {
+        Source owner = null;
+
+        for (String hostname : source.entries.keySet())
+        {
+            if (source != this.owners.get(hostname))
+            {
+                continue;
+            }
+
+            owner = findOwner(hostname);
+
+            if (null == owner)
+            {
+                this.owners.remove(hostname);
+            }
+            else
+            {
+                this.owners.put(hostname, owner);
+            }
+        }
+    }
+
+    private Source findOwner(String hostname)
+    {
+        for (Source source : this.sources.descendingMap().values())
+        {
+            if (true == source.entries.containsKey(hostname))
+            {
+                return source;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Entries of a single source file.
+     */
+    private static final class Source
+    {
+        private final Path file;
+        private final Map<String, HostEntry> entries;
+
+        public Source(Path file, Map<String, HostEntry> entries)
+        {
+            super();
+
+            this.file = file;
+            this.entries = entries;
+        }
+    }
+
+    /**
+     * Line callback which keeps the last entry for each hostname of a file.
+     */
+    private static final class SourceCollector extends HostLineHandler
+    {
+        private final Map<String, HostEntry> entries = new HashMap<>();
+
+        public SourceCollector(AddressRewrite rewrite)
+        {
+            super(rewrite);
+        }
+
+        @Override
+        protected void host(boolean enabled, Address address, ByteBuffer buffer, int start, int end, String comment)
+        {
+            String hostname = hostname(buffer, start, end);
+
+            this.entries.put(hostname, new HostEntry(enabled, address, hostname, comment));
+        }
+    }
+
+    /**
+     * View of the entries owned by the sources.
+     */
+    private final class MergedEntries implements HostEntries
+    {
+        @Override
+        public int size()
+        {
+            return SourceIndex.this.owners.size();
+        }
+
+        @Override
+        public Iterator<HostEntry> iterator()
+        {
+            final Iterator<Map.Entry<String, Source>> owners = SourceIndex.this.owners.entrySet().iterator();
+
+            return new Iterator<HostEntry>()
+            {
+                @Override
+                public boolean hasNext()
+                {
+                    return owners.hasNext();
+                }
+
+                @Override
+                public HostEntry next()
+                {
+                    Map.Entry<String, Source> owner = owners.next();
+
+                    return owner.getValue().entries.get(owner.getKey());
+                }
+
+                @Override
+                public void remove()
+                {
+                    throw new UnsupportedOperationException("Merged entries are read-only");
+                }
+            };
+        }
+    }
+}
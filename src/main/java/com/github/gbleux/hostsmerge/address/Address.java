@@ -0,0 +1,512 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge.address;
+
+/**
+ * Immutable IP address in numeric form. IPv4 addresses are stored as a
+ * single {@literal int}, IPv6 addresses as two {@literal long}s, so
+ * different notations of the same address (e.g. {@code ::0001} and
+ * {@code ::1}) are equal. {@link #toString()} yields the canonical notation
+ * (dotted decimal, RFC 5952 for IPv6).
+ * <p>
+ * Parsing follows {@code inet_pton}: IPv4 octets must not have leading
+ * zeros and IPv6 addresses may end with a dotted IPv4 address. Any other
+ * text is kept verbatim as an <em>unparsed</em> address, which only equals
+ * the same text.
+ * <p>
+ * Addresses are ordered by family (IPv4, IPv6, unparsed), then numerically
+ * or textually.
+ * <p>
+ * @author Gordon Bleux
+ */
+public final class Address implements Comparable<Address>
+{
+    private static final int IPV4 = 0;
+    private static final int IPV6 = 1;
+    private static final int UNPARSED = 2;
+
+    private final int family;
+    private final long high;
+    private final long low;
+    private final String text;
+    private String canonical;
+
+    private Address(int family, long high, long low, String text)
+    {
+        super();
+
+        this.family = family;
+        this.high = high;
+        this.low = low;
+        this.text = text;
+    }
+
+    /**
+     * @param address IPv4 address in network byte order
+     * @return address instance
+     */
+    public static Address ipv4(int address)
+    {
+        return new Address(IPV4, 0L, address & 0xFFFFFFFFL, null);
+    }
+
+    /**
+     * @param high upper 64 bits in network byte order
+     * @param low  lower 64 bits in network byte order
+     * @return address instance
+     */
+    public static Address ipv6(long high, long low)
+    {
+        return new Address(IPV6, high, low, null);
+    }
+
+    /**
+     * parse the textual notation of an address.
+     * <p>
+     * @param text IPv4 or IPv6 address
+     * @return numeric address or an unparsed address if the text is no valid
+     *         IPv4 or IPv6 notation
+     */
+    public static Address parse(String text)
+    {
+        long ipv4 = parseIPv4(text, 0, text.length());
+
+        if (0 <= ipv4)
+        {
+            return new Address(IPV4, 0L, ipv4, null);
+        }
+
+        if (0 <= text.indexOf(':'))
+        {
+            long[] ipv6 = parseIPv6(text);
+
+            if (null != ipv6)
+            {
+                return new Address(IPV6, ipv6[0], ipv6[1], null);
+            }
+        }
+
+        return new Address(UNPARSED, 0L, 0L, text);
+    }
+
+    public boolean isIPv4()
+    {
+        return IPV4 == this.family;
+    }
+
+    public boolean isIPv6()
+    {
+        return IPV6 == this.family;
+    }
+
+    /**
+     * @return whether the address was parsed into its numeric form
+     */
+    public boolean isNumeric()
+    {
+        return UNPARSED != this.family;
+    }
+
+    /**
+     * @return IPv4 address in network byte order
+     * @throws IllegalStateException no IPv4 address
+     */
+    public int ipv4() throws IllegalStateException
+    {
+        if (false == isIPv4())
+        {
+            throw new IllegalStateException("No IPv4 address: " + this);
+        }
+
+        return (int) this.low;
+    }
+
+    /**
+     * @return upper 64 bits of an IPv6 address, 0 for IPv4 addresses
+     */
+    public long high()
+    {
+        return this.high;
+    }
+
+    /**
+     * @return lower 64 bits of an IPv6 address, the IPv4 address as unsigned
+     *         value for IPv4 addresses
+     */
+    public long low()
+    {
+        return this.low;
+    }
+
+    @Override
+    public int compareTo(Address other)
+    {
+        int result = Integer.compare(this.family, other.family);
+
+        if (0 != result)
+        {
+            return result;
+        }
+        else if (UNPARSED == this.family)
+        {
+            return this.text.compareTo(other.text);
+        }
+
+        result = compareUnsigned(this.high, other.high);
+
+        return 0 != result ? result : compareUnsigned(this.low, other.low);
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        Address other = null;
+
+        if (false == obj instanceof Address)
+        {
+            return false;
+        }
+
+        other = (Address) obj;
+
+        if (UNPARSED == this.family)
+        {
+            return UNPARSED == other.family && this.text.equals(other.text);
+        }
+
+        return this.family == other.family && this.high == other.high && this.low == other.low;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        if (UNPARSED == this.family)
+        {
+            return this.text.hashCode();
+        }
+
+        return (int) (this.high ^ (this.high >>> 32) ^ this.low * 31 ^ (this.low >>> 32)) + this.family;
+    }
+
+    /**
+     * @return canonical notation
+     */
+    @Override
+    public String toString()
+    {
+        String value = this.canonical;
+
+        if (null == value)
+        {
+            switch (this.family)
+            {
+                case IPV4:
+                    value = formatIPv4(this.low, new StringBuilder()).toString();
+                    break;
+                case IPV6:
+                    value = formatIPv6(this.high, this.low);
+                    break;
+                default:
+                    value = this.text;
+                    break;
+            }
+
+            this.canonical = value;
+        }
+
+        return value;
+    }
+
+    /**
+     * @return unsigned 32 bit address or -1 if the text is no dotted decimal
+     *         IPv4 address
+     */
+    private static long parseIPv4(String text, int start, int end)
+    {
+        long address = 0L;
+        int octets = 0;
+        int value = -1;
+        char c = 0;
+
+        for (int i = start; i < end; i++)
+        {
+            c = text.charAt(i);
+
+            if ('0' <= c && c <= '9')
+            {
+                if (0 == value)
+                {
+                    // leading zero
+                    return -1;
+                }
+
+                value = (-1 == value ? 0 : value * 10) + (c - '0');
+
+                if (255 < value)
+                {
+                    return -1;
+                }
+            }
+            else if ('.' == c && -1 != value && 3 > octets)
+            {
+                address = address << 8 | value;
+                octets++;
+                value = -1;
+            }
+            else
+            {
+                return -1;
+            }
+        }
+
+        if (3 != octets || -1 == value)
+        {
+            return -1;
+        }
+
+        return address << 8 | value;
+    }
+
+    /**
+     * @return upper and lower 64 bits or {@literal null} if the text is no
+     *         IPv6 address
+     */
+    private static long[] parseIPv6(String text)
+    {
+        int[] groups = new int[8];
+        int count = 0;
+        int gap = -1;
+        int value = -1;
+        int digits = 0;
+        int start = 0;
+        int end = text.length();
+        int digit = 0;
+        long ipv4 = 0;
+
+        if (text.startsWith("::"))
+        {
+            gap = 0;
+            start = 2;
+
+            if (2 == end)
+            {
+                return new long[2];
+            }
+        }
+        else if (text.startsWith(":"))
+        {
+            return null;
+        }
+
+        for (int i = start; i < end; i++)
+        {
+            char c = text.charAt(i);
+
+            if (':' == c)
+            {
+                if (0 == digits)
+                {
+                    // second colon of a gap
+                    if (-1 != gap || i == start)
+                    {
+                        return null;
+                    }
+
+                    gap = count;
+                    continue;
+                }
+
+                if (8 == count || i + 1 == end)
+                {
+                    return null;
+                }
+
+                groups[count++] = value;
+                value = -1;
+                digits = 0;
+            }
+            else if ('.' == c)
+            {
+                // embedded IPv4 address replaces the last two groups
+                int from = i - digits;
+
+                ipv4 = parseIPv4(text, from, end);
+
+                if (0 > ipv4 || 6 < count)
+                {
+                    return null;
+                }
+
+                groups[count++] = (int) (ipv4 >>> 16);
+                groups[count++] = (int) (ipv4 & 0xFFFF);
+                digits = 0;
+                value = -1;
+                break;
+            }
+            else if (-1 != (digit = Character.digit(c, 16)) && c < 0x80)
+            {
+                if (4 == digits)
+                {
+                    return null;
+                }
+
+                value = (-1 == value ? 0 : value << 4) | digit;
+                digits++;
+            }
+            else
+            {
+                return null;
+            }
+        }
+
+        if (0 < digits)
+        {
+            if (8 == count)
+            {
+                return null;
+            }
+
+            groups[count++] = value;
+        }
+
+        if (-1 == gap ? 8 != count : 8 <= count)
+        {
+            return null;
+        }
+
+        if (-1 != gap)
+        {
+            // expand the gap with zero groups
+            System.arraycopy(groups, gap, groups, 8 - (count - gap), count - gap);
+
+            for (int i = gap; i < 8 - (count - gap); i++)
+            {
+                groups[i] = 0;
+            }
+        }
+
+        return new long[]
+        {
+            join(groups, 0), join(groups, 4)
+        };
+    }
+
+    private static long join(int[] groups, int offset)
+    {
+        long value = 0L;
+
+        for (int i = offset; i < offset + 4; i++)
+        {
+            value = value << 16 | groups[i];
+        }
+
+        return value;
+    }
+
+    private static StringBuilder formatIPv4(long address, StringBuilder sb)
+    {
+        return sb.append(address >>> 24 & 0xFF).append('.')
+                .append(address >>> 16 & 0xFF).append('.')
+                .append(address >>> 8 & 0xFF).append('.')
+                .append(address & 0xFF);
+    }
+
+    /**
+     * format according to RFC 5952: lower case, no leading zeros, longest run
+     * of two or more zero groups compressed and IPv4-mapped addresses in
+     * mixed notation.
+     */
+    private static String formatIPv6(long high, long low)
+    {
+        StringBuilder sb = new StringBuilder(39);
+        int[] groups = new int[8];
+        int groupCount = 8;
+        int bestStart = -1;
+        int bestLength = 1;
+        int runStart = -1;
+
+        for (int i = 0; i < 4; i++)
+        {
+            groups[i] = (int) (high >>> (48 - i * 16) & 0xFFFF);
+            groups[i + 4] = (int) (low >>> (48 - i * 16) & 0xFFFF);
+        }
+
+        if (0L == high && 0xFFFFL == low >>> 32)
+        {
+            // ::ffff:a.b.c.d
+            groupCount = 6;
+        }
+
+        for (int i = 0; i <= groupCount; i++)
+        {
+            if (i < groupCount && 0 == groups[i])
+            {
+                runStart = -1 == runStart ? i : runStart;
+            }
+            else if (-1 != runStart)
+            {
+                if (i - runStart > bestLength)
+                {
+                    bestStart = runStart;
+                    bestLength = i - runStart;
+                }
+
+                runStart = -1;
+            }
+        }
+
+        for (int i = 0; i < groupCount; i++)
+        {
+            if (i == bestStart)
+            {
+                sb.append("::");
+                i += bestLength - 1;
+                continue;
+            }
+
+            if (0 < sb.length() && ':' != sb.charAt(sb.length() - 1))
+            {
+                sb.append(':');
+            }
+
+            sb.append(Integer.toHexString(groups[i]));
+        }
+
+        if (6 == groupCount)
+        {
+            if (':' != sb.charAt(sb.length() - 1))
+            {
+                sb.append(':');
+            }
+
+            formatIPv4(low & 0xFFFFFFFFL, sb);
+        }
+
+        return sb.toString();
+    }
+
+    private static int compareUnsigned(long lhs, long rhs)
+    {
+        return Long.compare(lhs + Long.MIN_VALUE, rhs + Long.MIN_VALUE);
+    }
+}
@@ -29,7 +29,7 @@ package com.github.gbleux.hostsmerge.address;
  */
 public class HostEntry
 {
-    private final String address;
+    private final Address address;
     private final String hostname;
     private final String comment;
     private final boolean enabled;
@@ -38,7 +38,7 @@ public class HostEntry
     {
         super();
 
-        this.address = address;
+        this.address = Address.parse(address);
         this.hostname = hostname;
         this.comment = "";
         this.enabled = true;
@@ -48,7 +48,7 @@ public class HostEntry
     {
         super();
 
-        this.address = address;
+        this.address = Address.parse(address);
         this.hostname = hostname;
         this.comment = "";
         this.enabled = enabled;
@@ -58,7 +58,7 @@ public class HostEntry
     {
         super();
 
-        this.address = address;
+        this.address = Address.parse(address);
         this.hostname = hostname;
         this.comment = comment;
         this.enabled = true;
@@ -68,13 +68,31 @@ public class HostEntry
     {
         super();
 
+        this.address = Address.parse(address);
+        this.hostname = hostname;
+        this.comment = comment;
+        this.enabled = enabled;
+    }
+
+    public HostEntry(boolean enabled, Address address, String hostname, String comment)
+    {
+        super();
+
         this.address = address;
         this.hostname = hostname;
         this.comment = comment;
         this.enabled = enabled;
     }
 
+    /**
+     * @return canonical notation of the address
+     */
     public String address()
+    {
+        return address.toString();
+    }
+
+    public Address addressValue()
     {
         return address;
     }
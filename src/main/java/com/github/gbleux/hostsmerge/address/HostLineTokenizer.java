@@ -0,0 +1,517 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge.address;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Single pass tokenizer for UTF-8 encoded <em>/etc/hosts</em> lines. A line is
+ * accepted if it matches the (sloppy) pattern
+ * <pre>^#?([0-9:\.]+)\s+([a-z0-9\-\.\_\t ]+)(#.*)?$</pre>
+ * evaluated case-insensitively on the decoded line. Tokenizing a line only
+ * records byte offsets within the buffer; strings are created on demand by
+ * {@link #address(ByteBuffer)}, {@link #hostname(ByteBuffer, int)} and
+ * {@link #comment(ByteBuffer)}.
+ * <p>
+ * Instances are not thread-safe and hold the state of the last tokenized
+ * line.
+ * <p>
+ * @author Gordon Bleux
+ */
+public class HostLineTokenizer
+{
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+
+    private static final byte ADDRESS = 1;
+    private static final byte SPACE = 2;
+    private static final byte NAME = 4;
+    private static final byte[] CLASSES = newClasses();
+
+    private final CachedString addressCache = new CachedString();
+    private final CachedString commentCache = new CachedString();
+    private ByteBuffer source = null;
+    private ByteBuffer view = null;
+    private byte[] scratch = new byte[256];
+    private int[] names = new int[32];
+    private int count = 0;
+    private boolean disabled = false;
+    private int addressStart = 0;
+    private int addressEnd = 0;
+    private int commentStart = 0;
+    private int commentEnd = 0;
+
+    public HostLineTokenizer()
+    {
+        super();
+    }
+
+    /**
+     * split the line into its components.
+     * <p>
+     * @param buffer line data
+     * @param start  absolute index of the first byte of the line
+     * @param end    absolute index after the last byte of the line (excluding
+     *               the line terminator)
+     * @return {@literal true} if the line declares at least one hostname
+     */
+    public boolean tokenize(ByteBuffer buffer, int start, int end)
+    {
+        int index = start;
+        int token = -1;
+        int length = 0;
+        byte data = 0;
+
+        this.count = 0;
+        this.disabled = index < end && '#' == buffer.get(index);
+        this.commentStart = 0;
+        this.commentEnd = 0;
+
+        if (true == this.disabled)
+        {
+            index++;
+        }
+
+        // address
+        this.addressStart = index;
+
+        while (index < end && is(buffer.get(index), ADDRESS))
+        {
+            index++;
+        }
+
+        this.addressEnd = index;
+
+        if (this.addressStart == this.addressEnd || index >= end || false == is(buffer.get(index), SPACE))
+        {
+            return false;
+        }
+
+        // separator
+        while (index < end && is(buffer.get(index), SPACE))
+        {
+            index++;
+        }
+
+        // hostnames, separated by blanks
+        while (index < end)
+        {
+            data = buffer.get(index);
+
+            if (' ' == data || '\t' == data)
+            {
+                if (token >= 0)
+                {
+                    addName(token, index);
+                    token = -1;
+                }
+
+                index++;
+            }
+            else if (is(data, NAME) || 0 != (length = letter(buffer, index, end)))
+            {
+                if (token < 0)
+                {
+                    token = index;
+                }
+
+                index += 0 == length ? 1 : length;
+                length = 0;
+            }
+            else
+            {
+                break;
+            }
+        }
+
+        if (token >= 0)
+        {
+            addName(token, index);
+        }
+
+        if (0 == this.count)
+        {
+            return false;
+        }
+        else if (index == end)
+        {
+            return true;
+        }
+        else if ('#' == buffer.get(index))
+        {
+            return tokenizeComment(buffer, index + 1, end);
+        }
+        else
+        {
+            // only a line terminator at the very end is acceptable
+            return index + terminator(buffer, index, end) == end;
+        }
+    }
+
+    /**
+     * @return whether the line is commented out
+     */
+    public boolean isDisabled()
+    {
+        return this.disabled;
+    }
+
+    /**
+     * @return absolute index of the first address byte
+     */
+    public int addressStart()
+    {
+        return this.addressStart;
+    }
+
+    /**
+     * @return absolute index after the last address byte
+     */
+    public int addressEnd()
+    {
+        return this.addressEnd;
+    }
+
+    /**
+     * @return number of hostnames on the line
+     */
+    public int hostnameCount()
+    {
+        return this.count;
+    }
+
+    /**
+     * @param index hostname index
+     * @return absolute index of the first byte of the hostname
+     */
+    public int hostnameStart(int index)
+    {
+        return this.names[index * 2];
+    }
+
+    /**
+     * @param index hostname index
+     * @return absolute index after the last byte of the hostname
+     */
+    public int hostnameEnd(int index)
+    {
+        return this.names[index * 2 + 1];
+    }
+
+    /**
+     * @return absolute index of the first byte of the trimmed comment
+     */
+    public int commentStart()
+    {
+        return this.commentStart;
+    }
+
+    /**
+     * @return absolute index after the last byte of the trimmed comment. equal
+     *         to {@link #commentStart()} if there is no comment.
+     */
+    public int commentEnd()
+    {
+        return this.commentEnd;
+    }
+
+    /**
+     * decode the address of the last line. consecutive lines using the same
+     * address share a single instance.
+     * <p>
+     * @param buffer line data passed to {@link #tokenize(ByteBuffer, int, int)}
+     * @return address
+     */
+    public String address(ByteBuffer buffer)
+    {
+        return this.addressCache.get(this, buffer, this.addressStart, this.addressEnd);
+    }
+
+    /**
+     * decode a hostname of the last line.
+     * <p>
+     * @param buffer line data passed to {@link #tokenize(ByteBuffer, int, int)}
+     * @param index  hostname index
+     * @return hostname
+     */
+    public String hostname(ByteBuffer buffer, int index)
+    {
+        return decode(buffer, hostnameStart(index), hostnameEnd(index));
+    }
+
+    /**
+     * decode the comment of the last line. consecutive lines using the same
+     * comment share a single instance.
+     * <p>
+     * @param buffer line data passed to {@link #tokenize(ByteBuffer, int, int)}
+     * @return trimmed comment or an empty string
+     */
+    public String comment(ByteBuffer buffer)
+    {
+        return this.commentCache.get(this, buffer, this.commentStart, this.commentEnd);
+    }
+
+    /**
+     * the comment extends to the end of the line, or up to a unicode line
+     * terminator which ends the line.
+     */
+    private boolean tokenizeComment(ByteBuffer buffer, int start, int end)
+    {
+        int index = start;
+        int length = 0;
+        byte data = 0;
+
+        for (; index < end; index++)
+        {
+            data = buffer.get(index);
+
+            if (((byte) 0xC2 == data || (byte) 0xE2 == data) && 0 != (length = terminator(buffer, index, end)))
+            {
+                if (index + length != end)
+                {
+                    return false;
+                }
+
+                break;
+            }
+        }
+
+        // trim
+        this.commentStart = start;
+        this.commentEnd = index;
+
+        while (this.commentStart < this.commentEnd && isBlank(buffer.get(this.commentStart)))
+        {
+            this.commentStart++;
+        }
+
+        while (this.commentEnd > this.commentStart && isBlank(buffer.get(this.commentEnd - 1)))
+        {
+            this.commentEnd--;
+        }
+
+        return true;
+    }
+
+    private void addName(int start, int end)
+    {
+        if (this.names.length < (this.count + 1) * 2)
+        {
+            this.names = Arrays.copyOf(this.names, this.names.length * 2);
+        }
+
+        this.names[this.count * 2] = start;
+        this.names[this.count * 2 + 1] = end;
+        this.count++;
+    }
+
+    /**
+     * decode an arbitrary byte range, e.g. a hostname span.
+     * <p>
+     * @param buffer line data
+     * @param start  absolute index of the first byte
+     * @param end    absolute index after the last byte
+     * @return decoded string
+     */
+    public String decode(ByteBuffer buffer, int start, int end)
+    {
+        int length = end - start;
+
+        if (true == buffer.hasArray())
+        {
+            return new String(buffer.array(), buffer.arrayOffset() + start, length, CHARSET);
+        }
+
+        if (this.scratch.length < length)
+        {
+            this.scratch = new byte[Math.max(length, this.scratch.length * 2)];
+        }
+
+        copy(buffer, start, end, this.scratch);
+
+        return new String(this.scratch, 0, length, CHARSET);
+    }
+
+    /**
+     * bulk copy a range of the buffer into the target array. a duplicate of
+     * the buffer is reused as long as the same buffer is passed in.
+     */
+    private void copy(ByteBuffer buffer, int start, int end, byte[] target)
+    {
+        if (buffer != this.source)
+        {
+            this.source = buffer;
+            this.view = buffer.duplicate();
+        }
+
+        // cast retains compatibility with the pre-9 Buffer API
+        ((Buffer) this.view).limit(end);
+        ((Buffer) this.view).position(start);
+        this.view.get(target, 0, end - start);
+    }
+
+    private static boolean is(byte data, byte type)
+    {
+        return data >= 0 && 0 != (CLASSES[data] & type);
+    }
+
+    private static boolean isBlank(byte data)
+    {
+        return data >= 0 && data <= ' ';
+    }
+
+    /**
+     * non-ASCII characters which case-insensitively match {@code [a-z]}:
+     * U+0130, U+0131, U+017F and U+212A.
+     * <p>
+     * @return number of bytes of the character or zero
+     */
+    private static int letter(ByteBuffer buffer, int index, int end)
+    {
+        byte data = buffer.get(index);
+        byte next = 0;
+
+        if (index + 1 >= end)
+        {
+            return 0;
+        }
+
+        next = buffer.get(index + 1);
+
+        if ((byte) 0xC4 == data && ((byte) 0xB0 == next || (byte) 0xB1 == next))
+        {
+            return 2;
+        }
+        else if ((byte) 0xC5 == data && (byte) 0xBF == next)
+        {
+            return 2;
+        }
+        else if ((byte) 0xE2 == data && (byte) 0x84 == next && index + 2 < end && (byte) 0xAA == buffer.get(index + 2))
+        {
+            return 3;
+        }
+
+        return 0;
+    }
+
+    /**
+     * line terminators which might remain within a line: U+0085, U+2028 and
+     * U+2029.
+     * <p>
+     * @return number of bytes of the terminator or zero
+     */
+    private static int terminator(ByteBuffer buffer, int index, int end)
+    {
+        byte data = buffer.get(index);
+        byte last = 0;
+
+        if ((byte) 0xC2 == data && index + 1 < end && (byte) 0x85 == buffer.get(index + 1))
+        {
+            return 2;
+        }
+        else if ((byte) 0xE2 == data && index + 2 < end && (byte) 0x80 == buffer.get(index + 1))
+        {
+            last = buffer.get(index + 2);
+
+            return (byte) 0xA8 == last || (byte) 0xA9 == last ? 3 : 0;
+        }
+
+        return 0;
+    }
+
+    private static byte[] newClasses()
+    {
+        byte[] classes = new byte[128];
+
+        for (char c = '0'; c <= '9'; c++)
+        {
+            classes[c] |= ADDRESS | NAME;
+        }
+
+        for (char c = 'a'; c <= 'z'; c++)
+        {
+            classes[c] |= NAME;
+            classes[Character.toUpperCase(c)] |= NAME;
+        }
+
+        classes[':'] |= ADDRESS;
+        classes['.'] |= ADDRESS | NAME;
+        classes['-'] |= NAME;
+        classes['_'] |= NAME;
+        classes['\t'] |= SPACE | NAME;
+        classes[' '] |= SPACE | NAME;
+        classes['\n'] |= SPACE;
+        classes[0x0B] |= SPACE;
+        classes['\f'] |= SPACE;
+        classes['\r'] |= SPACE;
+
+        return classes;
+    }
+
+    /**
+     * single entry string cache keyed by the encoded bytes
+     */
+    private static final class CachedString
+    {
+        private byte[] bytes = new byte[64];
+        private int length = -1;
+        private String value = null;
+
+        public String get(HostLineTokenizer owner, ByteBuffer buffer, int start, int end)
+        {
+            int size = end - start;
+
+            if (size == this.length && true == matches(buffer, start))
+            {
+                return this.value;
+            }
+
+            if (this.bytes.length < size)
+            {
+                this.bytes = new byte[Math.max(size, this.bytes.length * 2)];
+            }
+
+            owner.copy(buffer, start, end, this.bytes);
+
+            this.length = size;
+            this.value = new String(this.bytes, 0, size, CHARSET);
+
+            return this.value;
+        }
+
+        private boolean matches(ByteBuffer buffer, int start)
+        {
+            for (int i = 0; i < this.length; i++)
+            {
+                if (this.bytes[i] != buffer.get(start + i))
+                {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+}
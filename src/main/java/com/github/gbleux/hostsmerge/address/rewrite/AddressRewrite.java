@@ -22,6 +22,8 @@
  */
 package com.github.gbleux.hostsmerge.address.rewrite;
 
+import com.github.gbleux.hostsmerge.address.Address;
+
 /**
  * Internet address rewriter
  * <p>
@@ -41,13 +43,36 @@ public interface AddressRewrite
      * notation for default interface
      */
     public static final String DEFAULT = "0.0.0.0";
+    /**
+     * IPv4 loopback address
+     */
+    public static final Address LOOPBACK4_ADDRESS = Address.parse(LOOPBACK4);
+    /**
+     * IPv6 loopback address
+     */
+    public static final Address LOOPBACK6_ADDRESS = Address.parse(LOOPBACK6);
+    /**
+     * default interface address
+     */
+    public static final Address DEFAULT_ADDRESS = Address.parse(DEFAULT);
 
     /**
      * rewrite the given address if appropriate, otherwise return the value
-     * unchanged.
+     * unchanged. addresses are compared numerically, so any notation of an
+     * address is recognized.
+     * <p>
+     * @param address rewrite IPv4 or IPv6 address
+     * @return rewritten address
+     */
+    public Address rewrite(Address address);
+
+    /**
+     * rewrite the given address notation if appropriate, otherwise return
+     * the value unchanged.
      * <p>
      * @param address rewrite IPv4 or IPv6 address
      * @return rewritten address
+     * @see #rewrite(Address)
      */
     public String rewrite(String address);
 }
@@ -22,6 +22,8 @@
  */
 package com.github.gbleux.hostsmerge.address.rewrite;
 
+import com.github.gbleux.hostsmerge.address.Address;
+
 /**
  * Rewrite addresses to the IPv4 default address notation.
  * <p>
@@ -46,13 +48,22 @@ public class DefaultAddressRewrite implements AddressRewrite
     }
 
     @Override
-    public String rewrite(String address)
+    public Address rewrite(Address address)
     {
-        if (this.all || LOOPBACK4.equals(address) || LOOPBACK6.equals(address))
+        if (this.all || LOOPBACK4_ADDRESS.equals(address) || LOOPBACK6_ADDRESS.equals(address))
         {
-            return DEFAULT;
+            return DEFAULT_ADDRESS;
         }
 
         return address;
     }
+
+    @Override
+    public String rewrite(String address)
+    {
+        Address parsed = Address.parse(address);
+        Address rewritten = rewrite(parsed);
+
+        return rewritten == parsed ? address : rewritten.toString();
+    }
 }
@@ -22,6 +22,8 @@
  */
 package com.github.gbleux.hostsmerge.address.rewrite;
 
+import com.github.gbleux.hostsmerge.address.Address;
+
 /**
  * Rewrite addresses to the IPv4 or IPv6 loopback notation.
  * <p>
@@ -57,13 +59,22 @@ public class LoopbackAddressRewrite implements AddressRewrite
     }
 
     @Override
-    public String rewrite(String address)
+    public Address rewrite(Address address)
     {
-        if (this.all || LOOPBACK4.equals(address) || LOOPBACK6.equals(address) || DEFAULT.equals(address))
+        if (this.all || LOOPBACK4_ADDRESS.equals(address) || LOOPBACK6_ADDRESS.equals(address) || DEFAULT_ADDRESS.equals(address))
         {
-            return this.ipv6 ? LOOPBACK6 : LOOPBACK4;
+            return this.ipv6 ? LOOPBACK6_ADDRESS : LOOPBACK4_ADDRESS;
         }
 
         return address;
     }
+
+    @Override
+    public String rewrite(String address)
+    {
+        Address parsed = Address.parse(address);
+        Address rewritten = rewrite(parsed);
+
+        return rewritten == parsed ? address : rewritten.toString();
+    }
 }
@@ -22,6 +22,8 @@
  */
 package com.github.gbleux.hostsmerge.address.rewrite;
 
+import com.github.gbleux.hostsmerge.address.Address;
+
 /**
  * Dummy rewrite implementation. Leaves the input address unchanged.
  * <p>
@@ -29,6 +31,18 @@ package com.github.gbleux.hostsmerge.address.rewrite;
  */
 public class NoAddressRewrite implements AddressRewrite
 {
+    /**
+     * Plain passthrough implementation.
+     * <p>
+     * @param address input address
+     * @return input address
+     */
+    @Override
+    public Address rewrite(Address address)
+    {
+        return address;
+    }
+
     /**
      * Plain passthrough implementation.
      * <p>
@@ -0,0 +1,629 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UTFDataFormatException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.github.gbleux.hostsmerge.address.HostEntry;
+import com.github.gbleux.hostsmerge.codec.EntryReader;
+import com.github.gbleux.hostsmerge.codec.EntrySource;
+import com.github.gbleux.hostsmerge.codec.EntryWriter;
+
+/**
+ * Persistent cache of parsed source files. Each source is stored as one file
+ * holding the fingerprint of the source (size, modification time and
+ * SHA-256 digest of its content) followed by its entries in the
+ * {@link EntryWriter binary entry format}.
+ * <p>
+ * A cached source is valid if size and modification time are unchanged. If
+ * only the modification time differs, the content digest decides and the
+ * stored modification time is refreshed, so rewriting a file with the same
+ * content does not invalidate it.
+ * <p>
+ * Additionally the merged output of the most recent run is kept along with a
+ * digest of the source fingerprints and the output options. If neither
+ * changed, the output is reused as is.
+ * <p>
+ * Cache files are replaced atomically. Instances are not thread-safe.
+ * <p>
+ * @author Gordon Bleux
+ */
+public class MergeCache
+{
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+
+    private static final int MAGIC = 0x484D4343;
+    private static final int OUTPUT_MAGIC = 0x484D434F;
+    private static final int VERSION = 1;
+    private static final int DIGEST_LENGTH = 32;
+    private static final long MODIFIED_OFFSET = 16L;
+    private static final String SUFFIX = ".entries";
+    private static final String OUTPUT = "output";
+
+    private final Map<Path, Fingerprint> pending = new HashMap<>();
+    private final Path directory;
+    private Fingerprint current = null;
+
+    /**
+     * @param directory cache location, created if missing
+     * @throws IOException failed to create the directory
+     */
+    public MergeCache(Path directory) throws IOException
+    {
+        super();
+
+        this.directory = Files.createDirectories(directory);
+    }
+
+    /**
+     * @return cache location
+     */
+    public Path directory()
+    {
+        return this.directory;
+    }
+
+    /**
+     * open the cached entries of a source file. if the cache is missing or
+     * stale, the current fingerprint of the source is remembered for a
+     * subsequent {@link #store(Path, Iterable) store}.
+     * <p>
+     * @param source source file
+     * @return cached entries in stored order or {@literal null} if the source
+     *         needs to be parsed
+     * @throws IOException failed to inspect the source or the cache
+     */
+    public EntrySource open(Path source) throws IOException
+    {
+        InputStream input = null;
+
+        if (true == this.pending.containsKey(source) || null == (input = lookup(source)))
+        {
+            return null;
+        }
+
+        try
+        {
+            return new EntryReader(input);
+        }
+        catch (IOException e)
+        {
+            input.close();
+
+            throw e;
+        }
+    }
+
+    /**
+     * compute the digest identifying the merged output of the given sources.
+     * stale sources are fingerprinted for a subsequent
+     * {@link #store(Path, Iterable) store}.
+     * <p>
+     * @param sources source files in merge order
+     * @param options description of all options affecting the output
+     * @return digest of the source contents and the options
+     * @throws IOException failed to inspect a source or the cache
+     */
+    public byte[] digest(List<Path> sources, String options) throws IOException
+    {
+        MessageDigest digest = Fingerprint.newDigest("SHA-256");
+        InputStream input = null;
+
+        for (Path source : sources)
+        {
+            if (false == this.pending.containsKey(source))
+            {
+                input = lookup(source);
+
+                if (null != input)
+                {
+                    // valid entry: the stored digest is current
+                    digest.update(this.current.digest);
+                    input.close();
+                    continue;
+                }
+            }
+
+            digest.update(this.pending.get(source).digest);
+        }
+
+        digest.update(options.getBytes(CHARSET));
+
+        return digest.digest();
+    }
+
+    /**
+     * open the merged output stored for the given digest.
+     * <p>
+     * @param digest {@link #digest(List, String) digest} of the merge
+     * @return output data or {@literal null} if not cached
+     * @throws IOException failed to read the cache
+     */
+    public InputStream openOutput(byte[] digest) throws IOException
+    {
+        InputStream input = null;
+        DataInputStream data = null;
+        byte[] stored = new byte[DIGEST_LENGTH];
+
+        try
+        {
+            input = Files.newInputStream(this.directory.resolve(OUTPUT));
+            data = new DataInputStream(input);
+
+            if (OUTPUT_MAGIC == data.readInt() && VERSION == data.readInt())
+            {
+                data.readFully(stored);
+
+                if (true == Arrays.equals(digest, stored))
+                {
+                    return input;
+                }
+            }
+
+            input.close();
+        }
+        catch (NoSuchFileException e)
+        {
+            // not cached yet
+        }
+        catch (EOFException e)
+        {
+            // truncated, replaced by the next stored output
+            input.close();
+        }
+        catch (IOException e)
+        {
+            if (null != input)
+            {
+                input.close();
+            }
+
+            throw e;
+        }
+
+        return null;
+    }
+
+    /**
+     * create a stream storing the merged output for the given digest. the
+     * previously stored output is replaced once the stream is
+     * {@link Output#commit() committed}, closing an uncommitted stream
+     * discards the data.
+     * <p>
+     * @param digest {@link #digest(List, String) digest} of the merge
+     * @return output stream
+     * @throws IOException failed to create the cache file
+     */
+    public Output storeOutput(byte[] digest) throws IOException
+    {
+        Path temp = Files.createTempFile(this.directory, OUTPUT, ".tmp");
+        Output output = new Output(temp, this.directory.resolve(OUTPUT));
+
+        try
+        {
+            output.header(digest);
+        }
+        catch (IOException e)
+        {
+            output.close();
+
+            throw e;
+        }
+
+        return output;
+    }
+
+    /**
+     * store the parsed entries of a source file. the fingerprint taken by the
+     * preceding {@link #open(Path) lookup} is used, so changes made while
+     * parsing invalidate the entry on the next lookup.
+     * <p>
+     * @param source  source file
+     * @param entries entries of the source
+     * @throws IOException failed to write the cache file
+     */
+    public void store(Path source, Iterable<HostEntry> entries) throws IOException
+    {
+        Fingerprint fingerprint = this.pending.remove(source);
+        Path file = cacheFile(source);
+        Path temp = null;
+
+        if (null == fingerprint)
+        {
+            fingerprint = Fingerprint.stat(source);
+            fingerprint.digest = Fingerprint.digest(source);
+        }
+
+        temp = Files.createTempFile(this.directory, file.getFileName().toString(), ".tmp");
+
+        try
+        {
+            try (OutputStream output = Files.newOutputStream(temp);
+                 EntryWriter writer = writeHeader(output, source, fingerprint))
+            {
+                for (HostEntry entry : entries)
+                {
+                    writer.write(entry);
+                }
+            }
+
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally
+        {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * delete the cache files of sources which do not exist anymore.
+     * <p>
+     * @return number of deleted cache files
+     * @throws IOException failed to list or delete cache files
+     */
+    public int prune() throws IOException
+    {
+        Fingerprint header = null;
+        int deleted = 0;
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory, "*" + SUFFIX))
+        {
+            for (Path file : stream)
+            {
+                try (InputStream input = Files.newInputStream(file))
+                {
+                    header = readHeader(input, null);
+                }
+
+                if (null == header || false == Files.exists(header.source))
+                {
+                    Files.deleteIfExists(file);
+                    deleted++;
+                }
+            }
+        }
+
+        return deleted;
+    }
+
+    /**
+     * @return cache file of the source, named after the digest of its
+     *         absolute path
+     */
+    private Path cacheFile(Path source)
+    {
+        byte[] digest = Fingerprint.newDigest("SHA-1").digest(key(source).getBytes(CHARSET));
+        StringBuilder name = new StringBuilder(digest.length * 2 + SUFFIX.length());
+
+        for (byte b : digest)
+        {
+            name.append(Character.forDigit((b >> 4) & 0xF, 16));
+            name.append(Character.forDigit(b & 0xF, 16));
+        }
+
+        return this.directory.resolve(name.append(SUFFIX).toString());
+    }
+
+    /**
+     * validate the cache entry of a source. on success the stored fingerprint
+     * is kept as {@link #current}, otherwise the current fingerprint of the
+     * source is kept as pending.
+     * <p>
+     * @return cache data positioned at the entries or {@literal null}
+     */
+    private InputStream lookup(Path source) throws IOException
+    {
+        Path file = cacheFile(source);
+        Fingerprint current = Fingerprint.stat(source);
+        Fingerprint cached = null;
+        InputStream input = null;
+
+        try
+        {
+            input = Files.newInputStream(file);
+            cached = readHeader(input, source);
+
+            if (null != cached && cached.size == current.size)
+            {
+                if (cached.modified != current.modified)
+                {
+                    current.digest = Fingerprint.digest(source);
+
+                    if (true == Arrays.equals(cached.digest, current.digest))
+                    {
+                        // same content: avoid hashing the source again
+                        refreshModified(file, current.modified);
+                        cached.modified = current.modified;
+                    }
+                }
+
+                if (cached.modified == current.modified)
+                {
+                    this.current = cached;
+
+                    return input;
+                }
+            }
+
+            input.close();
+
+            if (null == cached)
+            {
+                // unusable, the entry is written anew once the source is parsed
+                Files.deleteIfExists(file);
+            }
+        }
+        catch (NoSuchFileException e)
+        {
+            // not cached yet
+        }
+        catch (IOException e)
+        {
+            if (null != input)
+            {
+                input.close();
+            }
+
+            throw e;
+        }
+
+        if (null == current.digest)
+        {
+            current.digest = Fingerprint.digest(source);
+        }
+
+        this.pending.put(source, current);
+
+        return null;
+    }
+
+    private static String key(Path source)
+    {
+        return source.toAbsolutePath().normalize().toString();
+    }
+
+    /**
+     * @param source expected source or {@literal null} to accept any
+     * @return stored fingerprint or {@literal null} if the file belongs to
+     *         another source, uses another format or is truncated
+     */
+    private static Fingerprint readHeader(InputStream input, Path source) throws IOException
+    {
+        DataInputStream data = new DataInputStream(input);
+        Fingerprint fingerprint = null;
+        String path = null;
+
+        try
+        {
+            if (MAGIC != data.readInt() || VERSION != data.readInt())
+            {
+                return null;
+            }
+
+            fingerprint = new Fingerprint(data.readLong(), data.readLong());
+            fingerprint.digest = new byte[DIGEST_LENGTH];
+            data.readFully(fingerprint.digest);
+            path = data.readUTF();
+        }
+        catch (EOFException | UTFDataFormatException e)
+        {
+            return null;
+        }
+
+        if (null != source && false == key(source).equals(path))
+        {
+            return null;
+        }
+
+        fingerprint.source = Paths.get(path);
+
+        return fingerprint;
+    }
+
+    private static EntryWriter writeHeader(OutputStream output, Path source, Fingerprint fingerprint) throws IOException
+    {
+        ByteArrayOutputStream header = new ByteArrayOutputStream(128);
+        DataOutputStream data = new DataOutputStream(header);
+
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeLong(fingerprint.size);
+        data.writeLong(fingerprint.modified);
+        data.write(fingerprint.digest);
+        data.writeUTF(key(source));
+        header.writeTo(output);
+
+        return new EntryWriter(output);
+    }
+
+    private static void refreshModified(Path file, long modified) throws IOException
+    {
+        ByteBuffer value = ByteBuffer.allocate(8);
+
+        value.putLong(0, modified);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE))
+        {
+            channel.write(value, MODIFIED_OFFSET);
+        }
+    }
+
+    /**
+     * Merged output stream, which replaces the cached output on commit.
+     */
+    public static final class Output extends FilterOutputStream
+    {
+        private final Path temp;
+        private final Path target;
+        private boolean closed = false;
+        private boolean committed = false;
+
+        private Output(Path temp, Path target) throws IOException
+        {
+            super(Files.newOutputStream(temp));
+
+            this.temp = temp;
+            this.target = target;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException
+        {
+            this.out.write(b, off, len);
+        }
+
+        /**
+         * close the stream and replace the cached output.
+         * <p>
+         * @throws IOException failed to write or replace the cache file
+         */
+        public void commit() throws IOException
+        {
+            closeStream();
+            Files.move(this.temp, this.target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            this.committed = true;
+        }
+
+        /**
+         * close the stream. uncommitted data is discarded.
+         */
+        @Override
+        public void close() throws IOException
+        {
+            try
+            {
+                closeStream();
+            }
+            finally
+            {
+                if (false == this.committed)
+                {
+                    Files.deleteIfExists(this.temp);
+                }
+            }
+        }
+
+        private void closeStream() throws IOException
+        {
+            if (false == this.closed)
+            {
+                this.closed = true;
+                super.close();
+            }
+        }
+
+        private void header(byte[] digest) throws IOException
+        {
+            DataOutputStream data = new DataOutputStream(this.out);
+
+            data.writeInt(OUTPUT_MAGIC);
+            data.writeInt(VERSION);
+            data.write(digest);
+            data.flush();
+        }
+    }
+
+    /**
+     * Identity of a source file's content.
+     */
+    private static final class Fingerprint
+    {
+        private final long size;
+        private long modified;
+        private byte[] digest = null;
+        private Path source = null;
+
+        public Fingerprint(long size, long modified)
+        {
+            super();
+
+            this.size = size;
+            this.modified = modified;
+        }
+
+        public static Fingerprint stat(Path source) throws IOException
+        {
+            BasicFileAttributes attributes = Files.readAttributes(source, BasicFileAttributes.class);
+
+            return new Fingerprint(attributes.size(), attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS));
+        }
+
+        public static byte[] digest(Path source) throws IOException
+        {
+            MessageDigest digest = newDigest("SHA-256");
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+
+            try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ))
+            {
+                while (channel.read(buffer) >= 0)
+                {
+                    ((Buffer) buffer).flip();
+                    digest.update(buffer);
+                    ((Buffer) buffer).clear();
+                }
+            }
+
+            return digest.digest();
+        }
+
+        public static MessageDigest newDigest(String algorithm)
+        {
+            try
+            {
+                return MessageDigest.getInstance(algorithm);
+            }
+            catch (NoSuchAlgorithmException e)
+            {
+                // every platform is required to support SHA-1 and SHA-256
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
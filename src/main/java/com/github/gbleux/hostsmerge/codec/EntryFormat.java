@@ -0,0 +1,60 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge.codec;
+
+/**
+ * Constants of the binary entry format shared by {@link EntryWriter} and
+ * {@link EntryReader}.
+ * <p>
+ * A file starts with {@link #MAGIC} and {@link #VERSION} (both 32 bit,
+ * big-endian) followed by the entries and the {@link #END} marker. Every
+ * entry starts with a flag byte, followed by the address unless it equals
+ * the address of the previous entry, the hostname and the comment unless it
+ * is empty or equals the previous comment. Lengths are unsigned varints,
+ * strings are UTF-8 encoded.
+ * <p>
+ * @author Gordon Bleux
+ */
+final class EntryFormat
+{
+    /**
+     * "HMRG"
+     */
+    static final int MAGIC = 0x484D5247;
+    static final int VERSION = 1;
+    static final int END = 0xFF;
+
+    static final int ENABLED = 0x01;
+    static final int FAMILY_MASK = 0x06;
+    static final int IPV4 = 0x00;
+    static final int IPV6 = 0x02;
+    static final int TEXT = 0x04;
+    static final int SAME_ADDRESS = 0x08;
+    static final int COMMENT = 0x10;
+    static final int SAME_COMMENT = 0x20;
+
+    private EntryFormat()
+    {
+        super();
+    }
+}
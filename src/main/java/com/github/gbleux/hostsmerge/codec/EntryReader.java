@@ -0,0 +1,174 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge.codec;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+import com.github.gbleux.hostsmerge.address.Address;
+import com.github.gbleux.hostsmerge.address.HostEntry;
+
+/**
+ * Decodes host entries written by {@link EntryWriter}. Consecutive entries
+ * sharing their address or comment share the same instance.
+ * <p>
+ * @author Gordon Bleux
+ */
+public class EntryReader implements EntrySource
+{
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+
+    private final DataInputStream input;
+    private byte[] scratch = new byte[256];
+    private Address address = null;
+    private String comment = "";
+    private boolean finished = false;
+
+    /**
+     * @param input source stream, closed along with the reader
+     * @throws IOException failed to read the header or unsupported format
+     */
+    public EntryReader(InputStream input) throws IOException
+    {
+        super();
+
+        this.input = new DataInputStream(new BufferedInputStream(input, 1 << 16));
+
+        try
+        {
+            if (EntryFormat.MAGIC != this.input.readInt() || EntryFormat.VERSION != this.input.readInt())
+            {
+                throw new IOException("Unsupported entry format");
+            }
+        }
+        catch (IOException e)
+        {
+            this.input.close();
+
+            throw e;
+        }
+    }
+
+    /**
+     * @return next entry or {@literal null} after the end marker
+     * @throws EOFException the data ends before the end marker
+     * @throws IOException  failed to read the entry
+     */
+    @Override
+    public HostEntry read() throws IOException
+    {
+        int flags = 0;
+        String hostname = null;
+
+        if (true == this.finished)
+        {
+            return null;
+        }
+
+        flags = this.input.readUnsignedByte();
+
+        if (EntryFormat.END == flags)
+        {
+            this.finished = true;
+
+            return null;
+        }
+
+        if (0 == (flags & EntryFormat.SAME_ADDRESS))
+        {
+            this.address = readAddress(flags & EntryFormat.FAMILY_MASK);
+        }
+        else if (null == this.address)
+        {
+            throw new IOException("Corrupt entry data");
+        }
+
+        hostname = readString();
+
+        if (0 != (flags & EntryFormat.COMMENT))
+        {
+            this.comment = readString();
+        }
+
+        return new HostEntry(0 != (flags & EntryFormat.ENABLED), this.address, hostname, 0 == (flags & (EntryFormat.COMMENT | EntryFormat.SAME_COMMENT)) ? "" : this.comment);
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        this.input.close();
+    }
+
+    private Address readAddress(int family) throws IOException
+    {
+        switch (family)
+        {
+            case EntryFormat.IPV4:
+                return Address.ipv4(this.input.readInt());
+            case EntryFormat.IPV6:
+                return Address.ipv6(this.input.readLong(), this.input.readLong());
+            case EntryFormat.TEXT:
+                return Address.parse(readString());
+            default:
+                throw new IOException("Corrupt entry data");
+        }
+    }
+
+    private String readString() throws IOException
+    {
+        int length = 0;
+        int shift = 0;
+        int b = 0;
+
+        do
+        {
+            if (28 < shift)
+            {
+                throw new IOException("Corrupt entry data");
+            }
+
+            b = this.input.readUnsignedByte();
+            length |= (b & 0x7F) << shift;
+            shift += 7;
+        }
+        while (0 != (b & 0x80));
+
+        if (0 > length)
+        {
+            throw new IOException("Corrupt entry data");
+        }
+
+        if (this.scratch.length < length)
+        {
+            this.scratch = new byte[Math.max(length, this.scratch.length * 2)];
+        }
+
+        this.input.readFully(this.scratch, 0, length);
+
+        return new String(this.scratch, 0, length, CHARSET);
+    }
+}
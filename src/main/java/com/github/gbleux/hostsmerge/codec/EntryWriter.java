@@ -0,0 +1,176 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge.codec;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+import com.github.gbleux.hostsmerge.address.Address;
+import com.github.gbleux.hostsmerge.address.HostEntry;
+
+/**
+ * Encodes host entries into the compact binary format read by
+ * {@link EntryReader}. Addresses are stored numerically, consecutive entries
+ * sharing their address or comment store it only once, so sorted runs
+ * encode to a few bytes plus the hostname per entry.
+ * <p>
+ * @author Gordon Bleux
+ */
+public class EntryWriter implements Closeable
+{
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+
+    private final DataOutputStream output;
+    private Address address = null;
+    private String comment = "";
+    private long count = 0L;
+    private boolean finished = false;
+
+    /**
+     * @param output target stream, closed along with the writer
+     * @throws IOException failed to write the header
+     */
+    public EntryWriter(OutputStream output) throws IOException
+    {
+        super();
+
+        this.output = new DataOutputStream(new BufferedOutputStream(output, 1 << 16));
+        this.output.writeInt(EntryFormat.MAGIC);
+        this.output.writeInt(EntryFormat.VERSION);
+    }
+
+    /**
+     * @param entry entry to append
+     * @throws IOException failed to write the entry
+     */
+    public void write(HostEntry entry) throws IOException
+    {
+        Address current = entry.addressValue();
+        String note = null == entry.comment() ? "" : entry.comment();
+        int flags = entry.isEnabled() ? EntryFormat.ENABLED : 0;
+
+        if (true == current.isIPv4())
+        {
+            flags |= EntryFormat.IPV4;
+        }
+        else if (true == current.isIPv6())
+        {
+            flags |= EntryFormat.IPV6;
+        }
+        else
+        {
+            flags |= EntryFormat.TEXT;
+        }
+
+        if (true == current.equals(this.address))
+        {
+            flags |= EntryFormat.SAME_ADDRESS;
+        }
+
+        if (false == note.isEmpty())
+        {
+            flags |= note.equals(this.comment) ? EntryFormat.SAME_COMMENT : EntryFormat.COMMENT;
+        }
+
+        this.output.writeByte(flags);
+
+        if (0 == (flags & EntryFormat.SAME_ADDRESS))
+        {
+            writeAddress(current, flags & EntryFormat.FAMILY_MASK);
+            this.address = current;
+        }
+
+        writeString(entry.hostname());
+
+        if (0 != (flags & EntryFormat.COMMENT))
+        {
+            writeString(note);
+            this.comment = note;
+        }
+
+        this.count++;
+    }
+
+    /**
+     * @return number of written entries
+     */
+    public long count()
+    {
+        return this.count;
+    }
+
+    /**
+     * write the end marker and close the stream.
+     * <p>
+     * @throws IOException failed to write the end marker
+     */
+    @Override
+    public void close() throws IOException
+    {
+        try (DataOutputStream out = this.output)
+        {
+            if (false == this.finished)
+            {
+                this.finished = true;
+                out.writeByte(EntryFormat.END);
+            }
+        }
+    }
+
+    private void writeAddress(Address value, int family) throws IOException
+    {
+        switch (family)
+        {
+            case EntryFormat.IPV4:
+                this.output.writeInt(value.ipv4());
+                break;
+            case EntryFormat.IPV6:
+                this.output.writeLong(value.high());
+                this.output.writeLong(value.low());
+                break;
+            default:
+                writeString(value.toString());
+                break;
+        }
+    }
+
+    private void writeString(String value) throws IOException
+    {
+        byte[] data = value.getBytes(CHARSET);
+        int length = data.length;
+
+        // unsigned varint, 7 bits per byte
+        while (length > 0x7F)
+        {
+            this.output.writeByte(length & 0x7F | 0x80);
+            length >>>= 7;
+        }
+
+        this.output.writeByte(length);
+        this.output.write(data);
+    }
+}
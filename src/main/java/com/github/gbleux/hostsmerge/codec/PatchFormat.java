@@ -0,0 +1,60 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge.codec;
+
+/**
+ * Constants of the patch format shared by {@link PatchWriter} and
+ * {@link PatchReader}.
+ * <p>
+ * A patch starts with {@link #MAGIC} and {@link #VERSION} (both 32 bit,
+ * big-endian) followed by the operations and the {@link EntryFormat#END}
+ * marker. Operations are encoded like the entries of the
+ * {@link EntryFormat entry format}, with the operation in the two highest
+ * bits of the flag byte. Removals only store address and hostname. The
+ * trailer holds the number of added, removed and changed entries (64 bit
+ * each) and the {@link #DIGEST} of the baseline and of the patched hosts
+ * file.
+ * <p>
+ * @author Gordon Bleux
+ */
+final class PatchFormat
+{
+    /**
+     * "HMDP"
+     */
+    static final int MAGIC = 0x484D4450;
+    static final int VERSION = 1;
+
+    static final int OPERATION_MASK = 0xC0;
+    static final int ADD = 0x40;
+    static final int REMOVE = 0x80;
+    static final int CHANGE = 0xC0;
+
+    static final String DIGEST = "SHA-256";
+    static final int DIGEST_SIZE = 32;
+
+    private PatchFormat()
+    {
+        super();
+    }
+}
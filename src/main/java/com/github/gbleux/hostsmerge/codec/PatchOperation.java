@@ -0,0 +1,70 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge.codec;
+
+/**
+ * Change of a single entry, identified by address and hostname, recorded in
+ * a patch.
+ * <p>
+ * @author Gordon Bleux
+ */
+public enum PatchOperation
+{
+    /**
+     * the entry is new
+     */
+    ADD(PatchFormat.ADD),
+    /**
+     * the entry is gone
+     */
+    REMOVE(PatchFormat.REMOVE),
+    /**
+     * the enabled state or comment of the entry changed
+     */
+    CHANGE(PatchFormat.CHANGE);
+
+    private final int flag;
+
+    private PatchOperation(int flag)
+    {
+        this.flag = flag;
+    }
+
+    int flag()
+    {
+        return this.flag;
+    }
+
+    static PatchOperation fromFlags(int flags)
+    {
+        for (PatchOperation operation : values())
+        {
+            if (operation.flag == (flags & PatchFormat.OPERATION_MASK))
+            {
+                return operation;
+            }
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,267 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge.codec;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+import com.github.gbleux.hostsmerge.address.Address;
+import com.github.gbleux.hostsmerge.address.HostEntry;
+
+/**
+ * Decodes patches written by {@link PatchWriter}. Operations are read one at
+ * a time with {@link #next()}, the counters and digests of the trailer are
+ * available once all operations have been read.
+ * <p>
+ * @author Gordon Bleux
+ */
+public class PatchReader implements Closeable
+{
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+
+    private final DataInputStream input;
+    private byte[] scratch = new byte[256];
+    private Address address = null;
+    private String comment = "";
+    private PatchOperation operation = null;
+    private HostEntry entry = null;
+    private boolean finished = false;
+    private long added = 0L;
+    private long removed = 0L;
+    private long changed = 0L;
+    private byte[] baseline = null;
+    private byte[] target = null;
+
+    /**
+     * @param input source stream, closed along with the reader
+     * @throws IOException failed to read the header or unsupported format
+     */
+    public PatchReader(InputStream input) throws IOException
+    {
+        super();
+
+        this.input = new DataInputStream(new BufferedInputStream(input, 1 << 16));
+
+        try
+        {
+            if (PatchFormat.MAGIC != this.input.readInt() || PatchFormat.VERSION != this.input.readInt())
+            {
+                throw new IOException("Unsupported patch format");
+            }
+        }
+        catch (IOException e)
+        {
+            this.input.close();
+
+            throw e;
+        }
+    }
+
+    /**
+     * read the next operation.
+     * <p>
+     * @return {@literal false} after the last operation, once the trailer has
+     *         been read
+     * @throws EOFException the patch is truncated
+     * @throws IOException  failed to read the operation
+     */
+    public boolean next() throws IOException
+    {
+        int flags = 0;
+        String hostname = null;
+
+        if (true == this.finished)
+        {
+            return false;
+        }
+
+        flags = this.input.readUnsignedByte();
+
+        if (EntryFormat.END == flags)
+        {
+            readTrailer();
+            this.operation = null;
+            this.entry = null;
+            this.finished = true;
+
+            return false;
+        }
+
+        this.operation = PatchOperation.fromFlags(flags);
+
+        if (null == this.operation)
+        {
+            throw new IOException("Corrupt patch data");
+        }
+
+        if (0 == (flags & EntryFormat.SAME_ADDRESS))
+        {
+            this.address = readAddress(flags & EntryFormat.FAMILY_MASK);
+        }
+        else if (null == this.address)
+        {
+            throw new IOException("Corrupt patch data");
+        }
+
+        hostname = readString();
+
+        if (0 != (flags & EntryFormat.COMMENT))
+        {
+            this.comment = readString();
+        }
+
+        this.entry = new HostEntry(0 != (flags & EntryFormat.ENABLED), this.address, hostname, 0 == (flags & (EntryFormat.COMMENT | EntryFormat.SAME_COMMENT)) ? "" : this.comment);
+
+        return true;
+    }
+
+    /**
+     * @return operation read by the last {@link #next()}
+     */
+    public PatchOperation operation()
+    {
+        return this.operation;
+    }
+
+    /**
+     * @return entry of the operation read by the last {@link #next()}.
+     *         removals only carry address and hostname.
+     */
+    public HostEntry entry()
+    {
+        return this.entry;
+    }
+
+    /**
+     * @return number of added entries, known after the last operation
+     */
+    public long added()
+    {
+        return this.added;
+    }
+
+    /**
+     * @return number of removed entries, known after the last operation
+     */
+    public long removed()
+    {
+        return this.removed;
+    }
+
+    /**
+     * @return number of changed entries, known after the last operation
+     */
+    public long changed()
+    {
+        return this.changed;
+    }
+
+    /**
+     * @return digest of the hosts file the patch applies to, known after the
+     *         last operation
+     */
+    public byte[] baselineDigest()
+    {
+        return this.baseline;
+    }
+
+    /**
+     * @return digest of the patched hosts file, known after the last
+     *         operation
+     */
+    public byte[] targetDigest()
+    {
+        return this.target;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        this.input.close();
+    }
+
+    private void readTrailer() throws IOException
+    {
+        this.added = this.input.readLong();
+        this.removed = this.input.readLong();
+        this.changed = this.input.readLong();
+        this.baseline = new byte[PatchFormat.DIGEST_SIZE];
+        this.target = new byte[PatchFormat.DIGEST_SIZE];
+        this.input.readFully(this.baseline);
+        this.input.readFully(this.target);
+    }
+
+    private Address readAddress(int family) throws IOException
+    {
+        switch (family)
+        {
+            case EntryFormat.IPV4:
+                return Address.ipv4(this.input.readInt());
+            case EntryFormat.IPV6:
+                return Address.ipv6(this.input.readLong(), this.input.readLong());
+            case EntryFormat.TEXT:
+                return Address.parse(readString());
+            default:
+                throw new IOException("Corrupt patch data");
+        }
+    }
+
+    private String readString() throws IOException
+    {
+        int length = 0;
+        int shift = 0;
+        int b = 0;
+
+        do
+        {
+            if (28 < shift)
+            {
+                throw new IOException("Corrupt patch data");
+            }
+
+            b = this.input.readUnsignedByte();
+            length |= (b & 0x7F) << shift;
+            shift += 7;
+        }
+        while (0 != (b & 0x80));
+
+        if (0 > length)
+        {
+            throw new IOException("Corrupt patch data");
+        }
+
+        if (this.scratch.length < length)
+        {
+            this.scratch = new byte[Math.max(length, this.scratch.length * 2)];
+        }
+
+        this.input.readFully(this.scratch, 0, length);
+
+        return new String(this.scratch, 0, length, CHARSET);
+    }
+}
@@ -0,0 +1,230 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge.codec;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+import com.github.gbleux.hostsmerge.address.Address;
+import com.github.gbleux.hostsmerge.address.HostEntry;
+
+/**
+ * Encodes the differences between two sets of entries into the patch format
+ * read by {@link PatchReader}. Operations are expected in the order of the
+ * patched hosts file. Addresses and comments shared by consecutive
+ * operations are stored once, like in the {@link EntryWriter entry format}.
+ * <p>
+ * A patch is only complete once {@link #finish(byte[], byte[]) finished},
+ * an unfinished patch is truncated and rejected by the reader.
+ * <p>
+ * @author Gordon Bleux
+ */
+public class PatchWriter
+{
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+
+    private final DataOutputStream output;
+    private Address address = null;
+    private String comment = "";
+    private long added = 0L;
+    private long removed = 0L;
+    private long changed = 0L;
+
+    /**
+     * @param output target stream. the stream is not closed by the writer.
+     * @throws IOException failed to write the header
+     */
+    public PatchWriter(OutputStream output) throws IOException
+    {
+        super();
+
+        this.output = new DataOutputStream(new BufferedOutputStream(output, 1 << 16));
+        this.output.writeInt(PatchFormat.MAGIC);
+        this.output.writeInt(PatchFormat.VERSION);
+    }
+
+    /**
+     * @param entry entry missing from the baseline
+     * @throws IOException failed to write the operation
+     */
+    public void add(HostEntry entry) throws IOException
+    {
+        write(PatchOperation.ADD, entry);
+        this.added++;
+    }
+
+    /**
+     * @param entry baseline entry which is gone
+     * @throws IOException failed to write the operation
+     */
+    public void remove(HostEntry entry) throws IOException
+    {
+        write(PatchOperation.REMOVE, entry);
+        this.removed++;
+    }
+
+    /**
+     * @param entry entry replacing the baseline entry of the same address
+     *              and hostname
+     * @throws IOException failed to write the operation
+     */
+    public void change(HostEntry entry) throws IOException
+    {
+        write(PatchOperation.CHANGE, entry);
+        this.changed++;
+    }
+
+    /**
+     * @return number of added entries
+     */
+    public long added()
+    {
+        return this.added;
+    }
+
+    /**
+     * @return number of removed entries
+     */
+    public long removed()
+    {
+        return this.removed;
+    }
+
+    /**
+     * @return number of changed entries
+     */
+    public long changed()
+    {
+        return this.changed;
+    }
+
+    /**
+     * write the end marker and the trailer and flush the stream.
+     * <p>
+     * @param baseline digest of the hosts file the patch applies to
+     * @param target   digest of the patched hosts file
+     * @throws IOException failed to write the trailer
+     */
+    public void finish(byte[] baseline, byte[] target) throws IOException
+    {
+        if (PatchFormat.DIGEST_SIZE != baseline.length || PatchFormat.DIGEST_SIZE != target.length)
+        {
+            throw new IllegalArgumentException("Digests must have " + PatchFormat.DIGEST_SIZE + " bytes");
+        }
+
+        this.output.writeByte(EntryFormat.END);
+        this.output.writeLong(this.added);
+        this.output.writeLong(this.removed);
+        this.output.writeLong(this.changed);
+        this.output.write(baseline);
+        this.output.write(target);
+        this.output.flush();
+    }
+
+    private void write(PatchOperation operation, HostEntry entry) throws IOException
+    {
+        Address current = entry.addressValue();
+        String note = PatchOperation.REMOVE == operation || null == entry.comment() ? "" : entry.comment();
+        int flags = operation.flag();
+
+        if (PatchOperation.REMOVE != operation && true == entry.isEnabled())
+        {
+            flags |= EntryFormat.ENABLED;
+        }
+
+        if (true == current.isIPv4())
+        {
+            flags |= EntryFormat.IPV4;
+        }
+        else if (true == current.isIPv6())
+        {
+            flags |= EntryFormat.IPV6;
+        }
+        else
+        {
+            flags |= EntryFormat.TEXT;
+        }
+
+        if (true == current.equals(this.address))
+        {
+            flags |= EntryFormat.SAME_ADDRESS;
+        }
+
+        if (false == note.isEmpty())
+        {
+            flags |= note.equals(this.comment) ? EntryFormat.SAME_COMMENT : EntryFormat.COMMENT;
+        }
+
+        this.output.writeByte(flags);
+
+        if (0 == (flags & EntryFormat.SAME_ADDRESS))
+        {
+            writeAddress(current, flags & EntryFormat.FAMILY_MASK);
+            this.address = current;
+        }
+
+        writeString(entry.hostname());
+
+        if (0 != (flags & EntryFormat.COMMENT))
+        {
+            writeString(note);
+            this.comment = note;
+        }
+    }
+
+    private void writeAddress(Address value, int family) throws IOException
+    {
+        switch (family)
+        {
+            case EntryFormat.IPV4:
+                this.output.writeInt(value.ipv4());
+                break;
+            case EntryFormat.IPV6:
+                this.output.writeLong(value.high());
+                this.output.writeLong(value.low());
+                break;
+            default:
+                writeString(value.toString());
+                break;
+        }
+    }
+
+    private void writeString(String value) throws IOException
+    {
+        byte[] data = value.getBytes(CHARSET);
+        int length = data.length;
+
+        // unsigned varint, 7 bits per byte
+        while (length > 0x7F)
+        {
+            this.output.writeByte(length & 0x7F | 0x80);
+            length >>>= 7;
+        }
+
+        this.output.writeByte(length);
+        this.output.write(data);
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge.fetch;
+
+import java.net.URL;
+
+/**
+ * Named upstream hosts list. The name identifies the local copy of the list.
+ * <p>
+ * @author Gordon Bleux
+ */
+public final class Source
+{
+    private final String name;
+    private final URL location;
+
+    /**
+     * @param name     file name of the local copy. must not be empty, start
+     *                 with a dot or contain path separators.
+     * @param location URL of the list
+     */
+    public Source(String name, URL location)
+    {
+        super();
+
+        if (name.isEmpty() || name.startsWith(".") || name.indexOf('/') >= 0 || name.indexOf('\\') >= 0)
+        {
+            throw new IllegalArgumentException("Invalid source name: " + name);
+        }
+
+        this.name = name;
+        this.location = location;
+    }
+
+    /**
+     * @return file name of the local copy
+     */
+    public String name()
+    {
+        return this.name;
+    }
+
+    /**
+     * @return URL of the list
+     */
+    public URL location()
+    {
+        return this.location;
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.name + "=" + this.location;
+    }
+}
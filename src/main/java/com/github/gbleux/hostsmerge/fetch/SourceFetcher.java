@@ -0,0 +1,610 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge.fetch;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.github.gbleux.io.AtomicFileOutputStream;
+import com.github.gbleux.io.Compression;
+import com.github.gbleux.io.LineHandler;
+import com.github.gbleux.io.LineScanner;
+import com.github.gbleux.io.MappedLineScanner;
+import com.github.gbleux.io.StreamLineScanner;
+
+/**
+ * Line scanner over remote {@link Source sources}. The sources are requested
+ * concurrently once the scanner is first used, while their lines are
+ * scanned in source order. Response bodies are scanned as they arrive and
+ * copied to a local file named after the source on the way, so parsing
+ * overlaps with the download. Compressed responses are decompressed while
+ * they are scanned, the local copy stays compressed.
+ * <p>
+ * The local copies double as cache. HTTP requests are conditional on the
+ * {@code ETag} and {@code Last-Modified} validators of the previous
+ * response, if the upstream list did not change, the local copy is scanned
+ * instead. The same applies if a source cannot be fetched, which is reported
+ * to {@link #failed(Source, IOException)}. Local copies are replaced
+ * atomically once their response has been read completely.
+ * <p>
+ * At most {@code concurrency} responses are open at the same time. A
+ * response stays open until its lines have been scanned, so the parts
+ * returned by {@link #split()} should be scanned roughly in order.
+ * <p>
+ * @author Gordon Bleux
+ */
+public class SourceFetcher extends LineScanner
+{
+    /**
+     * default number of concurrent requests
+     */
+    public static final int DEFAULT_CONCURRENCY = 4;
+    /**
+     * default connect and read timeout in milliseconds
+     */
+    public static final int DEFAULT_TIMEOUT = 30000;
+
+    private static final String VALIDATORS = ".validators";
+    private static final String ETAG = "ETag";
+    private static final String LAST_MODIFIED = "Last-Modified";
+
+    private final List<Source> sources;
+    private final Path directory;
+    private final int concurrency;
+    private final int timeout;
+    private final Semaphore permits;
+    private ExecutorService executor = null;
+    private List<Part> parts = null;
+
+    /**
+     * @param sources   sources in merge order
+     * @param directory location of the local copies
+     */
+    public SourceFetcher(List<Source> sources, Path directory)
+    {
+        this(sources, directory, DEFAULT_CONCURRENCY, DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * @param sources     sources in merge order
+     * @param directory   location of the local copies
+     * @param concurrency maximum number of open responses
+     * @param timeout     connect and read timeout in milliseconds
+     */
+    public SourceFetcher(List<Source> sources, Path directory, int concurrency, int timeout)
+    {
+        super();
+
+        if (concurrency <= 0)
+        {
+            throw new IllegalArgumentException("Concurrency must be positive");
+        }
+
+        this.sources = new ArrayList<>(sources);
+        this.directory = directory;
+        this.concurrency = concurrency;
+        this.timeout = timeout;
+        this.permits = new Semaphore(concurrency);
+    }
+
+    /**
+     * @return location of the local copies
+     */
+    public Path directory()
+    {
+        return this.directory;
+    }
+
+    /**
+     * start fetching and split into one scanner per source.
+     * <p>
+     * @return scanners in source order
+     * @throws IOException failed to create the directory of the local copies
+     */
+    @Override
+    public List<LineScanner> split() throws IOException
+    {
+        return new ArrayList<LineScanner>(start());
+    }
+
+    @Override
+    public void scan(LineHandler handler) throws IOException
+    {
+        for (Part part : start())
+        {
+            part.scan(handler);
+        }
+    }
+
+    @Override
+    public long scanned()
+    {
+        long scanned = 0L;
+
+        for (Part part : null == this.parts ? Collections.<Part>emptyList() : this.parts)
+        {
+            scanned += part.scanned();
+        }
+
+        return scanned;
+    }
+
+    @Override
+    public long scannedLines()
+    {
+        long lines = 0L;
+
+        for (Part part : null == this.parts ? Collections.<Part>emptyList() : this.parts)
+        {
+            lines += part.scannedLines();
+        }
+
+        return lines;
+    }
+
+    /**
+     * cancel pending requests and close responses which have not been
+     * scanned.
+     * <p>
+     * @throws IOException failed to close a response
+     */
+    @Override
+    public void close() throws IOException
+    {
+        IOException failure = null;
+
+        if (null == this.executor)
+        {
+            return;
+        }
+
+        this.executor.shutdownNow();
+
+        for (Part part : this.parts)
+        {
+            try
+            {
+                part.close();
+            }
+            catch (IOException e)
+            {
+                failure = null == failure ? e : failure;
+            }
+        }
+
+        if (null != failure)
+        {
+            throw failure;
+        }
+    }
+
+    /**
+     * called if a source could not be fetched and its local copy is scanned
+     * instead. sources without local copy fail the scan. the default
+     * implementation does nothing.
+     * <p>
+     * This method is called by the fetching threads.
+     * <p>
+     * @param source source which failed
+     * @param cause  reason of the failure
+     */
+    protected void failed(Source source, IOException cause)
+    {
+        // the local copy is good enough
+    }
+
+    private synchronized List<Part> start() throws IOException
+    {
+        CountDownLatch previous = new CountDownLatch(0);
+
+        if (null != this.parts)
+        {
+            return this.parts;
+        }
+
+        Files.createDirectories(this.directory.resolve(VALIDATORS));
+
+        this.executor = Executors.newFixedThreadPool(this.concurrency, new ThreadFactory()
+        {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable task)
+            {
+                Thread thread = new Thread(task, "hostsmerge-fetch-" + this.count.incrementAndGet());
+
+                thread.setDaemon(true);
+
+                return thread;
+            }
+        });
+        this.parts = new ArrayList<>(this.sources.size());
+
+        for (final Source source : this.sources)
+        {
+            final CountDownLatch turn = previous;
+            final CountDownLatch next = new CountDownLatch(1);
+
+            this.parts.add(new Part(source, this.executor.submit(new Callable<LineScanner>()
+            {
+                @Override
+                public LineScanner call() throws Exception
+                {
+                    return fetch(source, turn, next);
+                }
+            })));
+            previous = next;
+        }
+
+        // no further tasks, the threads terminate once all are done
+        this.executor.shutdown();
+
+        return this.parts;
+    }
+
+    /**
+     * request a source and open its response, or the local copy if the
+     * source is unchanged or failed. permits are acquired in source order:
+     * the parts are scanned in that order, so a later source taking the last
+     * permit would wait for a part which waits for the permit.
+     * <p>
+     * @param turn counted down once the preceding source holds its permit
+     * @param next counted down once this source holds its permit
+     */
+    private LineScanner fetch(Source source, CountDownLatch turn, CountDownLatch next) throws IOException, InterruptedException
+    {
+        Path file = this.directory.resolve(source.name());
+        InputStream body = null;
+
+        try
+        {
+            turn.await();
+            this.permits.acquire();
+        }
+        finally
+        {
+            next.countDown();
+        }
+
+        try
+        {
+            body = request(source, file);
+        }
+        catch (IOException e)
+        {
+            if (false == Files.isRegularFile(file))
+            {
+                this.permits.release();
+
+                throw new IOException(source.name() + ": " + e.getMessage(), e);
+            }
+
+            failed(source, e);
+        }
+
+        if (null == body)
+        {
+            // the body would have released the permit once closed
+            this.permits.release();
+
+            return new MappedLineScanner(Collections.singletonList(file));
+        }
+
+        return new StreamLineScanner(Compression.decompress(body));
+    }
+
+    /**
+     * @return response body copied to the file, {@literal null} if the
+     *         source is unchanged
+     */
+    private InputStream request(Source source, Path file) throws IOException
+    {
+        Path state = this.directory.resolve(VALIDATORS).resolve(source.name());
+        Properties previous = Files.isRegularFile(file) ? loadValidators(state) : new Properties();
+        Properties current = new Properties();
+        URLConnection connection = source.location().openConnection();
+        HttpURLConnection http = null;
+        InputStream input = null;
+        int status = 0;
+
+        connection.setConnectTimeout(this.timeout);
+        connection.setReadTimeout(this.timeout);
+
+        if (connection instanceof HttpURLConnection)
+        {
+            http = (HttpURLConnection) connection;
+
+            if (previous.containsKey(ETAG))
+            {
+                http.setRequestProperty("If-None-Match", previous.getProperty(ETAG));
+            }
+
+            if (previous.containsKey(LAST_MODIFIED))
+            {
+                http.setRequestProperty("If-Modified-Since", previous.getProperty(LAST_MODIFIED));
+            }
+
+            status = http.getResponseCode();
+
+            if (HttpURLConnection.HTTP_NOT_MODIFIED == status)
+            {
+                http.disconnect();
+
+                return null;
+            }
+            else if (HttpURLConnection.HTTP_OK != status)
+            {
+                http.disconnect();
+
+                throw new IOException("HTTP " + status + " " + http.getResponseMessage());
+            }
+
+            for (String name : new String[] { ETAG, LAST_MODIFIED })
+            {
+                if (null != http.getHeaderField(name))
+                {
+                    current.setProperty(name, http.getHeaderField(name));
+                }
+            }
+        }
+
+        input = connection.getInputStream();
+
+        try
+        {
+            return new Body(input, new AtomicFileOutputStream(file), current, state);
+        }
+        catch (IOException e)
+        {
+            input.close();
+
+            throw e;
+        }
+    }
+
+    private static Properties loadValidators(Path state) throws IOException
+    {
+        Properties validators = new Properties();
+
+        if (true == Files.isRegularFile(state))
+        {
+            try (InputStream input = Files.newInputStream(state))
+            {
+                validators.load(input);
+            }
+        }
+
+        return validators;
+    }
+
+    private static void storeValidators(Path state, Properties validators) throws IOException
+    {
+        if (true == validators.isEmpty())
+        {
+            Files.deleteIfExists(state);
+
+            return;
+        }
+
+        try (AtomicFileOutputStream output = new AtomicFileOutputStream(state))
+        {
+            validators.store(output, null);
+            output.commit();
+        }
+    }
+
+    /**
+     * Scanner of a single source, which waits for its response.
+     */
+    private final class Part extends LineScanner
+    {
+        private final Source source;
+        private final Future<LineScanner> response;
+        private LineScanner scanner = null;
+
+        public Part(Source source, Future<LineScanner> response)
+        {
+            super();
+
+            this.source = source;
+            this.response = response;
+        }
+
+        @Override
+        public void scan(LineHandler handler) throws IOException
+        {
+            try
+            {
+                this.scanner = this.response.get();
+            }
+            catch (InterruptedException e)
+            {
+                throw new InterruptedIOException("Interrupted while fetching " + this.source.name());
+            }
+            catch (CancellationException e)
+            {
+                throw new IOException("Fetching " + this.source.name() + " has been cancelled", e);
+            }
+            catch (ExecutionException e)
+            {
+                throw e.getCause() instanceof IOException
+                        ? (IOException) e.getCause()
+                        : new IOException(this.source.name() + ": " + e.getCause(), e.getCause());
+            }
+
+            // release the response as soon as possible
+            try (LineScanner current = this.scanner)
+            {
+                current.scan(handler);
+            }
+        }
+
+        @Override
+        public long scanned()
+        {
+            return null == this.scanner ? 0L : this.scanner.scanned();
+        }
+
+        @Override
+        public long scannedLines()
+        {
+            return null == this.scanner ? 0L : this.scanner.scannedLines();
+        }
+
+        /**
+         * close the response unless it has been scanned.
+         */
+        @Override
+        public void close() throws IOException
+        {
+            if (null != this.scanner)
+            {
+                return;
+            }
+
+            try
+            {
+                this.response.get().close();
+            }
+            catch (InterruptedException e)
+            {
+                throw new InterruptedIOException("Interrupted while fetching " + this.source.name());
+            }
+            catch (CancellationException | ExecutionException e)
+            {
+                // no response
+            }
+        }
+    }
+
+    /**
+     * Response body which is copied to the local file while it is read. The
+     * file is committed at the end of the body.
+     */
+    private final class Body extends FilterInputStream
+    {
+        private final AtomicFileOutputStream copy;
+        private final Properties validators;
+        private final Path state;
+        private boolean finished = false;
+        private boolean closed = false;
+
+        public Body(InputStream input, AtomicFileOutputStream copy, Properties validators, Path state)
+        {
+            super(input);
+
+            this.copy = copy;
+            this.validators = validators;
+            this.state = state;
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            byte[] single = new byte[1];
+
+            return -1 == read(single, 0, 1) ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            int read = this.in.read(b, off, len);
+
+            if (read > 0)
+            {
+                this.copy.write(b, off, read);
+            }
+            else if (read < 0 && false == this.finished)
+            {
+                this.finished = true;
+                this.copy.commit();
+                storeValidators(this.state, this.validators);
+            }
+
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException
+        {
+            // skipped data is copied as well
+            byte[] skipped = new byte[(int) Math.max(0L, Math.min(n, 1 << 13))];
+
+            return Math.max(0, read(skipped, 0, skipped.length));
+        }
+
+        @Override
+        public boolean markSupported()
+        {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            if (true == this.closed)
+            {
+                return;
+            }
+
+            this.closed = true;
+
+            try
+            {
+                this.in.close();
+            }
+            finally
+            {
+                try
+                {
+                    this.copy.close();
+                }
+                finally
+                {
+                    SourceFetcher.this.permits.release();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge.fetch;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Parser of sources files. Each line holds a {@link Source} as
+ * {@code name=url}. Empty lines and lines starting with {@code #} are
+ * ignored. The order of the lines is the merge order, so entries of later
+ * sources win.
+ * <p>
+ * @author Gordon Bleux
+ */
+public final class SourceList
+{
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+
+    private SourceList()
+    {
+        super();
+    }
+
+    /**
+     * @param file sources file
+     * @return sources in file order
+     * @throws IOException failed to read the file or invalid content
+     */
+    public static List<Source> read(Path file) throws IOException
+    {
+        try (BufferedReader reader = Files.newBufferedReader(file, CHARSET))
+        {
+            return read(reader);
+        }
+    }
+
+    /**
+     * @param input sources file content, not closed
+     * @return sources in input order
+     * @throws IOException failed to read the input or invalid content
+     */
+    public static List<Source> read(Reader input) throws IOException
+    {
+        BufferedReader reader = input instanceof BufferedReader ? (BufferedReader) input : new BufferedReader(input);
+        List<Source> sources = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        String line = null;
+        int number = 0;
+        int separator = 0;
+        Source source = null;
+
+        while (null != (line = reader.readLine()))
+        {
+            number++;
+            line = line.trim();
+
+            if (line.isEmpty() || line.startsWith("#"))
+            {
+                continue;
+            }
+            else if (0 >= (separator = line.indexOf('=')))
+            {
+                throw new IOException("Line " + number + ": expected name=url");
+            }
+
+            try
+            {
+                source = new Source(line.substring(0, separator).trim(), new URL(line.substring(separator + 1).trim()));
+            }
+            catch (MalformedURLException | IllegalArgumentException e)
+            {
+                throw new IOException("Line " + number + ": " + e.getMessage(), e);
+            }
+
+            if (false == names.add(source.name()))
+            {
+                throw new IOException("Line " + number + ": duplicate source " + source.name());
+            }
+
+            sources.add(source);
+        }
+
+        return sources;
+    }
+}
@@ -0,0 +1,348 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge.snapshot;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.github.gbleux.hostsmerge.address.Address;
+import com.github.gbleux.hostsmerge.address.HostEntry;
+
+/**
+ * Read-only view of a snapshot written by {@link SnapshotWriter}. The
+ * snapshot is memory-mapped and queried in place: lookups binary search the
+ * entry index and only decode the matching entry, so opening a snapshot
+ * takes constant time and almost no heap regardless of its size.
+ * <p>
+ * Instances are thread-safe. The mapping is released once the instance is
+ * garbage collected. Snapshots should be replaced by moving a new file into
+ * place, a snapshot modified while mapped yields undefined results.
+ * <p>
+ * @author Gordon Bleux
+ */
+public class HostsSnapshot implements Iterable<HostEntry>
+{
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+
+    private final ByteBuffer data;
+    private final int size;
+    private final int addressOffset;
+    private final int indexOffset;
+    private final int stringOffset;
+
+    /**
+     * @param data snapshot data. the buffer is not modified and its position
+     *             is ignored.
+     * @throws IOException unsupported or corrupt snapshot
+     */
+    public HostsSnapshot(ByteBuffer data) throws IOException
+    {
+        super();
+
+        long addresses = 0L;
+        long index = 0L;
+        long strings = 0L;
+        long length = 0L;
+        int count = 0;
+
+        this.data = data.duplicate().order(ByteOrder.BIG_ENDIAN);
+
+        if (SnapshotFormat.HEADER_SIZE > this.data.limit()
+                || SnapshotFormat.MAGIC != this.data.getInt(0)
+                || SnapshotFormat.VERSION != this.data.getInt(4))
+        {
+            throw new IOException("Unsupported snapshot format");
+        }
+
+        this.size = this.data.getInt(8);
+        count = this.data.getInt(12);
+        addresses = this.data.getLong(16);
+        index = this.data.getLong(24);
+        strings = this.data.getLong(32);
+        length = this.data.getLong(40);
+
+        // sections are contiguous and fill the buffer
+        if (0 > this.size || 0 > count
+                || SnapshotFormat.HEADER_SIZE != addresses
+                || addresses + (long) count * SnapshotFormat.ADDRESS_SIZE != index
+                || index + (long) this.size * SnapshotFormat.ENTRY_SIZE != strings
+                || strings + length != this.data.limit())
+        {
+            throw new IOException("Corrupt snapshot");
+        }
+
+        this.addressOffset = (int) addresses;
+        this.indexOffset = (int) index;
+        this.stringOffset = (int) strings;
+    }
+
+    /**
+     * map a snapshot file.
+     * <p>
+     * @param file snapshot file
+     * @return snapshot
+     * @throws IOException failed to map the file or unsupported snapshot
+     */
+    public static HostsSnapshot open(Path file) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            if (channel.size() > Integer.MAX_VALUE)
+            {
+                throw new IOException("Snapshot exceeds 2 GiB");
+            }
+
+            return new HostsSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size()));
+        }
+    }
+
+    /**
+     * check whether a file starts like a snapshot, e.g. to tell it apart
+     * from a hosts file.
+     * <p>
+     * @param file file to check
+     * @return whether the file has the snapshot header
+     * @throws IOException failed to read the file
+     */
+    public static boolean isSnapshot(Path file) throws IOException
+    {
+        ByteBuffer header = ByteBuffer.allocate(8);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            while (header.hasRemaining() && 0 <= channel.read(header))
+            {
+                // read the magic and version
+            }
+        }
+
+        return false == header.hasRemaining()
+                && SnapshotFormat.MAGIC == header.getInt(0)
+                && SnapshotFormat.VERSION == header.getInt(4);
+    }
+
+    /**
+     * @return number of entries
+     */
+    public int size()
+    {
+        return this.size;
+    }
+
+    /**
+     * @param hostname hostname to look for
+     * @return whether the snapshot contains an entry of the hostname
+     */
+    public boolean contains(String hostname)
+    {
+        return 0 <= indexOf(hostname);
+    }
+
+    /**
+     * @param hostname hostname to look for
+     * @return entry of the hostname or {@literal null}
+     */
+    public HostEntry lookup(String hostname)
+    {
+        int index = indexOf(hostname);
+
+        return 0 > index ? null : get(index);
+    }
+
+    /**
+     * @param index entry position in hostname order
+     * @return entry at the position
+     * @throws IndexOutOfBoundsException invalid position
+     */
+    public HostEntry get(int index)
+    {
+        int record = 0;
+        int address = 0;
+        int comment = 0;
+
+        if (0 > index || index >= this.size)
+        {
+            throw new IndexOutOfBoundsException("Invalid entry index: " + index);
+        }
+
+        record = this.indexOffset + index * SnapshotFormat.ENTRY_SIZE;
+        address = this.data.getInt(record + 4);
+        comment = this.data.getInt(record + 8);
+
+        return new HostEntry(
+                0 != (address & 1),
+                address(address >>> 1),
+                string(this.data.getInt(record)),
+                SnapshotFormat.NONE == comment ? "" : string(comment));
+    }
+
+    /**
+     * @return entries in hostname order
+     */
+    @Override
+    public Iterator<HostEntry> iterator()
+    {
+        return new Iterator<HostEntry>()
+        {
+            private int index = 0;
+
+            @Override
+            public boolean hasNext()
+            {
+                return this.index < HostsSnapshot.this.size;
+            }
+
+            @Override
+            public HostEntry next()
+            {
+                if (false == hasNext())
+                {
+                    throw new NoSuchElementException();
+                }
+
+                return get(this.index++);
+            }
+
+            @Override
+            public void remove()
+            {
+                throw new UnsupportedOperationException("Snapshots are read-only");
+            }
+        };
+    }
+
+    /**
+     * binary search the entry index.
+     * <p>
+     * @return position of the hostname or a negative value if absent
+     */
+    private int indexOf(String hostname)
+    {
+        byte[] key = hostname.getBytes(CHARSET);
+        int low = 0;
+        int high = this.size - 1;
+        int middle = 0;
+        int result = 0;
+
+        while (low <= high)
+        {
+            middle = (low + high) >>> 1;
+            result = compare(this.data.getInt(this.indexOffset + middle * SnapshotFormat.ENTRY_SIZE), key);
+
+            if (result < 0)
+            {
+                low = middle + 1;
+            }
+            else if (result > 0)
+            {
+                high = middle - 1;
+            }
+            else
+            {
+                return middle;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * compare a stored string with the given UTF-8 data (unsigned).
+     */
+    private int compare(int offset, byte[] key)
+    {
+        int position = this.stringOffset + offset;
+        int length = 0;
+        int shift = 0;
+        int b = 0;
+        int diff = 0;
+
+        do
+        {
+            b = this.data.get(position++);
+            length |= (b & 0x7F) << shift;
+            shift += 7;
+        }
+        while (0 != (b & 0x80));
+
+        for (int i = 0; i < length && i < key.length; i++)
+        {
+            diff = (this.data.get(position + i) & 0xFF) - (key[i] & 0xFF);
+
+            if (0 != diff)
+            {
+                return diff;
+            }
+        }
+
+        return length - key.length;
+    }
+
+    private String string(int offset)
+    {
+        int position = this.stringOffset + offset;
+        int length = 0;
+        int shift = 0;
+        int b = 0;
+        byte[] bytes = null;
+
+        do
+        {
+            b = this.data.get(position++);
+            length |= (b & 0x7F) << shift;
+            shift += 7;
+        }
+        while (0 != (b & 0x80));
+
+        bytes = new byte[length];
+
+        for (int i = 0; i < length; i++)
+        {
+            bytes[i] = this.data.get(position + i);
+        }
+
+        return new String(bytes, CHARSET);
+    }
+
+    private Address address(int index)
+    {
+        int record = this.addressOffset + index * SnapshotFormat.ADDRESS_SIZE;
+
+        switch (this.data.getInt(record))
+        {
+            case SnapshotFormat.IPV4:
+                return Address.ipv4((int) this.data.getLong(record + 12));
+            case SnapshotFormat.IPV6:
+                return Address.ipv6(this.data.getLong(record + 4), this.data.getLong(record + 12));
+            default:
+                return Address.parse(string((int) this.data.getLong(record + 4)));
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge.snapshot;
+
+/**
+ * Constants of the snapshot format shared by {@link SnapshotWriter} and
+ * {@link HostsSnapshot}.
+ * <p>
+ * A snapshot consists of four contiguous sections, all numbers are
+ * big-endian:
+ * <ol>
+ * <li>header: {@link #MAGIC}, {@link #VERSION}, entry count, address count
+ * (32 bit each) followed by the offsets of the address table, the entry
+ * index and the string table and the string table length (64 bit each)</li>
+ * <li>address table: {@link #ADDRESS_SIZE} bytes per unique address, the
+ * family (32 bit) and the high and low 64 bits of the value. for unparsed
+ * addresses the high bits hold the string offset of the text.</li>
+ * <li>entry index: {@link #ENTRY_SIZE} bytes per entry in hostname order,
+ * the string offset of the hostname, the address index shifted left by one
+ * with the enabled flag in the lowest bit, and the string offset of the
+ * comment or {@link #NONE}</li>
+ * <li>string table: strings as unsigned varint length followed by the UTF-8
+ * data. offsets are relative to the start of the table.</li>
+ * </ol>
+ * Hostnames are ordered by their UTF-8 bytes (unsigned), which equals the
+ * code point order. A snapshot is limited to 2 GiB, the largest region
+ * which can be mapped at once.
+ * <p>
+ * @author Gordon Bleux
+ */
+final class SnapshotFormat
+{
+    /**
+     * "HMSS"
+     */
+    static final int MAGIC = 0x484D5353;
+    static final int VERSION = 1;
+
+    static final int HEADER_SIZE = 48;
+    static final int ADDRESS_SIZE = 20;
+    static final int ENTRY_SIZE = 12;
+    static final int NONE = -1;
+
+    static final int IPV4 = 0;
+    static final int IPV6 = 1;
+    static final int TEXT = 2;
+
+    private SnapshotFormat()
+    {
+        super();
+    }
+}
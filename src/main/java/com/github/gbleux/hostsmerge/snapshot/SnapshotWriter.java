@@ -0,0 +1,334 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge.snapshot;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.github.gbleux.hostsmerge.address.Address;
+import com.github.gbleux.hostsmerge.address.HostEntry;
+
+/**
+ * Builds a {@link HostsSnapshot snapshot} of host entries. Entries are
+ * collected in memory and sorted by hostname when the snapshot is written.
+ * Addresses, comments and unparsed address texts are stored once.
+ * <p>
+ * @author Gordon Bleux
+ */
+public class SnapshotWriter
+{
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+
+    /**
+     * orders hostnames by code point, which equals the order of their UTF-8
+     * encoding.
+     */
+    static final Comparator<HostEntry> HOSTNAMES = new Comparator<HostEntry>()
+    {
+        @Override
+        public int compare(HostEntry lhs, HostEntry rhs)
+        {
+            return compareCodePoints(lhs.hostname(), rhs.hostname());
+        }
+    };
+
+    private final List<HostEntry> entries = new ArrayList<>();
+
+    public SnapshotWriter()
+    {
+        super();
+    }
+
+    /**
+     * add an entry. a later entry replaces an earlier entry of the same
+     * hostname.
+     * <p>
+     * @param entry entry to add
+     */
+    public void add(HostEntry entry)
+    {
+        this.entries.add(entry);
+    }
+
+    /**
+     * add all entries.
+     * <p>
+     * @param entries entries to add
+     */
+    public void addAll(Iterable<HostEntry> entries)
+    {
+        for (HostEntry entry : entries)
+        {
+            this.entries.add(entry);
+        }
+    }
+
+    /**
+     * @return number of added entries, including replaced ones
+     */
+    public int size()
+    {
+        return this.entries.size();
+    }
+
+    /**
+     * write the snapshot of all added entries. the stream is flushed but
+     * not closed.
+     * <p>
+     * @param output target stream
+     * @return number of entries in the snapshot
+     * @throws IOException failed to write the snapshot or the snapshot
+     *                     exceeds 2 GiB
+     */
+    public int writeTo(OutputStream output) throws IOException
+    {
+        List<HostEntry> sorted = unique();
+        Map<Address, Integer> addresses = new LinkedHashMap<>();
+        Map<String, Integer> strings = new HashMap<>();
+        List<String> extra = new ArrayList<>();
+        int[] names = new int[sorted.size()];
+        long length = 0L;
+
+        // hostnames in entry order, followed by comments and address texts
+        for (int i = 0; i < names.length; i++)
+        {
+            names[i] = (int) length;
+            length = append(length, sorted.get(i).hostname());
+        }
+
+        for (HostEntry entry : sorted)
+        {
+            if (false == addresses.containsKey(entry.addressValue()))
+            {
+                addresses.put(entry.addressValue(), addresses.size());
+
+                if (false == entry.addressValue().isNumeric())
+                {
+                    length = intern(entry.addressValue().toString(), strings, extra, length);
+                }
+            }
+
+            if (false == isEmpty(entry.comment()))
+            {
+                length = intern(entry.comment(), strings, extra, length);
+            }
+        }
+
+        if (SnapshotFormat.HEADER_SIZE + (long) addresses.size() * SnapshotFormat.ADDRESS_SIZE
+                + (long) sorted.size() * SnapshotFormat.ENTRY_SIZE + length > Integer.MAX_VALUE)
+        {
+            throw new IOException("Snapshot exceeds 2 GiB");
+        }
+
+        write(new DataOutputStream(new BufferedOutputStream(output, 1 << 16)), sorted, names, addresses, strings, extra, length);
+
+        return sorted.size();
+    }
+
+    private void write(DataOutputStream data, List<HostEntry> sorted, int[] names, Map<Address, Integer> addresses,
+            Map<String, Integer> strings, List<String> extra, long length) throws IOException
+    {
+        long addressOffset = SnapshotFormat.HEADER_SIZE;
+        long indexOffset = addressOffset + (long) addresses.size() * SnapshotFormat.ADDRESS_SIZE;
+        long stringOffset = indexOffset + (long) sorted.size() * SnapshotFormat.ENTRY_SIZE;
+        HostEntry entry = null;
+
+        data.writeInt(SnapshotFormat.MAGIC);
+        data.writeInt(SnapshotFormat.VERSION);
+        data.writeInt(sorted.size());
+        data.writeInt(addresses.size());
+        data.writeLong(addressOffset);
+        data.writeLong(indexOffset);
+        data.writeLong(stringOffset);
+        data.writeLong(length);
+
+        for (Address address : addresses.keySet())
+        {
+            if (true == address.isIPv4())
+            {
+                data.writeInt(SnapshotFormat.IPV4);
+                data.writeLong(0L);
+                data.writeLong(address.ipv4() & 0xFFFFFFFFL);
+            }
+            else if (true == address.isIPv6())
+            {
+                data.writeInt(SnapshotFormat.IPV6);
+                data.writeLong(address.high());
+                data.writeLong(address.low());
+            }
+            else
+            {
+                data.writeInt(SnapshotFormat.TEXT);
+                data.writeLong(strings.get(address.toString()));
+                data.writeLong(0L);
+            }
+        }
+
+        for (int i = 0; i < names.length; i++)
+        {
+            entry = sorted.get(i);
+
+            data.writeInt(names[i]);
+            data.writeInt(addresses.get(entry.addressValue()) << 1 | (entry.isEnabled() ? 1 : 0));
+            data.writeInt(isEmpty(entry.comment()) ? SnapshotFormat.NONE : strings.get(entry.comment()));
+        }
+
+        for (HostEntry host : sorted)
+        {
+            writeString(data, host.hostname());
+        }
+
+        for (String value : extra)
+        {
+            writeString(data, value);
+        }
+
+        data.flush();
+    }
+
+    /**
+     * @return entries sorted by hostname, keeping the last entry of each
+     *         hostname
+     */
+    private List<HostEntry> unique()
+    {
+        List<HostEntry> sorted = new ArrayList<>(this.entries);
+        List<HostEntry> unique = new ArrayList<>(sorted.size());
+        HostEntry previous = null;
+
+        // stable: entries of the same hostname remain in insertion order
+        Collections.sort(sorted, HOSTNAMES);
+
+        for (HostEntry entry : sorted)
+        {
+            if (null != previous && previous.hostname().equals(entry.hostname()))
+            {
+                unique.set(unique.size() - 1, entry);
+            }
+            else
+            {
+                unique.add(entry);
+            }
+
+            previous = entry;
+        }
+
+        return unique;
+    }
+
+    private static long intern(String value, Map<String, Integer> strings, List<String> extra, long length)
+    {
+        if (true == strings.containsKey(value))
+        {
+            return length;
+        }
+
+        strings.put(value, (int) length);
+        extra.add(value);
+
+        return append(length, value);
+    }
+
+    private static long append(long length, String value)
+    {
+        int size = value.getBytes(CHARSET).length;
+
+        return length + varintSize(size) + size;
+    }
+
+    private static int varintSize(int value)
+    {
+        int size = 1;
+
+        for (int rest = value >>> 7; 0 != rest; rest >>>= 7)
+        {
+            size++;
+        }
+
+        return size;
+    }
+
+    private static void writeString(DataOutputStream data, String value) throws IOException
+    {
+        byte[] bytes = value.getBytes(CHARSET);
+        int length = bytes.length;
+
+        // unsigned varint, 7 bits per byte
+        while (length > 0x7F)
+        {
+            data.writeByte(length & 0x7F | 0x80);
+            length >>>= 7;
+        }
+
+        data.writeByte(length);
+        data.write(bytes);
+    }
+
+    private static boolean isEmpty(String value)
+    {
+        return null == value || value.isEmpty();
+    }
+
+    /**
+     * compare strings by code point.
+     */
+    static int compareCodePoints(String lhs, String rhs)
+    {
+        int length = Math.min(lhs.length(), rhs.length());
+        char a = 0;
+        char b = 0;
+
+        for (int i = 0; i < length; i++)
+        {
+            a = lhs.charAt(i);
+            b = rhs.charAt(i);
+
+            if (a != b)
+            {
+                // surrogates encode code points above all other chars
+                if (true == Character.isSurrogate(a) && false == Character.isSurrogate(b))
+                {
+                    return 1;
+                }
+                else if (false == Character.isSurrogate(a) && true == Character.isSurrogate(b))
+                {
+                    return -1;
+                }
+
+                return a - b;
+            }
+        }
+
+        return lhs.length() - rhs.length();
+    }
+}
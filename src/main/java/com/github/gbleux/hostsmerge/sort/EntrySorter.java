@@ -0,0 +1,359 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge.sort;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.github.gbleux.hostsmerge.address.Address;
+import com.github.gbleux.hostsmerge.address.HostEntry;
+
+/**
+ * Sorts host entries by address and hostname. Instead of comparing entry
+ * objects, every entry gets a 64 bit key made of the rank of its address
+ * among all distinct addresses followed by as many leading hostname
+ * characters as fit into the remaining bits. The keys are sorted with an
+ * LSD radix sort. Larger runs of equal keys are refined with keys built from
+ * the next four hostname characters, small runs are ordered by comparing the
+ * hostnames.
+ * <p>
+ * The first key stores hostname characters in 8 bits. Characters beyond
+ * U+00FE are stored as 0xFF and end the prefix, which keeps the key order
+ * consistent with {@link String#compareTo(String)}; runs affected by such a
+ * character are always compared. Refinement keys use 16 bits per character.
+ * Instances are not thread-safe.
+ * <p>
+ * @author Gordon Bleux
+ */
+public class EntrySorter
+{
+    private static final int RADIX_BITS = 8;
+    private static final int RADIX = 1 << RADIX_BITS;
+    private static final int CHAR_LIMIT = RADIX - 1;
+    private static final int REFINE_CHARS = 4;
+    private static final int INSERTION_THRESHOLD = 32;
+
+    private long[] keyBuffer = null;
+    private int[] orderBuffer = null;
+    private final int[] counts = new int[RADIX];
+
+    public EntrySorter()
+    {
+        super();
+    }
+
+    /**
+     * @return comparator defining the order established by
+     *         {@link #sort(HostEntry[])}
+     */
+    public static Comparator<HostEntry> comparator()
+    {
+        return new Comparator<HostEntry>()
+        {
+            @Override
+            public int compare(HostEntry lhs, HostEntry rhs)
+            {
+                int address = lhs.addressValue().compareTo(rhs.addressValue());
+
+                return 0 == address ? lhs.hostname().compareTo(rhs.hostname()) : address;
+            }
+        };
+    }
+
+    /**
+     * sort entries by address, then by hostname.
+     * <p>
+     * @param entries entries to sort in place
+     */
+    public void sort(HostEntry[] entries)
+    {
+        sort(entries, entries.length);
+    }
+
+    /**
+     * sort the leading entries of an array by address, then by hostname.
+     * <p>
+     * @param entries entries to sort in place
+     * @param length  number of entries to sort
+     */
+    public void sort(HostEntry[] entries, int length)
+    {
+        Map<Address, Integer> ranks = null;
+        int rankBits = 0;
+        int prefix = 0;
+        long[] keys = null;
+        int[] order = null;
+        HostEntry[] sorted = null;
+
+        if (2 > length)
+        {
+            return;
+        }
+
+        ranks = rankAddresses(entries, length);
+        rankBits = 32 - Integer.numberOfLeadingZeros(ranks.size() - 1);
+        prefix = (Long.SIZE - rankBits) / RADIX_BITS;
+        keys = new long[length];
+        order = new int[length];
+        this.keyBuffer = new long[length];
+        this.orderBuffer = new int[length];
+
+        for (int i = 0; i < length; i++)
+        {
+            // rank is always 0 if no bits are reserved for it
+            keys[i] = (0 == rankBits ? 0L : (long) ranks.get(entries[i].addressValue()) << (prefix * RADIX_BITS))
+                    | prefix(entries[i].hostname(), prefix);
+            order[i] = i;
+        }
+
+        try
+        {
+            radixSort(keys, order, 0, length, rankBits + prefix * RADIX_BITS);
+            refine(entries, keys, order, 0, length, prefix, true);
+        }
+        finally
+        {
+            this.keyBuffer = null;
+            this.orderBuffer = null;
+        }
+
+        sorted = new HostEntry[length];
+
+        for (int i = 0; i < length; i++)
+        {
+            sorted[i] = entries[order[i]];
+        }
+
+        System.arraycopy(sorted, 0, entries, 0, sorted.length);
+    }
+
+    /**
+     * @return dense rank of each distinct address in address order
+     */
+    private static Map<Address, Integer> rankAddresses(HostEntry[] entries, int length)
+    {
+        Map<Address, Integer> ranks = new HashMap<>();
+        List<Address> addresses = null;
+
+        for (int i = 0; i < length; i++)
+        {
+            ranks.put(entries[i].addressValue(), 0);
+        }
+
+        addresses = new ArrayList<>(ranks.keySet());
+        Collections.sort(addresses);
+
+        for (int i = 0; i < addresses.size(); i++)
+        {
+            ranks.put(addresses.get(i), i);
+        }
+
+        return ranks;
+    }
+
+    /**
+     * pack the leading characters of a hostname into the lower bytes of a
+     * key. missing characters are zero.
+     */
+    private static long prefix(String hostname, int length)
+    {
+        long key = 0L;
+        int used = 0;
+        char c = 0;
+
+        for (; used < length && used < hostname.length(); used++)
+        {
+            c = hostname.charAt(used);
+            key = key << RADIX_BITS | Math.min(c, CHAR_LIMIT);
+
+            if (CHAR_LIMIT <= c)
+            {
+                used++;
+                break;
+            }
+        }
+
+        return key << ((length - used) * RADIX_BITS);
+    }
+
+    /**
+     * order the runs of equal keys within a range. all hostnames of a run
+     * share their first {@code offset} characters.
+     * <p>
+     * @param first whether the keys are the initial 8 bit prefix keys
+     */
+    private void refine(HostEntry[] entries, long[] keys, int[] order, int from, int to, int offset, boolean first)
+    {
+        int start = from;
+
+        for (int end = from + 1; end <= to; end++)
+        {
+            if (end < to && keys[end] == keys[start])
+            {
+                continue;
+            }
+
+            if (INSERTION_THRESHOLD >= end - start || false == refinable(entries, order, start, end, offset, first))
+            {
+                insertionSort(entries, order, start, end);
+            }
+            else
+            {
+                for (int i = start; i < end; i++)
+                {
+                    keys[i] = chars(entries[order[i]].hostname(), offset);
+                }
+
+                radixSort(keys, order, start, end, REFINE_CHARS * Character.SIZE);
+                refine(entries, keys, order, start, end, offset + REFINE_CHARS, false);
+            }
+
+            start = end;
+        }
+    }
+
+    /**
+     * @return whether the hostnames of a run continue after the shared
+     *         prefix and the prefix was not cut by a wide character
+     */
+    private static boolean refinable(HostEntry[] entries, int[] order, int start, int end, int offset, boolean first)
+    {
+        boolean longer = false;
+        String hostname = null;
+
+        for (int i = start; i < end; i++)
+        {
+            hostname = entries[order[i]].hostname();
+            longer |= hostname.length() > offset;
+
+            for (int j = 0; true == first && j < offset && j < hostname.length(); j++)
+            {
+                if (CHAR_LIMIT <= hostname.charAt(j))
+                {
+                    return false;
+                }
+            }
+        }
+
+        return longer;
+    }
+
+    /**
+     * @return four characters starting at the offset, missing ones are zero
+     */
+    private static long chars(String hostname, int offset)
+    {
+        long key = 0L;
+
+        for (int i = offset; i < offset + REFINE_CHARS; i++)
+        {
+            key = key << Character.SIZE | (i < hostname.length() ? hostname.charAt(i) : 0);
+        }
+
+        return key;
+    }
+
+    private static void insertionSort(HostEntry[] entries, int[] order, int start, int end)
+    {
+        int current = 0;
+        int j = 0;
+
+        for (int i = start + 1; i < end; i++)
+        {
+            current = order[i];
+
+            for (j = i; j > start && entries[order[j - 1]].hostname().compareTo(entries[current].hostname()) > 0; j--)
+            {
+                order[j] = order[j - 1];
+            }
+
+            order[j] = current;
+        }
+    }
+
+    /**
+     * stable LSD radix sort of a range of unsigned keys, permuting the order
+     * alongside. passes in which all keys share the same digit are skipped.
+     */
+    private void radixSort(long[] keys, int[] order, int from, int to, int bits)
+    {
+        long[] sourceKeys = keys;
+        int[] sourceOrder = order;
+        long[] targetKeys = this.keyBuffer;
+        int[] targetOrder = this.orderBuffer;
+        long[] swapKeys = null;
+        int[] swapOrder = null;
+        int digit = 0;
+        int sum = 0;
+
+        for (int shift = 0; shift < bits; shift += RADIX_BITS)
+        {
+            Arrays.fill(this.counts, 0);
+
+            for (int i = from; i < to; i++)
+            {
+                this.counts[(int) (sourceKeys[i] >>> shift) & (RADIX - 1)]++;
+            }
+
+            if (this.counts[(int) (sourceKeys[from] >>> shift) & (RADIX - 1)] == to - from)
+            {
+                continue;
+            }
+
+            // exclusive prefix sums, offset by the range start
+            sum = from;
+
+            for (int i = 0; i < RADIX; i++)
+            {
+                digit = this.counts[i];
+                this.counts[i] = sum;
+                sum += digit;
+            }
+
+            for (int i = from; i < to; i++)
+            {
+                digit = (int) (sourceKeys[i] >>> shift) & (RADIX - 1);
+                targetKeys[this.counts[digit]] = sourceKeys[i];
+                targetOrder[this.counts[digit]++] = sourceOrder[i];
+            }
+
+            swapKeys = sourceKeys;
+            sourceKeys = targetKeys;
+            targetKeys = swapKeys;
+            swapOrder = sourceOrder;
+            sourceOrder = targetOrder;
+            targetOrder = swapOrder;
+        }
+
+        if (sourceKeys != keys)
+        {
+            System.arraycopy(sourceKeys, from, keys, from, to - from);
+            System.arraycopy(sourceOrder, from, order, from, to - from);
+        }
+    }
+}
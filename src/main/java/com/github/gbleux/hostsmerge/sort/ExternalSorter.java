@@ -0,0 +1,181 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge.sort;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import com.github.gbleux.hostsmerge.address.HostEntry;
+import com.github.gbleux.hostsmerge.codec.EntrySource;
+
+/**
+ * Sorts an unbounded number of entries by address and hostname within a
+ * memory budget. Entries are buffered until their estimated size exceeds
+ * the budget, then sorted with an {@link EntrySorter} and spilled as a run.
+ * Reading merges all runs. If nothing was spilled the entries are sorted in
+ * memory.
+ * <p>
+ * @author Gordon Bleux
+ */
+public class ExternalSorter implements Closeable
+{
+    /**
+     * estimated heap usage of a buffered entry excluding its hostname:
+     * entry, string and array headers plus the sort keys
+     */
+    static final int ENTRY_COST = 136;
+
+    private final long budget;
+    private final RunFiles runs;
+    private final EntrySorter sorter = new EntrySorter();
+    private HostEntry[] buffer = new HostEntry[1024];
+    private int count = 0;
+    private long usage = 0L;
+
+    /**
+     * @param budget    memory budget in bytes
+     * @param directory location of the temporary files
+     */
+    public ExternalSorter(long budget, Path directory)
+    {
+        super();
+
+        this.budget = budget;
+        this.runs = new RunFiles(directory, EntrySorter.comparator(), false);
+    }
+
+    /**
+     * @param entry entry to sort
+     * @throws IOException failed to spill a run
+     */
+    public void add(HostEntry entry) throws IOException
+    {
+        if (this.count == this.buffer.length)
+        {
+            this.buffer = Arrays.copyOf(this.buffer, this.count * 2);
+        }
+
+        this.buffer[this.count++] = entry;
+        this.usage += cost(entry);
+
+        if (this.usage > this.budget)
+        {
+            spill();
+        }
+    }
+
+    /**
+     * @return number of runs written so far
+     */
+    public int runs()
+    {
+        return this.runs.size();
+    }
+
+    /**
+     * finish adding entries and read them in sorted order.
+     * <p>
+     * @return sorted entries
+     * @throws IOException failed to spill or open the runs
+     */
+    public EntrySource sorted() throws IOException
+    {
+        if (0 == this.runs.size())
+        {
+            this.sorter.sort(this.buffer, this.count);
+
+            return new BufferSource(this.buffer, this.count);
+        }
+
+        spill();
+        this.buffer = new HostEntry[0];
+
+        return this.runs.merge();
+    }
+
+    /**
+     * delete all runs.
+     * <p>
+     * @throws IOException failed to delete a run
+     */
+    @Override
+    public void close() throws IOException
+    {
+        this.buffer = new HostEntry[0];
+        this.count = 0;
+        this.runs.close();
+    }
+
+    /**
+     * @return estimated heap usage of an entry
+     */
+    static long cost(HostEntry entry)
+    {
+        return ENTRY_COST + entry.hostname().length();
+    }
+
+    private void spill() throws IOException
+    {
+        if (0 < this.count)
+        {
+            this.sorter.sort(this.buffer, this.count);
+            this.runs.write(this.buffer, this.count);
+        }
+
+        this.buffer = new HostEntry[1024];
+        this.count = 0;
+        this.usage = 0L;
+    }
+
+    /**
+     * entries of an in-memory array
+     */
+    private static final class BufferSource implements EntrySource
+    {
+        private final HostEntry[] entries;
+        private final int count;
+        private int index = 0;
+
+        public BufferSource(HostEntry[] entries, int count)
+        {
+            super();
+
+            this.entries = entries;
+            this.count = count;
+        }
+
+        @Override
+        public HostEntry read()
+        {
+            return this.index < this.count ? this.entries[this.index++] : null;
+        }
+
+        @Override
+        public void close()
+        {
+            // nothing to release
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge.sort;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import com.github.gbleux.hostsmerge.address.HostEntry;
+import com.github.gbleux.hostsmerge.codec.EntryReader;
+import com.github.gbleux.hostsmerge.codec.EntrySource;
+import com.github.gbleux.hostsmerge.codec.EntryWriter;
+
+/**
+ * Sorted runs of entries spilled to temporary files. Runs keep their
+ * creation order, which decides the winner among equal entries when merging
+ * in deduplicating mode. Merging more than {@link #MAX_FAN_IN} runs first
+ * combines consecutive runs, so the number of open files stays bounded.
+ * <p>
+ * @author Gordon Bleux
+ */
+public class RunFiles implements Closeable
+{
+    public static final int MAX_FAN_IN = 64;
+
+    private final Path directory;
+    private final Comparator<HostEntry> order;
+    private final boolean deduplicate;
+    private final List<Path> runs = new ArrayList<>();
+
+    /**
+     * @param directory   location of the temporary files
+     * @param order       sort order of the runs
+     * @param deduplicate whether merging keeps only the last of equal entries
+     */
+    public RunFiles(Path directory, Comparator<HostEntry> order, boolean deduplicate)
+    {
+        super();
+
+        this.directory = directory;
+        this.order = order;
+        this.deduplicate = deduplicate;
+    }
+
+    /**
+     * write a new run.
+     * <p>
+     * @param entries entries sorted by the order of the runs
+     * @param length  number of entries to write
+     * @throws IOException failed to write the run
+     */
+    public void write(HostEntry[] entries, int length) throws IOException
+    {
+        Path run = Files.createTempFile(this.directory, "hostsmerge", ".run");
+
+        this.runs.add(run);
+
+        try (EntryWriter writer = new EntryWriter(Files.newOutputStream(run)))
+        {
+            for (int i = 0; i < length; i++)
+            {
+                writer.write(entries[i]);
+            }
+        }
+    }
+
+    /**
+     * @return number of runs
+     */
+    public int size()
+    {
+        return this.runs.size();
+    }
+
+    /**
+     * open a merge of all runs.
+     * <p>
+     * @return merged entries in run order
+     * @throws IOException failed to open or combine the runs
+     */
+    public EntrySource merge() throws IOException
+    {
+        while (this.runs.size() > MAX_FAN_IN)
+        {
+            combine();
+        }
+
+        return open(this.runs);
+    }
+
+    /**
+     * delete all runs.
+     * <p>
+     * @throws IOException failed to delete a run
+     */
+    @Override
+    public void close() throws IOException
+    {
+        for (Path run : this.runs)
+        {
+            Files.deleteIfExists(run);
+        }
+
+        this.runs.clear();
+    }
+
+    /**
+     * replace groups of consecutive runs by their merge. the new run is
+     * listed before it is written and every merged run is unlisted once it is
+     * deleted, so {@link #close()} removes all files after a failure.
+     */
+    private void combine() throws IOException
+    {
+        Path run = null;
+        HostEntry entry = null;
+        int end = 0;
+
+        for (int start = 0; start < this.runs.size(); start++)
+        {
+            end = Math.min(start + MAX_FAN_IN, this.runs.size());
+
+            if (1 == end - start)
+            {
+                continue;
+            }
+
+            run = Files.createTempFile(this.directory, "hostsmerge", ".run");
+            this.runs.add(end, run);
+
+            try (EntrySource source = open(this.runs.subList(start, end));
+                 EntryWriter writer = new EntryWriter(Files.newOutputStream(run)))
+            {
+                while (null != (entry = source.read()))
+                {
+                    writer.write(entry);
+                }
+            }
+
+            for (int i = end - 1; i >= start; i--)
+            {
+                Files.delete(this.runs.get(i));
+                this.runs.remove(i);
+            }
+        }
+    }
+
+    private EntrySource open(List<Path> files) throws IOException
+    {
+        List<EntrySource> sources = new ArrayList<>();
+
+        try
+        {
+            for (Path file : files)
+            {
+                sources.add(new EntryReader(Files.newInputStream(file)));
+            }
+
+            return new RunMerger(sources, this.order, this.deduplicate);
+        }
+        catch (IOException e)
+        {
+            for (EntrySource source : sources)
+            {
+                source.close();
+            }
+
+            throw e;
+        }
+    }
+}
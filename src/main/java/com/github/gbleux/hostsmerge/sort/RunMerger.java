@@ -0,0 +1,177 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge.sort;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import com.github.gbleux.hostsmerge.address.HostEntry;
+import com.github.gbleux.hostsmerge.codec.EntrySource;
+
+/**
+ * K-way merge of sources which are sorted by the same comparator. Memory
+ * usage is one entry per source. Entries comparing equal are returned in
+ * source order; in deduplicating mode only the entry of the last source is
+ * returned.
+ * <p>
+ * @author Gordon Bleux
+ */
+public class RunMerger implements EntrySource
+{
+    private final List<EntrySource> sources;
+    private final PriorityQueue<Head> heads;
+    private final Comparator<HostEntry> order;
+    private final boolean deduplicate;
+    private long superseded = 0L;
+
+    /**
+     * @param sources     sorted sources in input order. closed along with
+     *                    the merger.
+     * @param order       sort order of all sources
+     * @param deduplicate whether to return only the last of equal entries
+     * @throws IOException failed to read the first entries
+     */
+    public RunMerger(List<? extends EntrySource> sources, Comparator<HostEntry> order, boolean deduplicate) throws IOException
+    {
+        super();
+
+        this.sources = new ArrayList<>(sources);
+        this.order = order;
+        this.deduplicate = deduplicate;
+        this.heads = new PriorityQueue<>(Math.max(1, sources.size()), new Comparator<Head>()
+        {
+            @Override
+            public int compare(Head lhs, Head rhs)
+            {
+                int result = RunMerger.this.order.compare(lhs.entry, rhs.entry);
+
+                // later sources first when deduplicating
+                if (0 == result)
+                {
+                    result = Integer.compare(lhs.index, rhs.index);
+                    result = RunMerger.this.deduplicate ? -result : result;
+                }
+
+                return result;
+            }
+        });
+
+        for (int i = 0; i < this.sources.size(); i++)
+        {
+            advance(new Head(i));
+        }
+    }
+
+    @Override
+    public HostEntry read() throws IOException
+    {
+        Head head = this.heads.poll();
+        HostEntry entry = null;
+
+        if (null == head)
+        {
+            return null;
+        }
+
+        entry = head.entry;
+        advance(head);
+
+        while (true == this.deduplicate && false == this.heads.isEmpty()
+                && 0 == this.order.compare(entry, this.heads.peek().entry))
+        {
+            // superseded by the entry of a later source
+            advance(this.heads.poll());
+            this.superseded++;
+        }
+
+        return entry;
+    }
+
+    /**
+     * @return number of entries dropped for an equal entry of a later source
+     */
+    public long superseded()
+    {
+        return this.superseded;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        IOException failure = null;
+
+        for (EntrySource source : this.sources)
+        {
+            try
+            {
+                source.close();
+            }
+            catch (IOException e)
+            {
+                failure = null == failure ? e : failure;
+            }
+        }
+
+        this.heads.clear();
+
+        if (null != failure)
+        {
+            throw failure;
+        }
+    }
+
+    private void advance(Head head) throws IOException
+    {
+        HostEntry next = this.sources.get(head.index).read();
+
+        if (null != next)
+        {
+            if (null != head.entry && 0 < this.order.compare(head.entry, next))
+            {
+                throw new IOException("Entries are not sorted: " + next.hostname() + " after " + head.entry.hostname());
+            }
+
+            head.entry = next;
+            this.heads.add(head);
+        }
+    }
+
+    /**
+     * current entry of a source
+     */
+    private static final class Head
+    {
+        private final int index;
+        private HostEntry entry = null;
+
+        public Head(int index)
+        {
+            super();
+
+            this.index = index;
+        }
+    }
+}
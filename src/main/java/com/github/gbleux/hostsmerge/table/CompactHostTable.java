@@ -0,0 +1,386 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge.table;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.github.gbleux.hostsmerge.address.Address;
+import com.github.gbleux.hostsmerge.address.HostEntry;
+import com.github.gbleux.io.ByteRanges;
+
+/**
+ * Memory efficient host table. Hostnames are appended as UTF-8 bytes to a
+ * shared array, addresses and comments are interned into {@link StringTable}s
+ * and the remaining per-entry state lives in parallel primitive arrays. The
+ * hostname index uses open addressing with linear probing over record
+ * numbers, so no object is retained per entry. {@link HostEntry} instances
+ * are only created while iterating.
+ * <p>
+ * @author Gordon Bleux
+ */
+public class CompactHostTable implements HostTable
+{
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+    private static final int EMPTY = -1;
+    private static final int INITIAL_RECORDS = 1 << 10;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private final InternTable<Address> addresses = new InternTable<>();
+    private final InternTable<String> comments = new InternTable<>();
+    private byte[] names = new byte[INITIAL_RECORDS * 16];
+    private int[] offsets = new int[INITIAL_RECORDS + 1];
+    private int[] hashes = new int[INITIAL_RECORDS];
+    private int[] payloads = new int[INITIAL_RECORDS];
+    private int[] notes = new int[INITIAL_RECORDS];
+    private int[] slots = newSlots(INITIAL_RECORDS * 2);
+    private int count = 0;
+
+    public CompactHostTable()
+    {
+        super();
+    }
+
+    @Override
+    public void put(HostEntry entry)
+    {
+        ByteBuffer hostname = ByteBuffer.wrap(entry.hostname().getBytes(CHARSET));
+
+        put(entry.isEnabled(), entry.addressValue(), hostname, 0, hostname.limit(), entry.comment());
+    }
+
+    @Override
+    public void put(boolean enabled, Address address, ByteBuffer buffer, int start, int end, String comment)
+    {
+        int hash = ByteRanges.hash(buffer, start, end);
+        int slot = find(hash, buffer, start, end);
+        int record = this.slots[slot];
+
+        if (EMPTY == record)
+        {
+            record = append(slot, hash, buffer, start, end);
+        }
+
+        this.payloads[record] = payload(this.addresses.intern(address), enabled);
+        this.notes[record] = this.comments.intern(null == comment ? "" : comment);
+    }
+
+    @Override
+    public void putAll(HostTable other, boolean replace)
+    {
+        CompactHostTable table = null;
+        ByteBuffer buffer = null;
+        int record = 0;
+        int slot = 0;
+
+        if (false == other instanceof CompactHostTable)
+        {
+            for (HostEntry entry : other)
+            {
+                if (true == replace || false == contains(entry.hostname()))
+                {
+                    put(entry);
+                }
+            }
+
+            return;
+        }
+
+        // copy records without materializing entries
+        table = (CompactHostTable) other;
+        buffer = ByteBuffer.wrap(table.names);
+
+        for (int i = 0; i < table.count; i++)
+        {
+            slot = find(table.hashes[i], buffer, table.offsets[i], table.offsets[i + 1]);
+            record = this.slots[slot];
+
+            if (EMPTY == record)
+            {
+                record = append(slot, table.hashes[i], buffer, table.offsets[i], table.offsets[i + 1]);
+            }
+            else if (false == replace)
+            {
+                continue;
+            }
+
+            this.payloads[record] = payload(this.addresses.intern(table.address(i)), table.isEnabled(i));
+            this.notes[record] = this.comments.intern(table.comment(i));
+        }
+    }
+
+    @Override
+    public int size()
+    {
+        return this.count;
+    }
+
+    /**
+     * @param hostname hostname to lookup
+     * @return whether an entry for the hostname exists
+     */
+    public boolean contains(String hostname)
+    {
+        ByteBuffer buffer = ByteBuffer.wrap(hostname.getBytes(CHARSET));
+
+        return EMPTY != this.slots[find(ByteRanges.hash(buffer, 0, buffer.limit()), buffer, 0, buffer.limit())];
+    }
+
+    /**
+     * @return number of distinct addresses
+     */
+    public int addressCount()
+    {
+        return this.addresses.size();
+    }
+
+    /**
+     * @return number of distinct comments
+     */
+    public int commentCount()
+    {
+        return this.comments.size();
+    }
+
+    @Override
+    public Iterator<HostEntry> iterator()
+    {
+        return new Iterator<HostEntry>()
+        {
+            private int record = 0;
+
+            @Override
+            public boolean hasNext()
+            {
+                return this.record < CompactHostTable.this.count;
+            }
+
+            @Override
+            public HostEntry next()
+            {
+                if (false == hasNext())
+                {
+                    throw new NoSuchElementException();
+                }
+
+                return entry(this.record++);
+            }
+
+            @Override
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    public void close()
+    {
+        // heap storage only
+    }
+
+    /**
+     * materialize a record.
+     * <p>
+     * @param record record number
+     * @return new entry instance
+     */
+    private HostEntry entry(int record)
+    {
+        return new HostEntry(isEnabled(record), address(record), hostname(record), comment(record));
+    }
+
+    private String hostname(int record)
+    {
+        int start = this.offsets[record];
+
+        return new String(this.names, start, this.offsets[record + 1] - start, CHARSET);
+    }
+
+    private Address address(int record)
+    {
+        return this.addresses.get(this.payloads[record] >>> 1);
+    }
+
+    private String comment(int record)
+    {
+        return this.comments.get(this.notes[record]);
+    }
+
+    private boolean isEnabled(int record)
+    {
+        return 1 == (this.payloads[record] & 1);
+    }
+
+    /**
+     * probe for the slot of a hostname.
+     * <p>
+     * @return slot containing the hostname or the empty slot to insert it
+     */
+    private int find(int hash, ByteBuffer buffer, int start, int end)
+    {
+        int mask = this.slots.length - 1;
+        int slot = hash & mask;
+        int record = 0;
+
+        while (EMPTY != (record = this.slots[slot]))
+        {
+            if (hash == this.hashes[record] && true == equalName(record, buffer, start, end))
+            {
+                break;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+
+    private boolean equalName(int record, ByteBuffer buffer, int start, int end)
+    {
+        int offset = this.offsets[record];
+
+        if (this.offsets[record + 1] - offset != end - start)
+        {
+            return false;
+        }
+
+        for (int i = start; i < end; i++)
+        {
+            if (this.names[offset++] != buffer.get(i))
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * add a new record for a hostname.
+     * <p>
+     * @return record number
+     */
+    private int append(int slot, int hash, ByteBuffer buffer, int start, int end)
+    {
+        int record = this.count;
+        int offset = this.offsets[record];
+        int length = end - start;
+
+        if (record + 1 >= this.hashes.length)
+        {
+            growRecords();
+        }
+
+        if (this.names.length - offset < length)
+        {
+            this.names = Arrays.copyOf(this.names, grow(this.names.length, offset + length));
+        }
+
+        for (int i = start; i < end; i++)
+        {
+            this.names[offset++] = buffer.get(i);
+        }
+
+        this.offsets[record + 1] = offset;
+        this.hashes[record] = hash;
+        this.slots[slot] = record;
+        this.count++;
+
+        if (this.count > this.slots.length * LOAD_FACTOR)
+        {
+            rehash();
+        }
+
+        return record;
+    }
+
+    private void growRecords()
+    {
+        int capacity = grow(this.hashes.length, this.hashes.length + 1);
+
+        this.offsets = Arrays.copyOf(this.offsets, capacity + 1);
+        this.hashes = Arrays.copyOf(this.hashes, capacity);
+        this.payloads = Arrays.copyOf(this.payloads, capacity);
+        this.notes = Arrays.copyOf(this.notes, capacity);
+    }
+
+    /**
+     * double the index, reusing the stored hash codes.
+     */
+    private void rehash()
+    {
+        int[] index = newSlots(this.slots.length * 2);
+        int mask = index.length - 1;
+        int slot = 0;
+
+        for (int record = 0; record < this.count; record++)
+        {
+            slot = this.hashes[record] & mask;
+
+            while (EMPTY != index[slot])
+            {
+                slot = (slot + 1) & mask;
+            }
+
+            index[slot] = record;
+        }
+
+        this.slots = index;
+    }
+
+    private static int payload(int address, boolean enabled)
+    {
+        return address << 1 | (enabled ? 1 : 0);
+    }
+
+    private static int grow(int current, int minimum)
+    {
+        long size = Math.max((long) current + (current >> 1), minimum);
+
+        if (size > Integer.MAX_VALUE - 8)
+        {
+            if (minimum > Integer.MAX_VALUE - 8)
+            {
+                throw new OutOfMemoryError("Host table capacity exceeded");
+            }
+
+            size = Integer.MAX_VALUE - 8;
+        }
+
+        return (int) size;
+    }
+
+    private static int[] newSlots(int size)
+    {
+        int[] slots = new int[size];
+
+        Arrays.fill(slots, EMPTY);
+
+        return slots;
+    }
+}
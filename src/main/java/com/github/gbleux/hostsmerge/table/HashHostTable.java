@@ -0,0 +1,101 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge.table;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import com.github.gbleux.hostsmerge.address.Address;
+import com.github.gbleux.hostsmerge.address.HostEntry;
+import com.github.gbleux.io.ByteRanges;
+
+/**
+ * Host table backed by a {@link HashMap} keyed by hostname.
+ * <p>
+ * @author Gordon Bleux
+ */
+public class HashHostTable implements HostTable
+{
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+
+    private final Map<String, HostEntry> entries = new HashMap<>();
+
+    public HashHostTable()
+    {
+        super();
+    }
+
+    @Override
+    public void put(HostEntry entry)
+    {
+        this.entries.put(entry.hostname(), entry);
+    }
+
+    @Override
+    public void put(boolean enabled, Address address, ByteBuffer buffer, int start, int end, String comment)
+    {
+        String hostname = ByteRanges.decode(buffer, start, end, CHARSET);
+
+        this.entries.put(hostname, new HostEntry(enabled, address, hostname, comment));
+    }
+
+    @Override
+    public void putAll(HostTable other, boolean replace)
+    {
+        if (other instanceof HashHostTable && true == replace)
+        {
+            this.entries.putAll(((HashHostTable) other).entries);
+
+            return;
+        }
+
+        for (HostEntry entry : other)
+        {
+            if (true == replace || false == this.entries.containsKey(entry.hostname()))
+            {
+                this.entries.put(entry.hostname(), entry);
+            }
+        }
+    }
+
+    @Override
+    public int size()
+    {
+        return this.entries.size();
+    }
+
+    @Override
+    public Iterator<HostEntry> iterator()
+    {
+        return this.entries.values().iterator();
+    }
+
+    @Override
+    public void close()
+    {
+        // heap storage only
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge.table;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+
+import com.github.gbleux.hostsmerge.address.Address;
+import com.github.gbleux.hostsmerge.address.HostEntry;
+
+/**
+ * Deduplicating storage for host entries. Each hostname is stored once, an
+ * entry replaces any previously stored entry of the same hostname. Iteration
+ * order is undefined. Implementations are not thread-safe. Closing a table
+ * releases storage which is not managed by the garbage collector.
+ * <p>
+ * @author Gordon Bleux
+ */
+public interface HostTable extends HostEntries, Closeable
+{
+    /**
+     * store the entry, replacing the entry of the same hostname.
+     * <p>
+     * @param entry entry to store
+     */
+    public void put(HostEntry entry);
+
+    /**
+     * store an entry whose hostname is given as UTF-8 encoded byte range,
+     * replacing the entry of the same hostname.
+     * <p>
+     * @param enabled whether the entry is active
+     * @param address entry address
+     * @param buffer  hostname data
+     * @param start   absolute index of the first hostname byte
+     * @param end     absolute index after the last hostname byte
+     * @param comment entry comment
+     */
+    public void put(boolean enabled, Address address, ByteBuffer buffer, int start, int end, String comment);
+
+    /**
+     * store all entries of another table.
+     * <p>
+     * @param other   table to copy
+     * @param replace if {@literal true}, entries of the other table replace
+     *                entries of this table. otherwise only entries for
+     *                unknown hostnames are added.
+     */
+    public void putAll(HostTable other, boolean replace);
+}
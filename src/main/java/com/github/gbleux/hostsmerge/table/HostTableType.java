@@ -0,0 +1,98 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge.table;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Locale;
+
+/**
+ * Available {@link HostTable} implementations.
+ * <p>
+ * @author Gordon Bleux
+ */
+public enum HostTableType
+{
+    /**
+     * {@link java.util.HashMap} of entry objects
+     */
+    HASH
+    {
+        @Override
+        public HostTable newTable()
+        {
+            return new HashHostTable();
+        }
+    },
+    /**
+     * packed hostnames with interned addresses and comments
+     */
+    COMPACT
+    {
+        @Override
+        public HostTable newTable()
+        {
+            return new CompactHostTable();
+        }
+    },
+    /**
+     * compact layout in direct memory
+     */
+    OFF_HEAP
+    {
+        @Override
+        public HostTable newTable()
+        {
+            return new OffHeapHostTable();
+        }
+    },
+    /**
+     * compact layout in memory mapped temporary files
+     */
+    MAPPED
+    {
+        @Override
+        public HostTable newTable() throws IOException
+        {
+            return new OffHeapHostTable(Paths.get(System.getProperty("java.io.tmpdir")));
+        }
+    };
+
+    /**
+     * @return new, empty table
+     * @throws IOException failed to allocate the table storage
+     */
+    public abstract HostTable newTable() throws IOException;
+
+    /**
+     * lookup a type by its case-insensitive name.
+     * <p>
+     * @param name type name
+     * @return table type
+     * @throws IllegalArgumentException unknown name
+     */
+    public static HostTableType parse(String name) throws IllegalArgumentException
+    {
+        return valueOf(name.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+    }
+}
@@ -0,0 +1,85 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge.table;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interning table which assigns a dense id to every distinct value. Meant
+ * for small vocabularies such as addresses and comments.
+ * <p>
+ * @param <T> value type
+ * <p>
+ * @author Gordon Bleux
+ */
+public class InternTable<T>
+{
+    private final Map<T, Integer> ids = new HashMap<>();
+    private final List<T> values = new ArrayList<>();
+
+    public InternTable()
+    {
+        super();
+    }
+
+    /**
+     * lookup or assign the id of a value.
+     * <p>
+     * @param value value to intern
+     * @return id of the value
+     */
+    public int intern(T value)
+    {
+        Integer id = this.ids.get(value);
+
+        if (null == id)
+        {
+            id = this.values.size();
+
+            this.ids.put(value, id);
+            this.values.add(value);
+        }
+
+        return id;
+    }
+
+    /**
+     * @param id id returned by {@link #intern(Object)}
+     * @return interned value
+     */
+    public T get(int id)
+    {
+        return this.values.get(id);
+    }
+
+    /**
+     * @return number of distinct values
+     */
+    public int size()
+    {
+        return this.values.size();
+    }
+}
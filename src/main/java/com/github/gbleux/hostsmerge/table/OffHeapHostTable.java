@@ -0,0 +1,452 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge.table;
+
+import java.io.IOError;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.github.gbleux.hostsmerge.address.Address;
+import com.github.gbleux.hostsmerge.address.HostEntry;
+import com.github.gbleux.io.ByteRanges;
+import com.github.gbleux.io.PagedBuffer;
+
+/**
+ * Host table which keeps hostnames, records and the hash index outside of
+ * the Java heap. The layout follows {@link CompactHostTable}: hostnames are
+ * appended to a byte arena, each record stores the hostname location, its
+ * hash code, the interned address and comment, and the index is an open
+ * addressing table with linear probing over record numbers. All three parts
+ * are {@link PagedBuffer}s, so the arena and the records grow by adding
+ * pages and the index is rebuilt from the stored hash codes.
+ * <p>
+ * Only the distinct addresses and comments remain on the heap. Record
+ * layout (24 bytes):
+ * <pre>
+ * 0  long hostname offset
+ * 8  int  hostname length
+ * 12 int  hash code
+ * 16 int  address number &lt;&lt; 1 | enabled
+ * 20 int  comment number
+ * </pre>
+ * <p>
+ * @author Gordon Bleux
+ */
+public class OffHeapHostTable implements HostTable
+{
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+    private static final int RECORD_SIZE = 24;
+    private static final int INITIAL_SLOTS = 1 << 11;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private final InternTable<Address> addresses = new InternTable<>();
+    private final InternTable<String> comments = new InternTable<>();
+    private final Path directory;
+    private final PagedBuffer names;
+    private final PagedBuffer records;
+    private PagedBuffer slots;
+    private long slotMask;
+    private long length = 0;
+    private int count = 0;
+
+    /**
+     * create a table backed by direct memory.
+     */
+    public OffHeapHostTable()
+    {
+        super();
+
+        this.directory = null;
+        this.names = new PagedBuffer(PagedBuffer.DEFAULT_PAGE_SHIFT);
+        this.records = new PagedBuffer(PagedBuffer.DEFAULT_PAGE_SHIFT);
+        this.slots = newSlots(INITIAL_SLOTS);
+        this.slotMask = INITIAL_SLOTS - 1;
+    }
+
+    /**
+     * create a table backed by temporary files, which are deleted once the
+     * table is closed.
+     * <p>
+     * @param directory location of the temporary files
+     * @throws IOException failed to create the files
+     */
+    public OffHeapHostTable(Path directory) throws IOException
+    {
+        super();
+
+        this.directory = directory;
+        this.names = new PagedBuffer(PagedBuffer.DEFAULT_PAGE_SHIFT, directory);
+        this.records = new PagedBuffer(PagedBuffer.DEFAULT_PAGE_SHIFT, directory);
+        this.slots = newSlots(INITIAL_SLOTS);
+        this.slotMask = INITIAL_SLOTS - 1;
+    }
+
+    @Override
+    public void put(HostEntry entry)
+    {
+        ByteBuffer hostname = ByteBuffer.wrap(entry.hostname().getBytes(CHARSET));
+
+        put(entry.isEnabled(), entry.addressValue(), hostname, 0, hostname.limit(), entry.comment());
+    }
+
+    @Override
+    public void put(boolean enabled, Address address, ByteBuffer buffer, int start, int end, String comment)
+    {
+        int hash = ByteRanges.hash(buffer, start, end);
+        long slot = find(hash, buffer, start, end);
+        int record = this.slots.getInt(slot << 2) - 1;
+
+        if (0 > record)
+        {
+            record = append(slot, hash, buffer, start, end);
+        }
+
+        setEntry(record, this.addresses.intern(address), enabled, this.comments.intern(null == comment ? "" : comment));
+    }
+
+    @Override
+    public void putAll(HostTable other, boolean replace)
+    {
+        OffHeapHostTable table = null;
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        long base = 0;
+        int size = 0;
+        int hash = 0;
+        long slot = 0;
+        int record = 0;
+
+        if (false == other instanceof OffHeapHostTable)
+        {
+            for (HostEntry entry : other)
+            {
+                if (true == replace || false == contains(entry.hostname()))
+                {
+                    put(entry);
+                }
+            }
+
+            return;
+        }
+
+        // copy records without materializing entries
+        table = (OffHeapHostTable) other;
+
+        for (int i = 0; i < table.count; i++)
+        {
+            base = (long) i * RECORD_SIZE;
+            size = table.records.getInt(base + 8);
+            hash = table.records.getInt(base + 12);
+
+            if (buffer.capacity() < size)
+            {
+                buffer = ByteBuffer.allocate(size);
+            }
+
+            table.names.get(table.records.getLong(base), buffer.array(), 0, size);
+            slot = find(hash, buffer, 0, size);
+            record = this.slots.getInt(slot << 2) - 1;
+
+            if (0 > record)
+            {
+                record = append(slot, hash, buffer, 0, size);
+            }
+            else if (false == replace)
+            {
+                continue;
+            }
+
+            setEntry(record, this.addresses.intern(table.address(i)), table.isEnabled(i), this.comments.intern(table.comment(i)));
+        }
+    }
+
+    @Override
+    public int size()
+    {
+        return this.count;
+    }
+
+    /**
+     * @param hostname hostname to lookup
+     * @return whether an entry for the hostname exists
+     */
+    public boolean contains(String hostname)
+    {
+        ByteBuffer buffer = ByteBuffer.wrap(hostname.getBytes(CHARSET));
+        long slot = find(ByteRanges.hash(buffer, 0, buffer.limit()), buffer, 0, buffer.limit());
+
+        return 0 != this.slots.getInt(slot << 2);
+    }
+
+    /**
+     * @return number of off-heap bytes in use
+     */
+    public long memoryUsage()
+    {
+        return this.names.capacity() + this.records.capacity() + this.slots.capacity();
+    }
+
+    @Override
+    public Iterator<HostEntry> iterator()
+    {
+        return new Iterator<HostEntry>()
+        {
+            private int record = 0;
+
+            @Override
+            public boolean hasNext()
+            {
+                return this.record < OffHeapHostTable.this.count;
+            }
+
+            @Override
+            public HostEntry next()
+            {
+                if (false == hasNext())
+                {
+                    throw new NoSuchElementException();
+                }
+
+                return entry(this.record++);
+            }
+
+            @Override
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * release the off-heap storage. the table must not be used afterwards.
+     * <p>
+     * @throws IOException failed to delete the temporary files
+     */
+    @Override
+    public void close() throws IOException
+    {
+        IOException failure = null;
+
+        this.count = 0;
+
+        for (PagedBuffer buffer : new PagedBuffer[] {this.names, this.records, this.slots})
+        {
+            try
+            {
+                buffer.close();
+            }
+            catch (IOException e)
+            {
+                failure = null == failure ? e : failure;
+            }
+        }
+
+        if (null != failure)
+        {
+            throw failure;
+        }
+    }
+
+    /**
+     * materialize a record.
+     * <p>
+     * @param record record number
+     * @return new entry instance
+     */
+    private HostEntry entry(int record)
+    {
+        return new HostEntry(isEnabled(record), address(record), hostname(record), comment(record));
+    }
+
+    private String hostname(int record)
+    {
+        long base = (long) record * RECORD_SIZE;
+        byte[] data = new byte[this.records.getInt(base + 8)];
+
+        this.names.get(this.records.getLong(base), data, 0, data.length);
+
+        return new String(data, CHARSET);
+    }
+
+    private Address address(int record)
+    {
+        return this.addresses.get(this.records.getInt((long) record * RECORD_SIZE + 16) >>> 1);
+    }
+
+    private String comment(int record)
+    {
+        return this.comments.get(this.records.getInt((long) record * RECORD_SIZE + 20));
+    }
+
+    private boolean isEnabled(int record)
+    {
+        return 1 == (this.records.getInt((long) record * RECORD_SIZE + 16) & 1);
+    }
+
+    private void setEntry(int record, int address, boolean enabled, int comment)
+    {
+        long base = (long) record * RECORD_SIZE;
+
+        this.records.putInt(base + 16, address << 1 | (enabled ? 1 : 0));
+        this.records.putInt(base + 20, comment);
+    }
+
+    /**
+     * probe for the slot of a hostname. slots contain the record number plus
+     * one, so zeroed storage marks empty slots.
+     * <p>
+     * @return slot containing the hostname or the empty slot to insert it
+     */
+    private long find(int hash, ByteBuffer buffer, int start, int end)
+    {
+        long slot = hash & this.slotMask;
+        long base = 0;
+        int record = 0;
+
+        while (0 != (record = this.slots.getInt(slot << 2)))
+        {
+            base = (long) (record - 1) * RECORD_SIZE;
+
+            if (hash == this.records.getInt(base + 12)
+                    && end - start == this.records.getInt(base + 8)
+                    && true == this.names.equals(this.records.getLong(base), buffer, start, end))
+            {
+                break;
+            }
+
+            slot = (slot + 1) & this.slotMask;
+        }
+
+        return slot;
+    }
+
+    /**
+     * add a new record for a hostname.
+     * <p>
+     * @return record number
+     */
+    private int append(long slot, int hash, ByteBuffer buffer, int start, int end)
+    {
+        int record = this.count;
+        long base = (long) record * RECORD_SIZE;
+
+        if (Integer.MAX_VALUE - 1 == record)
+        {
+            throw new OutOfMemoryError("Host table capacity exceeded");
+        }
+
+        ensureCapacity(this.names, this.length + end - start);
+        ensureCapacity(this.records, base + RECORD_SIZE);
+
+        this.names.put(this.length, buffer, start, end);
+        this.records.putLong(base, this.length);
+        this.records.putInt(base + 8, end - start);
+        this.records.putInt(base + 12, hash);
+        this.slots.putInt(slot << 2, record + 1);
+        this.length += end - start;
+        this.count++;
+
+        if (this.count > (this.slotMask + 1) * LOAD_FACTOR)
+        {
+            rehash();
+        }
+
+        return record;
+    }
+
+    /**
+     * double the index, reusing the stored hash codes.
+     */
+    private void rehash()
+    {
+        long size = (this.slotMask + 1) * 2;
+        long mask = size - 1;
+        PagedBuffer index = newSlots(size);
+        long slot = 0;
+
+        for (int record = 0; record < this.count; record++)
+        {
+            slot = this.records.getInt((long) record * RECORD_SIZE + 12) & mask;
+
+            while (0 != index.getInt(slot << 2))
+            {
+                slot = (slot + 1) & mask;
+            }
+
+            index.putInt(slot << 2, record + 1);
+        }
+
+        try
+        {
+            this.slots.close();
+        }
+        catch (IOException e)
+        {
+            throw new IOError(e);
+        }
+
+        this.slots = index;
+        this.slotMask = mask;
+    }
+
+    private PagedBuffer newSlots(long size)
+    {
+        PagedBuffer index = null;
+
+        try
+        {
+            if (null == this.directory)
+            {
+                index = new PagedBuffer(PagedBuffer.DEFAULT_PAGE_SHIFT);
+            }
+            else
+            {
+                index = new PagedBuffer(PagedBuffer.DEFAULT_PAGE_SHIFT, this.directory);
+            }
+
+            index.ensureCapacity(size << 2);
+        }
+        catch (IOException e)
+        {
+            throw new IOError(e);
+        }
+
+        return index;
+    }
+
+    private static void ensureCapacity(PagedBuffer buffer, long capacity)
+    {
+        try
+        {
+            buffer.ensureCapacity(capacity);
+        }
+        catch (IOException e)
+        {
+            throw new IOError(e);
+        }
+    }
+}
@@ -0,0 +1,366 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge.table;
+
+import java.io.IOError;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import com.github.gbleux.hostsmerge.address.Address;
+import com.github.gbleux.hostsmerge.address.HostEntry;
+import com.github.gbleux.hostsmerge.codec.EntrySource;
+import com.github.gbleux.hostsmerge.sort.RunFiles;
+
+/**
+ * Host table with a memory budget. Entries are collected in an in-memory
+ * table until its estimated size exceeds the budget, then the table is
+ * sorted by hostname, written to a temporary run file and cleared. Iterating
+ * merges all runs by hostname and keeps the entry of the latest run for each
+ * hostname, so the result equals the one of an unbounded table, ordered by
+ * hostname once spilled.
+ * <p>
+ * Once spilled, {@link #putAll(HostTable, boolean)} only supports replacing
+ * entries and {@link #size()} requires a merge of all runs.
+ * <p>
+ * @author Gordon Bleux
+ */
+public class SpillingHostTable implements HostTable
+{
+    /**
+     * estimated heap usage of an entry excluding its hostname
+     */
+    static final int ENTRY_COST = 176;
+    private static final Comparator<HostEntry> HOSTNAMES = new Comparator<HostEntry>()
+    {
+        @Override
+        public int compare(HostEntry lhs, HostEntry rhs)
+        {
+            return lhs.hostname().compareTo(rhs.hostname());
+        }
+    };
+
+    private final HostTableType type;
+    private final long budget;
+    private final RunFiles runs;
+    private final List<EntrySource> open = new ArrayList<>();
+    private HostTable memory;
+    private long usage = 0L;
+    private int size = -1;
+
+    /**
+     * @param type      type of the in-memory table
+     * @param budget    memory budget in bytes
+     * @param directory location of the temporary files
+     * @throws IOException failed to create the in-memory table
+     */
+    public SpillingHostTable(HostTableType type, long budget, Path directory) throws IOException
+    {
+        super();
+
+        this.type = type;
+        this.budget = budget;
+        this.runs = new RunFiles(directory, HOSTNAMES, true);
+        this.memory = type.newTable();
+    }
+
+    @Override
+    public void put(HostEntry entry)
+    {
+        int before = this.memory.size();
+
+        this.memory.put(entry);
+        added(before, entry.hostname().length());
+    }
+
+    @Override
+    public void put(boolean enabled, Address address, ByteBuffer buffer, int start, int end, String comment)
+    {
+        int before = this.memory.size();
+
+        this.memory.put(enabled, address, buffer, start, end, comment);
+        added(before, end - start);
+    }
+
+    @Override
+    public void putAll(HostTable other, boolean replace)
+    {
+        if (false == replace)
+        {
+            if (true == isSpilled())
+            {
+                throw new UnsupportedOperationException("Cannot keep entries of a spilled table");
+            }
+
+            this.memory.putAll(other, false);
+            this.size = -1;
+            recount();
+
+            return;
+        }
+
+        for (HostEntry entry : other)
+        {
+            put(entry);
+        }
+    }
+
+    /**
+     * @return whether entries were written to disk
+     */
+    public boolean isSpilled()
+    {
+        return 0 < this.runs.size();
+    }
+
+    /**
+     * @return number of runs written so far
+     */
+    public int runs()
+    {
+        return this.runs.size();
+    }
+
+    @Override
+    public int size()
+    {
+        int count = 0;
+
+        if (false == isSpilled())
+        {
+            return this.memory.size();
+        }
+        else if (0 <= this.size)
+        {
+            return this.size;
+        }
+
+        for (Iterator<HostEntry> it = iterator(); it.hasNext(); it.next())
+        {
+            count++;
+        }
+
+        this.size = count;
+
+        return count;
+    }
+
+    /**
+     * @return entries of the in-memory table or, once spilled, all entries
+     *         ordered by hostname
+     * @throws IOError failed to spill or read the runs
+     */
+    @Override
+    public Iterator<HostEntry> iterator()
+    {
+        if (false == isSpilled())
+        {
+            return this.memory.iterator();
+        }
+
+        try
+        {
+            spill();
+
+            return new MergeIterator(this.runs.merge());
+        }
+        catch (IOException e)
+        {
+            throw new IOError(e);
+        }
+    }
+
+    /**
+     * delete all runs.
+     * <p>
+     * @throws IOException failed to delete a run
+     */
+    @Override
+    public void close() throws IOException
+    {
+        try
+        {
+            for (EntrySource source : this.open)
+            {
+                source.close();
+            }
+
+            this.open.clear();
+        }
+        finally
+        {
+            try
+            {
+                this.memory.close();
+            }
+            finally
+            {
+                this.runs.close();
+            }
+        }
+    }
+
+    private void added(int before, int length)
+    {
+        if (before == this.memory.size())
+        {
+            return;
+        }
+
+        this.size = -1;
+        this.usage += ENTRY_COST + length;
+        limit();
+    }
+
+    /**
+     * recalculate the usage of the in-memory table after entries were added
+     * without being counted.
+     */
+    private void recount()
+    {
+        long usage = 0L;
+
+        for (HostEntry entry : this.memory)
+        {
+            usage += ENTRY_COST + entry.hostname().length();
+        }
+
+        this.usage = usage;
+        limit();
+    }
+
+    /**
+     * spill the in-memory table if it exceeds the budget.
+     */
+    private void limit()
+    {
+        if (this.usage > this.budget)
+        {
+            try
+            {
+                spill();
+            }
+            catch (IOException e)
+            {
+                throw new IOError(e);
+            }
+        }
+    }
+
+    /**
+     * write the in-memory entries as a run sorted by hostname.
+     */
+    private void spill() throws IOException
+    {
+        HostEntry[] entries = new HostEntry[this.memory.size()];
+        int index = 0;
+
+        if (0 == entries.length)
+        {
+            return;
+        }
+
+        for (HostEntry entry : this.memory)
+        {
+            entries[index++] = entry;
+        }
+
+        this.memory.close();
+        this.memory = this.type.newTable();
+        this.usage = 0L;
+
+        Arrays.sort(entries, HOSTNAMES);
+        this.runs.write(entries, entries.length);
+    }
+
+    /**
+     * adapts a run merge to an iterator
+     */
+    private final class MergeIterator implements Iterator<HostEntry>
+    {
+        private final EntrySource source;
+        private HostEntry next;
+
+        public MergeIterator(EntrySource source) throws IOException
+        {
+            super();
+
+            this.source = source;
+            SpillingHostTable.this.open.add(source);
+            this.next = read();
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return null != this.next;
+        }
+
+        @Override
+        public HostEntry next()
+        {
+            HostEntry current = this.next;
+
+            if (null == current)
+            {
+                throw new NoSuchElementException();
+            }
+
+            try
+            {
+                this.next = read();
+            }
+            catch (IOException e)
+            {
+                throw new IOError(e);
+            }
+
+            return current;
+        }
+
+        @Override
+        public void remove()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        private HostEntry read() throws IOException
+        {
+            HostEntry entry = this.source.read();
+
+            if (null == entry)
+            {
+                SpillingHostTable.this.open.remove(this.source);
+                this.source.close();
+            }
+
+            return entry;
+        }
+    }
+}
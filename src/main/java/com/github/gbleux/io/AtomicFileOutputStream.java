@@ -0,0 +1,278 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Output stream which replaces a file atomically. Data is written to a
+ * temporary sibling of the target and hashed on the way by a
+ * {@link DigestChannel}. On
+ * {@link #commit() commit} the temporary file is renamed to the target,
+ * unless the target already has the same content. Closing an uncommitted
+ * stream discards the data, so the target is never left half written.
+ * <p>
+ * The stream is also a channel, so writers of byte buffers avoid the copy
+ * into an array.
+ * <p>
+ * @author Gordon Bleux
+ */
+public class AtomicFileOutputStream extends OutputStream implements WritableByteChannel
+{
+    private static final String ALGORITHM = "SHA-256";
+    private static final Random NAMES = new SecureRandom();
+
+    private final Path target;
+    private final Path temp;
+    private final FileChannel channel;
+    private final DigestChannel digest;
+    private long written = 0L;
+    private boolean closed = false;
+    private boolean committed = false;
+
+    /**
+     * Constructor for a stream replacing the given file.
+     * <p>
+     * @param target file to replace
+     * @throws IOException failed to create the temporary file
+     */
+    public AtomicFileOutputStream(Path target) throws IOException
+    {
+        super();
+
+        this.target = target;
+        this.temp = createSibling(target);
+        this.channel = FileChannel.open(this.temp, StandardOpenOption.WRITE);
+        this.digest = new DigestChannel(this.channel, newDigest());
+    }
+
+    /**
+     * @return file to replace
+     */
+    public Path target()
+    {
+        return this.target;
+    }
+
+    @Override
+    public void write(int b) throws IOException
+    {
+        write(new byte[]
+        {
+            (byte) b
+        }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+
+        while (buffer.hasRemaining())
+        {
+            write(buffer);
+        }
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException
+    {
+        int count = 0;
+
+        if (true == this.closed)
+        {
+            throw new ClosedChannelException();
+        }
+
+        count = this.digest.write(src);
+        this.written += count;
+
+        return count;
+    }
+
+    @Override
+    public boolean isOpen()
+    {
+        return false == this.closed;
+    }
+
+    /**
+     * close the stream and replace the target if its content differs.
+     * <p>
+     * @return {@literal false} if the target already had the written content
+     *         and has been left untouched
+     * @throws IOException failed to write or replace the target
+     */
+    public boolean commit() throws IOException
+    {
+        byte[] hash = null;
+
+        if (true == this.committed)
+        {
+            throw new IllegalStateException("Stream already committed");
+        }
+
+        hash = this.digest.digest().digest();
+        this.channel.force(false);
+        closeChannel();
+
+        if (true == isSameContent(hash))
+        {
+            Files.delete(this.temp);
+            this.committed = true;
+
+            return false;
+        }
+
+        copyPermissions();
+        Files.move(this.temp, this.target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        this.committed = true;
+
+        return true;
+    }
+
+    /**
+     * close the stream. uncommitted data is discarded.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        try
+        {
+            closeChannel();
+        }
+        finally
+        {
+            if (false == this.committed)
+            {
+                Files.deleteIfExists(this.temp);
+            }
+        }
+    }
+
+    private void closeChannel() throws IOException
+    {
+        if (false == this.closed)
+        {
+            this.closed = true;
+            this.channel.close();
+        }
+    }
+
+    /**
+     * compare the target with the written data. the size is checked first,
+     * so the target is only read if it may be equal.
+     */
+    private boolean isSameContent(byte[] hash) throws IOException
+    {
+        MessageDigest existing = null;
+        ByteBuffer buffer = null;
+
+        if (false == Files.isRegularFile(this.target) || Files.size(this.target) != this.written)
+        {
+            return false;
+        }
+
+        existing = newDigest();
+        buffer = ByteBuffer.allocateDirect(1 << 16);
+
+        try (FileChannel input = FileChannel.open(this.target, StandardOpenOption.READ))
+        {
+            while (input.read(buffer) >= 0)
+            {
+                // casts retain compatibility with the pre-9 Buffer API
+                ((Buffer) buffer).flip();
+                existing.update(buffer);
+                ((Buffer) buffer).clear();
+            }
+        }
+
+        return Arrays.equals(hash, existing.digest());
+    }
+
+    /**
+     * keep the permissions of a replaced file, e.g. a world-readable
+     * /etc/hosts.
+     */
+    private void copyPermissions() throws IOException
+    {
+        PosixFileAttributeView view = Files.getFileAttributeView(this.temp, PosixFileAttributeView.class);
+
+        if (null != view && true == Files.exists(this.target))
+        {
+            view.setPermissions(Files.getPosixFilePermissions(this.target));
+        }
+    }
+
+    /**
+     * create an empty file next to the target. unlike a temp file, it is
+     * created with the default permissions.
+     */
+    private static Path createSibling(Path target) throws IOException
+    {
+        Path parent = target.toAbsolutePath().getParent();
+        String name = "." + target.getFileName() + ".";
+
+        while (true)
+        {
+            try
+            {
+                return Files.createFile(parent.resolve(name + Long.toHexString(NAMES.nextLong()) + ".tmp"));
+            }
+            catch (FileAlreadyExistsException e)
+            {
+                // try another name
+            }
+        }
+    }
+
+    private static MessageDigest newDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance(ALGORITHM);
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            // every platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.io;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Utility methods for byte ranges of buffers as passed to a
+ * {@link LineHandler}. All methods use absolute indices and leave position
+ * and limit of the buffers untouched.
+ * <p>
+ * @author Gordon Bleux
+ */
+public final class ByteRanges
+{
+    private ByteRanges()
+    {
+        super();
+    }
+
+    /**
+     * decode a byte range into a string.
+     * <p>
+     * @param buffer  data
+     * @param start   absolute index of the first byte
+     * @param end     absolute index after the last byte
+     * @param charset encoding of the data
+     * @return decoded string
+     */
+    public static String decode(ByteBuffer buffer, int start, int end, Charset charset)
+    {
+        if (true == buffer.hasArray())
+        {
+            return new String(buffer.array(), buffer.arrayOffset() + start, end - start, charset);
+        }
+
+        return new String(copy(buffer, start, end), charset);
+    }
+
+    /**
+     * copy a byte range into a new array.
+     * <p>
+     * @param buffer data
+     * @param start  absolute index of the first byte
+     * @param end    absolute index after the last byte
+     * @return copy of the range
+     */
+    public static byte[] copy(ByteBuffer buffer, int start, int end)
+    {
+        byte[] data = new byte[end - start];
+
+        for (int i = start; i < end; i++)
+        {
+            data[i - start] = buffer.get(i);
+        }
+
+        return data;
+    }
+
+    /**
+     * compute a well distributed hash code of a byte range (FNV-1a followed by
+     * the MurmurHash3 finalizer).
+     * <p>
+     * @param buffer data
+     * @param start  absolute index of the first byte
+     * @param end    absolute index after the last byte
+     * @return hash code
+     */
+    public static int hash(ByteBuffer buffer, int start, int end)
+    {
+        int hash = 0x811C9DC5;
+
+        for (int i = start; i < end; i++)
+        {
+            hash ^= buffer.get(i) & 0xFF;
+            hash *= 0x01000193;
+        }
+
+        return mix(hash);
+    }
+
+    /**
+     * MurmurHash3 32 bit finalizer
+     * <p>
+     * @param hash value to mix
+     * @return mixed value
+     */
+    public static int mix(int hash)
+    {
+        int h = hash;
+
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+
+        return h;
+    }
+}
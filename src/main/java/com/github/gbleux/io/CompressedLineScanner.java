@@ -0,0 +1,299 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.github.gbleux.jfr.Flight;
+
+/**
+ * Line scanner for a compressed file. The file is decompressed by a shared
+ * worker thread into a bounded queue of blocks, which is drained by
+ * {@link #scan(LineHandler)}. Once {@link #start() started}, decompression
+ * runs ahead of the scan, e.g. while preceding files are scanned.
+ * <p>
+ * If no worker picked up the file by the time it is scanned, the scanning
+ * thread decompresses it itself, so files which have been started but are
+ * not scanned yet never hold up the file being scanned. Scanners which are
+ * not scanned to the end must be closed to release their worker.
+ * <p>
+ * @author Gordon Bleux
+ */
+final class CompressedLineScanner extends LineScanner
+{
+    private static final int BLOCK_SIZE = 1 << 16;
+    private static final int QUEUED_BLOCKS = 16;
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+    private static final ExecutorService WORKERS = newWorkers();
+
+    private final Path file;
+    private final Compression compression;
+    private final BlockingQueue<ByteBuffer> blocks = new ArrayBlockingQueue<>(QUEUED_BLOCKS);
+    private final AtomicBoolean claimed = new AtomicBoolean();
+    private volatile IOException failure = null;
+    private Future<?> task = null;
+    private StreamLineScanner scanner = null;
+
+    /**
+     * @param file        compressed file
+     * @param compression compression of the file
+     */
+    public CompressedLineScanner(Path file, Compression compression)
+    {
+        super();
+
+        this.file = file;
+        this.compression = compression;
+    }
+
+    /**
+     * @return the compressed file
+     */
+    public Path file()
+    {
+        return this.file;
+    }
+
+    /**
+     * start decompressing the file, unless it has been started before.
+     */
+    public synchronized void start()
+    {
+        if (null != this.task)
+        {
+            return;
+        }
+
+        this.task = WORKERS.submit(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                if (true == CompressedLineScanner.this.claimed.compareAndSet(false, true))
+                {
+                    decompress();
+                }
+            }
+        });
+    }
+
+    @Override
+    public void scan(LineHandler handler) throws IOException
+    {
+        Object event = Flight.beginFile(this.file, 0L);
+
+        if (true == this.claimed.compareAndSet(false, true))
+        {
+            // no worker got to the file yet, the queued task does nothing
+            this.scanner = new StreamLineScanner(this.compression.open(Files.newInputStream(this.file)));
+        }
+        else
+        {
+            this.scanner = new StreamLineScanner(new BlockStream());
+        }
+
+        try
+        {
+            this.scanner.scan(handler);
+        }
+        finally
+        {
+            close();
+            this.scanner.close();
+        }
+
+        Flight.endFile(event, scanned(), scannedLines());
+    }
+
+    /**
+     * @return number of decompressed bytes passed to handlers so far
+     */
+    @Override
+    public long scanned()
+    {
+        return null == this.scanner ? 0L : this.scanner.scanned();
+    }
+
+    @Override
+    public long scannedLines()
+    {
+        return null == this.scanner ? 0L : this.scanner.scannedLines();
+    }
+
+    /**
+     * stop decompressing the file.
+     */
+    @Override
+    public synchronized void close()
+    {
+        if (null != this.task)
+        {
+            this.task.cancel(true);
+        }
+    }
+
+    private void decompress()
+    {
+        byte[] block = null;
+        int length = 0;
+        int read = 0;
+
+        try (InputStream input = this.compression.open(Files.newInputStream(this.file)))
+        {
+            do
+            {
+                block = new byte[BLOCK_SIZE];
+                length = 0;
+
+                while (length < block.length && 0 <= (read = input.read(block, length, block.length - length)))
+                {
+                    length += read;
+                }
+
+                if (0 < length)
+                {
+                    this.blocks.put(ByteBuffer.wrap(block, 0, length));
+                }
+            }
+            while (0 <= read);
+        }
+        catch (IOException e)
+        {
+            this.failure = e;
+        }
+        catch (InterruptedException e)
+        {
+            // cancelled, nobody is waiting for the end
+            return;
+        }
+
+        try
+        {
+            this.blocks.put(END);
+        }
+        catch (InterruptedException e)
+        {
+            // cancelled
+        }
+    }
+
+    private static ExecutorService newWorkers()
+    {
+        int threads = Runtime.getRuntime().availableProcessors();
+        ThreadPoolExecutor workers = new ThreadPoolExecutor(threads, threads, 1L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory()
+        {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable task)
+            {
+                Thread thread = new Thread(task, "hostsmerge-inflate-" + this.count.incrementAndGet());
+
+                thread.setDaemon(true);
+
+                return thread;
+            }
+        });
+
+        // idle workers do not outlive the merge
+        workers.allowCoreThreadTimeOut(true);
+
+        return workers;
+    }
+
+    /**
+     * Stream of the decompressed blocks.
+     */
+    private final class BlockStream extends InputStream
+    {
+        private ByteBuffer current = null;
+
+        @Override
+        public int read() throws IOException
+        {
+            return false == next() ? -1 : this.current.get() & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            int count = 0;
+
+            if (0 == len)
+            {
+                return 0;
+            }
+            else if (false == next())
+            {
+                return -1;
+            }
+
+            count = Math.min(len, this.current.remaining());
+            this.current.get(b, off, count);
+
+            return count;
+        }
+
+        /**
+         * @return whether data is available, {@literal false} at the end
+         */
+        private boolean next() throws IOException
+        {
+            while (END != this.current && (null == this.current || false == this.current.hasRemaining()))
+            {
+                try
+                {
+                    this.current = CompressedLineScanner.this.blocks.take();
+                }
+                catch (InterruptedException e)
+                {
+                    throw new InterruptedIOException("Interrupted while decompressing " + CompressedLineScanner.this.file);
+                }
+            }
+
+            if (END == this.current && null != CompressedLineScanner.this.failure)
+            {
+                throw new IOException(CompressedLineScanner.this.file + ": " + CompressedLineScanner.this.failure.getMessage(),
+                        CompressedLineScanner.this.failure);
+            }
+
+            return END != this.current;
+        }
+    }
+}
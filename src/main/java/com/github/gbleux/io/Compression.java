@@ -0,0 +1,268 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.io;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Compression of input data, detected by the magic bytes at its start rather
+ * than by file names. Compressed data is decompressed as a stream, without
+ * temporary files.
+ * <p>
+ * @author Gordon Bleux
+ */
+public enum Compression
+{
+    /**
+     * plain data
+     */
+    NONE,
+    /**
+     * gzip data of one or more concatenated members
+     */
+    GZIP,
+    /**
+     * zip archive. the members are read in archive order, separated by a
+     * line break.
+     */
+    ZIP;
+
+    /**
+     * number of bytes inspected by {@link #detect(byte[], int)}
+     */
+    public static final int HEADER_SIZE = 4;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * @param header first bytes of the data
+     * @param length number of valid header bytes
+     * @return compression of the data
+     */
+    public static Compression detect(byte[] header, int length)
+    {
+        if (length >= 2 && (byte) 0x1F == header[0] && (byte) 0x8B == header[1])
+        {
+            return GZIP;
+        }
+        else if (length >= 4 && 'P' == header[0] && 'K' == header[1]
+                && ((3 == header[2] && 4 == header[3]) || (5 == header[2] && 6 == header[3])))
+        {
+            // local file header or the end of an empty archive
+            return ZIP;
+        }
+
+        return NONE;
+    }
+
+    /**
+     * @param file file to inspect
+     * @return compression of the file content
+     * @throws IOException failed to read the file
+     */
+    public static Compression of(Path file) throws IOException
+    {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            while (header.hasRemaining() && 0 <= channel.read(header))
+            {
+                // read the magic bytes
+            }
+        }
+
+        return detect(header.array(), header.position());
+    }
+
+    /**
+     * detect the compression of a stream and decompress it if necessary.
+     * <p>
+     * @param input stream of possibly compressed data, closed along with the
+     *              returned stream
+     * @return stream of the plain data
+     * @throws IOException failed to read the stream
+     */
+    public static InputStream decompress(InputStream input) throws IOException
+    {
+        BufferedInputStream buffered = new BufferedInputStream(input, BUFFER_SIZE);
+        byte[] header = new byte[HEADER_SIZE];
+        int length = 0;
+        int read = 0;
+
+        buffered.mark(HEADER_SIZE);
+
+        while (length < HEADER_SIZE && 0 < (read = buffered.read(header, length, HEADER_SIZE - length)))
+        {
+            length += read;
+        }
+
+        buffered.reset();
+
+        return detect(header, length).open(buffered);
+    }
+
+    /**
+     * @param input stream of data with this compression, closed along with
+     *              the returned stream
+     * @return stream of the plain data
+     * @throws IOException failed to read the stream header
+     */
+    public InputStream open(InputStream input) throws IOException
+    {
+        switch (this)
+        {
+            case GZIP:
+                return new GZIPInputStream(new Lookahead(input), BUFFER_SIZE);
+            case ZIP:
+                return new ZipMembers(new ZipInputStream(input));
+            default:
+                return input;
+        }
+    }
+
+    /**
+     * Stream which reports available data until its end. GZIPInputStream
+     * only reads the next member of concatenated data if more input is
+     * available, which network streams do not tell reliably.
+     */
+    private static final class Lookahead extends PushbackInputStream
+    {
+        public Lookahead(InputStream input)
+        {
+            super(input, 1);
+        }
+
+        @Override
+        public int available() throws IOException
+        {
+            int available = super.available();
+            int next = 0;
+
+            if (0 < available)
+            {
+                return available;
+            }
+
+            next = read();
+
+            if (0 > next)
+            {
+                return 0;
+            }
+
+            unread(next);
+
+            return 1;
+        }
+    }
+
+    /**
+     * Concatenation of the file members of a zip archive.
+     */
+    private static final class ZipMembers extends InputStream
+    {
+        private final ZipInputStream archive;
+        private final byte[] single = new byte[1];
+        private boolean member = false;
+        private boolean separated = true;
+        private boolean finished = false;
+
+        public ZipMembers(ZipInputStream archive)
+        {
+            super();
+
+            this.archive = archive;
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            return -1 == read(this.single, 0, 1) ? -1 : this.single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            ZipEntry entry = null;
+            int read = 0;
+
+            while (false == this.finished)
+            {
+                // the last line of a member does not continue in the next one
+                if (false == this.separated && 0 < len)
+                {
+                    b[off] = '\n';
+                    this.separated = true;
+
+                    return 1;
+                }
+                else if (true == this.member)
+                {
+                    read = this.archive.read(b, off, len);
+
+                    if (0 <= read)
+                    {
+                        return read;
+                    }
+
+                    this.member = false;
+                    this.separated = false;
+                }
+
+                do
+                {
+                    entry = this.archive.getNextEntry();
+                }
+                while (null != entry && true == entry.isDirectory());
+
+                if (null == entry)
+                {
+                    this.finished = true;
+                }
+                else
+                {
+                    this.member = true;
+                }
+            }
+
+            return -1;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            this.archive.close();
+        }
+    }
+}
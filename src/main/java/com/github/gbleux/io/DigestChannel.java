@@ -0,0 +1,118 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.io;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+import java.security.MessageDigest;
+
+/**
+ * Channel which hashes the data written to it, optionally passing it on to
+ * another channel. Only the bytes accepted by the target are hashed.
+ * <p>
+ * @author Gordon Bleux
+ */
+public class DigestChannel implements WritableByteChannel
+{
+    private final WritableByteChannel target;
+    private final MessageDigest digest;
+    private boolean open = true;
+
+    /**
+     * Constructor for a channel which discards the data after hashing it.
+     * <p>
+     * @param digest digest to update
+     */
+    public DigestChannel(MessageDigest digest)
+    {
+        this(null, digest);
+    }
+
+    /**
+     * @param target channel receiving the data, closed along with this
+     *               instance. {@literal null} discards the data.
+     * @param digest digest to update
+     */
+    public DigestChannel(WritableByteChannel target, MessageDigest digest)
+    {
+        super();
+
+        this.target = target;
+        this.digest = digest;
+    }
+
+    /**
+     * @return digest of the data written so far
+     */
+    public MessageDigest digest()
+    {
+        return this.digest;
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException
+    {
+        ByteBuffer view = src.duplicate();
+        int count = 0;
+
+        if (false == this.open)
+        {
+            throw new ClosedChannelException();
+        }
+        else if (null == this.target)
+        {
+            count = src.remaining();
+            this.digest.update(src);
+
+            return count;
+        }
+
+        count = this.target.write(src);
+
+        // cast retains compatibility with the pre-9 Buffer API
+        ((Buffer) view).limit(view.position() + count);
+        this.digest.update(view);
+
+        return count;
+    }
+
+    @Override
+    public boolean isOpen()
+    {
+        return this.open;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        this.open = false;
+
+        if (null != this.target)
+        {
+            this.target.close();
+        }
+    }
+}
@@ -23,20 +23,30 @@
 package com.github.gbleux.io;
 
 import java.io.Closeable;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Iterator;
 
+import com.github.gbleux.jfr.Flight;
+
 /**
  * Non-recursive file data stream for content of a directory. The order in which
  * the files are read is system dependent.
  * <p>
+ * Files are accessed through {@link FileChannel}s. Bulk reads fill the caller
+ * buffer across file boundaries and every file is closed as soon as its last
+ * byte has been consumed.
+ * <p>
  * @author Gordon Bleux
  * @see DirectoryStream underlying stream instance providing the read input
  */
@@ -49,7 +59,11 @@ public class DirectoryFilesStream extends InputStream implements Closeable
 
     private final DirectoryStream<Path> stream;
     private final Iterator<Path> provider;
-    private InputStream current = null;
+    private final byte[] single = new byte[1];
+    private FileChannel current = null;
+    private long remaining = 0L;
+    private long length = 0L;
+    private Object event = null;
 
     /**
      * Constructor for a files stream using an existing directory stream. The
@@ -120,27 +134,124 @@ public class DirectoryFilesStream extends InputStream implements Closeable
     @Override
     public int read() throws IOException
     {
-        InputStream file = loadFile(this.current, this.provider);
-        int data = readFile(file);
+        int read = read(this.single, 0, 1);
+
+        return EOF == read ? EOF : this.single[0] & 0xFF;
+    }
+
+    /**
+     * read up to {@code length} bytes. the buffer is filled across file
+     * boundaries, so fewer bytes than requested are only returned once the
+     * last file has been consumed.
+     * <p>
+     * @param buffer target array
+     * @param offset first index to write
+     * @param length maximum number of bytes to read
+     * @return number of bytes read or {@link #EOF}
+     * @throws IOException failed to read current or next file.
+     */
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException
+    {
+        ByteBuffer target = null;
+        int total = 0;
+        int read = 0;
+
+        if (offset < 0 || length < 0 || length > buffer.length - offset)
+        {
+            throw new IndexOutOfBoundsException();
+        }
+        else if (0 == length)
+        {
+            return 0;
+        }
+
+        target = ByteBuffer.wrap(buffer, offset, length);
 
-        if (data == EOF)
+        while (target.hasRemaining())
         {
-            // stream is null if no file was ever read and no new files where found
-            if (null != this.current)
+            read = readFile(nextFile(), target);
+
+            if (EOF == read)
             {
-                this.current.close();
+                break;
             }
 
-            // end of data for current file. clear so next iteration advances file
-            this.current = null;
+            total += read;
+        }
+
+        return 0 == total ? EOF : total;
+    }
+
+    /**
+     * estimate the number of bytes left in the current file.
+     * <p>
+     * @return remaining bytes of the current file or zero
+     * @throws IOException failed to access the current file
+     */
+    @Override
+    public int available() throws IOException
+    {
+        return (int) Math.min(Integer.MAX_VALUE, this.remaining);
+    }
+
+    /**
+     * copy the remaining data of all files into the given stream. file output
+     * streams are written through their channel, which allows the operating
+     * system to copy the data without passing it through the heap.
+     * <p>
+     * @param output target stream
+     * @return number of bytes transferred
+     * @throws IOException failed to read a file or write the output
+     */
+    public long transferTo(OutputStream output) throws IOException
+    {
+        if (output instanceof FileOutputStream)
+        {
+            return transferTo(((FileOutputStream) output).getChannel());
         }
         else
         {
-            // store stream for next iteration (or null, if no other file exists)
-            this.current = file;
+            return transferTo(Channels.newChannel(output));
+        }
+    }
+
+    /**
+     * copy the remaining data of all files into the given channel.
+     * <p>
+     * @param target channel to write
+     * @return number of bytes transferred
+     * @throws IOException failed to read a file or write the output
+     * @see FileChannel#transferTo(long, long, WritableByteChannel)
+     */
+    public long transferTo(WritableByteChannel target) throws IOException
+    {
+        FileChannel file = null;
+        long position = 0L;
+        long total = 0L;
+        long sent = 0L;
+
+        while (null != (file = nextFile()))
+        {
+            position = file.position();
+            sent = file.transferTo(position, this.remaining, target);
+
+            if (sent > 0L)
+            {
+                file.position(position + sent);
+                consumed(sent);
+
+                total += sent;
+            }
+            else if (position >= file.size())
+            {
+                // file shrunk since it has been opened
+                closeFile();
+            }
+            // otherwise the target accepted nothing this round, retry
         }
 
-        return data;
+        return total;
     }
 
     /**
@@ -151,42 +262,73 @@ public class DirectoryFilesStream extends InputStream implements Closeable
     @Override
     public void close() throws IOException
     {
-        this.stream.close();
+        try
+        {
+            closeFile();
+        }
+        finally
+        {
+            this.stream.close();
+        }
 
         super.close();
     }
 
     /**
-     * create a new input stream using the provided file provider, or reuse the
-     * current stream if it is not {@literal null}
+     * return the current file, or open the next one provided by the directory
+     * stream if the current file has been consumed.
      * <p>
-     * @param input stream to prefer if not {@literal null}
-     * @param next  lookup source to retrieve the source file for a new input
-     *              stream
-     * @return input stream or {@literal null} if no file could be read
-     * @throws FileNotFoundException a file provided by the file provider does
-     *                               not exist
+     * @return open channel or {@literal null} if no files are left
+     * @throws IOException failed to open a file
      */
-    private InputStream loadFile(InputStream input, Iterator<Path> next) throws FileNotFoundException
+    private FileChannel nextFile() throws IOException
     {
-        Path path = null;
-        File file = null;
-
-        // continue using the current stream
-        if (null != input)
+        while (null == this.current)
         {
-            return input;
+            this.current = loadFile(this.provider);
+
+            if (null == this.current)
+            {
+                return null;
+            }
+
+            this.remaining = this.current.size();
+            this.length = this.remaining;
+
+            if (this.remaining <= 0L)
+            {
+                // skip empty files right away
+                closeFile();
+            }
         }
 
+        return this.current;
+    }
+
+    /**
+     * open a channel for the next regular file of the file provider
+     * <p>
+     * @param next lookup source to retrieve the source file for a new channel
+     * @return channel or {@literal null} if no file could be read
+     * @throws IOException a file provided by the file provider could not be
+     *                     opened
+     */
+    private FileChannel loadFile(Iterator<Path> next) throws IOException
+    {
+        FileChannel channel = null;
+        Path path = null;
+
         // find a new file to stream
         while (next.hasNext())
         {
             path = next.next();
-            file = path.toFile();
 
-            if (file.isFile())
+            if (Files.isRegularFile(path))
             {
-                return new FileInputStream(file);
+                channel = FileChannel.open(path, StandardOpenOption.READ);
+                this.event = Flight.beginFile(path, 0L);
+
+                return channel;
             }
         }
 
@@ -195,22 +337,71 @@ public class DirectoryFilesStream extends InputStream implements Closeable
     }
 
     /**
-     * read the next byte from the provided stream
+     * read from the provided channel into the target buffer. the channel is
+     * closed once its end has been reached.
      * <p>
-     * @param file stream to {@link InputStream#read() read}
-     * @return next byte or -1 if either the input was {@literal null} or the
-     *         end of the stream was reached
+     * @param file   channel to {@link FileChannel#read(ByteBuffer) read}
+     * @param target buffer to fill
+     * @return number of bytes read, zero if the file ended, or -1 if the input
+     *         was {@literal null}
      * @throws IOException
      */
-    private int readFile(InputStream file) throws IOException
+    private int readFile(FileChannel file, ByteBuffer target) throws IOException
     {
+        int read = 0;
+
         if (null == file)
         {
             return EOF;
         }
-        else
+
+        read = file.read(target);
+
+        if (read < 0)
+        {
+            // file shrunk since it has been opened
+            closeFile();
+
+            return 0;
+        }
+
+        consumed(read);
+
+        return read;
+    }
+
+    /**
+     * track consumed data of the current file and release it once its end
+     * has been reached.
+     * <p>
+     * @param count number of bytes consumed
+     * @throws IOException
+     */
+    private void consumed(long count) throws IOException
+    {
+        this.remaining -= count;
+
+        if (this.remaining <= 0L)
+        {
+            closeFile();
+        }
+    }
+
+    private void closeFile() throws IOException
+    {
+        FileChannel file = this.current;
+
+        // lines are not counted by this stream
+        Flight.endFile(this.event, this.length - Math.max(0L, this.remaining), -1L);
+
+        this.current = null;
+        this.remaining = 0L;
+        this.length = 0L;
+        this.event = null;
+
+        if (null != file)
         {
-            return file.read();
+            file.close();
         }
     }
 }
@@ -0,0 +1,47 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Callback for lines found by a {@link LineScanner}. The line is passed as a
+ * byte range of a buffer owned by the scanner. The range excludes the line
+ * terminator and is only valid for the duration of the call.
+ * <p>
+ * @author Gordon Bleux
+ */
+public interface LineHandler
+{
+    /**
+     * process a single line.
+     * <p>
+     * @param buffer line data. position and limit of the buffer are undefined
+     *               and must not be relied upon.
+     * @param start  absolute index of the first byte of the line
+     * @param end    absolute index after the last byte of the line
+     * @throws IOException abort the scanning process
+     */
+    public void line(ByteBuffer buffer, int start, int end) throws IOException;
+}
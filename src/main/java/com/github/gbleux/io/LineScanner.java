@@ -0,0 +1,175 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Source of byte encoded text lines. Lines are terminated by a line feed, a
+ * carriage return or a carriage return followed by a line feed, which matches
+ * the behaviour of {@link java.io.BufferedReader#readLine()}. The content of a
+ * line is not decoded, which is left to the {@link LineHandler}.
+ * <p>
+ * @author Gordon Bleux
+ */
+public abstract class LineScanner implements Closeable
+{
+    private boolean carriage = false;
+    private long scanned = 0L;
+    private long lines = 0L;
+
+    public LineScanner()
+    {
+        super();
+    }
+
+    /**
+     * pass every line of the source to the given handler.
+     * <p>
+     * @param handler line callback
+     * @throws IOException failed to read the source or the handler aborted
+     */
+    public abstract void scan(LineHandler handler) throws IOException;
+
+    /**
+     * split the source into parts which can be scanned independently (and
+     * concurrently). scanning all parts in list order yields the same lines
+     * as scanning this instance. the default implementation is not able to
+     * split and returns the instance itself.
+     * <p>
+     * @return ordered list of scanners
+     * @throws IOException failed to inspect the source
+     */
+    public List<LineScanner> split() throws IOException
+    {
+        return Collections.<LineScanner>singletonList(this);
+    }
+
+    /**
+     * @return number of bytes passed to handlers so far, including line
+     *         terminators
+     */
+    public long scanned()
+    {
+        return this.scanned;
+    }
+
+    /**
+     * @return number of lines passed to handlers so far
+     */
+    public long scannedLines()
+    {
+        return this.lines;
+    }
+
+    /**
+     * Release all resources. The default implementation does nothing.
+     * <p>
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException
+    {
+        // nothing to release
+    }
+
+    /**
+     * split a buffer region into lines and pass them to the handler. a line
+     * feed directly following a carriage return which ended the previous
+     * region is skipped.
+     * <p>
+     * @param buffer   data to split
+     * @param start    absolute index of the first byte
+     * @param end      absolute index after the last byte
+     * @param complete whether the region ends the input. if so, the trailing
+     *                 unterminated data is passed as line as well.
+     * @param handler  line callback
+     * @return absolute index of the first byte which has not been passed to
+     *         the handler
+     * @throws IOException the handler aborted
+     */
+    protected int scanLines(ByteBuffer buffer, int start, int end, boolean complete, LineHandler handler) throws IOException
+    {
+        int begin = start;
+        int index = start;
+        byte data = 0;
+
+        if (true == this.carriage && index < end && '\n' == buffer.get(index))
+        {
+            index++;
+            begin = index;
+        }
+
+        this.carriage = false;
+
+        for (; index < end; index++)
+        {
+            data = buffer.get(index);
+
+            if ('\n' == data || '\r' == data)
+            {
+                handler.line(buffer, begin, index);
+                this.lines++;
+
+                if ('\r' == data)
+                {
+                    if (index + 1 >= end)
+                    {
+                        // the line feed might start the next region
+                        this.carriage = true;
+                    }
+                    else if ('\n' == buffer.get(index + 1))
+                    {
+                        index++;
+                    }
+                }
+
+                begin = index + 1;
+            }
+        }
+
+        if (true == complete && begin < end)
+        {
+            handler.line(buffer, begin, end);
+            this.lines++;
+            begin = end;
+        }
+
+        this.scanned += begin - start;
+
+        return begin;
+    }
+
+    /**
+     * forget about a carriage return at the end of the previous region. used
+     * when a new, unrelated input is started.
+     */
+    protected void reset()
+    {
+        this.carriage = false;
+    }
+}
@@ -0,0 +1,471 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.io;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.github.gbleux.jfr.Flight;
+
+/**
+ * Line scanner for a list of files. Each file is memory-mapped in chunks,
+ * lines are handed out as byte ranges of the mapped buffer without copying
+ * them onto the heap. Files are scanned independently, so the last line of a
+ * file never continues in the next one.
+ * <p>
+ * When {@link #split() split}, files larger than the split size are divided
+ * into line aligned regions which are scanned independently.
+ * <p>
+ * Compressed files are detected by their {@link Compression magic bytes}
+ * and decompressed as a stream instead. Their decompression starts on worker
+ * threads once the scan starts, so it overlaps with scanning the preceding
+ * files. Scans which are not completed must be {@link #close() closed} to
+ * stop the decompression.
+ * <p>
+ * @author Gordon Bleux
+ */
+public class MappedLineScanner extends LineScanner
+{
+    /**
+     * default number of bytes mapped at once
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 28;
+    /**
+     * default size of the regions created by {@link #split()}
+     */
+    public static final long DEFAULT_SPLIT_SIZE = 1L << 26;
+
+    private static final long TO_END = -1L;
+    private static final int PROBE_SIZE = 1 << 12;
+
+    private final List<Path> files;
+    private final int chunkSize;
+    private final long splitSize;
+    private final long regionStart;
+    private final long regionEnd;
+    private List<CompressedLineScanner> compressed = null;
+    private long decompressed = 0L;
+    private long decompressedLines = 0L;
+
+    /**
+     * Constructor for a scanner of the given files using the default chunk
+     * size.
+     * <p>
+     * @param files files to scan in order
+     */
+    public MappedLineScanner(List<Path> files)
+    {
+        this(files, DEFAULT_CHUNK_SIZE, DEFAULT_SPLIT_SIZE);
+    }
+
+    /**
+     * Constructor for a scanner of the given files.
+     * <p>
+     * @param files     files to scan in order
+     * @param chunkSize maximum number of bytes to map at once. lines longer
+     *                  than the chunk size temporarily widen the mapping.
+     */
+    public MappedLineScanner(List<Path> files, int chunkSize)
+    {
+        this(files, chunkSize, DEFAULT_SPLIT_SIZE);
+    }
+
+    /**
+     * Constructor for a scanner of the given files.
+     * <p>
+     * @param files     files to scan in order
+     * @param chunkSize maximum number of bytes to map at once. lines longer
+     *                  than the chunk size temporarily widen the mapping.
+     * @param splitSize files larger than this are split into multiple regions
+     */
+    public MappedLineScanner(List<Path> files, int chunkSize, long splitSize)
+    {
+        super();
+
+        if (chunkSize <= 0)
+        {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+        else if (splitSize <= 0L)
+        {
+            throw new IllegalArgumentException("Split size must be positive");
+        }
+
+        this.files = Collections.unmodifiableList(new ArrayList<>(files));
+        this.chunkSize = chunkSize;
+        this.splitSize = splitSize;
+        this.regionStart = 0L;
+        this.regionEnd = TO_END;
+    }
+
+    /**
+     * Constructor for a scanner of a region of a single file.
+     */
+    private MappedLineScanner(Path file, int chunkSize, long splitSize, long start, long end)
+    {
+        super();
+
+        this.files = Collections.singletonList(file);
+        this.chunkSize = chunkSize;
+        this.splitSize = splitSize;
+        this.regionStart = start;
+        this.regionEnd = end;
+    }
+
+    /**
+     * create a scanner for a single file or all regular files of a directory
+     * (non-recursive). the order of directory members is system dependent.
+     * <p>
+     * @param path file or directory
+     * @return new scanner instance
+     * @throws IOException failed to list the directory
+     */
+    public static MappedLineScanner open(Path path) throws IOException
+    {
+        return new MappedLineScanner(listFiles(path));
+    }
+
+    /**
+     * resolve a path into the files it denotes.
+     * <p>
+     * @param path file or directory
+     * @return the path itself or the regular files of the directory
+     * @throws IOException failed to list the directory
+     */
+    public static List<Path> listFiles(Path path) throws IOException
+    {
+        List<Path> files = new ArrayList<>();
+
+        if (false == Files.isDirectory(path))
+        {
+            files.add(path);
+
+            return files;
+        }
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(path))
+        {
+            for (Path file : stream)
+            {
+                if (Files.isRegularFile(file))
+                {
+                    files.add(file);
+                }
+            }
+        }
+
+        return files;
+    }
+
+    /**
+     * @return the files scanned by this instance
+     */
+    public List<Path> files()
+    {
+        return this.files;
+    }
+
+    /**
+     * split into one scanner per file, or multiple scanners for files which
+     * exceed the split size. regions of a file always start at the beginning
+     * of a line. compressed files are not split, their decompression starts
+     * right away. the scanners of compressed files are shared with
+     * {@link #scan(LineHandler)}, so only one of them may be used.
+     * <p>
+     * @return ordered list of scanners
+     * @throws IOException failed to inspect a file
+     */
+    @Override
+    public List<LineScanner> split() throws IOException
+    {
+        List<LineScanner> parts = new ArrayList<>(this.files.size());
+        List<CompressedLineScanner> started = startCompressed();
+        int next = 0;
+
+        for (Path file : this.files)
+        {
+            if (next < started.size() && started.get(next).file() == file)
+            {
+                parts.add(started.get(next++));
+            }
+            else
+            {
+                splitFile(file, parts);
+            }
+        }
+
+        return parts;
+    }
+
+    @Override
+    public void scan(LineHandler handler) throws IOException
+    {
+        List<CompressedLineScanner> started = startCompressed();
+        CompressedLineScanner current = null;
+        int next = 0;
+
+        for (Path file : this.files)
+        {
+            if (next < started.size() && started.get(next).file() == file)
+            {
+                current = started.get(next++);
+                current.scan(handler);
+                this.decompressed += current.scanned();
+                this.decompressedLines += current.scannedLines();
+            }
+            else
+            {
+                scanFile(file, handler);
+            }
+        }
+    }
+
+    /**
+     * @return number of bytes passed to handlers so far, including line
+     *         terminators. compressed files count with their decompressed
+     *         size.
+     */
+    @Override
+    public long scanned()
+    {
+        return super.scanned() + this.decompressed;
+    }
+
+    @Override
+    public long scannedLines()
+    {
+        return super.scannedLines() + this.decompressedLines;
+    }
+
+    /**
+     * stop decompressing files which have not been scanned completely.
+     */
+    @Override
+    public void close()
+    {
+        if (null == this.compressed)
+        {
+            return;
+        }
+
+        for (CompressedLineScanner scanner : this.compressed)
+        {
+            scanner.close();
+        }
+    }
+
+    /**
+     * start decompressing the compressed files in scan order, unless this
+     * has been done before. regions of a file are never compressed.
+     * <p>
+     * @return scanners of the compressed files in file order
+     */
+    private List<CompressedLineScanner> startCompressed() throws IOException
+    {
+        List<CompressedLineScanner> started = new ArrayList<>();
+        Compression compression = null;
+
+        if (null != this.compressed)
+        {
+            return this.compressed;
+        }
+        else if (0L != this.regionStart || TO_END != this.regionEnd)
+        {
+            this.compressed = started;
+
+            return started;
+        }
+
+        for (Path file : this.files)
+        {
+            compression = Compression.of(file);
+
+            if (Compression.NONE != compression)
+            {
+                started.add(new CompressedLineScanner(file, compression));
+            }
+        }
+
+        for (CompressedLineScanner scanner : started)
+        {
+            scanner.start();
+        }
+
+        this.compressed = started;
+
+        return started;
+    }
+
+    private void splitFile(Path file, List<LineScanner> parts) throws IOException
+    {
+        long start = this.regionStart;
+        long end = this.regionEnd;
+        long boundary = 0L;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            end = TO_END == end ? channel.size() : Math.min(end, channel.size());
+
+            while (end - start > this.splitSize)
+            {
+                boundary = alignBoundary(channel, start + this.splitSize, end);
+
+                parts.add(new MappedLineScanner(file, this.chunkSize, this.splitSize, start, boundary));
+                start = boundary;
+            }
+        }
+
+        if (start < end)
+        {
+            parts.add(new MappedLineScanner(file, this.chunkSize, this.splitSize, start, end));
+        }
+    }
+
+    /**
+     * find the start of the first line at or after the given position.
+     * <p>
+     * @param channel file to inspect
+     * @param start   minimum position of the line start
+     * @param end     end of the region
+     * @return position after the next line terminator, or the region end
+     * @throws IOException failed to read the file
+     */
+    private long alignBoundary(FileChannel channel, long start, long end) throws IOException
+    {
+        ByteBuffer probe = ByteBuffer.allocate(PROBE_SIZE);
+        long position = start - 1;
+        int read = 0;
+        byte data = 0;
+
+        // the byte before the boundary decides whether a line starts there
+        while (position < end)
+        {
+            ((Buffer) probe).clear();
+            read = channel.read(probe, position);
+
+            if (read <= 0)
+            {
+                break;
+            }
+
+            for (int i = 0; i < read && position + i < end; i++)
+            {
+                data = probe.get(i);
+
+                if ('\n' == data)
+                {
+                    return position + i + 1;
+                }
+                else if ('\r' == data)
+                {
+                    // a carriage return/line feed pair must not be separated
+                    return skipLineFeed(channel, position + i + 1, end);
+                }
+            }
+
+            position += read;
+        }
+
+        return end;
+    }
+
+    private long skipLineFeed(FileChannel channel, long position, long end) throws IOException
+    {
+        ByteBuffer probe = ByteBuffer.allocate(1);
+
+        if (position < end && 1 == channel.read(probe, position) && '\n' == probe.get(0))
+        {
+            return position + 1;
+        }
+
+        return position;
+    }
+
+    /**
+     * map the file chunk by chunk. each chunk ends after the last line
+     * terminator it contains, the remainder is mapped again as part of the
+     * following chunk.
+     * <p>
+     * @param file    file to scan
+     * @param handler line callback
+     * @throws IOException failed to map the file
+     */
+    private void scanFile(Path file, LineHandler handler) throws IOException
+    {
+        MappedByteBuffer buffer = null;
+        long position = this.regionStart;
+        long size = 0L;
+        long length = 0L;
+        long bytes = scanned();
+        long lines = scannedLines();
+        boolean last = false;
+        int consumed = 0;
+        Object event = Flight.beginFile(file, position);
+
+        reset();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            size = TO_END == this.regionEnd ? channel.size() : Math.min(this.regionEnd, channel.size());
+
+            while (position < size)
+            {
+                length = Math.min(this.chunkSize, size - position);
+
+                while (true)
+                {
+                    last = position + length >= size;
+                    buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                    consumed = scanLines(buffer, 0, (int) length, last, handler);
+
+                    if (consumed > 0 || true == last)
+                    {
+                        break;
+                    }
+
+                    if (length >= Integer.MAX_VALUE)
+                    {
+                        throw new IOException("Line exceeds maximum mapping size in " + file);
+                    }
+
+                    // no line terminator within the chunk: widen the mapping
+                    length = Math.min(Math.min(length * 2, Integer.MAX_VALUE), size - position);
+                }
+
+                position += consumed;
+            }
+        }
+
+        Flight.endFile(event, scanned() - bytes, scannedLines() - lines);
+    }
+}
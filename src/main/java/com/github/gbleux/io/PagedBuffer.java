@@ -0,0 +1,294 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Growable off-heap storage addressed by {@literal long} byte offsets. The
+ * data lives in fixed size pages which are either direct buffers or mapped
+ * regions of a temporary file. Growing the storage adds pages and never
+ * moves existing pages; only the first page starts small and is enlarged
+ * until it reaches the page size.
+ * <p>
+ * Integer values must be aligned to their size, so they never cross a page
+ * boundary. Byte ranges may span pages. All values use the native byte
+ * order. Instances are not thread-safe.
+ * <p>
+ * Direct pages count towards {@code -XX:MaxDirectMemorySize}, mapped pages
+ * are only limited by the address space and are paged out by the operating
+ * system.
+ * <p>
+ * @author Gordon Bleux
+ */
+public class PagedBuffer implements Closeable
+{
+    /**
+     * default page size of 64 MiB
+     */
+    public static final int DEFAULT_PAGE_SHIFT = 26;
+    private static final int INITIAL_SIZE = 1 << 12;
+
+    private final int shift;
+    private final int mask;
+    private final FileChannel channel;
+    private ByteBuffer[] pages = new ByteBuffer[0];
+    private long capacity = 0;
+
+    /**
+     * create a buffer of direct pages.
+     * <p>
+     * @param shift page size as power of two (12 to 30)
+     */
+    public PagedBuffer(int shift)
+    {
+        super();
+
+        this.shift = checkShift(shift);
+        this.mask = (1 << shift) - 1;
+        this.channel = null;
+    }
+
+    /**
+     * create a buffer of pages mapped from a temporary file. The file is
+     * deleted when the buffer is closed.
+     * <p>
+     * @param shift     page size as power of two (12 to 30)
+     * @param directory location of the temporary file
+     * @throws IOException failed to create the file
+     */
+    public PagedBuffer(int shift, Path directory) throws IOException
+    {
+        super();
+
+        this.shift = checkShift(shift);
+        this.mask = (1 << shift) - 1;
+        this.channel = FileChannel.open(Files.createTempFile(directory, "hostsmerge", ".pages"),
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.DELETE_ON_CLOSE);
+    }
+
+    /**
+     * @return number of addressable bytes
+     */
+    public long capacity()
+    {
+        return this.capacity;
+    }
+
+    /**
+     * make at least the given number of bytes addressable. new storage is
+     * zeroed.
+     * <p>
+     * @param minimum required capacity
+     * @throws IOException failed to map the file
+     */
+    public void ensureCapacity(long minimum) throws IOException
+    {
+        long pageSize = 1L << this.shift;
+        long size = 0;
+
+        if (minimum <= this.capacity)
+        {
+            return;
+        }
+
+        if (this.pages.length <= 1 && this.capacity < pageSize)
+        {
+            // small buffers do not allocate an entire page
+            size = Math.min(pageSize, Math.max(INITIAL_SIZE, Math.max(this.capacity * 2, minimum)));
+            this.pages = new ByteBuffer[]
+            {
+                resize(0 == this.pages.length ? null : this.pages[0], (int) size)
+            };
+            this.capacity = size;
+        }
+
+        while (this.capacity < minimum)
+        {
+            this.pages = Arrays.copyOf(this.pages, this.pages.length + 1);
+            this.pages[this.pages.length - 1] = allocate(this.capacity, (int) pageSize);
+            this.capacity += pageSize;
+        }
+    }
+
+    public byte get(long index)
+    {
+        return this.pages[(int) (index >>> this.shift)].get((int) index & this.mask);
+    }
+
+    public void put(long index, byte value)
+    {
+        this.pages[(int) (index >>> this.shift)].put((int) index & this.mask, value);
+    }
+
+    public int getInt(long index)
+    {
+        return this.pages[(int) (index >>> this.shift)].getInt((int) index & this.mask);
+    }
+
+    public void putInt(long index, int value)
+    {
+        this.pages[(int) (index >>> this.shift)].putInt((int) index & this.mask, value);
+    }
+
+    public long getLong(long index)
+    {
+        return this.pages[(int) (index >>> this.shift)].getLong((int) index & this.mask);
+    }
+
+    public void putLong(long index, long value)
+    {
+        this.pages[(int) (index >>> this.shift)].putLong((int) index & this.mask, value);
+    }
+
+    /**
+     * copy a byte range into the buffer.
+     * <p>
+     * @param index  target offset
+     * @param buffer data
+     * @param start  absolute index of the first byte
+     * @param end    absolute index after the last byte
+     */
+    public void put(long index, ByteBuffer buffer, int start, int end)
+    {
+        long offset = index;
+
+        for (int i = start; i < end; i++)
+        {
+            put(offset++, buffer.get(i));
+        }
+    }
+
+    /**
+     * copy bytes out of the buffer.
+     * <p>
+     * @param index  source offset
+     * @param data   target array
+     * @param offset array offset
+     * @param length number of bytes
+     */
+    public void get(long index, byte[] data, int offset, int length)
+    {
+        long position = index;
+
+        for (int i = offset; i < offset + length; i++)
+        {
+            data[i] = get(position++);
+        }
+    }
+
+    /**
+     * compare stored bytes with a byte range.
+     * <p>
+     * @param index  offset of the stored bytes
+     * @param buffer data
+     * @param start  absolute index of the first byte
+     * @param end    absolute index after the last byte
+     * @return whether the stored bytes equal the range
+     */
+    public boolean equals(long index, ByteBuffer buffer, int start, int end)
+    {
+        long offset = index;
+
+        for (int i = start; i < end; i++)
+        {
+            if (get(offset++) != buffer.get(i))
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * release the pages. direct memory is reclaimed once the buffers are
+     * garbage collected.
+     * <p>
+     * @throws IOException failed to delete the temporary file
+     */
+    @Override
+    public void close() throws IOException
+    {
+        this.pages = new ByteBuffer[0];
+        this.capacity = 0;
+
+        if (null != this.channel)
+        {
+            this.channel.close();
+        }
+    }
+
+    private static int checkShift(int shift)
+    {
+        if (12 > shift || 30 < shift)
+        {
+            throw new IllegalArgumentException("Page size must be within 2^12 and 2^30");
+        }
+
+        return shift;
+    }
+
+    private ByteBuffer resize(ByteBuffer current, int size) throws IOException
+    {
+        ByteBuffer page = null;
+
+        if (null != this.channel)
+        {
+            // mappings of the same region share their content
+            return allocate(0, size);
+        }
+
+        page = allocate(0, size);
+
+        if (null != current)
+        {
+            ((Buffer) current).clear();
+            page.put(current);
+            ((Buffer) page).clear();
+        }
+
+        return page;
+    }
+
+    private ByteBuffer allocate(long position, int size) throws IOException
+    {
+        if (null == this.channel)
+        {
+            return ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+        }
+
+        return this.channel.map(FileChannel.MapMode.READ_WRITE, position, size).order(ByteOrder.nativeOrder());
+    }
+}
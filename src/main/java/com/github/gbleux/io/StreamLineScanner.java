@@ -0,0 +1,149 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Line scanner for arbitrary input streams such as <em>stdin</em>. The data
+ * is read in blocks into a reusable heap buffer, which grows if a single line
+ * does not fit. The input is either scanned at once or block by block
+ * using {@link #scanNext(LineHandler)}.
+ * <p>
+ * @author Gordon Bleux
+ */
+public class StreamLineScanner extends LineScanner
+{
+    /**
+     * default initial size of the read buffer
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    private static final int EOF = -1;
+
+    private final InputStream input;
+    private final int bufferSize;
+    private byte[] data = null;
+    private ByteBuffer buffer = null;
+    private int end = 0;
+    private boolean finished = false;
+
+    public StreamLineScanner(InputStream input)
+    {
+        super();
+
+        this.input = input;
+        this.bufferSize = DEFAULT_BUFFER_SIZE;
+    }
+
+    public StreamLineScanner(InputStream input, int bufferSize)
+    {
+        super();
+
+        if (bufferSize <= 0)
+        {
+            throw new IllegalArgumentException("Buffer size must be positive");
+        }
+
+        this.input = input;
+        this.bufferSize = bufferSize;
+    }
+
+    @Override
+    public void scan(LineHandler handler) throws IOException
+    {
+        while (true == scanNext(handler))
+        {
+            // until the end of the input
+        }
+    }
+
+    /**
+     * read the next block of the input and pass the complete lines it
+     * contains to the handler. allows consumers to pull lines incrementally
+     * instead of scanning the whole input at once.
+     * <p>
+     * @param handler line callback
+     * @return {@literal false} once the end of the input has been reached.
+     *         the remaining lines have been passed to the handler by then.
+     * @throws IOException failed to read the input or the handler aborted
+     */
+    public boolean scanNext(LineHandler handler) throws IOException
+    {
+        int read = 0;
+        int consumed = 0;
+
+        if (true == this.finished)
+        {
+            return false;
+        }
+        else if (null == this.data)
+        {
+            this.data = new byte[this.bufferSize];
+            this.buffer = ByteBuffer.wrap(this.data);
+            this.end = 0;
+            reset();
+        }
+
+        read = this.input.read(this.data, this.end, this.data.length - this.end);
+
+        if (EOF == read)
+        {
+            this.finished = true;
+            scanLines(this.buffer, 0, this.end, true, handler);
+            this.data = null;
+            this.buffer = null;
+
+            return false;
+        }
+
+        this.end += read;
+        consumed = scanLines(this.buffer, 0, this.end, false, handler);
+
+        // move the incomplete line to the front
+        this.end -= consumed;
+        System.arraycopy(this.data, consumed, this.data, 0, this.end);
+
+        if (this.end == this.data.length)
+        {
+            this.data = Arrays.copyOf(this.data, this.data.length * 2);
+            this.buffer = ByteBuffer.wrap(this.data);
+        }
+
+        return true;
+    }
+
+    /**
+     * close the underlying stream
+     * <p>
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException
+    {
+        this.input.close();
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Output stream which writes all data to two streams.
+ * <p>
+ * @author Gordon Bleux
+ */
+public class TeeOutputStream extends OutputStream
+{
+    private final OutputStream first;
+    private final OutputStream second;
+
+    /**
+     * @param first  stream written first
+     * @param second stream written second
+     */
+    public TeeOutputStream(OutputStream first, OutputStream second)
+    {
+        super();
+
+        this.first = first;
+        this.second = second;
+    }
+
+    @Override
+    public void write(int b) throws IOException
+    {
+        this.first.write(b);
+        this.second.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException
+    {
+        this.first.write(b, off, len);
+        this.second.write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException
+    {
+        this.first.flush();
+        this.second.flush();
+    }
+
+    /**
+     * close both streams.
+     * <p>
+     * @throws IOException failed to close either stream
+     */
+    @Override
+    public void close() throws IOException
+    {
+        try
+        {
+            this.first.close();
+        }
+        finally
+        {
+            this.second.close();
+        }
+    }
+}
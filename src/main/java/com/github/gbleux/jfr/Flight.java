@@ -0,0 +1,142 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.jfr;
+
+import java.nio.file.Path;
+
+/**
+ * Emitter of JDK Flight Recorder events. Events are recorded when the
+ * running JVM provides the {@code jdk.jfr} API (JDK 11 and later) and a
+ * recording which enables them is active, e.g. after starting the JVM with
+ * {@code -XX:StartFlightRecording}. Otherwise the {@code begin} methods
+ * return {@literal null} and the {@code end} methods ignore it, so callers
+ * do not need to check the availability.
+ * <p>
+ * The event classes are only loaded if the API is present, which keeps the
+ * project runnable on older JVMs.
+ * <p>
+ * @author Gordon Bleux
+ */
+public final class Flight
+{
+    private static final boolean AVAILABLE = isAvailable();
+
+    private Flight()
+    {
+        super();
+    }
+
+    /**
+     * @return whether the JVM supports flight recorder events
+     */
+    public static boolean available()
+    {
+        return AVAILABLE;
+    }
+
+    /**
+     * start the event of a file (region) being read.
+     * <p>
+     * @param file   file being read
+     * @param offset position of the first byte read
+     * @return event handle or {@literal null}
+     */
+    public static Object beginFile(Path file, long offset)
+    {
+        return true == AVAILABLE ? FlightEvents.beginFile(file, offset) : null;
+    }
+
+    /**
+     * @param event handle returned by {@link #beginFile(Path, long)}
+     * @param bytes number of bytes read
+     * @param lines number of lines read, negative if not counted
+     */
+    public static void endFile(Object event, long bytes, long lines)
+    {
+        if (null != event)
+        {
+            FlightEvents.endFile(event, bytes, lines);
+        }
+    }
+
+    /**
+     * start the event of a processing phase.
+     * <p>
+     * @param phase name of the phase
+     * @return event handle or {@literal null}
+     */
+    public static Object beginPhase(String phase)
+    {
+        return true == AVAILABLE ? FlightEvents.beginPhase(phase) : null;
+    }
+
+    /**
+     * @param event handle returned by {@link #beginPhase(String)}
+     */
+    public static void endPhase(Object event)
+    {
+        if (null != event)
+        {
+            FlightEvents.endPhase(event);
+        }
+    }
+
+    /**
+     * start the event of a batch of lines being processed.
+     * <p>
+     * @param stage    name of the processing stage
+     * @param sequence number of the batch in input order
+     * @return event handle or {@literal null}
+     */
+    public static Object beginBatch(String stage, long sequence)
+    {
+        return true == AVAILABLE ? FlightEvents.beginBatch(stage, sequence) : null;
+    }
+
+    /**
+     * @param event   handle returned by {@link #beginBatch(String, long)}
+     * @param lines   number of lines in the batch
+     * @param entries number of entries in the batch
+     */
+    public static void endBatch(Object event, long lines, long entries)
+    {
+        if (null != event)
+        {
+            FlightEvents.endBatch(event, lines, entries);
+        }
+    }
+
+    private static boolean isAvailable()
+    {
+        try
+        {
+            Class.forName("jdk.jfr.Event", false, Flight.class.getClassLoader());
+
+            return true;
+        }
+        catch (ClassNotFoundException | LinkageError e)
+        {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.jfr;
+
+import java.nio.file.Path;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event types. This class refers to the {@code jdk.jfr} API
+ * and must only be used through {@link Flight}. Events are only created if
+ * they are enabled, so inactive recordings cost a single allocation per
+ * call.
+ * <p>
+ * @author Gordon Bleux
+ */
+final class FlightEvents
+{
+    private FlightEvents()
+    {
+        super();
+    }
+
+    static Object beginFile(Path file, long offset)
+    {
+        FileEvent event = new FileEvent();
+
+        if (false == event.isEnabled())
+        {
+            return null;
+        }
+
+        event.path = file.toString();
+        event.offset = offset;
+        event.begin();
+
+        return event;
+    }
+
+    static void endFile(Object handle, long bytes, long lines)
+    {
+        FileEvent event = (FileEvent) handle;
+
+        event.end();
+        event.bytes = bytes;
+        event.lines = lines;
+        event.commit();
+    }
+
+    static Object beginPhase(String phase)
+    {
+        PhaseEvent event = new PhaseEvent();
+
+        if (false == event.isEnabled())
+        {
+            return null;
+        }
+
+        event.phase = phase;
+        event.begin();
+
+        return event;
+    }
+
+    static void endPhase(Object handle)
+    {
+        PhaseEvent event = (PhaseEvent) handle;
+
+        event.end();
+        event.commit();
+    }
+
+    static Object beginBatch(String stage, long sequence)
+    {
+        BatchEvent event = new BatchEvent();
+
+        if (false == event.isEnabled())
+        {
+            return null;
+        }
+
+        event.stage = stage;
+        event.sequence = sequence;
+        event.begin();
+
+        return event;
+    }
+
+    static void endBatch(Object handle, long lines, long entries)
+    {
+        BatchEvent event = (BatchEvent) handle;
+
+        event.end();
+        event.lines = lines;
+        event.entries = entries;
+        event.commit();
+    }
+
+    @Name("hostsmerge.FileRead")
+    @Label("File Read")
+    @Description("Input file or file region read by hostsmerge")
+    @Category("Hostsmerge")
+    static final class FileEvent extends Event
+    {
+        @Label("Path")
+        String path;
+
+        @Label("Offset")
+        @Description("Position of the region within the file")
+        long offset;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        @Label("Lines")
+        @Description("Number of lines read, negative if not counted")
+        long lines;
+    }
+
+    @Name("hostsmerge.Phase")
+    @Label("Merge Phase")
+    @Description("Processing phase of a merge, see MergeStatistics.Phase")
+    @Category("Hostsmerge")
+    static final class PhaseEvent extends Event
+    {
+        @Label("Phase")
+        String phase;
+    }
+
+    @Name("hostsmerge.Batch")
+    @Label("Batch")
+    @Description("Batch of lines processed by a pipeline stage")
+    @Category("Hostsmerge")
+    static final class BatchEvent extends Event
+    {
+        @Label("Stage")
+        String stage;
+
+        @Label("Sequence")
+        long sequence;
+
+        @Label("Lines")
+        long lines;
+
+        @Label("Entries")
+        long entries;
+    }
+}
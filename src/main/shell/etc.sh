@@ -5,17 +5,33 @@
 
 BIN_D=`dirname "$0"`
 HOSTSMERGE_D=`readlink -f "$BIN_D/../${assembly.share}"`
-TEMP_HOSTS=/tmp/hostsmerge
 SYSTEM_HOSTS=/etc/hosts
+MERGED_HOSTS=`mktemp` || exit 1
+
+trap 'rm -f "$MERGED_HOSTS"' EXIT
 
 echo "Merging $HOSTSMERGE_D/* into $SYSTEM_HOSTS"
-sh "$BIN_D/hostsmerge" --loopback "$HOSTSMERGE_D" "$TEMP_HOSTS"
-sudo mv "$TEMP_HOSTS" "$SYSTEM_HOSTS"
+# the merge runs unprivileged, only the replacement of the file needs root
+sh "$BIN_D/hostsmerge" --loopback "$HOSTSMERGE_D" "$MERGED_HOSTS"
+STATUS=$?
 
-if test 0 -eq $?;then
-    echo "Done."
-    exit 0
-else
+# 2 only tells that the new temporary file was left unchanged
+if [ $STATUS -ne 0 ] && [ $STATUS -ne 2 ]; then
     echo "Failure."
     exit 1
 fi
+
+if cmp -s "$MERGED_HOSTS" "$SYSTEM_HOSTS"; then
+    echo "Unchanged."
+    exit 0
+fi
+
+# the file is replaced atomically from a copy on the same file system
+if sudo install -m 0644 "$MERGED_HOSTS" "$SYSTEM_HOSTS.hostsmerge" && \
+   sudo mv -f "$SYSTEM_HOSTS.hostsmerge" "$SYSTEM_HOSTS"; then
+    echo "Done."
+    exit 0
+fi
+
+echo "Failure."
+exit 1
@@ -0,0 +1,165 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Gordon Bleux
+ */
+public class RingBufferTest
+{
+    /**
+     * Test of offer and poll methods, of class RingBuffer.
+     */
+    @Test
+    public void testOfferPoll()
+    {
+        RingBuffer<Integer> instance = new RingBuffer<>(3);
+
+        assertEquals(4, instance.capacity());
+        assertNull(instance.poll());
+
+        for (int lap = 0; lap < 3; lap++)
+        {
+            for (int i = 0; i < 4; i++)
+            {
+                assertTrue(instance.offer(i));
+            }
+
+            assertFalse(instance.offer(4));
+            assertEquals(4, instance.size());
+
+            for (int i = 0; i < 4; i++)
+            {
+                assertEquals(Integer.valueOf(i), instance.poll());
+            }
+
+            assertNull(instance.poll());
+        }
+
+        assertEquals(12L, instance.puts());
+        assertEquals(12L, instance.takes());
+        assertEquals(4, instance.peakSize());
+    }
+
+    /**
+     * Test of put and take methods, of class RingBuffer.
+     */
+    @Test
+    public void testConcurrent() throws Exception
+    {
+        final int producers = 4;
+        final int consumers = 3;
+        final int count = 50000;
+        final RingBuffer<Integer> instance = new RingBuffer<>(16);
+        final AtomicIntegerArray seen = new AtomicIntegerArray(producers * count);
+        final List<Thread> threads = new ArrayList<>();
+
+        for (int p = 0; p < producers; p++)
+        {
+            final int offset = p * count;
+
+            threads.add(new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        for (int i = 0; i < count; i++)
+                        {
+                            instance.put(offset + i);
+                        }
+                    }
+                    catch (InterruptedException e)
+                    {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            });
+        }
+
+        for (int c = 0; c < consumers; c++)
+        {
+            threads.add(new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        int value = 0;
+
+                        while ((value = instance.take()) >= 0)
+                        {
+                            seen.incrementAndGet(value);
+                        }
+                    }
+                    catch (InterruptedException e)
+                    {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            });
+        }
+
+        for (Thread thread : threads)
+        {
+            thread.start();
+        }
+
+        for (int p = 0; p < producers; p++)
+        {
+            threads.get(p).join();
+        }
+
+        // terminate consumers
+        for (int c = 0; c < consumers; c++)
+        {
+            instance.put(-1);
+        }
+
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+
+        for (int i = 0; i < seen.length(); i++)
+        {
+            assertEquals("element " + i, 1, seen.get(i));
+        }
+
+        assertEquals(0, instance.size());
+        assertEquals(instance.puts(), instance.takes());
+    }
+}
@@ -0,0 +1,131 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.github.gbleux.hostsmerge.address.HostEntry;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Gordon Bleux
+ */
+public class HostsWriterTest
+{
+    private static final List<HostEntry> ENTRIES = Arrays.asList(
+            new HostEntry("0.0.0.0", "a.example"),
+            new HostEntry("0.0.0.0", "b.example"),
+            new HostEntry("0.0.0.0", "c.example"),
+            new HostEntry(false, "0.0.0.0", "d.example"),
+            new HostEntry("0.0.0.0", "e.example", "ads"),
+            new HostEntry("0.0.0.0", "f.example", "ads"),
+            new HostEntry("::1", "g.example", "ads"));
+
+    /**
+     * Test of write method, of class HostsWriter.
+     */
+    @Test
+    public void testWrite() throws Exception
+    {
+        StringBuilder expected = new StringBuilder();
+
+        for (HostEntry entry : ENTRIES)
+        {
+            expected.append(entry.toHosts()).append('\n');
+        }
+
+        assertEquals(expected.toString(), write(1, 0));
+        assertEquals(""
+                + "0.0.0.0 a.example b.example c.example\n"
+                + "#0.0.0.0 d.example\n"
+                + "0.0.0.0 e.example f.example # ads\n"
+                + "::1 g.example # ads\n", write(9, 0));
+    }
+
+    /**
+     * Test of write method, of class HostsWriter.
+     */
+    @Test
+    public void testWriteLimited() throws Exception
+    {
+        assertEquals(""
+                + "0.0.0.0 a.example b.example\n"
+                + "0.0.0.0 c.example\n"
+                + "#0.0.0.0 d.example\n"
+                + "0.0.0.0 e.example f.example # ads\n"
+                + "::1 g.example # ads\n", write(2, 0));
+        // 0.0.0.0 e.example f.example # ads exceeds 30 characters
+        assertEquals(""
+                + "0.0.0.0 a.example b.example\n"
+                + "0.0.0.0 c.example\n"
+                + "#0.0.0.0 d.example\n"
+                + "0.0.0.0 e.example # ads\n"
+                + "0.0.0.0 f.example # ads\n"
+                + "::1 g.example # ads\n", write(9, 30));
+        // lines hold at least one hostname
+        assertEquals(""
+                + "0.0.0.0 a.example\n"
+                + "0.0.0.0 b.example\n", write(Arrays.asList(ENTRIES.get(0), ENTRIES.get(1)), 9, 5));
+    }
+
+    /**
+     * Test of write method, of class HostsWriter.
+     */
+    @Test
+    public void testWriteEncoding() throws Exception
+    {
+        String hostname = "\u00e9\u0800\uD83D\uDE00\uFFFF.example";
+        List<HostEntry> entries = Arrays.asList(
+                new HostEntry("0.0.0.0", hostname, "\u00fc"),
+                new HostEntry("0.0.0.0", "broken\uD83D.example"));
+
+        assertEquals(new HostEntry("0.0.0.0", hostname, "\u00fc").toHosts() + "\n0.0.0.0 broken?.example\n", write(entries, 1, 0));
+    }
+
+    private String write(int groupSize, int groupWidth) throws Exception
+    {
+        return write(ENTRIES, groupSize, groupWidth);
+    }
+
+    private String write(List<HostEntry> entries, int groupSize, int groupWidth) throws Exception
+    {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        // tiny buffer: lines are encoded across many flushes
+        try (HostsWriter instance = new HostsWriter(Channels.newChannel(output), groupSize, groupWidth, 5))
+        {
+            for (HostEntry entry : entries)
+            {
+                instance.write(entry);
+            }
+        }
+
+        return output.toString("UTF-8");
+    }
+}
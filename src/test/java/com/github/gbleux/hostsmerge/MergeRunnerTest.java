@@ -0,0 +1,818 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Test;
+
+import com.github.gbleux.hostsmerge.address.Address;
+import com.github.gbleux.hostsmerge.address.HostEntry;
+import com.github.gbleux.hostsmerge.address.rewrite.AddressRewrite;
+import com.github.gbleux.hostsmerge.address.rewrite.LoopbackAddressRewrite;
+import com.github.gbleux.hostsmerge.address.rewrite.NoAddressRewrite;
+import com.github.gbleux.hostsmerge.corpus.CorpusGenerator;
+import com.github.gbleux.hostsmerge.snapshot.HostsSnapshot;
+import com.github.gbleux.hostsmerge.table.HostTableType;
+import com.github.gbleux.io.AtomicFileOutputStream;
+import com.github.gbleux.io.LineScanner;
+import com.github.gbleux.io.MappedLineScanner;
+import com.github.gbleux.io.StreamLineScanner;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Gordon Bleux
+ */
+public class MergeRunnerTest
+{
+    private static final String INPUT = "# comment line\n"
+            + "127.0.0.1 localhost\n"
+            + "0.0.0.0 b.example a.example # ads\r\n"
+            + "#1.2.3.4 disabled.example\n"
+            + "not a host line\n"
+            + "0.0.0.0\tb.example\n";
+
+    /**
+     * Test of run method, of class MergeRunner.
+     */
+    @Test
+    public void testRun() throws Exception
+    {
+        assertEquals("0.0.0.0 a.example # ads\n"
+                + "0.0.0.0 b.example\n"
+                + "#1.2.3.4 disabled.example\n"
+                + "127.0.0.1 localhost\n", merge(INPUT, new NoAddressRewrite()));
+    }
+
+    /**
+     * Test of run method, of class MergeRunner.
+     */
+    @Test
+    public void testRunRewrite() throws Exception
+    {
+        assertEquals("#1.2.3.4 disabled.example\n"
+                + "127.0.0.1 a.example # ads\n"
+                + "127.0.0.1 b.example\n"
+                + "127.0.0.1 localhost\n", merge(INPUT, new LoopbackAddressRewrite()));
+    }
+
+    /**
+     * Test of run method, of class MergeRunner.
+     */
+    @Test
+    public void testRunAddressOrder() throws Exception
+    {
+        assertEquals("10.0.0.2 c.example\n"
+                + "10.0.0.10 a.example\n"
+                + "::1 b.example\n"
+                + "::1 d.example\n", merge("10.0.0.10 a.example\n"
+                        + "::0001 b.example\n"
+                        + "10.0.0.2 c.example\n"
+                        + "0:0::1 d.example\n", new NoAddressRewrite()));
+    }
+
+    /**
+     * Test of run method, of class MergeRunner.
+     */
+    @Test(timeout = 60000L)
+    public void testRunThreadsCompressed() throws Exception
+    {
+        Path file = Files.createTempFile("hostsmerge", ".gz");
+        StringBuilder content = new StringBuilder();
+
+        for (int i = 0; i < 400000; i++)
+        {
+            content.append("10.0.").append(i % 256).append(".1 host").append(i).append(".example\n");
+        }
+
+        try
+        {
+            try (OutputStream output = new GZIPOutputStream(Files.newOutputStream(file)))
+            {
+                output.write(content.toString().getBytes("UTF-8"));
+            }
+
+            // a single compressed file is scanned as a whole after splitting it
+            assertEquals(merge(newScanner(content), 1), merge(MappedLineScanner.open(file), 2));
+        }
+        finally
+        {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Test of run method, of class MergeRunner.
+     */
+    @Test
+    public void testRunThreads() throws Exception
+    {
+        Path directory = Files.createTempDirectory("hostsmerge");
+
+        try
+        {
+            for (int i = 0; i < 16; i++)
+            {
+                StringBuilder content = new StringBuilder();
+
+                for (int j = 0; j < 100; j++)
+                {
+                    // overlapping hostnames with file specific addresses
+                    content.append("10.0.0.").append(i).append(" host").append((i * 37 + j) % 200).append(".example\n");
+                }
+
+                Files.write(directory.resolve("hosts" + i), content.toString().getBytes("UTF-8"));
+            }
+
+            String expected = merge(MappedLineScanner.open(directory), 1);
+
+            for (int threads = 2; threads <= 8; threads *= 2)
+            {
+                assertEquals(expected, merge(MappedLineScanner.open(directory), threads));
+            }
+        }
+        finally
+        {
+            delete(directory);
+        }
+    }
+
+    /**
+     * Test of run method, of class MergeRunner.
+     */
+    @Test
+    public void testRunThreadsSplit() throws Exception
+    {
+        Path file = Files.createTempFile("hostsmerge", ".txt");
+        StringBuilder content = new StringBuilder();
+
+        try
+        {
+            for (int i = 0; i < 2000; i++)
+            {
+                // later lines override earlier ones
+                content.append("10.0.").append(i / 250).append(".1 host").append(i % 300).append(".example\n");
+            }
+
+            Files.write(file, content.toString().getBytes("UTF-8"));
+
+            String expected = merge(new MappedLineScanner(Arrays.asList(file)), 1);
+
+            assertEquals(expected, merge(new MappedLineScanner(Arrays.asList(file), 1024, 1000L), 4));
+        }
+        finally
+        {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Test of run method, of class MergeRunner.
+     */
+    @Test
+    public void testRunPipelined() throws Exception
+    {
+        StringBuilder content = new StringBuilder();
+
+        for (int i = 0; i < 20000; i++)
+        {
+            // later lines override earlier ones
+            content.append(0 == i % 7 ? "# comment\n" : "").append("10.0.").append(i / 1000).append(".1 host").append(i % 3000).append(".example\n");
+        }
+
+        String expected = merge(newScanner(content), 1, false);
+
+        for (int parsers = 1; parsers <= 4; parsers++)
+        {
+            assertEquals(expected, merge(newScanner(content), parsers, true));
+        }
+    }
+
+    /**
+     * Test of run method, of class MergeRunner.
+     */
+    @Test(timeout = 60000L)
+    public void testRunPipelinedFailure() throws Exception
+    {
+        StringBuilder content = new StringBuilder();
+
+        for (int i = 0; i < 200000; i++)
+        {
+            content.append("10.0.").append(i / 1000 % 256).append(".1 host").append(i).append(".example\n");
+        }
+
+        for (int parsers = 1; parsers <= 3; parsers++)
+        {
+            // the input exceeds the queues, which are not drained after the failure
+            MergeRunner instance = new MergeRunner(newScanner(content), new ByteArrayOutputStream(), new NoAddressRewrite()
+            {
+                @Override
+                public Address rewrite(Address address)
+                {
+                    throw new IllegalStateException("parser failure");
+                }
+            }, newOptions(parsers, true, HostTableType.HASH));
+
+            try
+            {
+                instance.run();
+                fail("failure of the parsers not propagated");
+            }
+            catch (IllegalStateException e)
+            {
+                assertEquals("parser failure", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Test of run method, of class MergeRunner.
+     */
+    @Test
+    public void testRunCompact() throws Exception
+    {
+        StringBuilder content = new StringBuilder();
+
+        for (int i = 0; i < 20000; i++)
+        {
+            // later lines override earlier ones
+            content.append(0 == i % 5 ? "#" : "").append("10.0.").append(i / 1000).append(".1 host").append(i % 3000).append(".example").append(0 == i % 3 ? " # note\n" : "\n");
+        }
+
+        String expected = merge(newScanner(content), 1, false);
+
+        assertEquals(expected, merge(newScanner(content), newOptions(1, false, HostTableType.COMPACT)));
+        assertEquals(expected, merge(newScanner(content), newOptions(3, true, HostTableType.COMPACT)));
+        assertEquals(expected, merge(newScanner(content), newOptions(1, false, HostTableType.OFF_HEAP)));
+        assertEquals(expected, merge(newScanner(content), newOptions(3, true, HostTableType.MAPPED)));
+    }
+
+    /**
+     * Test of run method, of class MergeRunner.
+     */
+    @Test
+    public void testRunBounded() throws Exception
+    {
+        Path directory = Files.createTempDirectory("hostsmerge");
+        StringBuilder content = new StringBuilder();
+
+        try
+        {
+            for (int i = 0; i < 20000; i++)
+            {
+                // later lines override earlier ones
+                content.append("10.0.").append(i % 7).append(".1 host").append(i * 13 % 5000).append(".example\n");
+            }
+
+            String expected = merge(newScanner(content), 1, false);
+
+            for (boolean pipelined : new boolean[] {false, true})
+            {
+                MergeOptions options = newOptions(2, pipelined, HostTableType.COMPACT);
+
+                options.setMaxMemory(1L << 16);
+                options.setTempDirectory(directory);
+
+                assertEquals(expected, merge(newScanner(content), options));
+                assertEquals(0, MappedLineScanner.listFiles(directory).size());
+            }
+        }
+        finally
+        {
+            Files.delete(directory);
+        }
+    }
+
+    /**
+     * Test of run method, of class MergeRunner.
+     */
+    @Test
+    public void testRunCached() throws Exception
+    {
+        Path directory = Files.createTempDirectory("hostsmerge");
+        Path cache = Files.createTempDirectory("hostsmerge");
+        Path[] files = new Path[3];
+        MergeOptions options = newOptions(2, false, HostTableType.HASH);
+        AddressRewrite rewrite = new LoopbackAddressRewrite(false);
+        String expected = null;
+
+        options.setCacheDirectory(cache);
+
+        try
+        {
+            for (int f = 0; f < files.length; f++)
+            {
+                StringBuilder content = new StringBuilder();
+
+                for (int i = 0; i < 3000; i++)
+                {
+                    content.append(0 == i % 4 ? "0.0.0.0" : "10.0.0." + f).append(" host").append(i * (f + 1) % 2000).append(".example\n");
+                }
+
+                files[f] = Files.write(directory.resolve("hosts" + f), content.toString().getBytes("UTF-8"));
+            }
+
+            // cold, warm and partially changed cache
+            for (int run = 0; run < 3; run++)
+            {
+                if (2 == run)
+                {
+                    Files.write(files[1], "10.9.9.9 host1.example\n".getBytes("UTF-8"));
+                }
+
+                expected = merge(new MappedLineScanner(Arrays.asList(files)), rewrite, newOptions(1, false, HostTableType.HASH));
+
+                assertEquals(expected, merge(new MappedLineScanner(Arrays.asList(files)), rewrite, options));
+                // one file per source and the merged output
+                assertEquals(files.length + 1, MappedLineScanner.listFiles(cache).size());
+            }
+
+            // the cached output depends on the rewrite
+            assertEquals(
+                    merge(new MappedLineScanner(Arrays.asList(files)), newOptions(1, false, HostTableType.HASH)),
+                    merge(new MappedLineScanner(Arrays.asList(files)), options));
+
+            // stale entries are removed
+            Files.delete(files[2]);
+
+            assertEquals(
+                    merge(new MappedLineScanner(Arrays.asList(files[0], files[1])), rewrite, newOptions(1, false, HostTableType.HASH)),
+                    merge(new MappedLineScanner(Arrays.asList(files[0], files[1])), rewrite, options));
+            assertEquals(3, MappedLineScanner.listFiles(cache).size());
+        }
+        finally
+        {
+            delete(directory);
+            delete(cache);
+        }
+    }
+
+    /**
+     * Test of run method, of class MergeRunner.
+     */
+    @Test
+    public void testRunCachedBounded() throws Exception
+    {
+        Path directory = Files.createTempDirectory("hostsmerge");
+        Path cache = Files.createTempDirectory("hostsmerge");
+        Path temp = Files.createTempDirectory("hostsmerge");
+        Path[] files = new Path[2];
+        MergeOptions options = newOptions(2, false, HostTableType.COMPACT);
+        String expected = null;
+
+        options.setCacheDirectory(cache);
+        options.setMaxMemory(1L << 16);
+        options.setTempDirectory(temp);
+
+        try
+        {
+            for (int f = 0; f < files.length; f++)
+            {
+                StringBuilder content = new StringBuilder();
+
+                for (int i = 0; i < 20000; i++)
+                {
+                    content.append("10.0.").append(f).append('.').append(i % 7).append(" host").append(i * 13 % 5000).append(".example\n");
+                }
+
+                files[f] = Files.write(directory.resolve("hosts" + f), content.toString().getBytes("UTF-8"));
+            }
+
+            expected = merge(new MappedLineScanner(Arrays.asList(files)), newOptions(1, false, HostTableType.HASH));
+
+            // cold and warm cache
+            for (int run = 0; run < 2; run++)
+            {
+                assertEquals(expected, merge(new MappedLineScanner(Arrays.asList(files)), options));
+                assertEquals(0, MappedLineScanner.listFiles(temp).size());
+            }
+        }
+        finally
+        {
+            delete(directory);
+            delete(cache);
+            delete(temp);
+        }
+    }
+
+    /**
+     * Test of run method, of class MergeRunner.
+     */
+    @Test
+    public void testRunSnapshot() throws Exception
+    {
+        StringBuilder content = new StringBuilder();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        MergeOptions options = newOptions(1, false, HostTableType.HASH);
+        MergeRunner instance = null;
+        HostsSnapshot snapshot = null;
+        List<String> lines = null;
+
+        for (int i = 0; i < 5000; i++)
+        {
+            content.append(0 == i % 5 ? "#" : "").append("10.0.").append(i / 1000).append(".1 host").append(i % 3000).append(".example\n");
+        }
+
+        lines = Arrays.asList(merge(newScanner(content), 1).split("\n"));
+        options.setFormat(OutputFormat.SNAPSHOT);
+        instance = new MergeRunner(newScanner(content), output, new NoAddressRewrite(), options);
+        instance.run();
+
+        assertTrue(instance.isSuccess());
+
+        snapshot = new HostsSnapshot(ByteBuffer.wrap(output.toByteArray()));
+
+        assertEquals(lines.size(), snapshot.size());
+
+        for (HostEntry entry : snapshot)
+        {
+            assertTrue(lines.contains(entry.toHosts()));
+        }
+    }
+
+    /**
+     * Test of run method, of class MergeRunner.
+     */
+    @Test
+    public void testRunPresorted() throws Exception
+    {
+        Path directory = Files.createTempDirectory("hostsmerge");
+        Path[] files = new Path[3];
+        StringBuilder all = new StringBuilder();
+        MergeOptions options = newOptions(1, false, HostTableType.HASH);
+        MergeRunner instance = null;
+        String expected = null;
+
+        try
+        {
+            for (int f = 0; f < files.length; f++)
+            {
+                StringBuilder content = new StringBuilder();
+
+                for (int i = 0; i < 3000; i++)
+                {
+                    // the address depends on the hostname only
+                    int host = i * (f + 2) % 4000;
+
+                    content.append(0 == (i + f) % 5 ? "#" : "").append("10.0.").append(host % 7).append(".1 host").append(host).append(".example").append(0 == i % 3 ? " # file " + f : "").append('\n');
+                }
+
+                all.append(content);
+                files[f] = Files.write(directory.resolve("hosts" + f), merge(newScanner(content), 1).getBytes("UTF-8"));
+            }
+
+            expected = merge(newScanner(all), 1);
+
+            for (InputOrder order : new InputOrder[] {InputOrder.SORTED, InputOrder.DETECT})
+            {
+                options.setInputOrder(order);
+
+                assertEquals(expected, merge(new MappedLineScanner(Arrays.asList(files)), options));
+            }
+
+            // unsorted input: detected or rejected
+            Files.write(files[1], "10.0.0.2 b.example\n10.0.0.1 a.example\n".getBytes("UTF-8"));
+            expected = merge(new MappedLineScanner(Arrays.asList(files)), 1);
+
+            assertEquals(expected, merge(new MappedLineScanner(Arrays.asList(files)), options));
+
+            options.setInputOrder(InputOrder.SORTED);
+
+            instance = new MergeRunner(new MappedLineScanner(Arrays.asList(files)), new ByteArrayOutputStream(), new NoAddressRewrite(), options);
+
+            instance.run();
+
+            assertTrue(instance.isFailure());
+        }
+        finally
+        {
+            delete(directory);
+        }
+    }
+
+    /**
+     * Test of run method, of class MergeRunner.
+     */
+    @Test
+    public void testRunGrouped() throws Exception
+    {
+        StringBuilder content = new StringBuilder();
+        MergeOptions options = newOptions(1, false, HostTableType.HASH);
+        String expected = null;
+        String grouped = null;
+
+        for (int i = 0; i < 5000; i++)
+        {
+            content.append(0 == i % 50 ? "#" : "").append("10.0.").append(i / 1000).append(".1 host").append(i % 3000).append(".example").append(0 == i % 70 ? " # note\n" : "\n");
+        }
+
+        expected = merge(newScanner(content), 1);
+        options.setGroupSize(HostsWriter.DEFAULT_GROUP_SIZE);
+
+        for (int width : new int[] {0, 80})
+        {
+            options.setGroupWidth(width);
+            grouped = merge(newScanner(content), options);
+
+            // grouped lines parse into the same entries
+            assertEquals(expected, merge(newScanner(grouped), 1));
+            assertTrue(grouped.length() < expected.length() * 4 / 5);
+
+            for (String line : grouped.split("\n"))
+            {
+                assertTrue(line, 0 == width || line.length() <= width);
+            }
+        }
+    }
+
+    /**
+     * Test of statistics method, of class MergeRunner.
+     */
+    @Test
+    public void testStatistics() throws Exception
+    {
+        byte[] input = INPUT.getBytes("UTF-8");
+        ByteArrayOutputStream output = null;
+        MergeRunner instance = null;
+        MergeStatistics statistics = null;
+
+        for (boolean pipelined : new boolean[] {false, true})
+        {
+            output = new ByteArrayOutputStream();
+            instance = new MergeRunner(new StreamLineScanner(new ByteArrayInputStream(input)), output,
+                    new LoopbackAddressRewrite(false), newOptions(2, pipelined, HostTableType.HASH));
+            instance.run();
+            statistics = instance.statistics();
+
+            assertTrue(statistics.isSuccess());
+            assertEquals(6L, statistics.getLinesRead());
+            assertEquals(4L, statistics.getLinesMatched());
+            assertEquals(1L, statistics.getCommentLines());
+            assertEquals(1L, statistics.getMalformedLines());
+            assertEquals(5L, statistics.getEntriesParsed());
+            assertEquals(4L, statistics.getEntriesEmitted());
+            assertEquals(1L, statistics.getDuplicatesOverridden());
+            assertEquals(3L, statistics.getAddressesRewritten());
+            assertEquals(input.length, statistics.getBytesIn());
+            assertEquals(output.size(), statistics.getBytesOut());
+            assertTrue(0L < statistics.nanos(MergeStatistics.Phase.PARSE));
+            assertTrue(0L < statistics.getPeakHeap());
+            assertTrue(statistics.toJson(), statistics.toJson().contains(
+                    "\"lines\":{\"read\":6,\"matched\":4,\"comment\":1,\"malformed\":1}"));
+        }
+    }
+
+    /**
+     * Test of statistics method, of class MergeRunner.
+     */
+    @Test
+    public void testStatisticsPatch() throws Exception
+    {
+        Path baseline = Files.createTempFile("hostsmerge", ".hosts");
+        MergeOptions options = newOptions(1, false, HostTableType.HASH);
+        MergeRunner instance = null;
+
+        try
+        {
+            Files.write(baseline, merge(newScanner(INPUT), 1).getBytes("UTF-8"));
+            options.setFormat(OutputFormat.PATCH);
+            options.setBaseline(baseline);
+            instance = new MergeRunner(newScanner(INPUT), new ByteArrayOutputStream(), new NoAddressRewrite(), options);
+            instance.run();
+
+            // nothing changed against the baseline, but a duplicate was replaced
+            assertTrue(instance.isSuccess());
+            assertEquals(4L, instance.statistics().getEntriesEmitted());
+            assertEquals(1L, instance.statistics().getDuplicatesOverridden());
+        }
+        finally
+        {
+            Files.delete(baseline);
+        }
+    }
+
+    /**
+     * Test of getFailure method, of class MergeRunner.
+     */
+    @Test
+    public void testGetFailure() throws Exception
+    {
+        MergeRunner instance = new MergeRunner(newScanner(INPUT), new OutputStream()
+        {
+            @Override
+            public void write(int b) throws IOException
+            {
+                throw new IOException("disk full");
+            }
+        }, new NoAddressRewrite());
+
+        instance.run();
+
+        assertTrue(instance.isFailure());
+        assertEquals("disk full", instance.getFailure().getMessage());
+        assertFalse(instance.statistics().isSuccess());
+        assertTrue(instance.statistics().toJson().startsWith("{\"success\":false,\"cached\":false,\"failure\":\"java.io.IOException: disk full\""));
+    }
+
+    /**
+     * Test of isChanged method, of class MergeRunner.
+     */
+    @Test
+    public void testIsChanged() throws Exception
+    {
+        Path directory = Files.createTempDirectory("hostsmerge");
+        Path target = directory.resolve("hosts");
+        MergeRunner instance = null;
+
+        try
+        {
+            instance = new MergeRunner(newScanner(INPUT), new AtomicFileOutputStream(target), new NoAddressRewrite());
+            instance.run();
+
+            assertTrue(instance.isSuccess());
+            assertTrue(instance.isChanged());
+            assertEquals(merge(INPUT, new NoAddressRewrite()), new String(Files.readAllBytes(target), "UTF-8"));
+
+            instance = new MergeRunner(newScanner(INPUT), new AtomicFileOutputStream(target), new NoAddressRewrite());
+            instance.run();
+
+            assertTrue(instance.isSuccess());
+            assertFalse(instance.isChanged());
+
+            instance = new MergeRunner(newScanner(INPUT), new AtomicFileOutputStream(target), new LoopbackAddressRewrite(false));
+            instance.run();
+
+            assertTrue(instance.isSuccess());
+            assertTrue(instance.isChanged());
+            assertEquals(merge(INPUT, new LoopbackAddressRewrite(false)), new String(Files.readAllBytes(target), "UTF-8"));
+            assertEquals(1, MappedLineScanner.listFiles(directory).size());
+        }
+        finally
+        {
+            delete(directory);
+        }
+    }
+
+    /**
+     * Test of run method, of class MergeRunner. the corpus size can be raised
+     * for load tests with {@code -Dhostsmerge.corpus.lines=10000000
+     * -DargLine=-Xmx3g}.
+     */
+    @Test
+    public void testRunCorpus() throws Exception
+    {
+        Path directory = Files.createTempDirectory("hostsmerge");
+        CorpusGenerator generator = new CorpusGenerator();
+        List<Path> files = null;
+        byte[] expected = null;
+
+        generator.setLines(Long.getLong("hostsmerge.corpus.lines", 100000L));
+        generator.setFiles(4);
+        generator.setDuplicateRatio(0.3);
+        generator.setCommentRatio(0.02);
+        generator.setTrailingCommentRatio(0.02);
+        generator.setDisabledRatio(0.05);
+        generator.setIpv6Ratio(0.2);
+
+        try
+        {
+            files = generator.write(directory);
+            expected = digest(new MappedLineScanner(files), newOptions(1, false, HostTableType.HASH));
+
+            for (HostTableType table : new HostTableType[] {HostTableType.COMPACT, HostTableType.OFF_HEAP})
+            {
+                assertArrayEquals(table.name(), expected, digest(new MappedLineScanner(files), newOptions(4, true, table)));
+            }
+        }
+        finally
+        {
+            delete(directory);
+        }
+    }
+
+    private LineScanner newScanner(CharSequence content) throws Exception
+    {
+        return new StreamLineScanner(new ByteArrayInputStream(content.toString().getBytes("UTF-8")));
+    }
+
+    private String merge(LineScanner input, int threads) throws Exception
+    {
+        return merge(input, threads, false);
+    }
+
+    private String merge(LineScanner input, int threads, boolean pipelined) throws Exception
+    {
+        return merge(input, newOptions(threads, pipelined, HostTableType.HASH));
+    }
+
+    private MergeOptions newOptions(int threads, boolean pipelined, HostTableType table)
+    {
+        MergeOptions options = new MergeOptions();
+
+        options.setThreads(threads);
+        options.setPipelined(pipelined);
+        options.setTable(table);
+
+        return options;
+    }
+
+    private String merge(LineScanner input, MergeOptions options) throws Exception
+    {
+        return merge(input, new NoAddressRewrite(), options);
+    }
+
+    private String merge(LineScanner input, AddressRewrite rewrite, MergeOptions options) throws Exception
+    {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        MergeRunner instance = new MergeRunner(input, output, rewrite, options);
+
+        instance.run();
+
+        assertTrue(instance.isSuccess());
+
+        return output.toString("UTF-8");
+    }
+
+    private byte[] digest(LineScanner input, MergeOptions options) throws Exception
+    {
+        DigestOutputStream output = new DigestOutputStream(new OutputStream()
+        {
+            @Override
+            public void write(int b)
+            {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len)
+            {
+            }
+        }, MessageDigest.getInstance("SHA-256"));
+        MergeRunner instance = new MergeRunner(input, output, new NoAddressRewrite(), options);
+
+        instance.run();
+
+        assertTrue(instance.isSuccess());
+
+        return output.getMessageDigest().digest();
+    }
+
+    private void delete(Path directory) throws Exception
+    {
+        List<Path> files = MappedLineScanner.listFiles(directory);
+
+        for (Path file : files)
+        {
+            Files.delete(file);
+        }
+
+        Files.delete(directory);
+    }
+
+    private String merge(String input, AddressRewrite rewrite) throws Exception
+    {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        MergeRunner instance = new MergeRunner(new ByteArrayInputStream(input.getBytes("UTF-8")), output, rewrite);
+
+        instance.run();
+
+        assertTrue(instance.isSuccess());
+
+        return output.toString("UTF-8");
+    }
+}
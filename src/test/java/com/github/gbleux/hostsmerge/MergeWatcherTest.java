@@ -0,0 +1,149 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.github.gbleux.hostsmerge.address.rewrite.NoAddressRewrite;
+import com.github.gbleux.io.MappedLineScanner;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Gordon Bleux
+ */
+public class MergeWatcherTest
+{
+    private static final long TIMEOUT = 10L;
+
+    /**
+     * Test of run method, of class MergeWatcher.
+     */
+    @Test
+    public void testRun() throws Exception
+    {
+        Path input = Files.createTempDirectory("hostsmerge");
+        Path output = Files.createTempDirectory("hostsmerge").resolve("hosts");
+        final BlockingQueue<MergeRunner> merges = new LinkedBlockingQueue<>();
+        MergeWatcher instance = null;
+        Thread thread = null;
+
+        Files.write(input.resolve("a"), "1.1.1.1 a.example\n1.1.1.1 shared.example\n".getBytes("UTF-8"));
+
+        instance = new MergeWatcher(input, output, new NoAddressRewrite(), new MergeOptions(), 50L)
+        {
+            @Override
+            protected void merged(MergeRunner runner)
+            {
+                merges.add(runner);
+            }
+        };
+        thread = new Thread(instance);
+        thread.start();
+
+        try
+        {
+            await(merges, output, "1.1.1.1 a.example\n1.1.1.1 shared.example\n");
+
+            Files.write(input.resolve("b"), "2.2.2.2 shared.example\n".getBytes("UTF-8"));
+            await(merges, output, "1.1.1.1 a.example\n2.2.2.2 shared.example\n");
+
+            Files.delete(input.resolve("b"));
+            await(merges, output, "1.1.1.1 a.example\n1.1.1.1 shared.example\n");
+        }
+        finally
+        {
+            instance.close();
+            thread.join(TimeUnit.SECONDS.toMillis(TIMEOUT));
+            delete(input);
+            delete(output.getParent());
+        }
+
+        assertFalse(thread.isAlive());
+        assertNull(instance.getFailure());
+    }
+
+    /**
+     * Test of constructor, of class MergeWatcher.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testOutputInInput() throws Exception
+    {
+        Path input = Files.createTempDirectory("hostsmerge");
+
+        try
+        {
+            new MergeWatcher(input, input.resolve("hosts"), new NoAddressRewrite(), new MergeOptions(), 0L).close();
+        }
+        finally
+        {
+            Files.delete(input);
+        }
+    }
+
+    /**
+     * wait for a merge producing the expected output. a change may be
+     * reported by several events which end up in separate merges.
+     */
+    private void await(BlockingQueue<MergeRunner> merges, Path output, String expected) throws Exception
+    {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT);
+        MergeRunner runner = null;
+        String actual = null;
+
+        do
+        {
+            runner = merges.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+
+            assertTrue("no merge within " + TIMEOUT + "s, last output: " + actual, null != runner);
+            assertTrue(runner.isSuccess());
+
+            actual = read(output);
+        }
+        while (false == expected.equals(actual));
+    }
+
+    private String read(Path file) throws IOException
+    {
+        return new String(Files.readAllBytes(file), "UTF-8");
+    }
+
+    private void delete(Path directory) throws IOException
+    {
+        for (Path file : MappedLineScanner.listFiles(directory))
+        {
+            Files.delete(file);
+        }
+
+        Files.delete(directory);
+    }
+}
@@ -0,0 +1,186 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import com.github.gbleux.hostsmerge.address.rewrite.NoAddressRewrite;
+import com.github.gbleux.hostsmerge.codec.PatchOperation;
+import com.github.gbleux.hostsmerge.codec.PatchReader;
+import com.github.gbleux.io.StreamLineScanner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Gordon Bleux
+ */
+public class PatchApplierTest
+{
+    /**
+     * Test of apply method, of class PatchApplier.
+     */
+    @Test
+    public void testApply() throws Exception
+    {
+        StringBuilder before = new StringBuilder();
+        StringBuilder after = new StringBuilder();
+        Path baseline = Files.createTempFile("hostsmerge", ".hosts");
+
+        for (int i = 0; i < 5000; i++)
+        {
+            before.append("10.0.").append(i / 1000).append(".1 host").append(i).append(".example\n");
+
+            // drop every 7th, disable every 11th and comment every 13th entry
+            if (0 != i % 7)
+            {
+                after.append(0 == i % 11 ? "#" : "").append("10.0.").append(i / 1000).append(".1 host").append(i)
+                        .append(".example").append(0 == i % 13 ? " # ads\n" : "\n");
+            }
+        }
+
+        after.append("10.0.9.1 added.example\n").append("::1 added.example\n");
+
+        try
+        {
+            Files.write(baseline, merge(before, null, OutputFormat.HOSTS));
+
+            assertEquals(new String(merge(after, null, OutputFormat.HOSTS), "UTF-8"),
+                    apply(baseline, merge(after, baseline, OutputFormat.PATCH)));
+        }
+        finally
+        {
+            Files.delete(baseline);
+        }
+    }
+
+    /**
+     * Test of apply method, of class PatchApplier.
+     */
+    @Test
+    public void testApplySnapshotBaseline() throws Exception
+    {
+        String before = "0.0.0.0 a.example\n0.0.0.0 b.example\n127.0.0.1 localhost\n";
+        String after = "0.0.0.0 b.example # ads\n0.0.0.0 c.example\n127.0.0.1 localhost\n";
+        Path hosts = Files.createTempFile("hostsmerge", ".hosts");
+        Path snapshot = Files.createTempFile("hostsmerge", ".snapshot");
+        byte[] patch = null;
+
+        try
+        {
+            Files.write(hosts, merge(before, null, OutputFormat.HOSTS));
+            Files.write(snapshot, merge(before, null, OutputFormat.SNAPSHOT));
+            patch = merge(after, snapshot, OutputFormat.PATCH);
+
+            try (PatchReader reader = new PatchReader(new ByteArrayInputStream(patch)))
+            {
+                assertTrue(reader.next());
+                assertEquals(PatchOperation.REMOVE, reader.operation());
+                assertEquals("a.example", reader.entry().hostname());
+                assertTrue(reader.next());
+                assertEquals(PatchOperation.CHANGE, reader.operation());
+                assertEquals("ads", reader.entry().comment());
+                assertTrue(reader.next());
+                assertEquals(PatchOperation.ADD, reader.operation());
+                assertEquals("c.example", reader.entry().hostname());
+                assertFalse(reader.next());
+                assertEquals(1L, reader.added());
+                assertEquals(1L, reader.removed());
+                assertEquals(1L, reader.changed());
+            }
+
+            assertEquals(new String(merge(after, null, OutputFormat.HOSTS), "UTF-8"), apply(hosts, patch));
+        }
+        finally
+        {
+            Files.delete(hosts);
+            Files.delete(snapshot);
+        }
+    }
+
+    /**
+     * Test of apply method, of class PatchApplier.
+     */
+    @Test
+    public void testApplyWrongBaseline() throws Exception
+    {
+        Path baseline = Files.createTempFile("hostsmerge", ".hosts");
+        byte[] patch = null;
+
+        try
+        {
+            Files.write(baseline, merge("0.0.0.0 a.example\n0.0.0.0 c.example\n", null, OutputFormat.HOSTS));
+            patch = merge("0.0.0.0 b.example\n0.0.0.0 c.example\n", baseline, OutputFormat.PATCH);
+            Files.write(baseline, merge("0.0.0.0 a.example # other\n0.0.0.0 c.example\n", null, OutputFormat.HOSTS));
+
+            try
+            {
+                apply(baseline, patch);
+                fail("Patch applied to a different baseline");
+            }
+            catch (IOException e)
+            {
+                // expected
+            }
+        }
+        finally
+        {
+            Files.delete(baseline);
+        }
+    }
+
+    private byte[] merge(CharSequence content, Path baseline, OutputFormat format) throws Exception
+    {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        MergeOptions options = new MergeOptions();
+        MergeRunner instance = null;
+
+        options.setBaseline(baseline);
+        options.setFormat(format);
+        instance = new MergeRunner(new StreamLineScanner(new ByteArrayInputStream(content.toString().getBytes("UTF-8"))),
+                output, new NoAddressRewrite(), options);
+        instance.run();
+
+        assertTrue(instance.isSuccess());
+
+        return output.toByteArray();
+    }
+
+    private String apply(Path baseline, byte[] patch) throws Exception
+    {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        new PatchApplier().apply(baseline, new ByteArrayInputStream(patch), Channels.newChannel(output));
+
+        return output.toString("UTF-8");
+    }
+}
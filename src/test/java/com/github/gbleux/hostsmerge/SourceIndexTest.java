@@ -0,0 +1,177 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import com.github.gbleux.hostsmerge.address.HostEntry;
+import com.github.gbleux.hostsmerge.address.rewrite.LoopbackAddressRewrite;
+import com.github.gbleux.hostsmerge.address.rewrite.NoAddressRewrite;
+import com.github.gbleux.io.MappedLineScanner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Gordon Bleux
+ */
+public class SourceIndexTest
+{
+    /**
+     * Test of update and remove methods, of class SourceIndex.
+     */
+    @Test
+    public void testUpdate() throws Exception
+    {
+        Path directory = Files.createTempDirectory("hostsmerge");
+        Path first = write(directory, "a", "1.1.1.1 shared.example\n1.1.1.1 first.example\n");
+        Path second = write(directory, "b", "2.2.2.2 shared.example\n2.2.2.2 second.example\n");
+        SourceIndex instance = new SourceIndex(new NoAddressRewrite());
+        MergeStatistics statistics = new MergeStatistics();
+
+        try
+        {
+            // the later source wins regardless of the update order
+            instance.update(second, statistics);
+            instance.update(first, statistics);
+
+            assertEquals("{first.example=1.1.1.1, second.example=2.2.2.2, shared.example=2.2.2.2}", entries(instance));
+            assertEquals(3, instance.size());
+            assertEquals(4L, statistics.getEntriesParsed());
+
+            // the hostname falls back to the remaining source
+            write(directory, "b", "2.2.2.2 second.example\n");
+            instance.update(second, statistics);
+
+            assertEquals("{first.example=1.1.1.1, second.example=2.2.2.2, shared.example=1.1.1.1}", entries(instance));
+
+            write(directory, "b", "3.3.3.3 shared.example\n");
+            instance.update(second, statistics);
+
+            assertEquals("{first.example=1.1.1.1, shared.example=3.3.3.3}", entries(instance));
+
+            assertTrue(instance.remove(second));
+            assertFalse(instance.remove(second));
+            assertEquals("{first.example=1.1.1.1, shared.example=1.1.1.1}", entries(instance));
+
+            assertTrue(instance.remove(first));
+            assertEquals(0, instance.size());
+            assertTrue(instance.files().isEmpty());
+        }
+        finally
+        {
+            for (Path file : MappedLineScanner.listFiles(directory))
+            {
+                Files.delete(file);
+            }
+
+            Files.delete(directory);
+        }
+    }
+
+    /**
+     * Test of update method, of class SourceIndex.
+     */
+    @Test
+    public void testUpdateOverridden() throws Exception
+    {
+        Path directory = Files.createTempDirectory("hostsmerge");
+        Path first = write(directory, "a", "1.1.1.1 shared.example\n1.1.1.1 first.example\n");
+        Path second = write(directory, "b", "2.2.2.2 shared.example\n2.2.2.2 second.example\n");
+        SourceIndex instance = new SourceIndex(new NoAddressRewrite());
+        MergeStatistics statistics = new MergeStatistics();
+
+        try
+        {
+            instance.update(first, statistics);
+            instance.update(second, statistics);
+
+            assertEquals(1L, statistics.getDuplicatesOverridden());
+
+            // unchanged files do not add duplicates
+            instance.update(second, statistics);
+            instance.update(first, statistics);
+
+            assertEquals(1L, statistics.getDuplicatesOverridden());
+
+            write(directory, "b", "2.2.2.2 shared.example\n2.2.2.2 first.example\n");
+            instance.update(second, statistics);
+
+            assertEquals(2L, statistics.getDuplicatesOverridden());
+        }
+        finally
+        {
+            for (Path file : MappedLineScanner.listFiles(directory))
+            {
+                Files.delete(file);
+            }
+
+            Files.delete(directory);
+        }
+    }
+
+    /**
+     * Test of update method, of class SourceIndex.
+     */
+    @Test
+    public void testUpdateRewrite() throws Exception
+    {
+        Path file = Files.createTempFile("hostsmerge", ".hosts");
+        SourceIndex instance = new SourceIndex(new LoopbackAddressRewrite(false));
+
+        try
+        {
+            Files.write(file, "0.0.0.0 ads.example\n".getBytes("UTF-8"));
+            instance.update(file, new MergeStatistics());
+
+            assertEquals("{ads.example=127.0.0.1}", entries(instance));
+        }
+        finally
+        {
+            Files.delete(file);
+        }
+    }
+
+    private Path write(Path directory, String name, String content) throws Exception
+    {
+        return Files.write(directory.resolve(name), content.getBytes("UTF-8"));
+    }
+
+    private String entries(SourceIndex index)
+    {
+        Map<String, String> entries = new TreeMap<>();
+
+        for (HostEntry entry : index.entries())
+        {
+            entries.put(entry.hostname(), entry.address());
+        }
+
+        return entries.toString();
+    }
+}
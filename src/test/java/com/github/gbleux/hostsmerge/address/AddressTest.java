@@ -0,0 +1,98 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge.address;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AddressTest
+{
+    @Test
+    public void testParseIPv4()
+    {
+        Address instance = Address.parse("10.0.0.255");
+
+        assertTrue(instance.isIPv4());
+        assertEquals(0x0A0000FF, instance.ipv4());
+        assertEquals("10.0.0.255", instance.toString());
+        assertEquals(Address.ipv4(0x0A0000FF), instance);
+
+        for (String invalid : Arrays.asList("1.2.3", "1.2.3.4.5", "256.0.0.1", "01.2.3.4", "1..2.3", "1.2.3.", ".1.2.3"))
+        {
+            assertFalse(invalid, Address.parse(invalid).isNumeric());
+            assertEquals(invalid, Address.parse(invalid).toString());
+        }
+    }
+
+    @Test
+    public void testParseIPv6()
+    {
+        assertEquals(Address.ipv6(0L, 1L), Address.parse("::0001"));
+        assertEquals(Address.parse("::1"), Address.parse("0:0:0:0:0:0:0:1"));
+        assertEquals(Address.ipv6(0L, 0L), Address.parse("::"));
+        assertEquals(Address.ipv6(0x0001000000000000L, 0L), Address.parse("1::"));
+        assertEquals(Address.ipv6(0x20010DB800000000L, 0x0000FFFF01020304L), Address.parse("2001:db8::ffff:1.2.3.4"));
+
+        for (String invalid : Arrays.asList(":", ":::", "1:::2", "1::2::3", ":1::", "1:2:3:4:5:6:7:8:9", "1:2:3:4:5:6:7", "12345::", "1::2.3"))
+        {
+            assertFalse(invalid, Address.parse(invalid).isNumeric());
+        }
+    }
+
+    @Test
+    public void testToString()
+    {
+        assertEquals("::1", Address.parse("0:0:0:0:0:0:0:1").toString());
+        assertEquals("::", Address.parse("0::0").toString());
+        assertEquals("2001:db8::1", Address.parse("2001:0DB8:0:0:0:0:0:1").toString());
+        // first of the longest zero runs, single zero groups are kept
+        assertEquals("1:0:2::3:0:0", Address.parse("1:0:2:0:0:3:0:0").toString());
+        assertEquals("1:0:0:4::5", Address.parse("1:0:0:4:0:0:0:5").toString());
+        assertEquals("::ffff:1.2.3.4", Address.parse("0::ffff:0102:0304").toString());
+    }
+
+    @Test
+    public void testCompareTo()
+    {
+        List<Address> addresses = new ArrayList<>();
+
+        for (String address : Arrays.asList("::1", "10.0.0.10", "1.2.3", "10.0.0.2", "255.0.0.0", "8000::", "::2"))
+        {
+            addresses.add(Address.parse(address));
+        }
+
+        Collections.sort(addresses);
+
+        assertEquals("[10.0.0.2, 10.0.0.10, 255.0.0.0, ::1, ::2, 8000::, 1.2.3]", addresses.toString());
+        assertNotEquals(Address.parse("1.2.3.4"), Address.parse("::1.2.3.4"));
+    }
+}
@@ -0,0 +1,265 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge.address;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Gordon Bleux
+ */
+public class HostLineTokenizerTest
+{
+    /**
+     * reference implementation the tokenizer has to be equivalent to
+     */
+    private static final Pattern HOST = Pattern.compile("^#?([0-9:\\.]+)\\s+([a-z0-9\\-\\.\\_\\t ]+)(#.*)?$", Pattern.UNICODE_CASE | Pattern.CASE_INSENSITIVE);
+    private static final Pattern NAMES = Pattern.compile("\\s+");
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final String[] FRAGMENTS =
+    {
+        "#", "#", "0", "1", "9", "127.0.0.1", "0.0.0.0", "::1", ":", ".", " ", " ", "\t", "\u000B", "\f",
+        "a", "Z", "example", "-", "_", "!", "=", "/", "é", "İ", "ı", "ſ", "K",
+        "\u0085", "\u2028", "\u2029", "\u00A0", "\u2005", "\u0000", "😀"
+    };
+    private static final byte[][] MALFORMED =
+    {
+        { (byte) 0xFF }, { (byte) 0xC2 }, { (byte) 0xE2, (byte) 0x80 }, { (byte) 0xE2, (byte) 0x84 }, { (byte) 0x85 },
+        { (byte) 0xC4 }, { (byte) 0xF0, (byte) 0x90, (byte) 0x80 }
+    };
+
+    @Test
+    public void testTokenize()
+    {
+        HostLineTokenizer instance = new HostLineTokenizer();
+        ByteBuffer line = encode("#0.0.0.0 \t a.example B.example\t#  some comment ");
+
+        assertTrue(instance.tokenize(line, 0, line.limit()));
+        assertTrue(instance.isDisabled());
+        assertEquals("0.0.0.0", instance.address(line));
+        assertEquals(2, instance.hostnameCount());
+        assertEquals("a.example", instance.hostname(line, 0));
+        assertEquals("B.example", instance.hostname(line, 1));
+        assertEquals("some comment", instance.comment(line));
+
+        line = encode("::1 localhost");
+
+        assertTrue(instance.tokenize(line, 0, line.limit()));
+        assertFalse(instance.isDisabled());
+        assertEquals("::1", instance.address(line));
+        assertEquals("localhost", instance.hostname(line, 0));
+        assertEquals("", instance.comment(line));
+
+        for (String invalid : Arrays.asList("", "#", "# comment", "localhost 127.0.0.1", " 127.0.0.1 a", "127.0.0.1", "127.0.0.1 a!b", "127.0.0.1   # x"))
+        {
+            line = encode(invalid);
+
+            assertFalse(invalid, instance.tokenize(line, 0, line.limit()));
+        }
+    }
+
+    /**
+     * differential test against the regular expression based parser
+     */
+    @Test
+    public void testEquivalence()
+    {
+        HostLineTokenizer instance = new HostLineTokenizer();
+        Random random = new Random(20141016L);
+        int matches = 0;
+
+        for (int i = 0; i < 200000; i++)
+        {
+            byte[] line = 0 == i % 2 ? newHostLine(random) : newNoise(random);
+
+            if (true == assertEquivalent(instance, line))
+            {
+                matches++;
+            }
+        }
+
+        assertTrue("too few matching lines: " + matches, matches > 20000);
+    }
+
+    private boolean assertEquivalent(HostLineTokenizer instance, byte[] data)
+    {
+        String line = decode(data);
+        Matcher matcher = HOST.matcher(line);
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        List<String> expected = new ArrayList<>();
+        List<String> actual = new ArrayList<>();
+        boolean matched = matcher.find();
+        boolean tokenized = instance.tokenize(buffer, 0, data.length);
+
+        if (true == matched)
+        {
+            expected.addAll(Arrays.asList(NAMES.split(matcher.group(2))));
+        }
+
+        assertEquals(escape(line), false == expected.isEmpty(), tokenized);
+
+        if (false == tokenized)
+        {
+            return false;
+        }
+
+        for (int i = 0; i < instance.hostnameCount(); i++)
+        {
+            actual.add(instance.hostname(buffer, i));
+        }
+
+        assertEquals(escape(line), line.startsWith("#"), instance.isDisabled());
+        assertEquals(escape(line), matcher.group(1), instance.address(buffer));
+        assertEquals(escape(line), expected, actual);
+        assertEquals(escape(line), null == matcher.group(3) ? "" : matcher.group(3).substring(1).trim(), instance.comment(buffer));
+
+        return true;
+    }
+
+    private byte[] newHostLine(Random random)
+    {
+        StringBuilder sb = new StringBuilder();
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+        if (random.nextInt(4) == 0)
+        {
+            sb.append('#');
+        }
+
+        sb.append(pick(random, "0.0.0.0", "127.0.0.1", "::1", "fe80::1", "1.2.3", "10.0.0.10"));
+        sb.append(pick(random, " ", "\t", "  ", " \u000B ", "\f"));
+
+        for (int i = random.nextInt(4); i >= 0; i--)
+        {
+            sb.append(pick(random, "a.example", "ads-1.example", "X_Y.Z", "ſite", "Key", "İ", "hosté"));
+            sb.append(pick(random, " ", "\t", " \t", ""));
+        }
+
+        if (random.nextBoolean())
+        {
+            sb.append(pick(random, "#", "# c", "#comment ", "# é \u0085x", "#x\u2028"));
+        }
+
+        write(line, sb.toString().getBytes(UTF8));
+
+        if (random.nextInt(8) == 0)
+        {
+            write(line, pick(random, MALFORMED));
+        }
+        else if (random.nextInt(8) == 0)
+        {
+            write(line, pick(random, "\u0085", "\u2028", "\u2029").getBytes(UTF8));
+        }
+
+        return line.toByteArray();
+    }
+
+    private byte[] newNoise(Random random)
+    {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+        for (int i = random.nextInt(12); i >= 0; i--)
+        {
+            if (random.nextInt(10) == 0)
+            {
+                write(line, pick(random, MALFORMED));
+            }
+            else
+            {
+                write(line, pick(random, FRAGMENTS).getBytes(UTF8));
+            }
+        }
+
+        return line.toByteArray();
+    }
+
+    private static String decode(byte[] data)
+    {
+        CharsetDecoder decoder = UTF8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        try
+        {
+            CharBuffer chars = decoder.decode(ByteBuffer.wrap(data));
+
+            return chars.toString();
+        }
+        catch (Exception e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static ByteBuffer encode(String line)
+    {
+        return ByteBuffer.wrap(line.getBytes(UTF8));
+    }
+
+    private static String escape(String line)
+    {
+        StringBuilder sb = new StringBuilder();
+
+        for (char c : line.toCharArray())
+        {
+            if (c < 0x20 || c > 0x7E)
+            {
+                sb.append(String.format("\\u%04X", (int) c));
+            }
+            else
+            {
+                sb.append(c);
+            }
+        }
+
+        return sb.toString();
+    }
+
+    @SafeVarargs
+    private static <T> T pick(Random random, T... values)
+    {
+        return values[random.nextInt(values.length)];
+    }
+
+    private static void write(ByteArrayOutputStream target, byte[] data)
+    {
+        target.write(data, 0, data.length);
+    }
+}
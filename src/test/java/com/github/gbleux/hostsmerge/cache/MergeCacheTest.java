@@ -0,0 +1,221 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge.cache;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.github.gbleux.hostsmerge.address.HostEntry;
+import com.github.gbleux.hostsmerge.codec.EntrySource;
+import com.github.gbleux.io.MappedLineScanner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author Gordon Bleux
+ */
+public class MergeCacheTest
+{
+    private static final List<HostEntry> ENTRIES = Arrays.asList(
+            new HostEntry("0.0.0.0", "a.example", "ads"),
+            new HostEntry(false, "::1", "b.example"));
+
+    /**
+     * Test of open method, of class MergeCache.
+     */
+    @Test
+    public void testOpen() throws Exception
+    {
+        Path directory = Files.createTempDirectory("hostsmerge");
+        Path source = directory.resolve("hosts");
+        MergeCache instance = new MergeCache(directory.resolve("cache"));
+        FileTime modified = null;
+
+        try
+        {
+            Files.write(source, "0.0.0.0 a.example\n".getBytes("UTF-8"));
+            modified = Files.getLastModifiedTime(source);
+
+            assertNull(instance.open(source));
+            instance.store(source, ENTRIES);
+
+            assertEquals("[0.0.0.0 a.example # ads, #::1 b.example]", read(instance.open(source)).toString());
+
+            // same content, different modification time
+            Files.setLastModifiedTime(source, FileTime.fromMillis(modified.toMillis() + 60000L));
+
+            assertNotNull(read(instance.open(source)));
+
+            // different content of the same size
+            Files.write(source, "0.0.0.0 b.example\n".getBytes("UTF-8"));
+            Files.setLastModifiedTime(source, modified);
+
+            assertNull(instance.open(source));
+        }
+        finally
+        {
+            Files.deleteIfExists(source);
+            assertEquals(1, instance.prune());
+            Files.delete(instance.directory());
+            Files.delete(directory);
+        }
+    }
+
+    /**
+     * Test of prune method, of class MergeCache.
+     */
+    @Test
+    public void testPrune() throws Exception
+    {
+        Path directory = Files.createTempDirectory("hostsmerge");
+        Path first = Files.write(directory.resolve("first"), new byte[0]);
+        Path second = Files.write(directory.resolve("second"), new byte[0]);
+        MergeCache instance = new MergeCache(directory.resolve("cache"));
+
+        try
+        {
+            instance.store(first, ENTRIES);
+            instance.store(second, ENTRIES);
+            Files.delete(first);
+
+            assertEquals(1, instance.prune());
+            assertEquals(1, MappedLineScanner.listFiles(instance.directory()).size());
+            assertNotNull(read(instance.open(second)));
+        }
+        finally
+        {
+            Files.delete(second);
+            instance.prune();
+            Files.delete(instance.directory());
+            Files.delete(directory);
+        }
+    }
+
+    /**
+     * Test of open method, of class MergeCache.
+     */
+    @Test
+    public void testOpenTruncated() throws Exception
+    {
+        Path directory = Files.createTempDirectory("hostsmerge");
+        Path first = Files.write(directory.resolve("first"), new byte[0]);
+        Path second = Files.write(directory.resolve("second"), new byte[0]);
+        MergeCache instance = new MergeCache(directory.resolve("cache"));
+
+        try
+        {
+            instance.store(first, ENTRIES);
+            instance.store(second, ENTRIES);
+
+            for (Path file : MappedLineScanner.listFiles(instance.directory()))
+            {
+                Files.write(file, Arrays.copyOf(Files.readAllBytes(file), 12));
+            }
+
+            // stale entries are dropped instead of failing the merge
+            assertNull(instance.open(first));
+            assertEquals(1, MappedLineScanner.listFiles(instance.directory()).size());
+            assertEquals(1, instance.prune());
+
+            instance.store(first, ENTRIES);
+            assertNotNull(read(instance.open(first)));
+        }
+        finally
+        {
+            Files.delete(first);
+            Files.delete(second);
+            instance.prune();
+            Files.delete(instance.directory());
+            Files.delete(directory);
+        }
+    }
+
+    /**
+     * Test of openOutput method, of class MergeCache.
+     */
+    @Test
+    public void testOpenOutput() throws Exception
+    {
+        Path directory = Files.createTempDirectory("hostsmerge");
+        Path source = Files.write(directory.resolve("hosts"), "0.0.0.0 a.example\n".getBytes("UTF-8"));
+        MergeCache instance = new MergeCache(directory.resolve("cache"));
+        byte[] digest = instance.digest(Arrays.asList(source), "options");
+        byte[] data = new byte[16];
+
+        try
+        {
+            try (MergeCache.Output output = instance.storeOutput(digest))
+            {
+                output.write("discarded".getBytes("UTF-8"));
+            }
+
+            assertNull(instance.openOutput(digest));
+
+            try (MergeCache.Output output = instance.storeOutput(digest))
+            {
+                output.write("committed".getBytes("UTF-8"));
+                output.commit();
+            }
+
+            try (InputStream input = instance.openOutput(digest))
+            {
+                assertEquals("committed", new String(data, 0, input.read(data), "UTF-8"));
+            }
+
+            assertNull(instance.openOutput(instance.digest(Arrays.asList(source), "other")));
+            assertEquals(1, MappedLineScanner.listFiles(instance.directory()).size());
+        }
+        finally
+        {
+            Files.delete(instance.directory().resolve("output"));
+            Files.delete(instance.directory());
+            Files.delete(source);
+            Files.delete(directory);
+        }
+    }
+
+    private List<String> read(EntrySource source) throws Exception
+    {
+        List<String> lines = new ArrayList<>();
+        HostEntry entry = null;
+
+        try (EntrySource entries = source)
+        {
+            while (null != (entry = entries.read()))
+            {
+                lines.add(entry.toHosts());
+            }
+        }
+
+        return lines;
+    }
+}
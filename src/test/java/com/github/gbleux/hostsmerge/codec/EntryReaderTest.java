@@ -0,0 +1,129 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge.codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.github.gbleux.hostsmerge.address.HostEntry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author Gordon Bleux
+ */
+public class EntryReaderTest
+{
+    private static final List<HostEntry> ENTRIES = Arrays.asList(
+            new HostEntry("0.0.0.0", "a.example", "ads"),
+            new HostEntry(false, "0.0.0.0", "b.example", "ads"),
+            new HostEntry("0.0.0.0", "c.example"),
+            new HostEntry("::0001", "d.example", "ads"),
+            new HostEntry("2001:db8::1", "\u00e9.example", "tracking  "),
+            new HostEntry("1.2.3", "f.example"),
+            new HostEntry("1.2.3", new String(new char[300]).replace('\0', 'x'), "ads"));
+
+    /**
+     * Test of read method, of class EntryReader.
+     */
+    @Test
+    public void testRead() throws Exception
+    {
+        byte[] data = write(ENTRIES);
+
+        try (EntryReader instance = new EntryReader(new ByteArrayInputStream(data)))
+        {
+            HostEntry previous = null;
+
+            for (HostEntry expected : ENTRIES)
+            {
+                HostEntry entry = instance.read();
+
+                assertEquals(expected.toHosts(), entry.toHosts());
+                assertEquals(expected.addressValue(), entry.addressValue());
+
+                if (null != previous && previous.addressValue().equals(entry.addressValue()))
+                {
+                    // consecutive entries share the address instance
+                    assertSame(previous.addressValue(), entry.addressValue());
+                }
+
+                previous = entry;
+            }
+
+            assertNull(instance.read());
+            assertNull(instance.read());
+        }
+    }
+
+    /**
+     * Test of read method, of class EntryReader.
+     */
+    @Test(expected = EOFException.class)
+    public void testReadTruncated() throws Exception
+    {
+        byte[] data = write(ENTRIES);
+
+        try (EntryReader instance = new EntryReader(new ByteArrayInputStream(Arrays.copyOf(data, data.length - 1))))
+        {
+            while (null != instance.read())
+            {
+                // until the missing end marker
+            }
+        }
+    }
+
+    /**
+     * Test of constructor, of class EntryReader.
+     */
+    @Test(expected = IOException.class)
+    public void testReadUnsupported() throws Exception
+    {
+        new EntryReader(new ByteArrayInputStream("hosts file\n".getBytes("UTF-8"))).close();
+    }
+
+    private byte[] write(List<HostEntry> entries) throws Exception
+    {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        try (EntryWriter writer = new EntryWriter(output))
+        {
+            for (HostEntry entry : entries)
+            {
+                writer.write(entry);
+            }
+
+            assertEquals(entries.size(), writer.count());
+        }
+
+        return output.toByteArray();
+    }
+}
@@ -0,0 +1,420 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge.corpus;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic generator of synthetic hosts files. Equal settings produce
+ * byte identical output, so large inputs can be recreated on demand instead
+ * of being downloaded or checked in.
+ * <p>
+ * Every hostname starts with a label encoding its index, which keeps the
+ * unique hostnames distinct. Duplicates repeat a hostname generated
+ * earlier, possibly with a different address.
+ * <p>
+ * @author Gordon Bleux
+ */
+public class CorpusGenerator
+{
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    private static final String[] DOMAINS =
+    {
+        "com", "net", "org", "io", "info", "example"
+    };
+    private static final String[] ADDRESSES4 =
+    {
+        "0.0.0.0", "127.0.0.1"
+    };
+    private static final String[] ADDRESSES6 =
+    {
+        "::", "::1"
+    };
+    private static final int MIN_LABEL = 3;
+    private static final int MAX_LABEL = 12;
+
+    private long seed = 0L;
+    private long lines = 10000L;
+    private int files = 1;
+    private double duplicateRatio = 0.0;
+    private double commentRatio = 0.0;
+    private double trailingCommentRatio = 0.0;
+    private double disabledRatio = 0.0;
+    private double ipv6Ratio = 0.0;
+    private int minHostnameLength = 12;
+    private int maxHostnameLength = 32;
+
+    public CorpusGenerator()
+    {
+        super();
+    }
+
+    /**
+     * @return seed of the generated corpus
+     */
+    public long getSeed()
+    {
+        return this.seed;
+    }
+
+    /**
+     * @param seed seed of the generated corpus
+     */
+    public void setSeed(long seed)
+    {
+        this.seed = seed;
+    }
+
+    /**
+     * @return total number of lines including comment lines
+     */
+    public long getLines()
+    {
+        return this.lines;
+    }
+
+    /**
+     * @param lines total number of lines including comment lines
+     */
+    public void setLines(long lines)
+    {
+        if (lines < 0L)
+        {
+            throw new IllegalArgumentException("Number of lines must not be negative");
+        }
+
+        this.lines = lines;
+    }
+
+    /**
+     * @return number of files written by {@link #write(Path)}
+     */
+    public int getFiles()
+    {
+        return this.files;
+    }
+
+    /**
+     * @param files number of files written by {@link #write(Path)}
+     */
+    public void setFiles(int files)
+    {
+        if (files <= 0)
+        {
+            throw new IllegalArgumentException("Number of files must be positive");
+        }
+
+        this.files = files;
+    }
+
+    /**
+     * @return share of entries repeating an earlier hostname
+     */
+    public double getDuplicateRatio()
+    {
+        return this.duplicateRatio;
+    }
+
+    /**
+     * @param duplicateRatio share of entries repeating an earlier hostname
+     */
+    public void setDuplicateRatio(double duplicateRatio)
+    {
+        this.duplicateRatio = ratio(duplicateRatio);
+    }
+
+    /**
+     * @return share of comment-only lines
+     */
+    public double getCommentRatio()
+    {
+        return this.commentRatio;
+    }
+
+    /**
+     * @param commentRatio share of comment-only lines
+     */
+    public void setCommentRatio(double commentRatio)
+    {
+        this.commentRatio = ratio(commentRatio);
+    }
+
+    /**
+     * @return share of entries with a trailing comment
+     */
+    public double getTrailingCommentRatio()
+    {
+        return this.trailingCommentRatio;
+    }
+
+    /**
+     * @param trailingCommentRatio share of entries with a trailing comment
+     */
+    public void setTrailingCommentRatio(double trailingCommentRatio)
+    {
+        this.trailingCommentRatio = ratio(trailingCommentRatio);
+    }
+
+    /**
+     * @return share of commented out entries
+     */
+    public double getDisabledRatio()
+    {
+        return this.disabledRatio;
+    }
+
+    /**
+     * @param disabledRatio share of commented out entries
+     */
+    public void setDisabledRatio(double disabledRatio)
+    {
+        this.disabledRatio = ratio(disabledRatio);
+    }
+
+    /**
+     * @return share of entries with an IPv6 address
+     */
+    public double getIpv6Ratio()
+    {
+        return this.ipv6Ratio;
+    }
+
+    /**
+     * @param ipv6Ratio share of entries with an IPv6 address
+     */
+    public void setIpv6Ratio(double ipv6Ratio)
+    {
+        this.ipv6Ratio = ratio(ipv6Ratio);
+    }
+
+    /**
+     * @return minimum hostname length
+     */
+    public int getMinHostnameLength()
+    {
+        return this.minHostnameLength;
+    }
+
+    /**
+     * @return maximum hostname length
+     */
+    public int getMaxHostnameLength()
+    {
+        return this.maxHostnameLength;
+    }
+
+    /**
+     * set the range of hostname lengths. lengths are distributed uniformly.
+     * hostnames exceed the minimum if the index label and domain do not fit.
+     * <p>
+     * @param min minimum hostname length
+     * @param max maximum hostname length
+     */
+    public void setHostnameLength(int min, int max)
+    {
+        if (min <= 0 || max < min || max > 253)
+        {
+            throw new IllegalArgumentException("Invalid hostname length range " + min + "-" + max);
+        }
+
+        this.minHostnameLength = min;
+        this.maxHostnameLength = max;
+    }
+
+    /**
+     * write the complete corpus into a single stream. the stream is flushed
+     * but not closed.
+     * <p>
+     * @param output target stream
+     * @throws IOException failed to write
+     */
+    public void write(OutputStream output) throws IOException
+    {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, CHARSET), 1 << 16);
+        Random random = new Random(this.seed);
+        long[] generated = new long[1];
+
+        writeLines(writer, random, generated, this.lines);
+        writer.flush();
+    }
+
+    /**
+     * write the corpus split into {@link #getFiles()} files of about equal
+     * line count. existing files are replaced.
+     * <p>
+     * @param directory target directory
+     * @return written files in corpus order
+     * @throws IOException failed to write
+     */
+    public List<Path> write(Path directory) throws IOException
+    {
+        List<Path> result = new ArrayList<>(this.files);
+        Random random = new Random(this.seed);
+        long[] generated = new long[1];
+        String format = "hosts%0" + String.valueOf(this.files - 1).length() + "d";
+        Path file = null;
+
+        Files.createDirectories(directory);
+
+        for (int i = 0; i < this.files; i++)
+        {
+            file = directory.resolve(String.format(format, i));
+
+            try (Writer writer = Files.newBufferedWriter(file, CHARSET))
+            {
+                writeLines(writer, random, generated, (i + 1) * this.lines / this.files - i * this.lines / this.files);
+            }
+
+            result.add(file);
+        }
+
+        return result;
+    }
+
+    private void writeLines(Writer writer, Random random, long[] generated, long count) throws IOException
+    {
+        StringBuilder line = new StringBuilder(this.maxHostnameLength + 64);
+        long index = 0L;
+
+        for (long i = 0L; i < count; i++)
+        {
+            line.setLength(0);
+
+            if (random.nextDouble() < this.commentRatio)
+            {
+                line.append("# generated section ").append(Long.toString(random.nextLong() & Long.MAX_VALUE, 36));
+            }
+            else
+            {
+                if (0L < generated[0] && random.nextDouble() < this.duplicateRatio)
+                {
+                    index = (long) (random.nextDouble() * generated[0]);
+                }
+                else
+                {
+                    index = generated[0]++;
+                }
+
+                if (random.nextDouble() < this.disabledRatio)
+                {
+                    line.append('#');
+                }
+
+                if (random.nextDouble() < this.ipv6Ratio)
+                {
+                    line.append(ADDRESSES6[random.nextInt(ADDRESSES6.length)]);
+                }
+                else
+                {
+                    line.append(ADDRESSES4[random.nextInt(ADDRESSES4.length)]);
+                }
+
+                line.append(' ');
+                hostname(line, index);
+
+                if (random.nextDouble() < this.trailingCommentRatio)
+                {
+                    line.append(" # list ").append(random.nextInt(16));
+                }
+            }
+
+            writer.append(line).append('\n');
+        }
+    }
+
+    /**
+     * append the hostname of the given index. the name only depends on the
+     * seed, the index and the length range, so duplicates can be recreated
+     * without keeping earlier names.
+     */
+    private void hostname(StringBuilder sb, long index)
+    {
+        long state = this.seed + index * GOLDEN_GAMMA;
+        long bits = mix(state += GOLDEN_GAMMA);
+        String domain = DOMAINS[(int) ((bits >>> 1) % DOMAINS.length)];
+        int length = this.minHostnameLength + (int) ((bits >>> 33) % (this.maxHostnameLength - this.minHostnameLength + 1));
+        String label = Long.toString(index, 36);
+        int remaining = length - label.length() - domain.length() - 1;
+        int size = 0;
+
+        if (1 == remaining)
+        {
+            // index labels never start with a zero, so padding keeps them unique
+            sb.append('0');
+            remaining = 0;
+        }
+
+        sb.append(label);
+
+        while (remaining >= 2)
+        {
+            bits = mix(state += GOLDEN_GAMMA);
+            size = Math.min(remaining - 1, MIN_LABEL + (int) ((bits >>> 1) % (MAX_LABEL - MIN_LABEL + 1)));
+
+            if (1 == remaining - size - 1)
+            {
+                size++;
+            }
+
+            sb.append('.');
+
+            for (int i = 0; i < size; i++)
+            {
+                sb.append((char) ('a' + (int) (((bits >>> (5 + i * 4)) & 0x7FFFFFL) % 26)));
+            }
+
+            remaining -= size + 1;
+        }
+
+        sb.append('.').append(domain);
+    }
+
+    private static long mix(long z)
+    {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+
+        return z ^ (z >>> 31);
+    }
+
+    private static double ratio(double value)
+    {
+        if (false == (value >= 0.0 && value <= 1.0))
+        {
+            throw new IllegalArgumentException("Ratio must be between 0 and 1: " + value);
+        }
+
+        return value;
+    }
+}
@@ -0,0 +1,203 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge.corpus;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Gordon Bleux
+ */
+public class CorpusGeneratorTest
+{
+    /**
+     * Test of write method, of class CorpusGenerator.
+     */
+    @Test
+    public void testWrite() throws Exception
+    {
+        CorpusGenerator instance = newGenerator(1000);
+        byte[] expected = generate(instance);
+
+        assertArrayEquals(expected, generate(instance));
+        assertEquals(1000, new String(expected, "UTF-8").split("\n").length);
+
+        instance.setSeed(7L);
+        assertFalse(Arrays.equals(expected, generate(instance)));
+    }
+
+    /**
+     * Test of write method, of class CorpusGenerator.
+     */
+    @Test
+    public void testWriteFiles() throws Exception
+    {
+        Path directory = Files.createTempDirectory("hostsmerge");
+        CorpusGenerator instance = newGenerator(1001);
+        ByteArrayOutputStream concatenated = new ByteArrayOutputStream();
+        List<Path> files = null;
+
+        try
+        {
+            instance.setFiles(12);
+            files = instance.write(directory);
+
+            assertEquals(12, files.size());
+            assertEquals(directory.resolve("hosts00"), files.get(0));
+            assertEquals(directory.resolve("hosts11"), files.get(11));
+
+            for (Path file : files)
+            {
+                concatenated.write(Files.readAllBytes(file));
+            }
+
+            // splitting does not change the corpus
+            assertArrayEquals(generate(instance), concatenated.toByteArray());
+        }
+        finally
+        {
+            for (Path file : files)
+            {
+                Files.delete(file);
+            }
+
+            Files.delete(directory);
+        }
+    }
+
+    /**
+     * Test of write method, of class CorpusGenerator.
+     */
+    @Test
+    public void testWriteRatios() throws Exception
+    {
+        CorpusGenerator instance = newGenerator(100000);
+        Set<String> hostnames = new HashSet<>();
+        int comments = 0;
+        int entries = 0;
+        int disabled = 0;
+        int ipv6 = 0;
+        int trailing = 0;
+        String[] tokens = null;
+
+        for (String line : new String(generate(instance), "UTF-8").split("\n"))
+        {
+            if (line.startsWith("# "))
+            {
+                comments++;
+                continue;
+            }
+
+            entries++;
+            tokens = line.split(" ");
+            hostnames.add(tokens[1]);
+
+            disabled += line.startsWith("#") ? 1 : 0;
+            ipv6 += tokens[0].contains(":") ? 1 : 0;
+            trailing += line.contains(" # ") ? 1 : 0;
+            assertTrue(line, tokens[1].length() >= 12 && tokens[1].length() <= 32);
+            assertTrue(line, tokens[1].matches("[0-9a-z]+(\\.[a-z]+)+"));
+        }
+
+        assertEquals(0.02, comments / 100000.0, 0.005);
+        assertEquals(0.3, 1.0 - hostnames.size() / (double) entries, 0.01);
+        assertEquals(0.1, disabled / (double) entries, 0.01);
+        assertEquals(0.25, ipv6 / (double) entries, 0.01);
+        assertEquals(0.05, trailing / (double) entries, 0.01);
+    }
+
+    /**
+     * Test of setHostnameLength method, of class CorpusGenerator.
+     */
+    @Test
+    public void testSetHostnameLength() throws Exception
+    {
+        CorpusGenerator instance = newGenerator(5000);
+        Set<String> hostnames = new HashSet<>();
+        String hostname = null;
+
+        instance.setDuplicateRatio(0.0);
+        instance.setCommentRatio(0.0);
+        instance.setTrailingCommentRatio(0.0);
+
+        for (int min = 1; min <= 16; min++)
+        {
+            hostnames.clear();
+            instance.setHostnameLength(min, min);
+
+            for (String line : new String(generate(instance), "UTF-8").split("\n"))
+            {
+                hostname = line.split(" ")[1];
+
+                // too short lengths fall back to the index label and domain
+                assertTrue(hostname, min == hostname.length() || hostname.split("\\.").length == 2);
+                assertTrue(hostname, hostnames.add(hostname));
+            }
+        }
+    }
+
+    /**
+     * Test of setters, of class CorpusGenerator.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetDuplicateRatio()
+    {
+        new CorpusGenerator().setDuplicateRatio(1.5);
+    }
+
+    private CorpusGenerator newGenerator(long lines)
+    {
+        CorpusGenerator generator = new CorpusGenerator();
+
+        generator.setSeed(42L);
+        generator.setLines(lines);
+        generator.setDuplicateRatio(0.3);
+        generator.setCommentRatio(0.02);
+        generator.setTrailingCommentRatio(0.05);
+        generator.setDisabledRatio(0.1);
+        generator.setIpv6Ratio(0.25);
+
+        return generator;
+    }
+
+    private byte[] generate(CorpusGenerator generator) throws Exception
+    {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        generator.write(output);
+
+        return output.toByteArray();
+    }
+}
@@ -0,0 +1,356 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge.fetch;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.gbleux.io.LineHandler;
+import com.github.gbleux.io.LineScanner;
+import com.github.gbleux.io.MappedLineScanner;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Gordon Bleux
+ */
+public class SourceFetcherTest
+{
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final Map<String, String> lists = new ConcurrentHashMap<>();
+    private final AtomicInteger downloads = new AtomicInteger();
+    private final AtomicInteger unchanged = new AtomicInteger();
+    private final Set<String> delayed = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private HttpServer server = null;
+    private Path directory = null;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        this.directory = Files.createTempDirectory("hostsmerge");
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/", new HttpHandler()
+        {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException
+            {
+                serve(exchange);
+            }
+        });
+        // concurrent requests, so slow responses do not hold up the others
+        this.server.setExecutor(Executors.newCachedThreadPool());
+        this.server.start();
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        this.server.stop(0);
+
+        if (Files.isDirectory(this.directory.resolve(".validators")))
+        {
+            delete(this.directory.resolve(".validators"));
+        }
+
+        delete(this.directory);
+    }
+
+    /**
+     * Test of scan method, of class SourceFetcher.
+     */
+    @Test
+    public void testScan() throws Exception
+    {
+        List<Source> sources = new ArrayList<>();
+
+        for (int i = 0; i < 8; i++)
+        {
+            this.lists.put("/list" + i, "10.0.0." + i + " a.example\n10.0.0." + i + " b.example\n");
+            sources.add(new Source("list" + i, url("/list" + i)));
+        }
+
+        List<String> expected = scan(new SourceFetcher(sources, this.directory, 2, 5000));
+
+        assertEquals(16, expected.size());
+        assertEquals("10.0.0.0 a.example", expected.get(0));
+        assertEquals("10.0.0.7 b.example", expected.get(15));
+        assertEquals(8, this.downloads.get());
+        assertEquals(this.lists.get("/list3"), new String(Files.readAllBytes(this.directory.resolve("list3")), UTF8));
+
+        // revalidated, only the changed list is downloaded again
+        this.lists.put("/list3", "10.0.0.3 c.example\n");
+        expected.remove("10.0.0.3 a.example");
+        expected.set(expected.indexOf("10.0.0.3 b.example"), "10.0.0.3 c.example");
+
+        assertEquals(expected, scan(new SourceFetcher(sources, this.directory, 2, 5000)));
+        assertEquals(9, this.downloads.get());
+        assertEquals(7, this.unchanged.get());
+    }
+
+    /**
+     * Test of split method, of class SourceFetcher.
+     */
+    @Test
+    public void testSplit() throws Exception
+    {
+        List<Source> sources = new ArrayList<>();
+        List<String> lines = new ArrayList<>();
+        StringBuilder content = new StringBuilder();
+
+        for (int i = 0; i < 50000; i++)
+        {
+            content.append("0.0.0.0 host").append(i).append(".example\n");
+        }
+
+        for (int i = 0; i < 4; i++)
+        {
+            this.lists.put("/list" + i, content.toString());
+            sources.add(new Source("list" + i, url("/list" + i)));
+        }
+
+        // large bodies exceed the socket buffers with a single permit
+        try (LineScanner instance = new SourceFetcher(sources, this.directory, 1, 5000))
+        {
+            List<LineScanner> parts = instance.split();
+
+            assertEquals(4, parts.size());
+
+            for (LineScanner part : parts)
+            {
+                part.scan(collector(lines));
+            }
+
+            assertEquals(4L * content.length(), instance.scanned());
+        }
+
+        assertEquals(200000, lines.size());
+    }
+
+    /**
+     * Test of scan method, of class SourceFetcher.
+     */
+    @Test(timeout = 60000L)
+    public void testScanOrder() throws Exception
+    {
+        List<Source> sources = new ArrayList<>();
+        List<String> lines = null;
+
+        for (int i = 0; i < 24; i++)
+        {
+            this.lists.put("/list" + i, "10.0.0." + i + " a.example\n");
+            sources.add(new Source("list" + i, url("/list" + i)));
+        }
+
+        // early sources are slow and overtaken by the later ones
+        this.delayed.addAll(Arrays.asList("/list0", "/list1", "/list3", "/list6", "/list7"));
+
+        for (int round = 0; round < 5; round++)
+        {
+            lines = scan(new SourceFetcher(sources, this.directory, 2, 5000));
+
+            assertEquals(24, lines.size());
+            assertEquals("10.0.0.0 a.example", lines.get(0));
+            assertEquals("10.0.0.23 a.example", lines.get(23));
+        }
+    }
+
+    /**
+     * Test of failed method, of class SourceFetcher.
+     */
+    @Test
+    public void testFailed() throws Exception
+    {
+        final List<Source> failures = new ArrayList<>();
+        List<Source> sources = Arrays.asList(new Source("list", url("/list")));
+
+        this.lists.put("/list", "10.0.0.1 a.example\n");
+        scan(new SourceFetcher(sources, this.directory));
+        this.lists.remove("/list");
+
+        assertEquals(Arrays.asList("10.0.0.1 a.example"), scan(new SourceFetcher(sources, this.directory)
+        {
+            @Override
+            protected void failed(Source source, IOException cause)
+            {
+                failures.add(source);
+            }
+        }));
+        assertEquals(sources, failures);
+
+        try
+        {
+            scan(new SourceFetcher(Arrays.asList(new Source("missing", url("/missing"))), this.directory));
+            fail("Fetched a missing source");
+        }
+        catch (IOException e)
+        {
+            assertTrue(e.getMessage().startsWith("missing"));
+        }
+    }
+
+    /**
+     * Test of read method, of class SourceList.
+     */
+    @Test
+    public void testSourceList() throws Exception
+    {
+        List<Source> sources = SourceList.read(new StringReader("# comment\n\nads = http://example.com/ads?a=b\n"
+                + "local=file:///tmp/hosts\n"));
+
+        assertEquals(2, sources.size());
+        assertEquals("ads", sources.get(0).name());
+        assertEquals(new URL("http://example.com/ads?a=b"), sources.get(0).location());
+        assertEquals("local", sources.get(1).name());
+
+        for (String invalid : new String[] { "no separator", "=http://example.com/", "../x=http://example.com/",
+            "x=http://example.com/\nx=http://example.org/" })
+        {
+            try
+            {
+                SourceList.read(new StringReader(invalid));
+                fail("Accepted " + invalid);
+            }
+            catch (IOException e)
+            {
+                // expected
+            }
+        }
+    }
+
+    private void serve(HttpExchange exchange) throws IOException
+    {
+        String content = this.lists.get(exchange.getRequestURI().getPath());
+        String tag = null == content ? null : "\"" + Integer.toHexString(content.hashCode()) + "\"";
+        byte[] body = null;
+
+        try
+        {
+            if (true == this.delayed.contains(exchange.getRequestURI().getPath()))
+            {
+                Thread.sleep(200L);
+            }
+
+            if (null == content)
+            {
+                exchange.sendResponseHeaders(404, -1L);
+            }
+            else if (tag.equals(exchange.getRequestHeaders().getFirst("If-None-Match")))
+            {
+                this.unchanged.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1L);
+            }
+            else
+            {
+                body = content.getBytes(UTF8);
+                this.downloads.incrementAndGet();
+                exchange.getResponseHeaders().set("ETag", tag);
+                exchange.sendResponseHeaders(200, body.length);
+
+                try (OutputStream output = exchange.getResponseBody())
+                {
+                    output.write(body);
+                }
+            }
+        }
+        catch (InterruptedException e)
+        {
+            throw new IOException("Interrupted while serving " + exchange.getRequestURI(), e);
+        }
+        finally
+        {
+            exchange.close();
+        }
+    }
+
+    private void delete(Path directory) throws Exception
+    {
+        for (Path file : MappedLineScanner.listFiles(directory))
+        {
+            Files.delete(file);
+        }
+
+        Files.delete(directory);
+    }
+
+    private URL url(String path) throws Exception
+    {
+        return new URL("http", "127.0.0.1", this.server.getAddress().getPort(), path);
+    }
+
+    private List<String> scan(LineScanner scanner) throws IOException
+    {
+        List<String> lines = new ArrayList<>();
+
+        try (LineScanner instance = scanner)
+        {
+            instance.scan(collector(lines));
+        }
+
+        return lines;
+    }
+
+    private LineHandler collector(final List<String> lines)
+    {
+        return new LineHandler()
+        {
+            @Override
+            public void line(ByteBuffer buffer, int start, int end)
+            {
+                byte[] data = new byte[end - start];
+
+                for (int i = start; i < end; i++)
+                {
+                    data[i - start] = buffer.get(i);
+                }
+
+                lines.add(new String(data, UTF8));
+            }
+        };
+    }
+}
@@ -0,0 +1,192 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge.snapshot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import com.github.gbleux.hostsmerge.address.HostEntry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Gordon Bleux
+ */
+public class HostsSnapshotTest
+{
+    private static final List<HostEntry> ENTRIES = Arrays.asList(
+            new HostEntry("0.0.0.0", "b.example", "ads"),
+            new HostEntry(false, "::1", "a.example"),
+            new HostEntry("0.0.0.0", "b.example", "replaced"),
+            new HostEntry("1.2.3", "c.example", "ads"),
+            new HostEntry("2001:db8::1", "\uFFE0.example"),
+            new HostEntry("2001:db8::1", "\uD83D\uDE00.example"),
+            new HostEntry("255.255.255.255", "a.example.org", "ads"));
+
+    /**
+     * Test of lookup method, of class HostsSnapshot.
+     */
+    @Test
+    public void testLookup() throws Exception
+    {
+        HostsSnapshot instance = snapshot(ENTRIES);
+
+        assertEquals(6, instance.size());
+        assertEquals("#::1 a.example", instance.lookup("a.example").toHosts());
+        assertEquals("0.0.0.0 b.example # replaced", instance.lookup("b.example").toHosts());
+        assertEquals("1.2.3 c.example # ads", instance.lookup("c.example").toHosts());
+        assertEquals("255.255.255.255 a.example.org # ads", instance.lookup("a.example.org").toHosts());
+        assertEquals("2001:db8::1 \uD83D\uDE00.example", instance.lookup("\uD83D\uDE00.example").toHosts());
+        assertTrue(instance.contains("\uFFE0.example"));
+        assertFalse(instance.contains("a.exampl"));
+        assertFalse(instance.contains("d.example"));
+        assertFalse(instance.contains(""));
+        assertNull(instance.lookup("A.example"));
+    }
+
+    /**
+     * Test of iterator method, of class HostsSnapshot.
+     */
+    @Test
+    public void testIterator() throws Exception
+    {
+        List<String> hostnames = new ArrayList<>();
+
+        for (HostEntry entry : snapshot(ENTRIES))
+        {
+            hostnames.add(entry.hostname());
+        }
+
+        // code point order: supplementary characters sort last
+        assertEquals(Arrays.asList("a.example", "a.example.org", "b.example", "c.example", "\uFFE0.example", "\uD83D\uDE00.example"), hostnames);
+        assertFalse(snapshot(new ArrayList<HostEntry>()).iterator().hasNext());
+    }
+
+    /**
+     * Test of contains method, of class HostsSnapshot.
+     */
+    @Test
+    public void testContains() throws Exception
+    {
+        Random random = new Random(42L);
+        TreeMap<String, HostEntry> expected = new TreeMap<>();
+        HostsSnapshot instance = null;
+
+        for (int i = 0; i < 5000; i++)
+        {
+            HostEntry entry = new HostEntry(0 != i % 3, "10.0." + random.nextInt(8) + ".1", "host" + random.nextInt(4000) + ".example", 0 == i % 5 ? "c" + (i % 7) : "");
+
+            expected.put(entry.hostname(), entry);
+        }
+
+        instance = snapshot(new ArrayList<>(expected.values()));
+
+        assertEquals(expected.size(), instance.size());
+
+        for (int i = 0; i < 4000; i++)
+        {
+            HostEntry entry = expected.get("host" + i + ".example");
+
+            assertEquals(null != entry, instance.contains("host" + i + ".example"));
+            assertEquals(null == entry ? null : entry.toHosts(), null == entry ? null : instance.lookup(entry.hostname()).toHosts());
+        }
+    }
+
+    /**
+     * Test of open method, of class HostsSnapshot.
+     */
+    @Test
+    public void testOpen() throws Exception
+    {
+        Path file = Files.createTempFile("hostsmerge", ".snapshot");
+        SnapshotWriter writer = new SnapshotWriter();
+
+        writer.addAll(ENTRIES);
+
+        try
+        {
+            try (OutputStream output = Files.newOutputStream(file))
+            {
+                writer.writeTo(output);
+            }
+
+            assertTrue(HostsSnapshot.open(file).contains("b.example"));
+        }
+        finally
+        {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Test of constructor, of class HostsSnapshot.
+     */
+    @Test
+    public void testCorrupt() throws Exception
+    {
+        byte[] data = write(ENTRIES);
+
+        for (int length : new int[] {0, 47, data.length - 1})
+        {
+            try
+            {
+                new HostsSnapshot(ByteBuffer.wrap(Arrays.copyOf(data, length)));
+                throw new AssertionError("Accepted truncated snapshot of " + length + " bytes");
+            }
+            catch (IOException e)
+            {
+                // expected
+            }
+        }
+    }
+
+    private HostsSnapshot snapshot(List<HostEntry> entries) throws Exception
+    {
+        return new HostsSnapshot(ByteBuffer.wrap(write(entries)));
+    }
+
+    private byte[] write(List<HostEntry> entries) throws Exception
+    {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        SnapshotWriter writer = new SnapshotWriter();
+
+        writer.addAll(entries);
+        writer.writeTo(output);
+
+        return output.toByteArray();
+    }
+}
@@ -0,0 +1,111 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge.sort;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.github.gbleux.hostsmerge.address.HostEntry;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * @author Gordon Bleux
+ */
+public class EntrySorterTest
+{
+    private static final String CHARACTERS = "ab-.0\u00E9\u00FE\u00FF\u0100\u0131\u212A";
+    private static final String[] PREFIXES = {"", "www.", "ads.tracking.", "ads.tracking.example.", "a\u0100dvertising.", "a\u0101dvertising."};
+
+    /**
+     * Test of sort method, of class EntrySorter.
+     */
+    @Test
+    public void testSort()
+    {
+        Random random = new Random(20141016L);
+
+        // few addresses leave room for long prefixes, many for short ones
+        for (int addresses : new int[] {1, 3, 300, 70000})
+        {
+            HostEntry[] entries = new HostEntry[20000];
+
+            for (int i = 0; i < entries.length; i++)
+            {
+                entries[i] = new HostEntry(address(random.nextInt(addresses)), hostname(random), "");
+            }
+
+            verify(entries);
+        }
+    }
+
+    /**
+     * Test of sort method, of class EntrySorter.
+     */
+    @Test
+    public void testSortSmall()
+    {
+        verify(new HostEntry[0]);
+        verify(new HostEntry[] {new HostEntry("::1", "a")});
+        verify(new HostEntry[] {
+            new HostEntry("10.0.0.10", "a"),
+            new HostEntry("10.0.0.2", "b"),
+            new HostEntry("10.0.0.2", "a\u0100b"),
+            new HostEntry("10.0.0.2", "a\u00FFz"),
+            new HostEntry("10.0.0.2", "a\u0100a"),
+            new HostEntry("10.0.0.2", "a")
+        });
+    }
+
+    private void verify(HostEntry[] entries)
+    {
+        HostEntry[] expected = entries.clone();
+
+        Arrays.sort(expected, EntrySorter.comparator());
+        new EntrySorter().sort(entries);
+
+        assertArrayEquals(expected, entries);
+    }
+
+    private String address(int index)
+    {
+        return 0 == index % 2 ? "10." + (index >> 16) + "." + (index >> 8 & 0xFF) + "." + (index & 0xFF) : "::" + Integer.toHexString(index);
+    }
+
+    private String hostname(Random random)
+    {
+        // shared prefixes longer than the key produce large runs of equal keys
+        StringBuilder sb = new StringBuilder(PREFIXES[random.nextInt(PREFIXES.length)]);
+        int length = random.nextInt(12);
+
+        for (int i = 0; i < length; i++)
+        {
+            // long common prefixes produce ties
+            sb.append(i < 4 && random.nextBoolean() ? 'w' : CHARACTERS.charAt(random.nextInt(CHARACTERS.length())));
+        }
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,185 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge.sort;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.github.gbleux.hostsmerge.address.HostEntry;
+import com.github.gbleux.hostsmerge.codec.EntrySource;
+import com.github.gbleux.io.MappedLineScanner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Gordon Bleux
+ */
+public class ExternalSorterTest
+{
+    /**
+     * Test of sorted method, of class ExternalSorter.
+     */
+    @Test
+    public void testSorted() throws Exception
+    {
+        Path directory = Files.createTempDirectory("hostsmerge");
+        Random random = new Random(20141016L);
+        HostEntry[] entries = new HostEntry[20000];
+
+        for (int i = 0; i < entries.length; i++)
+        {
+            entries[i] = new HostEntry("10.0." + random.nextInt(4) + ".1", "host" + random.nextInt(1000000) + ".example");
+        }
+
+        try
+        {
+            // one run, more runs than the fan-in and in memory
+            for (long budget : new long[] {1L << 30, 1L << 14, Long.MAX_VALUE})
+            {
+                try (ExternalSorter instance = new ExternalSorter(budget, directory))
+                {
+                    for (HostEntry entry : entries)
+                    {
+                        instance.add(entry);
+                    }
+
+                    assertTrue(1L << 14 != budget || RunFiles.MAX_FAN_IN < instance.runs());
+                    assertEquals(toHosts(sort(entries)), toHosts(instance.sorted()));
+                }
+
+                // runs are deleted on close
+                assertEquals(0, MappedLineScanner.listFiles(directory).size());
+            }
+        }
+        finally
+        {
+            Files.delete(directory);
+        }
+    }
+
+    /**
+     * Test of read method, of class RunMerger.
+     */
+    @Test
+    public void testRunMerger() throws Exception
+    {
+        List<EntrySource> sources = Arrays.asList(
+                source(new HostEntry("1.1.1.1", "a"), new HostEntry("1.1.1.1", "c")),
+                source(new HostEntry("2.2.2.2", "a"), new HostEntry("2.2.2.2", "b")),
+                source(new HostEntry("3.3.3.3", "c")));
+
+        try (RunMerger instance = new RunMerger(sources, new HostnameComparator(), true))
+        {
+            assertEquals("[2.2.2.2 a, 2.2.2.2 b, 3.3.3.3 c]", toHosts(instance).toString());
+        }
+    }
+
+    /**
+     * Test of read method, of class RunMerger.
+     */
+    @Test(expected = IOException.class)
+    public void testRunMergerUnsorted() throws Exception
+    {
+        List<EntrySource> sources = Arrays.asList(source(new HostEntry("1.1.1.1", "b"), new HostEntry("1.1.1.1", "a")));
+
+        try (RunMerger instance = new RunMerger(sources, new HostnameComparator(), false))
+        {
+            toHosts(instance);
+        }
+    }
+
+    private HostEntry[] sort(HostEntry[] entries)
+    {
+        HostEntry[] sorted = entries.clone();
+
+        Arrays.sort(sorted, EntrySorter.comparator());
+
+        return sorted;
+    }
+
+    private List<String> toHosts(HostEntry[] entries)
+    {
+        List<String> lines = new ArrayList<>();
+
+        for (HostEntry entry : entries)
+        {
+            lines.add(entry.toHosts());
+        }
+
+        return lines;
+    }
+
+    private List<String> toHosts(EntrySource source) throws IOException
+    {
+        List<String> lines = new ArrayList<>();
+        HostEntry entry = null;
+
+        try (EntrySource entries = source)
+        {
+            while (null != (entry = entries.read()))
+            {
+                lines.add(entry.toHosts());
+            }
+        }
+
+        return lines;
+    }
+
+    private EntrySource source(final HostEntry... entries)
+    {
+        return new EntrySource()
+        {
+            private int index = 0;
+
+            @Override
+            public HostEntry read()
+            {
+                return this.index < entries.length ? entries[this.index++] : null;
+            }
+
+            @Override
+            public void close()
+            {
+                // nothing to release
+            }
+        };
+    }
+
+    private static final class HostnameComparator implements Comparator<HostEntry>
+    {
+        @Override
+        public int compare(HostEntry lhs, HostEntry rhs)
+        {
+            return lhs.hostname().compareTo(rhs.hostname());
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge.table;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.github.gbleux.hostsmerge.address.Address;
+import com.github.gbleux.hostsmerge.address.HostEntry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Gordon Bleux
+ */
+public class CompactHostTableTest
+{
+    /**
+     * Test of put method, of class CompactHostTable.
+     */
+    @Test
+    public void testPut() throws Exception
+    {
+        CompactHostTable instance = new CompactHostTable();
+        ByteBuffer buffer = ByteBuffer.wrap("xx b.example yy".getBytes("UTF-8"));
+
+        instance.put(new HostEntry("0.0.0.0", "a.example"));
+        instance.put(new HostEntry("0.0.0.0", "b.example", "ads"));
+        instance.put(false, Address.parse("127.0.0.1"), buffer, 3, 12, "");
+
+        assertEquals(2, instance.size());
+        assertEquals(2, instance.addressCount());
+        assertTrue(instance.contains("a.example"));
+        assertTrue(instance.contains("b.example"));
+        assertFalse(instance.contains("c.example"));
+        assertEquals("#127.0.0.1 b.example", entries(instance).get("b.example").toHosts());
+    }
+
+    /**
+     * Test of put method, of class CompactHostTable.
+     */
+    @Test
+    public void testPutGrow()
+    {
+        CompactHostTable instance = new CompactHostTable();
+
+        for (int i = 0; i < 100000; i++)
+        {
+            instance.put(new HostEntry("10.0.0." + (i % 4), "host" + (i % 50000) + ".example", 0 == i % 2 ? "" : "odd"));
+        }
+
+        Map<String, HostEntry> entries = entries(instance);
+
+        assertEquals(50000, instance.size());
+        assertEquals(50000, entries.size());
+        assertEquals(4, instance.addressCount());
+        // second pass replaced the first one
+        assertEquals("10.0.0.1 host1.example # odd", entries.get("host1.example").toHosts());
+        assertEquals("10.0.0.3 host49999.example # odd", entries.get("host49999.example").toHosts());
+        assertEquals("10.0.0.0 host0.example", entries.get("host0.example").toHosts());
+    }
+
+    /**
+     * Test of putAll method, of class CompactHostTable.
+     */
+    @Test
+    public void testPutAll()
+    {
+        HostTable[] others = {new CompactHostTable(), new HashHostTable()};
+
+        for (HostTable other : others)
+        {
+            CompactHostTable replaced = new CompactHostTable();
+            CompactHostTable kept = new CompactHostTable();
+
+            replaced.put(new HostEntry("1.1.1.1", "a.example"));
+            replaced.put(new HostEntry("1.1.1.1", "b.example"));
+            kept.put(new HostEntry("1.1.1.1", "a.example"));
+            kept.put(new HostEntry("1.1.1.1", "b.example"));
+            other.put(new HostEntry(false, "2.2.2.2", "b.example", "other"));
+            other.put(new HostEntry("2.2.2.2", "c.example"));
+
+            replaced.putAll(other, true);
+            kept.putAll(other, false);
+
+            assertEquals(3, replaced.size());
+            assertEquals("#2.2.2.2 b.example # other", entries(replaced).get("b.example").toHosts());
+            assertEquals("2.2.2.2 c.example", entries(replaced).get("c.example").toHosts());
+            assertEquals(3, kept.size());
+            assertEquals("1.1.1.1 b.example", entries(kept).get("b.example").toHosts());
+            assertEquals("2.2.2.2 c.example", entries(kept).get("c.example").toHosts());
+        }
+    }
+
+    private Map<String, HostEntry> entries(HostTable table)
+    {
+        Map<String, HostEntry> entries = new HashMap<>();
+
+        for (HostEntry entry : table)
+        {
+            entries.put(entry.hostname(), entry);
+        }
+
+        return entries;
+    }
+}
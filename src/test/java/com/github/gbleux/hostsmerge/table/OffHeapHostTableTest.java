@@ -0,0 +1,144 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge.table;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.github.gbleux.hostsmerge.address.HostEntry;
+import com.github.gbleux.io.MappedLineScanner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Gordon Bleux
+ */
+public class OffHeapHostTableTest
+{
+    /**
+     * Test of put method, of class OffHeapHostTable.
+     */
+    @Test
+    public void testPut() throws Exception
+    {
+        try (OffHeapHostTable instance = new OffHeapHostTable())
+        {
+            verify(instance);
+        }
+    }
+
+    /**
+     * Test of put method, of class OffHeapHostTable.
+     */
+    @Test
+    public void testPutMapped() throws Exception
+    {
+        Path directory = Files.createTempDirectory("hostsmerge");
+
+        try
+        {
+            try (OffHeapHostTable instance = new OffHeapHostTable(directory))
+            {
+                verify(instance);
+            }
+
+            assertEquals(0, MappedLineScanner.listFiles(directory).size());
+        }
+        finally
+        {
+            Files.delete(directory);
+        }
+    }
+
+    /**
+     * Test of putAll method, of class OffHeapHostTable.
+     */
+    @Test
+    public void testPutAll() throws Exception
+    {
+        HostTable[] others = {new OffHeapHostTable(), new HashHostTable()};
+
+        for (HostTable other : others)
+        {
+            try (OffHeapHostTable replaced = new OffHeapHostTable();
+                 OffHeapHostTable kept = new OffHeapHostTable())
+            {
+                replaced.put(new HostEntry("1.1.1.1", "a.example"));
+                replaced.put(new HostEntry("1.1.1.1", "b.example"));
+                kept.put(new HostEntry("1.1.1.1", "a.example"));
+                kept.put(new HostEntry("1.1.1.1", "b.example"));
+                other.put(new HostEntry(false, "2.2.2.2", "b.example", "other"));
+                other.put(new HostEntry("2.2.2.2", "c.example"));
+
+                replaced.putAll(other, true);
+                kept.putAll(other, false);
+
+                assertEquals(3, replaced.size());
+                assertEquals("#2.2.2.2 b.example # other", entries(replaced).get("b.example").toHosts());
+                assertEquals("2.2.2.2 c.example", entries(replaced).get("c.example").toHosts());
+                assertEquals(3, kept.size());
+                assertEquals("1.1.1.1 b.example", entries(kept).get("b.example").toHosts());
+                assertEquals("2.2.2.2 c.example", entries(kept).get("c.example").toHosts());
+            }
+
+            other.close();
+        }
+    }
+
+    private void verify(OffHeapHostTable instance)
+    {
+        for (int i = 0; i < 100000; i++)
+        {
+            instance.put(new HostEntry(0 != i % 3, "10.0.0." + (i % 4), "host" + (i % 50000) + ".example", 0 == i % 2 ? "" : "odd"));
+        }
+
+        Map<String, HostEntry> entries = entries(instance);
+
+        assertEquals(50000, instance.size());
+        assertEquals(50000, entries.size());
+        assertTrue(instance.contains("host0.example"));
+        assertFalse(instance.contains("host50000.example"));
+        // second pass replaced the first one
+        assertEquals("#10.0.0.1 host1.example # odd", entries.get("host1.example").toHosts());
+        assertEquals("#10.0.0.3 host49999.example # odd", entries.get("host49999.example").toHosts());
+        assertEquals("10.0.0.0 host0.example", entries.get("host0.example").toHosts());
+    }
+
+    private Map<String, HostEntry> entries(HostTable table)
+    {
+        Map<String, HostEntry> entries = new HashMap<>();
+
+        for (HostEntry entry : table)
+        {
+            entries.put(entry.hostname(), entry);
+        }
+
+        return entries;
+    }
+}
@@ -0,0 +1,131 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.hostsmerge.table;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.github.gbleux.hostsmerge.address.HostEntry;
+import com.github.gbleux.io.MappedLineScanner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Gordon Bleux
+ */
+public class SpillingHostTableTest
+{
+    /**
+     * Test of iterator method, of class SpillingHostTable.
+     */
+    @Test
+    public void testIterator() throws Exception
+    {
+        Path directory = Files.createTempDirectory("hostsmerge");
+
+        try
+        {
+            for (HostTableType type : HostTableType.values())
+            {
+                Map<String, HostEntry> expected = new HashMap<>();
+                String previous = "";
+
+                try (SpillingHostTable instance = new SpillingHostTable(type, 1L << 15, directory))
+                {
+                    for (int i = 0; i < 10000; i++)
+                    {
+                        HostEntry entry = new HostEntry(0 != i % 7, "10.0.0." + (i % 5), "host" + (i * 31 % 2000) + ".example");
+
+                        instance.put(entry);
+                        expected.put(entry.hostname(), entry);
+                    }
+
+                    assertTrue(type.name(), instance.isSpilled());
+                    assertEquals(expected.size(), instance.size());
+
+                    for (HostEntry entry : instance)
+                    {
+                        // last entry of each hostname in hostname order
+                        assertEquals(expected.remove(entry.hostname()).toHosts(), entry.toHosts());
+                        assertTrue(previous.compareTo(entry.hostname()) < 0);
+                        previous = entry.hostname();
+                    }
+
+                    assertEquals(0, expected.size());
+                }
+
+                assertEquals(0, MappedLineScanner.listFiles(directory).size());
+            }
+        }
+        finally
+        {
+            Files.delete(directory);
+        }
+    }
+
+    /**
+     * Test of putAll method, of class SpillingHostTable.
+     */
+    @Test
+    public void testPutAllKeep() throws Exception
+    {
+        Path directory = Files.createTempDirectory("hostsmerge");
+
+        try
+        {
+            try (SpillingHostTable instance = new SpillingHostTable(HostTableType.HASH, 1L << 15, directory);
+                 HostTable other = HostTableType.HASH.newTable())
+            {
+                instance.put(new HostEntry(true, "1.1.1.1", "host0.example"));
+
+                for (int i = 0; i < 2000; i++)
+                {
+                    other.put(new HostEntry(true, "2.2.2.2", "host" + i + ".example"));
+                }
+
+                instance.putAll(other, false);
+
+                // the budget applies to entries added in bulk as well
+                assertTrue(instance.isSpilled());
+                assertEquals(2000, instance.size());
+
+                for (HostEntry entry : instance)
+                {
+                    assertEquals(entry.hostname(), "host0.example".equals(entry.hostname()) ? "1.1.1.1" : "2.2.2.2",
+                            entry.address());
+                }
+            }
+
+            assertEquals(0, MappedLineScanner.listFiles(directory).size());
+        }
+        finally
+        {
+            Files.delete(directory);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.io;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Set;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Gordon Bleux
+ */
+public class AtomicFileOutputStreamTest
+{
+    /**
+     * Test of commit method, of class AtomicFileOutputStream.
+     */
+    @Test
+    public void testCommit() throws Exception
+    {
+        Path directory = Files.createTempDirectory("hostsmerge");
+        Path target = directory.resolve("hosts");
+        Object identity = null;
+
+        try
+        {
+            assertTrue(write(target, "1.1.1.1 a.example\n"));
+            assertEquals("1.1.1.1 a.example\n", read(target));
+            identity = Files.readAttributes(target, BasicFileAttributes.class).fileKey();
+
+            // same content leaves the file alone
+            assertFalse(write(target, "1.1.1.1 a.example\n"));
+            assertEquals(identity, Files.readAttributes(target, BasicFileAttributes.class).fileKey());
+
+            // same size, different content
+            assertTrue(write(target, "2.2.2.2 a.example\n"));
+            assertEquals("2.2.2.2 a.example\n", read(target));
+
+            assertTrue(write(target, ""));
+            assertEquals("", read(target));
+            assertEquals(1, MappedLineScanner.listFiles(directory).size());
+        }
+        finally
+        {
+            for (Path file : MappedLineScanner.listFiles(directory))
+            {
+                Files.delete(file);
+            }
+
+            Files.delete(directory);
+        }
+    }
+
+    /**
+     * Test of close method, of class AtomicFileOutputStream.
+     */
+    @Test
+    public void testCloseUncommitted() throws Exception
+    {
+        Path directory = Files.createTempDirectory("hostsmerge");
+        Path target = directory.resolve("hosts");
+
+        try
+        {
+            write(target, "1.1.1.1 a.example\n");
+
+            try (AtomicFileOutputStream instance = new AtomicFileOutputStream(target))
+            {
+                instance.write("2.2.2.2 b.example\n".getBytes("UTF-8"));
+            }
+
+            assertEquals("1.1.1.1 a.example\n", read(target));
+            assertEquals(1, MappedLineScanner.listFiles(directory).size());
+        }
+        finally
+        {
+            for (Path file : MappedLineScanner.listFiles(directory))
+            {
+                Files.delete(file);
+            }
+
+            Files.delete(directory);
+        }
+    }
+
+    /**
+     * Test of commit method, of class AtomicFileOutputStream.
+     */
+    @Test
+    public void testCommitPermissions() throws Exception
+    {
+        Path directory = Files.createTempDirectory("hostsmerge");
+        Path target = directory.resolve("hosts");
+        Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rw-r-----");
+
+        try
+        {
+            write(target, "1.1.1.1 a.example\n");
+            Files.setPosixFilePermissions(target, permissions);
+            write(target, "2.2.2.2 b.example\n");
+
+            assertEquals(permissions, Files.getPosixFilePermissions(target));
+        }
+        finally
+        {
+            for (Path file : MappedLineScanner.listFiles(directory))
+            {
+                Files.delete(file);
+            }
+
+            Files.delete(directory);
+        }
+    }
+
+    private boolean write(Path target, String content) throws Exception
+    {
+        byte[] data = content.getBytes("UTF-8");
+
+        try (AtomicFileOutputStream instance = new AtomicFileOutputStream(target))
+        {
+            // mix stream and channel writes
+            instance.write(data, 0, data.length / 2);
+            instance.write(ByteBuffer.wrap(data, data.length / 2, data.length - data.length / 2));
+
+            return instance.commit();
+        }
+    }
+
+    private String read(Path file) throws Exception
+    {
+        return new String(Files.readAllBytes(file), "UTF-8");
+    }
+}
@@ -22,17 +22,23 @@
  */
 package com.github.gbleux.io;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.DirectoryStream.Filter;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 
 import org.junit.Test;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -85,6 +91,107 @@ public class DirectoryFilesStreamTest
         assertContainsNot(buffer, "data1", "data2", "data3");
     }
 
+    /**
+     * Test of bulk read method, of class DirectoryFilesStream.
+     */
+    @Test
+    public void testReadBulk() throws Exception
+    {
+        final byte[] buffer = new byte[256];
+        final String content;
+        int read = 0;
+
+        try (DirectoryFilesStream instance = new DirectoryFilesStream(resolve("/stream"));)
+        {
+            // a single call must span all files
+            read = instance.read(buffer, 0, buffer.length);
+
+            assertEquals(36, read);
+            assertEquals(0, instance.available());
+            assertEquals(DirectoryFilesStream.EOF, instance.read(buffer, 0, buffer.length));
+            assertEquals(DirectoryFilesStream.EOF, instance.read());
+        }
+
+        content = new String(buffer, 0, read, "UTF-8");
+
+        assertContains(new StringBuilder(content), "stream1", "stream2", "stream3", "data1", "data2", "data3");
+    }
+
+    /**
+     * Test of transferTo method, of class DirectoryFilesStream.
+     */
+    @Test
+    public void testTransferTo() throws Exception
+    {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        try (DirectoryFilesStream instance = new DirectoryFilesStream(resolve("/stream"), "data*");)
+        {
+            assertEquals('d', instance.read());
+            assertEquals(4, instance.available());
+            assertEquals(14L, instance.transferTo(output));
+        }
+
+        assertEquals(14, output.size());
+        assertContains(new StringBuilder("d" + output.toString("UTF-8")), "data1", "data2", "data3");
+    }
+
+    /**
+     * Test of transferTo method, of class DirectoryFilesStream, with a target
+     * which does not accept data on every write.
+     */
+    @Test
+    public void testTransferToPartial() throws Exception
+    {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final WritableByteChannel channel = Channels.newChannel(output);
+        final WritableByteChannel target = new WritableByteChannel()
+        {
+            private int calls = 0;
+
+            @Override
+            public int write(ByteBuffer src) throws IOException
+            {
+                ByteBuffer slice = null;
+                int count = 0;
+
+                // alternate between refusing data and accepting a single byte
+                if (0 == this.calls++ % 2 || false == src.hasRemaining())
+                {
+                    return 0;
+                }
+
+                slice = src.duplicate();
+                ((Buffer) slice).limit(slice.position() + 1);
+                count = channel.write(slice);
+                ((Buffer) src).position(src.position() + count);
+
+                return count;
+            }
+
+            @Override
+            public boolean isOpen()
+            {
+                return channel.isOpen();
+            }
+
+            @Override
+            public void close() throws IOException
+            {
+                channel.close();
+            }
+        };
+
+        try (DirectoryFilesStream instance = new DirectoryFilesStream(resolve("/stream"), "data*");)
+        {
+            assertEquals(15L, instance.transferTo(target));
+            assertEquals(DirectoryFilesStream.EOF, instance.read());
+        }
+
+        assertEquals(15, output.size());
+        assertContains(new StringBuilder(output.toString("UTF-8")), "data1", "data2", "data3");
+    }
+
     private Filter<Path> newFilter(final String prefix)
     {
         return new Filter<Path>()
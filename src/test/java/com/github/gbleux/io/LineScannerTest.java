@@ -0,0 +1,352 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Gordon Bleux
+ */
+public class LineScannerTest
+{
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String CONTENT = "first\nsecond\r\nthird\rfourth\n\nsixth";
+    private static final List<String> LINES = Arrays.asList("first", "second", "third", "fourth", "", "sixth");
+
+    /**
+     * Test of scan method, of class StreamLineScanner.
+     */
+    @Test
+    public void testStreamScan() throws Exception
+    {
+        for (int size = 1; size <= CONTENT.length() + 1; size++)
+        {
+            LineScanner instance = new StreamLineScanner(new ByteArrayInputStream(CONTENT.getBytes(UTF8)), size);
+
+            assertEquals("buffer size " + size, LINES, scan(instance));
+        }
+    }
+
+    /**
+     * Test of scan method, of class MappedLineScanner.
+     */
+    @Test
+    public void testMappedScan() throws Exception
+    {
+        Path file = Files.createTempFile("hostsmerge", ".txt");
+
+        try
+        {
+            Files.write(file, CONTENT.getBytes(UTF8));
+
+            for (int size = 1; size <= CONTENT.length() + 1; size++)
+            {
+                LineScanner instance = new MappedLineScanner(Arrays.asList(file), size);
+
+                assertEquals("chunk size " + size, LINES, scan(instance));
+            }
+        }
+        finally
+        {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Test of split method, of class MappedLineScanner.
+     */
+    @Test
+    public void testMappedSplit() throws Exception
+    {
+        Path file = Files.createTempFile("hostsmerge", ".txt");
+
+        try
+        {
+            Files.write(file, CONTENT.getBytes(UTF8));
+
+            for (int size = 1; size <= CONTENT.length() + 1; size++)
+            {
+                List<String> lines = new ArrayList<>();
+                List<LineScanner> parts = new MappedLineScanner(Arrays.asList(file), 4, size).split();
+
+                for (LineScanner part : parts)
+                {
+                    lines.addAll(scan(part));
+                }
+
+                assertEquals("split size " + size, LINES, lines);
+            }
+
+            assertEquals(LINES.size(), new MappedLineScanner(Arrays.asList(file), 4, 1).split().size());
+            assertEquals(1, new MappedLineScanner(Arrays.asList(file), 4, CONTENT.length()).split().size());
+        }
+        finally
+        {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Test of scan method, of class MappedLineScanner.
+     */
+    @Test
+    public void testMappedScanFiles() throws Exception
+    {
+        Path file1 = Files.createTempFile("hostsmerge", ".txt");
+        Path file2 = Files.createTempFile("hostsmerge", ".txt");
+        Path file3 = Files.createTempFile("hostsmerge", ".txt");
+
+        try
+        {
+            Files.write(file1, "a\r".getBytes(UTF8));
+            Files.write(file3, "\nb".getBytes(UTF8));
+
+            // lines never continue across files
+            assertEquals(Arrays.asList("a", "", "b"), scan(new MappedLineScanner(Arrays.asList(file1, file2, file3))));
+        }
+        finally
+        {
+            Files.delete(file1);
+            Files.delete(file2);
+            Files.delete(file3);
+        }
+    }
+
+    /**
+     * Test of scan method, of class MappedLineScanner.
+     */
+    @Test
+    public void testMappedScanCompressed() throws Exception
+    {
+        Path plain = Files.createTempFile("hostsmerge", ".txt");
+        Path gzip = Files.createTempFile("hostsmerge", ".txt");
+        Path zip = Files.createTempFile("hostsmerge", ".txt");
+        StringBuilder large = new StringBuilder();
+        List<String> expected = new ArrayList<>();
+        List<String> lines = new ArrayList<>();
+
+        for (int i = 0; i < 100000; i++)
+        {
+            large.append("line").append(i).append('\n');
+        }
+
+        try
+        {
+            Files.write(plain, "plain\n".getBytes(UTF8));
+            Files.write(gzip, concat(gzip("first\nsecond"), gzip("\nthird\n"), gzip(large.toString())));
+            Files.write(zip, zip("fourth", "fifth\r\n"));
+            expected.addAll(Arrays.asList("plain", "first", "second", "third"));
+            expected.addAll(Arrays.asList(large.toString().split("\n")));
+            expected.addAll(Arrays.asList("fourth", "fifth"));
+
+            assertEquals(Compression.GZIP, Compression.of(gzip));
+            assertEquals(Compression.ZIP, Compression.of(zip));
+            assertEquals(Compression.NONE, Compression.of(plain));
+
+            try (MappedLineScanner instance = new MappedLineScanner(Arrays.asList(plain, gzip, zip)))
+            {
+                assertEquals(expected, scan(instance));
+                assertEquals(6L + 19L + 14L + large.length(), instance.scanned());
+            }
+
+            for (LineScanner part : new MappedLineScanner(Arrays.asList(plain, gzip, zip), 4, 2).split())
+            {
+                lines.addAll(scan(part));
+            }
+
+            assertEquals(expected, lines);
+            assertEquals(Arrays.asList("first", "second", "third"),
+                    scan(new StreamLineScanner(Compression.decompress(new ByteArrayInputStream(concat(gzip("first\nsecond"), gzip("\nthird")))))));
+            assertEquals(Arrays.asList("a"), scan(new StreamLineScanner(Compression.decompress(new ByteArrayInputStream("a".getBytes(UTF8))))));
+        }
+        finally
+        {
+            Files.delete(plain);
+            Files.delete(gzip);
+            Files.delete(zip);
+        }
+    }
+
+    /**
+     * Test of close method, of class MappedLineScanner.
+     */
+    @Test
+    public void testMappedCloseCompressed() throws Exception
+    {
+        List<Path> files = new ArrayList<>();
+        StringBuilder large = new StringBuilder();
+
+        for (int i = 0; i < 200000; i++)
+        {
+            large.append("line").append(i).append('\n');
+        }
+
+        try
+        {
+            // more files than workers, each exceeding the queued blocks
+            for (int i = 0; i < 2 * Runtime.getRuntime().availableProcessors() + 1; i++)
+            {
+                files.add(Files.createTempFile("hostsmerge", ".gz"));
+                Files.write(files.get(i), gzip(large.toString()));
+            }
+
+            for (int run = 0; run < 3; run++)
+            {
+                // closed scans must not keep the workers busy
+                new MappedLineScanner(files).close();
+
+                try (MappedLineScanner instance = new MappedLineScanner(files))
+                {
+                    instance.split();
+                }
+            }
+
+            assertEquals(200000, scan(new MappedLineScanner(files.subList(0, 1))).size());
+        }
+        finally
+        {
+            for (Path file : files)
+            {
+                Files.delete(file);
+            }
+        }
+    }
+
+    /**
+     * Test of scanNext method, of class StreamLineScanner.
+     */
+    @Test
+    public void testStreamScanNext() throws Exception
+    {
+        for (int size = 1; size <= CONTENT.length() + 1; size++)
+        {
+            List<String> lines = new ArrayList<>();
+            LineHandler handler = collector(lines);
+
+            try (StreamLineScanner instance = new StreamLineScanner(new ByteArrayInputStream(CONTENT.getBytes(UTF8)), size))
+            {
+                while (true == instance.scanNext(handler))
+                {
+                    assertTrue(lines.size() < LINES.size());
+                }
+
+                assertFalse(instance.scanNext(handler));
+            }
+
+            assertEquals("buffer size " + size, LINES, lines);
+        }
+    }
+
+    private List<String> scan(LineScanner scanner) throws IOException
+    {
+        final List<String> lines = new ArrayList<>();
+
+        try (LineScanner instance = scanner;)
+        {
+            instance.scan(collector(lines));
+        }
+
+        return lines;
+    }
+
+    private byte[] gzip(String content) throws IOException
+    {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        try (GZIPOutputStream gzip = new GZIPOutputStream(output))
+        {
+            gzip.write(content.getBytes(UTF8));
+        }
+
+        return output.toByteArray();
+    }
+
+    private byte[] zip(String... members) throws IOException
+    {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        try (ZipOutputStream zip = new ZipOutputStream(output))
+        {
+            zip.putNextEntry(new ZipEntry("directory/"));
+            zip.closeEntry();
+
+            for (int i = 0; i < members.length; i++)
+            {
+                zip.putNextEntry(new ZipEntry("directory/member" + i));
+                zip.write(members[i].getBytes(UTF8));
+                zip.closeEntry();
+            }
+        }
+
+        return output.toByteArray();
+    }
+
+    private byte[] concat(byte[]... parts) throws IOException
+    {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        for (byte[] part : parts)
+        {
+            output.write(part);
+        }
+
+        return output.toByteArray();
+    }
+
+    private LineHandler collector(final List<String> lines)
+    {
+        return new LineHandler()
+        {
+            @Override
+            public void line(ByteBuffer buffer, int start, int end)
+            {
+                byte[] data = new byte[end - start];
+
+                for (int i = start; i < end; i++)
+                {
+                    data[i - start] = buffer.get(i);
+                }
+
+                lines.add(new String(data, UTF8));
+            }
+        };
+    }
+}
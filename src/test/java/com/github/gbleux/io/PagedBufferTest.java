@@ -0,0 +1,98 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.io;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Gordon Bleux
+ */
+public class PagedBufferTest
+{
+    /**
+     * Test of ensureCapacity method, of class PagedBuffer.
+     */
+    @Test
+    public void testDirect() throws Exception
+    {
+        try (PagedBuffer instance = new PagedBuffer(12))
+        {
+            verify(instance);
+        }
+    }
+
+    /**
+     * Test of ensureCapacity method, of class PagedBuffer.
+     */
+    @Test
+    public void testMapped() throws Exception
+    {
+        Path directory = Files.createTempDirectory("hostsmerge");
+
+        try
+        {
+            try (PagedBuffer instance = new PagedBuffer(12, directory))
+            {
+                verify(instance);
+            }
+
+            // temporary file is deleted on close
+            assertEquals(0, MappedLineScanner.listFiles(directory).size());
+        }
+        finally
+        {
+            Files.delete(directory);
+        }
+    }
+
+    private void verify(PagedBuffer instance) throws Exception
+    {
+        ByteBuffer data = ByteBuffer.wrap("page boundary".getBytes("UTF-8"));
+        byte[] copy = new byte[data.limit()];
+
+        instance.ensureCapacity(100);
+        assertEquals(4096, instance.capacity());
+        instance.putLong(8, 0x0102030405060708L);
+        instance.putInt(4092, 42);
+        // first page is enlarged without losing content
+        instance.ensureCapacity(3 * 4096 + 1);
+        assertEquals(4 * 4096, instance.capacity());
+        assertEquals(0x0102030405060708L, instance.getLong(8));
+        assertEquals(42, instance.getInt(4092));
+        assertEquals(0, instance.getInt(3 * 4096));
+
+        instance.put(2 * 4096 - 5, data, 0, data.limit());
+        instance.get(2 * 4096 - 5, copy, 0, copy.length);
+        assertEquals("page boundary", new String(copy, "UTF-8"));
+        assertTrue(instance.equals(2 * 4096 - 5, data, 0, data.limit()));
+        assertFalse(instance.equals(2 * 4096 - 4, data, 0, data.limit()));
+    }
+}
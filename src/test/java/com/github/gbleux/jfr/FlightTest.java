@@ -0,0 +1,114 @@
+/**
+ * The MIT License
+ * Copyright (c) 2014 Gordon Bleux
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.gbleux.jfr;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Gordon Bleux
+ */
+public class FlightTest
+{
+    /**
+     * Test of the begin methods, of class Flight.
+     */
+    @Test
+    public void testBeginWithoutRecording()
+    {
+        assertTrue(Flight.available());
+        assertNull(Flight.beginFile(Paths.get("hosts"), 0L));
+        assertNull(Flight.beginPhase("parse"));
+        assertNull(Flight.beginBatch("parse", 0L));
+
+        Flight.endFile(null, 0L, 0L);
+        Flight.endPhase(null);
+        Flight.endBatch(null, 0L, 0L);
+    }
+
+    /**
+     * Test of the events, of class Flight.
+     */
+    @Test
+    public void testRecording() throws Exception
+    {
+        Path dump = Files.createTempFile("flight", ".jfr");
+        List<RecordedEvent> events = null;
+
+        try (Recording recording = new Recording())
+        {
+            recording.enable("hostsmerge.FileRead");
+            recording.enable("hostsmerge.Phase");
+            recording.enable("hostsmerge.Batch");
+            recording.start();
+
+            Flight.endFile(Flight.beginFile(Paths.get("hosts"), 4L), 10L, 2L);
+            Flight.endPhase(Flight.beginPhase("parse"));
+            Flight.endBatch(Flight.beginBatch("parse", 3L), 5L, 4L);
+
+            recording.stop();
+            recording.dump(dump);
+            events = RecordingFile.readAllEvents(dump);
+        }
+        finally
+        {
+            Files.deleteIfExists(dump);
+        }
+
+        assertEquals(3, events.size());
+
+        for (RecordedEvent event : events)
+        {
+            switch (event.getEventType().getName())
+            {
+                case "hostsmerge.FileRead":
+                    assertEquals("hosts", event.getString("path"));
+                    assertEquals(4L, event.getLong("offset"));
+                    assertEquals(10L, event.getLong("bytes"));
+                    assertEquals(2L, event.getLong("lines"));
+                    break;
+                case "hostsmerge.Phase":
+                    assertEquals("parse", event.getString("phase"));
+                    break;
+                default:
+                    assertEquals("parse", event.getString("stage"));
+                    assertEquals(3L, event.getLong("sequence"));
+                    assertEquals(5L, event.getLong("lines"));
+                    assertEquals(4L, event.getLong("entries"));
+                    break;
+            }
+        }
+    }
+}